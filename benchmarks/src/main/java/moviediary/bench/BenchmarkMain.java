@@ -0,0 +1,36 @@
+package moviediary.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}: JMH's usual command line, except
+ * that results are written as JSON to {@code jmh-results.json} unless
+ * {@code -rf}/{@code -rff} say otherwise.
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar                      # everything at 10K reviews
+ * java -jar benchmarks/target/benchmarks.jar Detail -p reviews=10000,1000000,10000000
+ * </pre>
+ */
+public final class BenchmarkMain {
+    public static final String DEFAULT_RESULT_FILE = "jmh-results.json";
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListWithParams() || cmd.shouldListProfilers()
+                || cmd.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        if (!cmd.getResult().hasValue()) options.result(DEFAULT_RESULT_FILE);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,63 @@
+package moviediary.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The movie list: the whole catalogue at once, and 20-row keyset pages from random places. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BrowseBenchmark {
+    private static final int PAGE = 20;
+    private static final int ANCHORS = 1024;
+
+    // Page anchors spread over the title order, looked up once so only the page itself is timed.
+    @State(Scope.Benchmark)
+    public static class Anchors {
+        MovieSummary[] byTitle = new MovieSummary[ANCHORS];
+
+        @Setup(Level.Trial)
+        public void load(SeededStore.Read data) throws SQLException {
+            int movies = data.shape.movies();
+            for (int i = 0; i < ANCHORS; i++) byTitle[i] = data.dao.movieAt(MovieOrder.TITLE, (int) ((long) i * movies / ANCHORS));
+        }
+    }
+
+    @Benchmark
+    public List<MovieSummary> fullList(SeededStore.Read data) throws SQLException {
+        return data.dao.listMovies(MovieOrder.ID);
+    }
+
+    @Benchmark
+    public List<MovieSummary> firstPage(SeededStore.Read data) throws SQLException {
+        return data.dao.moviesAfter(MovieOrder.ID, null, PAGE);
+    }
+
+    @Benchmark
+    public List<MovieSummary> pageById(SeededStore.Read data) throws SQLException {
+        int id = ThreadLocalRandom.current().nextInt(data.shape.movies());
+        return data.dao.moviesAfter(MovieOrder.ID, new MovieSummary(id, null, null), PAGE);
+    }
+
+    @Benchmark
+    public List<MovieSummary> pageByTitle(SeededStore.Read data, Anchors anchors) throws SQLException {
+        return data.dao.moviesAfter(MovieOrder.TITLE, anchors.byTitle[ThreadLocalRandom.current().nextInt(ANCHORS)], PAGE);
+    }
+}
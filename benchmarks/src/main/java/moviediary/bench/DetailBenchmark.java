@@ -0,0 +1,68 @@
+package moviediary.bench;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import moviediary.detail.DetailLoader;
+import moviediary.model.MovieDetail;
+import moviediary.model.RatingStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The movie detail screen: the movie row, its rating aggregate and its
+ * latest reviews. {@code loader} is what the front-ends do, a {@link
+ * DetailLoader} with its default cache in front of {@code movieDetail};
+ * {@code movieDetail} is a miss, and {@code detail} the three separate
+ * calls the screens made before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DetailBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Loader {
+        public DetailLoader loader;
+
+        @Setup(Level.Trial)
+        public void create(SeededStore.Read data) {
+            loader = new DetailLoader(data.dao);
+        }
+    }
+
+    @Benchmark
+    public MovieDetail loader(SeededStore.Read data, Loader loader) throws SQLException {
+        return loader.loader.load(SyntheticData.popularMovie(ThreadLocalRandom.current().nextDouble(), data.shape.movies()));
+    }
+
+    @Benchmark
+    public MovieDetail movieDetail(SeededStore.Read data) throws SQLException {
+        return data.dao.movieDetail(SyntheticData.popularMovie(ThreadLocalRandom.current().nextDouble(), data.shape.movies()));
+    }
+
+    @Benchmark
+    public void detail(SeededStore.Read data, Blackhole bh) throws SQLException {
+        int movieId = SyntheticData.popularMovie(ThreadLocalRandom.current().nextDouble(), data.shape.movies());
+        bh.consume(data.dao.findMovie(movieId));
+        bh.consume(data.dao.ratingStats(movieId));
+        bh.consume(data.dao.latestReviews(movieId));
+    }
+
+    @Benchmark
+    public RatingStats ratingStats(SeededStore.Read data) throws SQLException {
+        return data.dao.ratingStats(1 + ThreadLocalRandom.current().nextInt(data.shape.movies()));
+    }
+}
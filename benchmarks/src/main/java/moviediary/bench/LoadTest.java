@@ -0,0 +1,298 @@
+package moviediary.bench;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import moviediary.auth.CredentialService;
+import moviediary.bench.Workload.Op;
+import moviediary.db.ConnectionPool;
+import moviediary.db.DbConfig;
+import moviediary.db.DbExecutor;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStore;
+import moviediary.db.StoreMode;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieSummary;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Closed-loop load test of the app's operations, all on one machine. Each of
+ * {@code --clients} clients (virtual threads on JDK 21+) runs operations on a
+ * fixed schedule, so together they aim at {@code --rate} operations a second,
+ * plus the extra reviews of a burst. A client never has more than one operation in flight. When it falls behind,
+ * it starts the next operation at once and keeps its original schedule.
+ *
+ * Latency is recorded twice into HDR histograms. "Service" time runs from the
+ * moment the operation actually started. "Corrected" time runs from the moment
+ * the schedule said it should start. The corrected figure counts the time
+ * requests spent waiting behind a slow one (coordinated omission), which is
+ * what a user at that rate would see.
+ *
+ * Movies are picked by Zipf popularity. Reviews come in bursts; see
+ * {@link Workload}. Local stores run on a throwaway copy of a
+ * {@link SyntheticData} set. With {@code --store=mysql} the test runs against
+ * the configured database as it is, and {@code --users} must give its user
+ * count (ids 1..N, named as SyntheticData names them).
+ */
+public final class LoadTest {
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int PAGE = 20;
+    private static final long PROGRESS_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final MovieStore store;
+    private final CredentialService credentials;
+    private final Workload workload;
+    private final ZipfSampler popularity;
+    private final int[] movieByRank;
+    private final int movies;
+    private final int users;
+
+    private final Map<Op, Histogram> corrected = new EnumMap<>(Op.class);
+    private final Map<Op, Histogram> service = new EnumMap<>(Op.class);
+    private final Map<Op, LongAdder> errors = new EnumMap<>(Op.class);
+    private final LongAdder completed = new LongAdder();
+
+    LoadTest(MovieStore store, int movies, int users, Workload workload, double zipfExponent) {
+        this.store = store;
+        this.credentials = new CredentialService(store);
+        this.workload = workload;
+        this.movies = movies;
+        this.users = users;
+        this.popularity = new ZipfSampler(movies, zipfExponent);
+        // Popularity rank to movie id, shuffled so the hits are spread over the catalogue.
+        movieByRank = new int[movies + 1];
+        for (int i = 1; i <= movies; i++) movieByRank[i] = i;
+        SplittableRandom shuffle = new SplittableRandom(movies);
+        for (int i = movies; i > 1; i--) {
+            int j = 1 + shuffle.nextInt(i);
+            int t = movieByRank[i];
+            movieByRank[i] = movieByRank[j];
+            movieByRank[j] = t;
+        }
+        for (Op op : Op.values()) {
+            corrected.put(op, new ConcurrentHistogram(HIGHEST_MICROS, 3));
+            service.put(op, new ConcurrentHistogram(HIGHEST_MICROS, 3));
+            errors.put(op, new LongAdder());
+        }
+    }
+
+    // ---------- RUN ----------
+    /** Runs for {@code warmup + duration} seconds and records only what was scheduled after the warm-up. */
+    void run(int clients, double rate, int warmupSeconds, int durationSeconds) throws InterruptedException {
+        long interval = (long) (clients * 1e9 / rate); // per client
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService vt = DbExecutor.newVirtualThreadExecutor();
+        ExecutorService threads = vt != null ? vt : Executors.newFixedThreadPool(clients, DbExecutor.daemonThreads("client"));
+        System.out.printf("%d clients on %s threads, %.0f ops/s target, %ds warm-up + %ds%n",
+                clients, vt != null ? "virtual" : "platform", rate, warmupSeconds, durationSeconds);
+        SplittableRandom seeds = new SplittableRandom(42);
+        for (int c = 0; c < clients; c++) {
+            SplittableRandom random = seeds.split();
+            long first = start + (long) (random.nextDouble() * interval); // spread the first round over one interval
+            threads.execute(() -> client(random, first, interval, start, measureFrom, end));
+        }
+        threads.shutdown();
+        long last = 0;
+        long lastAt = start;
+        while (!threads.awaitTermination(PROGRESS_NANOS, TimeUnit.NANOSECONDS)) {
+            long now = System.nanoTime();
+            long done = completed.sum();
+            System.out.printf("%5.0fs  %8.0f ops/s%s%s%n", (now - start) / 1e9, (done - last) * 1e9 / (now - lastAt),
+                    now < measureFrom ? "  (warm-up)" : "", workload.inBurst(now - start) ? "  review burst" : "");
+            last = done;
+            lastAt = now;
+        }
+    }
+
+    private void client(SplittableRandom random, long first, long interval, long start, long measureFrom, long end) {
+        for (long intended = first; intended < end; intended += (long) (interval / workload.rateMultiplier(intended - start))) {
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+            long began = System.nanoTime();
+            Op op = workload.next(random, intended - start); // the mix that goes with the schedule's rate
+            boolean ok = execute(op, random);
+            long finished = System.nanoTime();
+            completed.increment();
+            if (intended < measureFrom) continue;
+            corrected.get(op).recordValue(Math.min(HIGHEST_MICROS, (finished - intended) / 1000));
+            service.get(op).recordValue(Math.min(HIGHEST_MICROS, (finished - began) / 1000));
+            if (!ok) errors.get(op).increment();
+        }
+    }
+
+    private boolean execute(Op op, SplittableRandom random) {
+        int userId = 1 + random.nextInt(users);
+        try {
+            switch (op) {
+                case BROWSE -> {
+                    // Half start at the top, the rest page on from somewhere in the catalogue.
+                    MovieSummary after = random.nextBoolean() ? null : new MovieSummary(random.nextInt(movies), null, null);
+                    store.moviesAfter(MovieOrder.ID, after, PAGE);
+                }
+                case DETAIL -> store.movieDetail(popularMovie(random));
+                case WATCHLIST -> store.watchlistAfter(userId, null, PAGE);
+                case SAVE -> store.addToWatchlist(userId, popularMovie(random));
+                case REVIEW -> store.addReview(popularMovie(random), userId, 1 + random.nextInt(10), "Load test review");
+                case LOGIN -> {
+                    if (credentials.login(SyntheticData.username(userId), SyntheticData.PASSWORD) == null) return false;
+                }
+            }
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private int popularMovie(SplittableRandom random) {
+        return movieByRank[popularity.next(random)];
+    }
+
+    // ---------- REPORT ----------
+    void report(PrintStream out, int durationSeconds) {
+        out.printf("%n%-10s %9s %7s %9s | %-34s | %-34s%n", "op", "count", "errors", "ops/s",
+                "corrected ms  p50 / p99 / p99.9 / max", "service ms  p50 / p99 / p99.9 / max");
+        Histogram allCorrected = new Histogram(HIGHEST_MICROS, 3);
+        Histogram allService = new Histogram(HIGHEST_MICROS, 3);
+        long allErrors = 0;
+        for (Op op : Op.values()) {
+            Histogram c = corrected.get(op);
+            if (c.getTotalCount() == 0) continue;
+            row(out, op.label(), c, service.get(op), errors.get(op).sum(), durationSeconds);
+            allCorrected.add(c);
+            allService.add(service.get(op));
+            allErrors += errors.get(op).sum();
+        }
+        row(out, "all", allCorrected, allService, allErrors, durationSeconds);
+    }
+
+    private static void row(PrintStream out, String label, Histogram c, Histogram s, long errors, int seconds) {
+        out.printf("%-10s %9d %7d %9.1f | %-34s | %-34s%n", label, c.getTotalCount(), errors,
+                (double) c.getTotalCount() / seconds, percentiles(c), percentiles(s));
+    }
+
+    private static String percentiles(Histogram h) {
+        return String.format(Locale.ROOT, "%.2f / %.2f / %.2f / %.2f", ms(h.getValueAtPercentile(50)),
+                ms(h.getValueAtPercentile(99)), ms(h.getValueAtPercentile(99.9)), ms(h.getMaxValue()));
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    /** The same figures as {@link #report}, in microseconds, as one JSON object. */
+    String json(int clients, double rate, int durationSeconds) {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format(Locale.ROOT, "{\"clients\":%d,\"targetRate\":%.1f,\"durationSeconds\":%d,\"ops\":{",
+                clients, rate, durationSeconds));
+        boolean first = true;
+        for (Op op : Op.values()) {
+            Histogram c = corrected.get(op);
+            if (c.getTotalCount() == 0) continue;
+            if (!first) b.append(',');
+            first = false;
+            b.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"errors\":%d,\"corrected\":%s,\"service\":%s}",
+                    op.label(), c.getTotalCount(), errors.get(op).sum(), jsonPercentiles(c), jsonPercentiles(service.get(op))));
+        }
+        return b.append("}}").toString();
+    }
+
+    private static String jsonPercentiles(Histogram h) {
+        return String.format(Locale.ROOT, "{\"p50\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d,\"mean\":%.1f}",
+                h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMaxValue(), h.getMean());
+    }
+
+    // ---------- CLI ----------
+    public static void main(String[] args) throws Exception {
+        StoreMode mode = StoreMode.EMBEDDED;
+        int reviews = 1_000_000;
+        int users = 0;
+        int clients = 1000;
+        double rate = 2000;
+        int warmup = 10;
+        int duration = 60;
+        String mix = Workload.DEFAULT_MIX;
+        double zipf = 1.0;
+        double burstFactor = 8;
+        int burstSeconds = 2;
+        int burstEvery = 15;
+        Path json = null;
+        try {
+            for (String a : args) {
+                if (a.startsWith("--store=")) mode = StoreMode.valueOf(a.substring(8).toUpperCase(Locale.ROOT));
+                else if (a.startsWith("--reviews=")) reviews = Integer.parseInt(a.substring(10));
+                else if (a.startsWith("--users=")) users = Integer.parseInt(a.substring(8));
+                else if (a.startsWith("--clients=")) clients = Integer.parseInt(a.substring(10));
+                else if (a.startsWith("--rate=")) rate = Double.parseDouble(a.substring(7));
+                else if (a.startsWith("--warmup=")) warmup = Integer.parseInt(a.substring(9));
+                else if (a.startsWith("--duration=")) duration = Integer.parseInt(a.substring(11));
+                else if (a.startsWith("--mix=")) mix = a.substring(6);
+                else if (a.startsWith("--zipf=")) zipf = Double.parseDouble(a.substring(7));
+                else if (a.startsWith("--burst-factor=")) burstFactor = Double.parseDouble(a.substring(15));
+                else if (a.startsWith("--burst-seconds=")) burstSeconds = Integer.parseInt(a.substring(16));
+                else if (a.startsWith("--burst-every=")) burstEvery = Integer.parseInt(a.substring(14));
+                else if (a.startsWith("--json=")) json = Paths.get(a.substring(7));
+                else throw new IllegalArgumentException("Unknown option " + a);
+            }
+            if (clients < 1 || rate <= 0 || duration < 1) throw new IllegalArgumentException("clients, rate and duration must be positive");
+            if (mode == StoreMode.MYSQL && users < 1) throw new IllegalArgumentException("--store=mysql needs --users=N");
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: LoadTest [--store=embedded|mapped|mysql] [--reviews=N] [--users=N] [--clients=N] [--rate=OPS]"
+                    + " [--warmup=S] [--duration=S] [--mix=" + Workload.DEFAULT_MIX + "] [--zipf=S]"
+                    + " [--burst-factor=X] [--burst-seconds=S] [--burst-every=S] [--json=FILE]");
+            System.exit(2);
+            return;
+        }
+        Workload workload = new Workload(Workload.parseMix(mix), burstFactor, burstSeconds, burstEvery);
+
+        ConnectionPool pool = null;
+        Path scratch = null;
+        MovieStore store;
+        if (mode == StoreMode.MYSQL) {
+            pool = DbConfig.pool(Math.min(clients, 64), null);
+            store = new MovieDao(pool);
+        } else {
+            scratch = SyntheticData.scratchCopy(SyntheticData.ensure(mode, reviews));
+            store = SyntheticData.open(mode, scratch);
+            users = SyntheticData.Shape.of(reviews).users();
+        }
+        try {
+            LoadTest test = new LoadTest(store, store.countMovies(), users, workload, zipf);
+            test.run(clients, rate, warmup, duration);
+            test.report(System.out, duration);
+            if (json != null) {
+                Files.write(json, test.json(clients, rate, duration).getBytes(StandardCharsets.UTF_8));
+                System.out.println("Results written to " + json);
+            }
+            test.credentials.close();
+        } finally {
+            store.close();
+            if (pool != null) pool.close();
+            if (scratch != null) deleteQuietly(scratch);
+        }
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try {
+            SyntheticData.deleteTree(dir);
+        } catch (IOException e) {
+            System.err.println("Could not delete " + dir + ": " + e.getMessage());
+        }
+    }
+}
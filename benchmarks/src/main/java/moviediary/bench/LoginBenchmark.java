@@ -0,0 +1,85 @@
+package moviediary.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import moviediary.auth.CredentialService;
+import moviediary.auth.PasswordHasher;
+import moviediary.embedded.EmbeddedStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Logins per second on one core: one benchmark thread and one hashing
+ * worker, against users already stored as PBKDF2 hashes in an embedded
+ * store. Multiply by the worker count for a whole machine.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@State(Scope.Benchmark)
+public class LoginBenchmark {
+    private static final int USERS = 64;
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"210000", "600000"})
+    public int iterations;
+
+    private Path dir;
+    private EmbeddedStore store;
+    private CredentialService credentials;
+    private PasswordHasher hasher;
+    private String storedHash;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        dir = Files.createTempDirectory("login-bench");
+        store = EmbeddedStore.open(dir);
+        hasher = new PasswordHasher(iterations);
+        credentials = new CredentialService(store, hasher, 1, 64);
+        for (int i = 0; i < USERS; i++) credentials.register("user" + i, PASSWORD);
+        storedHash = store.credentialOf("user0").storedPassword();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        credentials.close();
+        store.close();
+        SyntheticData.deleteTree(dir);
+    }
+
+    /** Full login: hash lookup by username, then a queued verify on the worker. */
+    @Benchmark
+    public Integer login() throws SQLException {
+        return credentials.login("user" + (next++ & (USERS - 1)), PASSWORD);
+    }
+
+    @Benchmark
+    public Integer wrongPassword() throws SQLException {
+        return credentials.login("user" + (next++ & (USERS - 1)), "Tr0ub4dor&3");
+    }
+
+    /** The PBKDF2 check alone, without the store or the pool. */
+    @Benchmark
+    public boolean verifyOnly() {
+        return hasher.verify(PASSWORD, storedHash);
+    }
+}
@@ -0,0 +1,71 @@
+package moviediary.bench;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import moviediary.db.MovieStore;
+import moviediary.metrics.InstrumentedStore;
+import moviediary.metrics.MetricsRegistry;
+import moviediary.model.MovieDetail;
+import moviediary.model.RatingStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What {@link InstrumentedStore} adds to a call. The cheapest store read,
+ * {@code ratingStats}, and the detail screen's {@code movieDetail} are run
+ * bare and through the wrapper on the same data, with the sampling the
+ * front-ends use: 1 in the desktop apps and on MySQL, 128 in the API server
+ * over an in-process store. The difference between a bare and an
+ * instrumented score is the per-call cost of the metrics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 3, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class MetricsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Wrapped {
+        @Param({"1", "128"})
+        public int every;
+
+        public MovieStore store;
+
+        @Setup(Level.Trial)
+        public void wrap(SeededStore.Read data) {
+            store = new InstrumentedStore(data.dao, new MetricsRegistry(MetricsRegistry.DEFAULT_SLOW_MILLIS, false), every);
+        }
+    }
+
+    @Benchmark
+    public RatingStats bare(SeededStore.Read data) throws SQLException {
+        return data.dao.ratingStats(1 + ThreadLocalRandom.current().nextInt(data.shape.movies()));
+    }
+
+    @Benchmark
+    public RatingStats instrumented(SeededStore.Read data, Wrapped wrapped) throws SQLException {
+        return wrapped.store.ratingStats(1 + ThreadLocalRandom.current().nextInt(data.shape.movies()));
+    }
+
+    @Benchmark
+    public MovieDetail bareDetail(SeededStore.Read data) throws SQLException {
+        return data.dao.movieDetail(SyntheticData.popularMovie(ThreadLocalRandom.current().nextDouble(), data.shape.movies()));
+    }
+
+    @Benchmark
+    public MovieDetail instrumentedDetail(SeededStore.Read data, Wrapped wrapped) throws SQLException {
+        return wrapped.store.movieDetail(SyntheticData.popularMovie(ThreadLocalRandom.current().nextDouble(), data.shape.movies()));
+    }
+}
@@ -0,0 +1,113 @@
+package moviediary.bench;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import moviediary.model.MovieRecord;
+import moviediary.search.SearchHit;
+import moviediary.search.SearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search-as-you-type over a {@link SearchIndex} of a million titles, built in
+ * memory rather than from a store. Titles, starring and descriptions are
+ * drawn from a Zipf-distributed vocabulary whose top ranks are the usual
+ * English function words, so "the" and the commonest words match a large
+ * part of the catalogue as they do in real data.
+ *
+ * The queries are what a user types on the way to a title: one and two
+ * letters, a word being typed, finished words, and a second word being typed
+ * after one. "the" is in a quarter of the titles; "mita" and "filipote" are
+ * the two commonest other words of the generated text, in about a fifth of
+ * the catalogue each, so "mita filipote t" is about the worst case.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final long SEED = 20240601L;
+    private static final String[] FUNCTION_WORDS = {
+            "the", "of", "and", "a", "to", "in", "is", "his", "her", "with", "for", "on", "as", "by", "at",
+            "from", "who", "that", "their", "an", "it", "this", "they", "was", "but"};
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "ma", "ri", "ta", "ne", "so", "vi", "de", "mu", "pa", "ro", "sa", "te", "li", "no",
+            "be", "da", "fi", "go", "ha", "ju", "ke", "mi", "nu", "po", "ra", "si", "tu", "ve", "wa", "zo"};
+    private static final int VOCABULARY = 50_000;
+
+    @State(Scope.Benchmark)
+    public static class Index {
+        @Param({"1000000"})
+        public int titles;
+
+        public SearchIndex index;
+
+        @Setup(Level.Trial)
+        public void build() {
+            SplittableRandom random = new SplittableRandom(SEED);
+            String[] vocabulary = vocabulary(random);
+            ZipfSampler words = new ZipfSampler(vocabulary.length, 1.0);
+            ZipfSampler titleWords = new ZipfSampler(VOCABULARY, 1.0);
+            ZipfSampler people = new ZipfSampler(titles / 2, 0.8);
+            index = new SearchIndex();
+            long start = System.nanoTime();
+            for (int m = 1; m <= titles; m++) {
+                StringBuilder title = new StringBuilder(random.nextInt(4) == 0 ? "The" : "");
+                for (int w = 1 + random.nextInt(3); w > 0; w--) title.append(' ').append(vocabulary[FUNCTION_WORDS.length + titleWords.next(random) - 1]);
+                String starring = person(vocabulary, people.next(random)) + ", " + person(vocabulary, people.next(random));
+                StringBuilder description = new StringBuilder();
+                for (int w = 12 + random.nextInt(12); w > 0; w--) description.append(vocabulary[words.next(random) - 1]).append(' ');
+                index.add(new MovieRecord(m, title.toString().trim(), 1950 + random.nextInt(75), starring, description.toString()));
+            }
+            System.out.printf("%nIndexed %,d titles in %.1fs%n", titles, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    @Param({"t", "ta", "tami", "the ", "mita ", "the ta", "mita ta", "tami ve", "mita filipote ", "mita filipote t"})
+    public String query;
+
+    @Benchmark
+    public List<SearchHit> search(Index index) {
+        return index.index.search(query);
+    }
+
+    // The function words, then distinct made-up words of two to four syllables, most popular first.
+    private static String[] vocabulary(SplittableRandom random) {
+        String[] out = new String[VOCABULARY + FUNCTION_WORDS.length];
+        System.arraycopy(FUNCTION_WORDS, 0, out, 0, FUNCTION_WORDS.length);
+        Set<String> seen = new HashSet<>(Arrays.asList(FUNCTION_WORDS));
+        for (int i = FUNCTION_WORDS.length; i < out.length; i++) {
+            String word;
+            do {
+                StringBuilder w = new StringBuilder();
+                for (int s = 2 + random.nextInt(3); s > 0; s--) w.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                word = w.toString();
+            } while (!seen.add(word));
+            out[i] = word;
+        }
+        return out;
+    }
+
+    private static String person(String[] vocabulary, int rank) {
+        // Coprime name pools: every rank up to a few million gets its own first and last name pair.
+        String first = vocabulary[FUNCTION_WORDS.length + rank % 1999];
+        String last = vocabulary[FUNCTION_WORDS.length + 200 + rank % 4999];
+        return Character.toUpperCase(first.charAt(0)) + first.substring(1) + " " + Character.toUpperCase(last.charAt(0)) + last.substring(1);
+    }
+}
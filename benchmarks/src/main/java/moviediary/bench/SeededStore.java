@@ -0,0 +1,78 @@
+package moviediary.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import moviediary.db.MovieStore;
+import moviediary.db.StoreMode;
+import moviediary.metrics.InstrumentedStore;
+import moviediary.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A store opened on a {@link SyntheticData} set for one trial. Pick the store
+ * and scale with {@code -p store=embedded,mapped -p reviews=10000,1000000,10000000}.
+ * {@code -p sampleEvery=0,1,128} compares the bare store with an {@link
+ * InstrumentedStore} timing every call and one call in 128.
+ * See {@link Read} and {@link Scratch} for the two flavours.
+ */
+@State(Scope.Benchmark)
+public abstract class SeededStore {
+    @Param({"embedded"})
+    public String store;
+
+    @Param({"10000"})
+    public int reviews;
+
+    // 0 leaves the store unwrapped.
+    @Param({"0"})
+    public int sampleEvery;
+
+    public MovieStore dao;
+    public SyntheticData.Shape shape;
+    private Path scratchDir;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, SQLException {
+        StoreMode mode = StoreMode.valueOf(store.toUpperCase());
+        Path dir = SyntheticData.ensure(mode, reviews);
+        shape = SyntheticData.Shape.of(reviews);
+        if (writes()) {
+            dir = scratchDir = SyntheticData.scratchCopy(dir);
+        }
+        dao = SyntheticData.open(mode, dir);
+        if (sampleEvery > 0) {
+            dao = new InstrumentedStore(dao, new MetricsRegistry(MetricsRegistry.DEFAULT_SLOW_MILLIS, false), sampleEvery);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException, SQLException {
+        dao.close();
+        if (scratchDir != null) SyntheticData.deleteTree(scratchDir);
+    }
+
+    /** Whether the benchmarks write; they then get a throwaway copy so the cached data set stays as generated. */
+    protected abstract boolean writes();
+
+    @State(Scope.Benchmark)
+    public static class Read extends SeededStore {
+        @Override
+        protected boolean writes() {
+            return false;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Scratch extends SeededStore {
+        @Override
+        protected boolean writes() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package moviediary.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+import moviediary.auth.PasswordHasher;
+import moviediary.db.MovieStore;
+import moviediary.db.StoreMode;
+import moviediary.embedded.EmbeddedStore;
+import moviediary.mapped.MappedStore;
+
+/**
+ * Seeds a local store with a reproducible catalogue for the benchmarks, sized
+ * by its review count: one movie per 100 reviews, one user per 20, and one
+ * watchlist entry per 4 (fewer after duplicates). A few movies get most of the reviews, and each movie
+ * has its own typical rating. Every user's password is {@link #PASSWORD}.
+ *
+ * Data sets are built once under {@code -Dmoviediary.bench.dataDir} (default
+ * {@code bench-data}) and reused; the 10M-review set takes a few minutes.
+ *
+ * <pre>
+ * java -cp benchmarks.jar moviediary.bench.SyntheticData embedded 1000000
+ * </pre>
+ */
+public final class SyntheticData {
+    public static final String PASSWORD = "benchmark";
+    private static final String READY = "READY";
+    private static final long SEED = 20240601L;
+    private static final String[] WORDS = {
+            "Night", "Summer", "Lost", "Last", "Red", "City", "Silent", "River", "Ghost", "Iron",
+            "Golden", "Broken", "Winter", "Secret", "Wild", "Empire", "Blue", "Dark", "Long", "Road"};
+
+    private SyntheticData() {}
+
+    /** Row counts for a data set of {@code reviews} reviews. */
+    public record Shape(int reviews, int movies, int users, int watchlistEntries, int people) {
+        public static Shape of(int reviews) {
+            int movies = Math.max(100, reviews / 100);
+            return new Shape(reviews, movies, Math.max(50, reviews / 20), reviews / 4, Math.max(20, movies / 2));
+        }
+    }
+
+    public static Path dataDir() {
+        return Paths.get(System.getProperty("moviediary.bench.dataDir", "bench-data"));
+    }
+
+    /** The directory holding {@code mode}'s data set of {@code reviews} reviews, generated first if missing. */
+    public static Path ensure(StoreMode mode, int reviews) throws IOException, SQLException {
+        Path dir = dataDir().resolve(mode.name().toLowerCase() + "-" + reviews);
+        if (Files.exists(dir.resolve(READY))) return dir;
+        deleteTree(dir); // left over from an interrupted run
+        Files.createDirectories(dir);
+        long start = System.nanoTime();
+        try (MovieStore store = open(mode, dir)) {
+            generate(store, Shape.of(reviews));
+        }
+        Files.createFile(dir.resolve(READY));
+        System.out.printf("Generated %s in %.1fs%n", dir, (System.nanoTime() - start) / 1e9);
+        return dir;
+    }
+
+    public static MovieStore open(StoreMode mode, Path dir) throws SQLException {
+        return switch (mode) {
+            case EMBEDDED -> EmbeddedStore.open(dir);
+            case MAPPED -> MappedStore.open(dir);
+            case MYSQL -> throw new IllegalArgumentException("Benchmarks run against a local store, not MySQL");
+        };
+    }
+
+    static void generate(MovieStore store, Shape shape) throws SQLException {
+        SplittableRandom random = new SplittableRandom(SEED);
+        // One hash for everybody: hashing millions of users would take hours and measure nothing.
+        String hash = new PasswordHasher().hash(PASSWORD);
+        for (int u = 1; u <= shape.users(); u++) store.register(username(u), hash);
+
+        byte[] typical = new byte[shape.movies() + 1];
+        for (int m = 1; m <= shape.movies(); m++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + m;
+            String starring = "Actor " + random.nextInt(shape.people()) + ", Actor " + random.nextInt(shape.people());
+            store.addMovie(title, 1950 + random.nextInt(75), starring, "Synthetic movie " + m);
+            typical[m] = (byte) (3 + random.nextInt(6));
+        }
+
+        for (int i = 0; i < shape.reviews(); i++) {
+            int movieId = popularMovie(random.nextDouble(), shape.movies());
+            int rating = Math.max(1, Math.min(10, typical[movieId] + random.nextInt(5) - 2));
+            store.addReview(movieId, 1 + random.nextInt(shape.users()), rating, "");
+        }
+
+        for (int i = 0; i < shape.watchlistEntries(); i++) {
+            store.addToWatchlist(1 + random.nextInt(shape.users()), popularMovie(random.nextDouble(), shape.movies()));
+        }
+    }
+
+    /** Squaring a uniform draw puts about a third of the picks on the first tenth of the ids. */
+    static int popularMovie(double uniform, int movies) {
+        return 1 + (int) (uniform * uniform * movies);
+    }
+
+    public static String username(int userId) {
+        return "user" + userId;
+    }
+
+    /** A copy of a data set in a temporary directory, for runs that write. Delete it with {@link #deleteTree}. */
+    public static Path scratchCopy(Path dir) throws IOException {
+        Path copy = Files.createTempDirectory("moviediary-bench");
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Path target = copy.resolve(dir.relativize(p).toString());
+                if (Files.isDirectory(p)) Files.createDirectories(target);
+                else Files.copy(p, target);
+            }
+        }
+        return copy;
+    }
+
+    public static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.err.println("usage: SyntheticData <embedded|mapped> <reviews>");
+            System.exit(2);
+        }
+        System.out.println(ensure(StoreMode.valueOf(args[0].toUpperCase()), Integer.parseInt(args[1])));
+    }
+}
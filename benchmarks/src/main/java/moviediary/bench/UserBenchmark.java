@@ -0,0 +1,55 @@
+package moviediary.bench;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import moviediary.auth.CredentialService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Register and login through {@link CredentialService}, hashing included. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class UserBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Credentials {
+        CredentialService service;
+        final AtomicInteger nextName = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void open(SeededStore.Scratch data) {
+            service = new CredentialService(data.dao);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            service.close();
+        }
+    }
+
+    @Benchmark
+    public void register(Credentials c) throws SQLException {
+        c.service.register("bench" + c.nextName.incrementAndGet(), SyntheticData.PASSWORD);
+    }
+
+    @Benchmark
+    public Integer login(SeededStore.Scratch data, Credentials c) throws SQLException {
+        int userId = 1 + ThreadLocalRandom.current().nextInt(data.shape.users());
+        return c.service.login(SyntheticData.username(userId), SyntheticData.PASSWORD);
+    }
+}
@@ -0,0 +1,33 @@
+package moviediary.bench;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import moviediary.model.WatchlistEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** A random user's watchlist: the whole list, and its first 20-row page. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WatchlistBenchmark {
+
+    @Benchmark
+    public List<WatchlistEntry> fullList(SeededStore.Read data) throws SQLException {
+        return data.dao.watchlist(1 + ThreadLocalRandom.current().nextInt(data.shape.users()));
+    }
+
+    @Benchmark
+    public List<WatchlistEntry> firstPage(SeededStore.Read data) throws SQLException {
+        return data.dao.watchlistAfter(1 + ThreadLocalRandom.current().nextInt(data.shape.users()), null, 20);
+    }
+}
@@ -0,0 +1,88 @@
+package moviediary.bench;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * What a load-test client does next, and how soon. Operations are drawn from
+ * a weighted mix ({@code browse:40,detail:30,...}). Reviews come in bursts:
+ * for the first {@code burstSeconds} of every {@code burstEvery} seconds
+ * their weight is multiplied by {@code burstFactor} and clients speed up by
+ * {@link #rateMultiplier}, so the extra reviews arrive on top of the usual
+ * traffic instead of displacing it.
+ */
+final class Workload {
+    enum Op {
+        BROWSE, DETAIL, WATCHLIST, SAVE, REVIEW, LOGIN;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    static final String DEFAULT_MIX = "browse:40,detail:30,watchlist:12,save:8,review:10,login:0";
+
+    private final double[] weights = new double[Op.values().length];
+    private final double burstFactor;
+    private final long burstNanos;
+    private final long periodNanos;
+    // Total arrival rate during a burst relative to normal: 1 - p + burstFactor * p for review share p.
+    private final double burstRate;
+
+    Workload(Map<Op, Double> mix, double burstFactor, int burstSeconds, int burstEvery) {
+        for (Map.Entry<Op, Double> e : mix.entrySet()) weights[e.getKey().ordinal()] = e.getValue();
+        this.burstFactor = burstFactor;
+        this.burstNanos = burstSeconds * 1_000_000_000L;
+        this.periodNanos = Math.max(1, burstEvery) * 1_000_000_000L;
+        double total = 0;
+        for (double w : weights) total += w;
+        double reviewShare = weights[Op.REVIEW.ordinal()] / total;
+        this.burstRate = 1 - reviewShare + burstFactor * reviewShare;
+    }
+
+    static Map<Op, Double> parseMix(String spec) {
+        Map<Op, Double> mix = new EnumMap<>(Op.class);
+        for (String part : spec.split(",")) {
+            String[] kv = part.split(":");
+            if (kv.length != 2) throw new IllegalArgumentException("Bad mix entry '" + part + "', expected op:weight");
+            double w = Double.parseDouble(kv[1]);
+            if (w < 0) throw new IllegalArgumentException("Negative weight for " + kv[0]);
+            mix.put(Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)), w);
+        }
+        if (mix.values().stream().mapToDouble(Double::doubleValue).sum() <= 0) throw new IllegalArgumentException("Mix has no weight");
+        return mix;
+    }
+
+    /** Whether {@code elapsedNanos} into the run falls in a review burst. */
+    boolean inBurst(long elapsedNanos) {
+        return elapsedNanos % periodNanos < burstNanos;
+    }
+
+    /** How much faster than normal operations arrive at {@code elapsedNanos}: above 1 only in a review burst. */
+    double rateMultiplier(long elapsedNanos) {
+        return inBurst(elapsedNanos) ? burstRate : 1;
+    }
+
+    Op next(SplittableRandom random, long elapsedNanos) {
+        double reviewBoost = inBurst(elapsedNanos) ? burstFactor : 1;
+        double total = 0;
+        for (Op op : Op.values()) total += weight(op, reviewBoost);
+        double pick = random.nextDouble() * total;
+        Op last = null;
+        for (Op op : Op.values()) {
+            double w = weight(op, reviewBoost);
+            if (w == 0) continue;
+            pick -= w;
+            last = op;
+            if (pick < 0) break;
+        }
+        return last; // also covers rounding at the very top of the range
+    }
+
+    private double weight(Op op, double reviewBoost) {
+        double w = weights[op.ordinal()];
+        return op == Op.REVIEW ? w * reviewBoost : w;
+    }
+}
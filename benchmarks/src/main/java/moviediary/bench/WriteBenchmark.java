@@ -0,0 +1,35 @@
+package moviediary.bench;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Posting a review and saving a movie, on a throwaway copy of the data set. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WriteBenchmark {
+
+    @Benchmark
+    public void addReview(SeededStore.Scratch data) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int movieId = SyntheticData.popularMovie(random.nextDouble(), data.shape.movies());
+        data.dao.addReview(movieId, 1 + random.nextInt(data.shape.users()), 1 + random.nextInt(10), "Benchmark review");
+    }
+
+    // Mostly new entries; an already saved pair costs the duplicate check instead.
+    @Benchmark
+    public boolean addToWatchlist(SeededStore.Scratch data) throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return data.dao.addToWatchlist(1 + random.nextInt(data.shape.users()), 1 + random.nextInt(data.shape.movies()));
+    }
+}
@@ -0,0 +1,29 @@
+package moviediary.bench;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks 1..n with probability proportional to {@code 1 / rank^exponent},
+ * by binary search over a precomputed cumulative table. Rank 1 is the most
+ * popular; with exponent 1 and 100,000 items it gets about 8% of the draws.
+ */
+final class ZipfSampler {
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double exponent) {
+        if (n < 1) throw new IllegalArgumentException("n must be positive");
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) cumulative[i] /= sum;
+    }
+
+    int next(SplittableRandom random) {
+        int at = Arrays.binarySearch(cumulative, random.nextDouble());
+        return (at < 0 ? -at - 1 : at) + 1;
+    }
+}
@@ -0,0 +1,410 @@
+package moviediary.analytics;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieStore;
+import moviediary.model.RatingStats;
+
+/**
+ * Every review's (movie, user, rating, created_at) held in primitive columns,
+ * for statistics the screens would otherwise get from a GROUP BY over
+ * {@code reviews}. Comments are not kept.
+ *
+ * Reviews are stored twice: sorted by (movie, rating) and sorted by user. A
+ * movie's ratings are therefore one contiguous, already ordered range, so
+ * medians and percentiles are binary searches, and a user's history is one
+ * range in arrival order. Nothing on the query paths allocates or boxes.
+ *
+ * Filled once with {@link #buildFrom} and then kept current as a {@link
+ * CatalogListener}. New reviews go into a small sorted run that is merged into
+ * the large one every {@value #DELTA_LIMIT} reviews; queries look at both.
+ * Queries are only meaningful once {@link #isReady()} returns true.
+ */
+public class ReviewAnalytics implements CatalogListener {
+    public static final double DEFAULT_PRIOR_WEIGHT = 10;
+    static final int DELTA_LIMIT = 4096;
+
+    /** Receives one review of a user's history. */
+    @FunctionalInterface
+    public interface UserReviewVisitor {
+        void accept(int movieId, int rating, long createdAtMillis);
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final double priorWeight;
+
+    private ReviewRun byMovie = new ReviewRun(true, 0);
+    private ReviewRun byUser = new ReviewRun(false, 0);
+    private final ReviewRun newByMovie = new ReviewRun(true, DELTA_LIMIT);
+    private final ReviewRun newByUser = new ReviewRun(false, DELTA_LIMIT);
+    // Per-movie totals over both runs, indexed by movie id.
+    private int[] counts = new int[0];
+    private long[] sums = new long[0];
+    private long totalCount;
+    private long totalSum;
+    // Reviews reported while buildFrom is still loading; null afterwards.
+    private Batch pending = new Batch();
+    private volatile boolean ready;
+
+    public ReviewAnalytics() {
+        this(DEFAULT_PRIOR_WEIGHT);
+    }
+
+    /**
+     * @param priorWeight how many reviews at the catalogue-wide mean every
+     *        movie starts with when ranked by {@link #bayesianAverage}
+     */
+    public ReviewAnalytics(double priorWeight) {
+        this.priorWeight = priorWeight;
+    }
+
+    /** Loads every review in the store. Call once; reviews added meanwhile are kept. */
+    public void buildFrom(MovieStore store) throws SQLException {
+        Batch loaded = new Batch();
+        store.forEachReview(loaded::add);
+        ReviewRun movies = loaded.sortedByMovie();
+        ReviewRun users = loaded.sortedByUser();
+        lock.writeLock().lock();
+        try {
+            byMovie = movies;
+            byUser = users;
+            for (int i = 0; i < loaded.size; i++) count(loaded.movieId[i], loaded.rating[i]);
+            Batch live = pending;
+            pending = null;
+            for (int i = 0; i < live.size; i++) {
+                // The stream may or may not have seen a review added while it ran
+                if (!loaded.containsId(live.id[i])) {
+                    insert(live.movieId[i], live.userId[i], live.rating[i], live.createdAt[i]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+    }
+
+    public boolean isReady() { return ready; }
+
+    @Override
+    public void reviewAdded(int reviewId, int movieId, int userId, int rating, Timestamp createdAt) {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) pending.add(reviewId, movieId, userId, rating, createdAt.getTime());
+            else insert(movieId, userId, rating, createdAt.getTime());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Total number of reviews held. */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return totalCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- PER MOVIE ----------
+    public int count(int movieId) {
+        lock.readLock().lock();
+        try {
+            return countOf(movieId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double mean(int movieId) {
+        lock.readLock().lock();
+        try {
+            int n = countOf(movieId);
+            return n == 0 ? 0 : (double) sums[movieId] / n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Middle rating, or the mean of the two middle ones; 0 when the movie has no reviews. */
+    public double median(int movieId) {
+        lock.readLock().lock();
+        try {
+            int n = countOf(movieId);
+            if (n == 0) return 0;
+            return (ratingAt(movieId, (n + 1) / 2) + ratingAt(movieId, n / 2 + 1)) / 2.0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Nearest-rank {@code p}-th percentile (0-100) of the movie's ratings; 0 when it has no reviews. */
+    public int percentile(int movieId, double p) {
+        if (p < 0 || p > 100) throw new IllegalArgumentException("Percentile out of range: " + p);
+        lock.readLock().lock();
+        try {
+            int n = countOf(movieId);
+            if (n == 0) return 0;
+            return ratingAt(movieId, Math.max(1, (int) Math.ceil(p / 100 * n)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Mean rating pulled towards the catalogue-wide mean by the prior weight,
+     * so a movie with two 10s does not outrank one with two hundred 9s.
+     */
+    public double bayesianAverage(int movieId) {
+        lock.readLock().lock();
+        try {
+            return bayesian(countOf(movieId), movieId < sums.length ? sums[movieId] : 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Ids of the {@code n} reviewed movies with the highest Bayesian average, best first. */
+    public int[] topRated(int n) {
+        lock.readLock().lock();
+        try {
+            // Bounded min-heap: heap[0] is the weakest of the best n seen so far.
+            int[] heap = new int[Math.max(0, n)];
+            double[] score = new double[heap.length];
+            int size = 0;
+            for (int m = 0; m < counts.length && heap.length > 0; m++) {
+                if (counts[m] == 0) continue;
+                double s = bayesian(counts[m], sums[m]);
+                if (size < heap.length) {
+                    heap[size] = m;
+                    score[size] = s;
+                    siftUp(heap, score, size++);
+                } else if (worse(heap[0], score[0], m, s)) {
+                    heap[0] = m;
+                    score[0] = s;
+                    siftDown(heap, score, size);
+                }
+            }
+            int[] top = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                top[i] = heap[0];
+                heap[0] = heap[i];
+                score[0] = score[i];
+                siftDown(heap, score, i);
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- PER USER ----------
+    public int userReviewCount(int userId) {
+        lock.readLock().lock();
+        try {
+            return byUser.end(userId) - byUser.start(userId) + newByUser.end(userId) - newByUser.start(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double userMean(int userId) {
+        lock.readLock().lock();
+        try {
+            long sum = sumOf(byUser, userId) + sumOf(newByUser, userId);
+            int n = byUser.end(userId) - byUser.start(userId) + newByUser.end(userId) - newByUser.start(userId);
+            return n == 0 ? 0 : (double) sum / n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Feeds the user's reviews to {@code visitor}, newest first, and returns
+     * how many there were. Runs under the read lock, so the visitor must not
+     * add reviews.
+     */
+    public int forEachUserReview(int userId, UserReviewVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            // Everything in the small run arrived after everything in the large one
+            int n = visitNewestFirst(newByUser, userId, visitor);
+            return n + visitNewestFirst(byUser, userId, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- INTERNALS ----------
+    private int countOf(int movieId) {
+        return movieId >= 0 && movieId < counts.length ? counts[movieId] : 0;
+    }
+
+    // The k-th smallest rating (1-based) of a movie that has at least k reviews.
+    private int ratingAt(int movieId, int k) {
+        int from = byMovie.start(movieId);
+        int fresh = newByMovie.start(movieId);
+        if (fresh == newByMovie.end(movieId)) return byMovie.rating[from + k - 1];
+        for (int r = 1; r < RatingStats.MAX_RATING; r++) {
+            int atMost = byMovie.lowerBound(movieId, r + 1) - from + newByMovie.lowerBound(movieId, r + 1) - fresh;
+            if (atMost >= k) return r;
+        }
+        return RatingStats.MAX_RATING;
+    }
+
+    private double bayesian(int n, long sum) {
+        double prior = totalCount == 0 ? 0 : (double) totalSum / totalCount;
+        return (priorWeight * prior + sum) / (priorWeight + n);
+    }
+
+    private static long sumOf(ReviewRun run, int userId) {
+        long sum = 0;
+        for (int i = run.start(userId), end = run.end(userId); i < end; i++) sum += run.rating[i];
+        return sum;
+    }
+
+    private static int visitNewestFirst(ReviewRun run, int userId, UserReviewVisitor visitor) {
+        int from = run.start(userId);
+        int end = run.end(userId);
+        for (int i = end - 1; i >= from; i--) visitor.accept(run.other[i], run.rating[i], run.createdAt[i]);
+        return end - from;
+    }
+
+    private void insert(int movieId, int userId, int rating, long createdAt) {
+        newByMovie.insert(movieId, userId, (byte) rating, createdAt);
+        newByUser.insert(userId, movieId, (byte) rating, createdAt);
+        count(movieId, rating);
+        if (newByMovie.size >= DELTA_LIMIT) {
+            byMovie = ReviewRun.merge(byMovie, newByMovie);
+            byUser = ReviewRun.merge(byUser, newByUser);
+            newByMovie.clear();
+            newByUser.clear();
+        }
+    }
+
+    private void count(int movieId, int rating) {
+        if (movieId >= counts.length) {
+            int n = Math.max(movieId + 1, counts.length + (counts.length >> 1));
+            counts = Arrays.copyOf(counts, n);
+            sums = Arrays.copyOf(sums, n);
+        }
+        counts[movieId]++;
+        sums[movieId] += rating;
+        totalCount++;
+        totalSum += rating;
+    }
+
+    // Lower score is worse; on equal scores fewer reviews, then the higher id, is worse.
+    private boolean worse(int a, double scoreA, int b, double scoreB) {
+        if (scoreA != scoreB) return scoreA < scoreB;
+        if (counts[a] != counts[b]) return counts[a] < counts[b];
+        return a > b;
+    }
+
+    private void siftUp(int[] heap, double[] score, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(heap[i], score[i], heap[parent], score[parent])) break;
+            swap(heap, score, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, double[] score, int size) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) return;
+            if (child + 1 < size && worse(heap[child + 1], score[child + 1], heap[child], score[child])) child++;
+            if (!worse(heap[child], score[child], heap[i], score[i])) return;
+            swap(heap, score, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] heap, double[] score, int i, int j) {
+        int h = heap[i];
+        heap[i] = heap[j];
+        heap[j] = h;
+        double s = score[i];
+        score[i] = score[j];
+        score[j] = s;
+    }
+
+    // Reviews as loaded, in id order; sorted into runs with two stable counting sorts.
+    private static final class Batch {
+        int[] id = new int[1024];
+        int[] movieId = new int[1024];
+        int[] userId = new int[1024];
+        int[] rating = new int[1024];
+        long[] createdAt = new long[1024];
+        int size;
+
+        void add(int reviewId, int movie, int user, int r, long at) {
+            if (size == id.length) {
+                int n = size * 2;
+                id = Arrays.copyOf(id, n);
+                movieId = Arrays.copyOf(movieId, n);
+                userId = Arrays.copyOf(userId, n);
+                rating = Arrays.copyOf(rating, n);
+                createdAt = Arrays.copyOf(createdAt, n);
+            }
+            id[size] = reviewId;
+            movieId[size] = movie;
+            userId[size] = user;
+            rating[size] = r;
+            createdAt[size] = at;
+            size++;
+        }
+
+        boolean containsId(int reviewId) {
+            return Arrays.binarySearch(id, 0, size, reviewId) >= 0;
+        }
+
+        ReviewRun sortedByMovie() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            // Least significant key first: rating, then movie
+            order = stableSort(order, rating, RatingStats.MAX_RATING);
+            order = stableSort(order, movieId, max(movieId));
+            return toRun(true, order, movieId, userId);
+        }
+
+        ReviewRun sortedByUser() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            return toRun(false, stableSort(order, userId, max(userId)), userId, movieId);
+        }
+
+        private ReviewRun toRun(boolean byRating, int[] order, int[] keys, int[] others) {
+            int n = order.length;
+            ReviewRun run = new ReviewRun(byRating, new int[n], new int[n], new byte[n], new long[n]);
+            for (int i = 0; i < n; i++) {
+                int row = order[i];
+                run.key[i] = keys[row];
+                run.other[i] = others[row];
+                run.rating[i] = (byte) rating[row];
+                run.createdAt[i] = createdAt[row];
+            }
+            return run;
+        }
+
+        private int max(int[] values) {
+            int m = 0;
+            for (int i = 0; i < size; i++) m = Math.max(m, values[i]);
+            return m;
+        }
+
+        private static int[] stableSort(int[] order, int[] keys, int maxKey) {
+            int[] start = new int[maxKey + 2];
+            for (int row : order) start[keys[row] + 1]++;
+            for (int k = 0; k <= maxKey; k++) start[k + 1] += start[k];
+            int[] sorted = new int[order.length];
+            for (int row : order) sorted[start[keys[row]]++] = row;
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package moviediary.analytics;
+
+import java.util.Arrays;
+
+/**
+ * One sorted run of reviews in column form. A movie run is ordered by
+ * (movie, rating), a user run by user; ties keep arrival order, so within a
+ * user the oldest review comes first.
+ *
+ * {@link ReviewAnalytics} keeps a large immutable run per order and a small
+ * mutable one that new reviews are inserted into, and merges the two when the
+ * small one fills up.
+ */
+final class ReviewRun {
+    final boolean byRating;
+    // Movie id in a movie run, user id in a user run; {@code other} is the opposite id.
+    int[] key;
+    int[] other;
+    byte[] rating;
+    long[] createdAt;
+    int size;
+
+    ReviewRun(boolean byRating, int capacity) {
+        this.byRating = byRating;
+        key = new int[capacity];
+        other = new int[capacity];
+        rating = new byte[capacity];
+        createdAt = new long[capacity];
+    }
+
+    ReviewRun(boolean byRating, int[] key, int[] other, byte[] rating, long[] createdAt) {
+        this.byRating = byRating;
+        this.key = key;
+        this.other = other;
+        this.rating = rating;
+        this.createdAt = createdAt;
+        this.size = key.length;
+    }
+
+    /** First position whose (key, rating) is not below ({@code k}, {@code r}); {@code r} is ignored in a user run. */
+    int lowerBound(int k, int r) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (below(mid, k, r)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    int start(int k) {
+        return lowerBound(k, Integer.MIN_VALUE);
+    }
+
+    int end(int k) {
+        return k == Integer.MAX_VALUE ? size : lowerBound(k + 1, Integer.MIN_VALUE);
+    }
+
+    private boolean below(int i, int k, int r) {
+        if (key[i] != k) return key[i] < k;
+        return byRating && rating[i] < r;
+    }
+
+    /** Inserts after every entry with the same sort key, so arrival order is kept. */
+    void insert(int k, int o, byte r, long at) {
+        int i = byRating ? lowerBound(k, r + 1) : end(k);
+        if (size == key.length) grow();
+        System.arraycopy(key, i, key, i + 1, size - i);
+        System.arraycopy(other, i, other, i + 1, size - i);
+        System.arraycopy(rating, i, rating, i + 1, size - i);
+        System.arraycopy(createdAt, i, createdAt, i + 1, size - i);
+        key[i] = k;
+        other[i] = o;
+        rating[i] = r;
+        createdAt[i] = at;
+        size++;
+    }
+
+    private void grow() {
+        int n = Math.max(16, size * 2);
+        key = Arrays.copyOf(key, n);
+        other = Arrays.copyOf(other, n);
+        rating = Arrays.copyOf(rating, n);
+        createdAt = Arrays.copyOf(createdAt, n);
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /** A new run holding both; on equal sort keys entries of {@code older} come first. */
+    static ReviewRun merge(ReviewRun older, ReviewRun newer) {
+        int n = older.size + newer.size;
+        ReviewRun out = new ReviewRun(older.byRating, new int[n], new int[n], new byte[n], new long[n]);
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < n; k++) {
+            boolean takeNewer = i == older.size
+                    || (j < newer.size && newer.below(j, older.key[i], older.rating[i]));
+            ReviewRun src = takeNewer ? newer : older;
+            int at = takeNewer ? j++ : i++;
+            out.key[k] = src.key[at];
+            out.other[k] = src.other[at];
+            out.rating[k] = src.rating[at];
+            out.createdAt[k] = src.createdAt[at];
+        }
+        return out;
+    }
+}
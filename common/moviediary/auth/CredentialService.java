@@ -0,0 +1,182 @@
+package moviediary.auth;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import moviediary.db.DbExecutor;
+import moviediary.db.MovieStore;
+import moviediary.metrics.MetricsRegistry;
+import moviediary.metrics.OperationMetrics;
+import moviediary.model.UserCredential;
+
+/**
+ * Registration and login for every front-end. The store only ever sees
+ * hashes: logging in fetches the user's stored hash by username and checks it
+ * here, and registering hashes before the insert.
+ *
+ * PBKDF2 is CPU-bound by design, so it runs on a fixed pool of workers (one
+ * per core by default) with a bounded queue. Callers wait for their own
+ * result, but a full queue fails fast with {@link SQLTransientException}
+ * instead of piling up threads. A plaintext row from before hashing still
+ * logs in, and is replaced by its hash on the way.
+ *
+ * Logins and registrations are recorded as {@code auth.login} and {@code
+ * auth.register} in {@link MetricsRegistry#global()}, queueing included,
+ * unless metrics are turned off.
+ */
+public final class CredentialService implements AutoCloseable {
+    public static final int DEFAULT_WORKERS =
+            Integer.getInteger("moviediary.auth.workers", Runtime.getRuntime().availableProcessors());
+    public static final int DEFAULT_QUEUE_CAPACITY = Integer.getInteger("moviediary.auth.queue", 256);
+
+    private record Verdict(boolean matched, String rehash) {}
+
+    private static final Verdict REJECTED = new Verdict(false, null);
+
+    private final MovieStore store;
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor workers;
+    private final int queueCapacity;
+    // Checked against for unknown usernames, so they take as long as a wrong password.
+    private final Future<String> dummyHash;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueMicros = new LongAdder();
+    private final AtomicLong maxQueueMicros = new AtomicLong();
+    private final LongAdder hashMicros = new LongAdder();
+    private final AtomicLong maxHashMicros = new AtomicLong();
+    private final LongAdder failedLogins = new LongAdder();
+    private final LongAdder rehashed = new LongAdder();
+    private final OperationMetrics loginOp;
+    private final OperationMetrics registerOp;
+
+    public CredentialService(MovieStore store) {
+        this(store, new PasswordHasher(), DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public CredentialService(MovieStore store, PasswordHasher hasher, int workers, int queueCapacity) {
+        this.store = store;
+        this.hasher = hasher;
+        this.queueCapacity = queueCapacity;
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), DbExecutor.daemonThreads("auth"));
+        String throwaway = UUID.randomUUID().toString();
+        dummyHash = this.workers.submit(() -> hasher.hash(throwaway));
+        // -Dmoviediary.metrics=false: count into a registry nothing reads or exports
+        MetricsRegistry metrics = MetricsRegistry.enabled()
+                ? MetricsRegistry.global() : new MetricsRegistry(MetricsRegistry.DEFAULT_SLOW_MILLIS, false);
+        loginOp = metrics.operation("auth.login", 1);
+        registerOp = metrics.operation("auth.register", 1);
+        metrics.gauge("moviediary_auth_queue_depth", "Password checks waiting for a worker.",
+                () -> this.workers.getQueue().size());
+        metrics.gauge("moviediary_auth_rejected", "Password checks turned away by a full queue.", rejected::sum);
+    }
+
+    public void register(String username, String password) throws SQLException {
+        long started = registerOp.start();
+        try {
+            String hash = await(submit(() -> hasher.hash(password)));
+            store.register(username, hash);
+            registerOp.success(started, 1);
+        } catch (SQLException | RuntimeException e) {
+            registerOp.failure(started, e);
+            throw e;
+        }
+    }
+
+    // Returns the user's id, or null when the credentials do not match.
+    public Integer login(String username, String password) throws SQLException {
+        long started = loginOp.start();
+        try {
+            Integer userId = verify(username, password);
+            loginOp.success(started, userId == null ? 0 : 1);
+            return userId;
+        } catch (SQLException | RuntimeException e) {
+            loginOp.failure(started, e);
+            throw e;
+        }
+    }
+
+    private Integer verify(String username, String password) throws SQLException {
+        UserCredential credential = store.credentialOf(username);
+        String stored = credential == null ? await(dummyHash) : credential.storedPassword();
+        // The replacement hash is made on the same worker visit, so a legacy login queues once.
+        Verdict verdict = await(submit(() -> {
+            if (!hasher.verify(password, stored)) return REJECTED;
+            return new Verdict(true, hasher.needsRehash(stored) ? hasher.hash(password) : null);
+        }));
+        if (credential == null || !verdict.matched()) {
+            failedLogins.increment();
+            return null;
+        }
+        if (verdict.rehash() != null) {
+            try {
+                // Loses quietly to a concurrent login that already upgraded the row.
+                if (store.replacePassword(credential.userId(), stored, verdict.rehash())) rehashed.increment();
+            } catch (SQLException e) {
+                System.err.println("Password rehash failed for user " + credential.userId() + ": " + e.getMessage());
+            }
+        }
+        return credential.userId();
+    }
+
+    public CredentialStats stats() {
+        return new CredentialStats(workers.getMaximumPoolSize(), workers.getActiveCount(), workers.getQueue().size(),
+                queueCapacity, submitted.sum(), completed.sum(), rejected.sum(), queueMicros.sum(), maxQueueMicros.get(),
+                hashMicros.sum(), maxHashMicros.get(), failedLogins.sum(), rehashed.sum());
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    // ---------- WORKER POOL ----------
+    private <T> Future<T> submit(Callable<T> work) throws SQLTransientException {
+        long queuedAt = System.nanoTime();
+        try {
+            Future<T> f = workers.submit(() -> {
+                long start = System.nanoTime();
+                long waited = (start - queuedAt) / 1000;
+                queueMicros.add(waited);
+                maxQueueMicros.accumulateAndGet(waited, Math::max);
+                try {
+                    return work.call();
+                } finally {
+                    long took = (System.nanoTime() - start) / 1000;
+                    hashMicros.add(took);
+                    maxHashMicros.accumulateAndGet(took, Math::max);
+                    completed.increment();
+                }
+            });
+            submitted.increment();
+            return f;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new SQLTransientException("Too many logins in progress, try again shortly", e);
+        }
+    }
+
+    private static <T> T await(Future<T> f) throws SQLException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientException("Interrupted while checking the password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new SQLException("Password check failed: " + e.getCause(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package moviediary.auth;
+
+// Point-in-time snapshot of CredentialService counters. Times are in microseconds.
+public record CredentialStats(
+        int workers,
+        int active,
+        int queueDepth,
+        int queueCapacity,
+        long submitted,
+        long completed,
+        long rejected,
+        long totalQueueMicros,
+        long maxQueueMicros,
+        long totalHashMicros,
+        long maxHashMicros,
+        long failedLogins,
+        long rehashed) {
+
+    public double avgQueueMicros() {
+        return completed == 0 ? 0 : (double) totalQueueMicros / completed;
+    }
+
+    public double avgHashMicros() {
+        return completed == 0 ? 0 : (double) totalHashMicros / completed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "credentials[workers=%d active=%d queued=%d/%d] submitted=%d completed=%d rejected=%d avgQueue=%.1fus maxQueue=%dus avgHash=%.1fus maxHash=%dus failedLogins=%d rehashed=%d",
+                workers, active, queueDepth, queueCapacity, submitted, completed, rejected, avgQueueMicros(),
+                maxQueueMicros, avgHashMicros(), maxHashMicros, failedLogins, rehashed);
+    }
+}
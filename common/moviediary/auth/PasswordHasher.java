@@ -0,0 +1,103 @@
+package moviediary.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PBKDF2-HMAC-SHA256 password hashes, stored as
+ * {@code pbkdf2$<iterations>$<salt>$<hash>} (base64, about 80 characters, so
+ * they fit the existing {@code users.password VARCHAR(100)}). Anything
+ * without the prefix is a plaintext password from before hashing.
+ *
+ * Hashing is deliberately slow; call it from {@link CredentialService}'s
+ * workers, not from the EDT or a request thread.
+ */
+public final class PasswordHasher {
+    static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    // OWASP's 2023 recommendation for PBKDF2-HMAC-SHA256.
+    public static final int DEFAULT_ITERATIONS = Integer.getInteger("moviediary.auth.iterations", 600_000);
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public PasswordHasher(int iterations) {
+        if (iterations < 1) throw new IllegalArgumentException("iterations must be positive");
+        this.iterations = iterations;
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    /** Checks {@code password} against a stored hash or legacy plaintext, in time independent of where they differ. */
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) return false;
+        if (isLegacy(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int rounds = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            if (rounds < 1) return false;
+            return MessageDigest.isEqual(pbkdf2(password, salt, rounds, expected.length * 8), expected);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** True for plaintext rows and hashes made with fewer iterations than this hasher uses. */
+    public boolean needsRehash(String stored) {
+        if (isLegacy(stored)) return true;
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public static boolean isLegacy(String stored) {
+        return !stored.startsWith(PREFIX);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int rounds) {
+        return pbkdf2(password, salt, rounds, HASH_BITS);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int rounds, int bits) {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, rounds, bits);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e); // every Java 8+ runtime ships it
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+}
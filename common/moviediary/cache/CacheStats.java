@@ -0,0 +1,23 @@
+package moviediary.cache;
+
+// Point-in-time snapshot of MovieCache counters. Sizes are estimated heap bytes.
+public record CacheStats(
+        int size,
+        long weightedBytes,
+        long maxBytes,
+        long hits,
+        long misses,
+        long puts,
+        long evictions) {
+
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache[entries=%d bytes=%d/%d] hits=%d misses=%d hitRate=%.1f%% puts=%d evictions=%d",
+                size, weightedBytes, maxBytes, hits, misses, hitRate() * 100, puts, evictions);
+    }
+}
@@ -0,0 +1,110 @@
+package moviediary.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import moviediary.model.MovieRecord;
+
+/**
+ * Bounded in-process cache of movie rows keyed by id. The bound is on the
+ * estimated heap footprint of the cached records rather than on the entry
+ * count, because descriptions vary from a few words to several paragraphs.
+ * Least recently used entries are evicted first.
+ *
+ * Movies are effectively immutable once inserted, so the DAO writes new rows
+ * straight into the cache and only a missing entry costs a query.
+ */
+public final class MovieCache {
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+    // Rough JVM costs: record header and fields, map entry and boxed key, per-String overhead.
+    private static final int RECORD_OVERHEAD = 40;
+    private static final int ENTRY_OVERHEAD = 64;
+    private static final int STRING_OVERHEAD = 40;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, MovieRecord> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long weightedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MovieCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public MovieCache(long maxBytes) {
+        if (maxBytes <= 0) throw new IllegalArgumentException("maxBytes must be > 0");
+        this.maxBytes = maxBytes;
+    }
+
+    /** The cached movie, or null on a miss. */
+    public MovieRecord get(int movieId) {
+        MovieRecord m;
+        synchronized (this) {
+            m = entries.get(movieId);
+        }
+        if (m == null) misses.increment(); else hits.increment();
+        return m;
+    }
+
+    public void put(MovieRecord movie) {
+        long weight = weigh(movie);
+        if (weight > maxBytes) return; // would evict everything else for one oversized row
+        puts.increment();
+        synchronized (this) {
+            MovieRecord previous = entries.put(movie.id(), movie);
+            if (previous != null) weightedBytes -= weigh(previous);
+            weightedBytes += weight;
+            evictToFit();
+        }
+    }
+
+    public synchronized void invalidate(int movieId) {
+        MovieRecord removed = entries.remove(movieId);
+        if (removed != null) weightedBytes -= weigh(removed);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weightedBytes = 0;
+    }
+
+    public CacheStats stats() {
+        int size;
+        long bytes;
+        synchronized (this) {
+            size = entries.size();
+            bytes = weightedBytes;
+        }
+        return new CacheStats(size, bytes, maxBytes, hits.sum(), misses.sum(), puts.sum(), evictions.sum());
+    }
+
+    private void evictToFit() {
+        Iterator<MovieRecord> eldest = entries.values().iterator();
+        while (weightedBytes > maxBytes && eldest.hasNext()) {
+            weightedBytes -= weigh(eldest.next());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    // Estimated retained size of one cached movie, in bytes.
+    static long weigh(MovieRecord m) {
+        return ENTRY_OVERHEAD + RECORD_OVERHEAD + (m.year() == null ? 0 : 16)
+                + stringBytes(m.title()) + stringBytes(m.starring()) + stringBytes(m.description());
+    }
+
+    private static long stringBytes(String s) {
+        // Compact strings store Latin-1 text in one byte per char; assume the worst case of two.
+        return s == null ? 0 : STRING_OVERHEAD + 2L * s.length();
+    }
+
+    @Override
+    public String toString() {
+        return stats().toString();
+    }
+
+}
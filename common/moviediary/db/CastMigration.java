@@ -0,0 +1,79 @@
+package moviediary.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills {@code people} and {@code movie_cast} from the free-text
+ * {@code movies.starring} column of movies that have no cast links yet.
+ *
+ * Movies are read in id order, {@value #DEFAULT_BATCH_SIZE} at a time, and
+ * each batch is written in its own transaction. A crash or restart loses at
+ * most the batch in flight, and the next run carries on where this one
+ * stopped, because migrated movies no longer match. New movies get their
+ * cast links from {@link MovieDao#addMovie} directly.
+ */
+public class CastMigration {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    // Name-to-id cache shared across batches, so popular actors are looked up once.
+    private static final int KNOWN_PEOPLE_LIMIT = 100_000;
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final Map<String, Integer> knownPeople = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > KNOWN_PEOPLE_LIMIT;
+        }
+    };
+
+    private record Pending(int movieId, String starring) {}
+
+    public CastMigration(ConnectionPool pool) {
+        this(pool, DEFAULT_BATCH_SIZE);
+    }
+
+    public CastMigration(ConnectionPool pool, int batchSize) {
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    /** Migrates every movie still lacking cast links and returns how many were processed. */
+    public int run() throws SQLException {
+        int afterId = 0;
+        int migrated = 0;
+        while (true) {
+            List<Pending> batch = nextBatch(afterId);
+            if (batch.isEmpty()) return migrated;
+            try {
+                pool.inTransaction(pc -> {
+                    for (Pending p : batch) MovieDao.writeCast(pc, p.movieId(), MovieDao.parseCast(p.starring()), knownPeople);
+                    return null;
+                });
+            } catch (SQLException | RuntimeException e) {
+                knownPeople.clear(); // may hold ids of people rows that were just rolled back
+                throw e;
+            }
+            migrated += batch.size();
+            afterId = batch.get(batch.size() - 1).movieId();
+        }
+    }
+
+    private List<Pending> nextBatch(int afterId) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.UNMIGRATED_CAST);
+            ps.setInt(1, afterId);
+            ps.setInt(2, batchSize);
+            List<Pending> batch = new ArrayList<>(batchSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) batch.add(new Pending(rs.getInt(1), rs.getString(2)));
+            }
+            return batch;
+        });
+    }
+}
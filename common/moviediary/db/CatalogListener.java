@@ -0,0 +1,18 @@
+package moviediary.db;
+
+import java.sql.Timestamp;
+import moviediary.model.MovieRecord;
+
+/**
+ * Callback for in-process views of the catalogue (search index, analytics)
+ * that need to follow writes made through a {@link MovieStore}. Called on the
+ * writing thread after the change is committed.
+ */
+public interface CatalogListener {
+    default void movieAdded(MovieRecord movie) {}
+
+    default void reviewAdded(int reviewId, int movieId, int userId, int rating, Timestamp createdAt) {}
+
+    // Only for entries that were actually inserted, not for "already there".
+    default void watchlistAdded(int userId, int movieId, Timestamp addedAt) {}
+}
@@ -0,0 +1,303 @@
+package moviediary.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe pool of MySQL connections shared by the console app and
+ * both Swing front-ends.
+ *
+ * At most {@code maxSize} connections exist at once; callers beyond that block
+ * until one is returned (or the borrow timeout expires). Idle connections are
+ * checked with {@link Connection#isValid(int)} before being handed out, and a
+ * dead socket is silently replaced with a fresh connection, so a dropped link
+ * no longer ends the session.
+ *
+ * Each pooled connection carries a {@link StatementCache}, and the JDBC URL is
+ * extended with Connector/J's server-side prepare settings so the fixed
+ * {@link Sql} set is parsed once per connection.
+ */
+public final class ConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_MAX_SIZE = 8;
+    public static final long DEFAULT_BORROW_TIMEOUT_MS = 10_000;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    // Connections returned less than this long ago skip the validation ping.
+    private static final long VALIDATION_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int CONNECT_ATTEMPTS = 3;
+    private static final long CONNECT_BACKOFF_MS = 200;
+    // Applied unless the caller's URL already sets them.
+    private static final String[][] CONNECTOR_DEFAULTS = {
+            {"useServerPrepStmts", "true"},
+            {"cachePrepStmts", "true"},
+            {"prepStmtCacheSize", "64"},
+            {"prepStmtCacheSqlLimit", "2048"},
+    };
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMs;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private volatile boolean closed;
+
+    // ---------- METRICS ----------
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder borrowNanos = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder statementPrepares = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+
+    public ConnectionPool(String url, String user, String password) {
+        this(url, user, password, DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT_MS);
+    }
+
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMs) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be >= 1");
+        this.url = withConnectorDefaults(url);
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.permits = new Semaphore(maxSize, true);
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException ignored) {
+            // Fall back to DriverManager's service-loader discovery.
+        }
+    }
+
+    /**
+     * Borrows a validated connection, blocking up to the borrow timeout when
+     * every connection is in use. Use it in try-with-resources.
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long start = System.nanoTime();
+        acquirePermit(start);
+        try {
+            PooledConnection pc = takeIdleOrConnect();
+            pc.onBorrow();
+            active.incrementAndGet();
+            borrows.increment();
+            borrowNanos.add(System.nanoTime() - start);
+            return pc;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Runs {@code work} on a borrowed connection and returns it to the pool afterwards. */
+    public <T> T withConnection(SqlWork<T> work) throws SQLException {
+        try (PooledConnection pc = borrow()) {
+            try {
+                return work.run(pc);
+            } catch (SQLException e) {
+                if (isConnectionFailure(e)) pc.markBroken();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Like {@link #withConnection} but retries once on a fresh connection when
+     * the first attempt dies with a connection-level error. Only use it for
+     * idempotent work such as SELECTs.
+     */
+    public <T> T read(SqlWork<T> work) throws SQLException {
+        try {
+            return withConnection(work);
+        } catch (SQLException e) {
+            if (!isConnectionFailure(e) || closed) throw e;
+            return withConnection(work);
+        }
+    }
+
+    /**
+     * Runs {@code work} in a single transaction: commits if it returns,
+     * rolls back if it throws. The connection is back in autocommit mode
+     * when it returns to the pool.
+     */
+    public <T> T inTransaction(SqlWork<T> work) throws SQLException {
+        return withConnection(pc -> {
+            Connection conn = pc.connection();
+            conn.setAutoCommit(false);
+            try {
+                T result = work.run(pc);
+                conn.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                try { conn.rollback(); } catch (SQLException suppressed) { e.addSuppressed(suppressed); }
+                throw e;
+            } finally {
+                try { conn.setAutoCommit(true); } catch (SQLException ignored) {
+                    // release() rolls back and resets connections that are still mid-transaction.
+                }
+            }
+        });
+    }
+
+    public PoolStats stats() {
+        return new PoolStats(maxSize, active.get(), idle.size(),
+                borrows.sum(), waits.sum(), timeouts.sum(),
+                TimeUnit.NANOSECONDS.toMicros(waitNanos.sum()),
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()),
+                TimeUnit.NANOSECONDS.toMicros(borrowNanos.sum()),
+                created.sum(), discarded.sum(), validationFailures.sum(),
+                statementPrepares.sum(), statementHits.sum());
+    }
+
+    public int maxSize() { return maxSize; }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) discard(pc);
+    }
+
+    // True for SQLState class 08 (connection exception) and the JDBC types that map to it.
+    public static boolean isConnectionFailure(SQLException e) {
+        for (SQLException cur = e; cur != null; cur = cur.getNextException()) {
+            if (cur instanceof SQLRecoverableException || cur instanceof SQLNonTransientConnectionException) return true;
+            String state = cur.getSQLState();
+            if (state != null && state.startsWith("08")) return true;
+            if (cur.getCause() instanceof SQLException cause && cause != cur && isConnectionFailure(cause)) return true;
+        }
+        return false;
+    }
+
+    // ---------- INTERNALS ----------
+    private void acquirePermit(long start) throws SQLException {
+        if (permits.tryAcquire()) return;
+        waits.increment();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!acquired) {
+            timeouts.increment();
+            throw new SQLTimeoutException("No database connection available after " + borrowTimeoutMs + " ms ("
+                    + maxSize + " in use)");
+        }
+    }
+
+    private PooledConnection takeIdleOrConnect() throws SQLException {
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            if (isUsable(pc)) return pc;
+            validationFailures.increment();
+            discard(pc);
+        }
+        return connect();
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (System.nanoTime() - pc.lastUsedNanos() < VALIDATION_GRACE_NANOS) return true;
+        try {
+            return pc.physical().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection connect() throws SQLException {
+        SQLException last = null;
+        for (int attempt = 1; attempt <= CONNECT_ATTEMPTS; attempt++) {
+            try {
+                Connection conn = DriverManager.getConnection(url, user, password);
+                conn.setAutoCommit(true);
+                created.increment();
+                return new PooledConnection(this, conn, new StatementCache(conn, statementPrepares, statementHits));
+            } catch (SQLException e) {
+                last = e;
+                if (!isConnectionFailure(e) || attempt == CONNECT_ATTEMPTS) break;
+                try {
+                    Thread.sleep(CONNECT_BACKOFF_MS * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        throw last;
+    }
+
+    void release(PooledConnection pc) {
+        pc.onReturn();
+        active.decrementAndGet();
+        try {
+            if (closed || pc.isBroken() || !reset(pc.physical())) {
+                discard(pc);
+            } else {
+                idle.offerFirst(pc);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Puts a connection back into autocommit mode so the next borrower starts clean.
+    private static boolean reset(Connection conn) {
+        try {
+            if (conn.isClosed()) return false;
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            conn.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        discarded.increment();
+        pc.statements().closeAll();
+        closeQuietly(pc.physical());
+    }
+
+    static String withConnectorDefaults(String url) {
+        StringBuilder sb = new StringBuilder(url);
+        boolean hasQuery = url.indexOf('?') >= 0;
+        for (String[] option : CONNECTOR_DEFAULTS) {
+            if (url.contains(option[0] + "=")) continue;
+            sb.append(hasQuery ? '&' : '?').append(option[0]).append('=').append(option[1]);
+            hasQuery = true;
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try { conn.close(); } catch (SQLException ignored) {}
+    }
+}
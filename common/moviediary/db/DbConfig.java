@@ -0,0 +1,34 @@
+package moviediary.db;
+
+/**
+ * Connection settings for the standalone tools (importer, exporter, servers).
+ * Defaults match the constants in the front-ends and can be overridden with
+ * {@code -Dmoviediary.jdbc.url=...}, {@code -Dmoviediary.jdbc.user=...} and
+ * {@code -Dmoviediary.jdbc.password=...}.
+ */
+public final class DbConfig {
+    public static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/moviereviewdb";
+    public static final String DEFAULT_USER = "root";
+    public static final String DEFAULT_PASSWORD = "root";
+
+    private DbConfig() {}
+
+    public static String url() {
+        return System.getProperty("moviediary.jdbc.url", DEFAULT_URL);
+    }
+
+    public static String user() {
+        return System.getProperty("moviediary.jdbc.user", DEFAULT_USER);
+    }
+
+    public static String password() {
+        return System.getProperty("moviediary.jdbc.password", DEFAULT_PASSWORD);
+    }
+
+    /** A pool for a tool: {@code maxSize} connections, extra Connector/J options appended to the URL. */
+    public static ConnectionPool pool(int maxSize, String extraOptions) {
+        String url = url();
+        if (extraOptions != null && !extraOptions.isEmpty()) url += (url.indexOf('?') >= 0 ? "&" : "?") + extraOptions;
+        return new ConnectionPool(url, user(), password(), maxSize, ConnectionPool.DEFAULT_BORROW_TIMEOUT_MS);
+    }
+}
@@ -0,0 +1,110 @@
+package moviediary.db;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs database calls off the caller's thread and hands back futures.
+ *
+ * On a JDK with virtual threads every call gets its own virtual thread and a
+ * semaphore caps how many run at once (there is no point having more calls in
+ * flight than pooled connections). On older JDKs it falls back to a fixed pool
+ * of daemon threads with a bounded queue; once the queue is full new calls
+ * fail fast with {@link RejectedExecutionException} instead of piling up.
+ *
+ * A call whose future was cancelled before it started is skipped, so stale
+ * requests that a user has already replaced never reach the database.
+ */
+public final class DbExecutor implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final boolean virtual;
+
+    public DbExecutor(int maxConcurrent) {
+        this(maxConcurrent, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public DbExecutor(int maxConcurrent, int queueCapacity) {
+        ExecutorService vt = newVirtualThreadExecutor();
+        if (vt != null) {
+            executor = vt;
+            permits = new Semaphore(maxConcurrent);
+            virtual = true;
+        } else {
+            executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), daemonThreads("db-worker"),
+                    new ThreadPoolExecutor.AbortPolicy());
+            ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+            permits = null;
+            virtual = false;
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(call, future));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public boolean usesVirtualThreads() { return virtual; }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private <T> void run(Callable<T> call, CompletableFuture<T> future) {
+        if (future.isDone()) return; // cancelled while queued
+        boolean acquired = false;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+                if (future.isDone()) return;
+            }
+            future.complete(call.call());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        } finally {
+            if (acquired) permits.release();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() exists from JDK 21; look it up reflectively.
+    // Returns null on older JDKs.
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
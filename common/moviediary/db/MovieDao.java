@@ -0,0 +1,700 @@
+package moviediary.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import moviediary.cache.MovieCache;
+import moviediary.model.MovieDetail;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.RatingSummary;
+import moviediary.model.ReviewEntry;
+import moviediary.model.UserCredential;
+import moviediary.model.WatchlistEntry;
+
+/**
+ * The MySQL {@link MovieStore}: every query the console and Swing screens
+ * run, on top of the shared {@link ConnectionPool}. Statements come from the
+ * per-connection {@link StatementCache}; only ResultSets are closed here.
+ */
+public class MovieDao implements MovieStore {
+    public static final int LATEST_REVIEW_LIMIT = 5;
+    // Matches people.name.
+    public static final int MAX_NAME_LENGTH = 200;
+
+    private final ConnectionPool pool;
+    private final MovieCache movieCache;
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    public MovieDao(ConnectionPool pool) {
+        this(pool, new MovieCache());
+    }
+
+    public MovieDao(ConnectionPool pool, MovieCache movieCache) {
+        this.pool = pool;
+        this.movieCache = movieCache;
+    }
+
+    public ConnectionPool pool() { return pool; }
+
+    public MovieCache movieCache() { return movieCache; }
+
+    @Override
+    public void addListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    // ---------- USERS ----------
+    @Override
+    public void register(String username, String passwordHash) throws SQLException {
+        pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.REGISTER_USER);
+            ps.setString(1, username);
+            ps.setString(2, passwordHash);
+            return ps.executeUpdate();
+        });
+    }
+
+    @Override
+    public UserCredential credentialOf(String username) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.USER_CREDENTIAL);
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new UserCredential(rs.getInt("id"), rs.getString("password")) : null;
+            }
+        });
+    }
+
+    @Override
+    public boolean replacePassword(int userId, String expected, String replacement) throws SQLException {
+        return pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.REPLACE_PASSWORD);
+            ps.setString(1, replacement);
+            ps.setInt(2, userId);
+            ps.setString(3, expected);
+            return ps.executeUpdate() == 1;
+        });
+    }
+
+    @Override
+    public Integer findUserId(String username) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.USER_ID_BY_NAME);
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt("id") : null;
+            }
+        });
+    }
+
+    // ---------- MOVIES ----------
+    // Inserts a movie with its movie_cast links and returns its generated id.
+    @Override
+    public int addMovie(String title, Integer year, String starring, String description) throws SQLException {
+        int movieId = pool.inTransaction(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.INSERT_MOVIE);
+            ps.setString(1, title);
+            if (year == null) ps.setNull(2, Types.INTEGER); else ps.setInt(2, year);
+            ps.setString(3, starring);
+            ps.setString(4, description);
+            ps.executeUpdate();
+            int id;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                id = keys.next() ? keys.getInt(1) : -1;
+            }
+            if (id > 0) writeCast(pc, id, parseCast(starring), null);
+            return id;
+        });
+        if (movieId > 0) {
+            // Write-through: the row we just inserted is exactly what findMovie would load.
+            MovieRecord movie = new MovieRecord(movieId, title, year, starring, description);
+            movieCache.put(movie);
+            for (CatalogListener l : listeners) l.movieAdded(movie);
+        }
+        return movieId;
+    }
+
+    @Override
+    public List<MovieSummary> listMovies(MovieOrder order) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(order == MovieOrder.ID ? Sql.MOVIES_BY_ID : Sql.MOVIES_BY_TITLE);
+            List<MovieSummary> movies = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) movies.add(readSummary(rs));
+            }
+            return movies;
+        });
+    }
+
+    @Override
+    public int countMovies() throws SQLException {
+        return pool.read(pc -> {
+            try (ResultSet rs = pc.prepare(Sql.COUNT_MOVIES).executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        });
+    }
+
+    /**
+     * Keyset page: up to {@code limit} movies that sort strictly after
+     * {@code after} ({@code null} for the first page). The cost depends only on
+     * the page size, not on how deep into the catalogue the page is.
+     */
+    @Override
+    public List<MovieSummary> moviesAfter(MovieOrder order, MovieSummary after, int limit) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps;
+            if (order == MovieOrder.ID) {
+                ps = pc.prepare(Sql.MOVIES_AFTER_BY_ID);
+                ps.setInt(1, after == null ? 0 : after.id());
+                ps.setInt(2, limit);
+            } else {
+                ps = pc.prepare(Sql.MOVIES_AFTER_BY_TITLE);
+                ps.setString(1, after == null ? "" : after.title());
+                ps.setInt(2, after == null ? 0 : after.id());
+                ps.setInt(3, limit);
+            }
+            List<MovieSummary> movies = new ArrayList<>(limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) movies.add(readSummary(rs));
+            }
+            return movies;
+        });
+    }
+
+    /**
+     * Keyset page going backwards: up to {@code limit} movies that sort
+     * strictly before {@code before}, returned in normal ascending order.
+     */
+    @Override
+    public List<MovieSummary> moviesBefore(MovieOrder order, MovieSummary before, int limit) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps;
+            if (order == MovieOrder.ID) {
+                ps = pc.prepare(Sql.MOVIES_BEFORE_BY_ID);
+                ps.setInt(1, before.id());
+                ps.setInt(2, limit);
+            } else {
+                ps = pc.prepare(Sql.MOVIES_BEFORE_BY_TITLE);
+                ps.setString(1, before.title());
+                ps.setInt(2, before.id());
+                ps.setInt(3, limit);
+            }
+            List<MovieSummary> movies = new ArrayList<>(limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) movies.add(readSummary(rs));
+            }
+            Collections.reverse(movies);
+            return movies;
+        });
+    }
+
+    /**
+     * Sort key (id and title, no year) of the movie at zero-based
+     * {@code position}, or null past the end. Used to start a keyset page
+     * far from any page already seen; it walks the (title, id) index only.
+     */
+    @Override
+    public MovieSummary movieAt(MovieOrder order, int position) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(order == MovieOrder.ID ? Sql.MOVIE_KEY_AT_BY_ID : Sql.MOVIE_KEY_AT_BY_TITLE);
+            ps.setInt(1, position);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? readSummary(rs) : null;
+            }
+        });
+    }
+
+    /**
+     * Streams every movie in id order to {@code sink} without holding the
+     * catalogue in memory. Used to build in-process indexes at startup.
+     */
+    @Override
+    public void forEachMovie(Consumer<MovieRecord> sink) throws SQLException {
+        pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.ALL_MOVIES);
+            ps.setFetchSize(Integer.MIN_VALUE); // Connector/J: stream rows instead of buffering the result
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(new MovieRecord(rs.getInt("id"), rs.getString("title"), nullableInt(rs, "year"),
+                            rs.getString("starring"), rs.getString("description")));
+                }
+            }
+            return null;
+        });
+    }
+
+    // Returns null when no movie has that id. Served from the movie cache when possible.
+    @Override
+    public MovieRecord findMovie(int movieId) throws SQLException {
+        MovieRecord cached = movieCache.get(movieId);
+        if (cached != null) return cached;
+        MovieRecord loaded = pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.MOVIE_BY_ID);
+            ps.setInt(1, movieId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return null;
+                return new MovieRecord(rs.getInt("id"), rs.getString("title"), nullableInt(rs, "year"),
+                        rs.getString("starring"), rs.getString("description"));
+            }
+        });
+        if (loaded != null) movieCache.put(loaded);
+        return loaded;
+    }
+
+    /**
+     * One statement and one round trip instead of four: see {@link
+     * Sql#MOVIE_DETAIL}. The reviews branch reads the newest rows off
+     * idx_reviews_movie_created_id rather than sorting the movie's reviews.
+     */
+    @Override
+    public MovieDetail movieDetail(int movieId) throws SQLException {
+        MovieDetail detail = pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.MOVIE_DETAIL);
+            ps.setInt(1, movieId);
+            ps.setInt(2, movieId);
+            ps.setInt(3, movieId);
+            ps.setInt(4, LATEST_REVIEW_LIMIT);
+            MovieRecord movie = null;
+            RatingStats stats = RatingStats.empty();
+            List<String> cast = new ArrayList<>();
+            List<ReviewEntry> reviews = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    switch (rs.getInt("part")) {
+                        case 0 -> {
+                            movie = new MovieRecord(movieId, rs.getString("s1"), nullableInt(rs, "n1"),
+                                    rs.getString("s2"), rs.getString("s3"));
+                            if (rs.getObject("review_count") != null) {
+                                int[] histogram = new int[RatingStats.MAX_RATING];
+                                for (int i = 0; i < histogram.length; i++) histogram[i] = rs.getInt("r" + (i + 1));
+                                stats = new RatingStats(rs.getInt("review_count"), rs.getLong("rating_sum"),
+                                        rs.getLong("rating_sum_sq"), histogram);
+                            }
+                        }
+                        case 1 -> cast.add(rs.getString("s1"));
+                        default -> reviews.add(new ReviewEntry(rs.getString("s1"), rs.getInt("n1"),
+                                rs.getString("s2"), rs.getTimestamp("created_at")));
+                    }
+                }
+            }
+            return movie == null ? null : new MovieDetail(movie, cast, stats, reviews);
+        });
+        if (detail != null) movieCache.put(detail.movie());
+        return detail;
+    }
+
+    // ---------- CAST ----------
+    // Credited names in billing order.
+    @Override
+    public List<String> castOf(int movieId) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.CAST_OF_MOVIE);
+            ps.setInt(1, movieId);
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) names.add(rs.getString(1));
+            }
+            return names;
+        });
+    }
+
+    // Every movie crediting {@code name}, oldest first. An index lookup on people, then movie_cast.
+    @Override
+    public List<MovieSummary> filmography(String name) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.FILMOGRAPHY);
+            ps.setString(1, name.trim());
+            List<MovieSummary> movies = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) movies.add(readSummary(rs));
+            }
+            return movies;
+        });
+    }
+
+    // Up to {@code limit} known names starting with {@code prefix}, for suggestions.
+    @Override
+    public List<String> peopleStartingWith(String prefix, int limit) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.PEOPLE_BY_PREFIX);
+            ps.setString(1, prefix.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+            ps.setInt(2, limit);
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) names.add(rs.getString(1));
+            }
+            return names;
+        });
+    }
+
+    /**
+     * Splits a free-text "A, B, C" starring value into trimmed, de-duplicated
+     * names in billing order.
+     */
+    public static List<String> parseCast(String starring) {
+        List<String> names = new ArrayList<>();
+        if (starring == null) return names;
+        Set<String> seen = new HashSet<>();
+        for (String part : starring.split(",")) {
+            String name = part.trim().replaceAll("\\s+", " ");
+            if (name.length() > MAX_NAME_LENGTH) name = name.substring(0, MAX_NAME_LENGTH);
+            if (!name.isEmpty() && seen.add(name.toLowerCase(Locale.ROOT))) names.add(name);
+        }
+        return names;
+    }
+
+    /**
+     * Links {@code names} to {@code movieId}, creating people rows as needed.
+     * {@code knownPeople} (may be null) caches name to id across calls.
+     */
+    static void writeCast(PooledConnection pc, int movieId, List<String> names, Map<String, Integer> knownPeople) throws SQLException {
+        if (names.isEmpty()) return;
+        PreparedStatement link = pc.prepare(Sql.INSERT_CAST);
+        int position = 0;
+        for (String name : names) {
+            Integer personId = knownPeople == null ? null : knownPeople.get(name);
+            if (personId == null) {
+                personId = upsertPerson(pc, name);
+                if (knownPeople != null) knownPeople.put(name, personId);
+            }
+            link.setInt(1, movieId);
+            link.setInt(2, personId);
+            link.setInt(3, ++position);
+            link.addBatch();
+        }
+        link.executeBatch();
+    }
+
+    private static int upsertPerson(PooledConnection pc, String name) throws SQLException {
+        PreparedStatement ps = pc.prepare(Sql.UPSERT_PERSON);
+        ps.setString(1, name);
+        ps.executeUpdate();
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            if (!keys.next()) throw new SQLException("No id returned for person " + name);
+            return keys.getInt(1);
+        }
+    }
+
+    // ---------- REVIEWS ----------
+    // O(1): reads the maintained movie_stats row instead of aggregating reviews.
+    @Override
+    public RatingSummary ratingSummary(int movieId) throws SQLException {
+        return ratingStats(movieId).summary();
+    }
+
+    @Override
+    public RatingStats ratingStats(int movieId) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.MOVIE_STATS_BY_ID);
+            ps.setInt(1, movieId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return RatingStats.empty();
+                int[] histogram = new int[RatingStats.MAX_RATING];
+                for (int i = 0; i < histogram.length; i++) histogram[i] = rs.getInt(4 + i);
+                return new RatingStats(rs.getInt("review_count"), rs.getLong("rating_sum"),
+                        rs.getLong("rating_sum_sq"), histogram);
+            }
+        });
+    }
+
+    // Newest reviews first, at most LATEST_REVIEW_LIMIT of them.
+    @Override
+    public List<ReviewEntry> latestReviews(int movieId) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.LATEST_REVIEWS);
+            ps.setInt(1, movieId);
+            ps.setInt(2, LATEST_REVIEW_LIMIT);
+            List<ReviewEntry> reviews = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    reviews.add(new ReviewEntry(rs.getString("username"), rs.getInt("rating"),
+                            rs.getString("comment"), rs.getTimestamp("created_at")));
+                }
+            }
+            return reviews;
+        });
+    }
+
+    // Inserts the review and folds it into movie_stats in the same transaction.
+    @Override
+    public void addReview(int movieId, int userId, int rating, String comment) throws SQLException {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        int reviewId = pool.inTransaction(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.INSERT_REVIEW);
+            ps.setInt(1, movieId);
+            ps.setInt(2, userId);
+            ps.setInt(3, rating);
+            ps.setString(4, comment);
+            ps.setTimestamp(5, createdAt);
+            ps.executeUpdate();
+            int id;
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                id = keys.next() ? keys.getInt(1) : -1;
+            }
+
+            PreparedStatement stats = pc.prepare(Sql.ADD_TO_MOVIE_STATS);
+            stats.setInt(1, movieId);
+            stats.setLong(2, rating);
+            stats.setLong(3, (long) rating * rating);
+            for (int r = 1; r <= RatingStats.MAX_RATING; r++) stats.setInt(3 + r, r == rating ? 1 : 0);
+            stats.executeUpdate();
+            return id;
+        });
+        if (reviewId > 0) {
+            for (CatalogListener l : listeners) l.reviewAdded(reviewId, movieId, userId, rating, createdAt);
+        }
+    }
+
+    // Streams (id, movie, user, rating, created_at) without comments; used to build in-process analytics.
+    @Override
+    public void forEachReview(ReviewRow sink) throws SQLException {
+        pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.ALL_REVIEW_RATINGS);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            readReviewRows(ps, sink);
+            return null;
+        });
+    }
+
+    // Uses idx_reviews_created_at, so only the window is read.
+    @Override
+    public void forEachReviewSince(long sinceMillis, ReviewRow sink) throws SQLException {
+        pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.REVIEWS_SINCE);
+            ps.setTimestamp(1, new Timestamp(sinceMillis));
+            ps.setFetchSize(Integer.MIN_VALUE);
+            readReviewRows(ps, sink);
+            return null;
+        });
+    }
+
+    // Straight from movie_stats instead of aggregating reviews.
+    @Override
+    public void forEachRatingTotal(RatingTotalRow sink) throws SQLException {
+        pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.RATING_TOTALS);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) sink.accept(rs.getInt("movie_id"), rs.getInt("review_count"), rs.getLong("rating_sum"));
+            }
+            return null;
+        });
+    }
+
+    // ---------- WATCHLIST ----------
+    // Returns false when the movie was already on the user's watchlist.
+    @Override
+    public boolean addToWatchlist(int userId, int movieId) throws SQLException {
+        Timestamp addedAt = Timestamp.valueOf(LocalDateTime.now());
+        boolean added = pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.INSERT_WATCHLIST);
+            ps.setInt(1, userId);
+            ps.setInt(2, movieId);
+            ps.setTimestamp(3, addedAt);
+            return ps.executeUpdate() > 0;
+        });
+        if (added) {
+            for (CatalogListener l : listeners) l.watchlistAdded(userId, movieId, addedAt);
+        }
+        return added;
+    }
+
+    @Override
+    public void forEachWatchlistCount(MovieCountRow sink) throws SQLException {
+        pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.WATCHLIST_COUNTS);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) sink.accept(rs.getInt("movie_id"), rs.getInt("saves"));
+            }
+            return null;
+        });
+    }
+
+    // Streams (user, movie, added_at) in id order; used to build in-process watchlist indexes.
+    @Override
+    public void forEachWatchlistEntry(WatchlistRow sink) throws SQLException {
+        pool.withConnection(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.ALL_WATCHLIST_ENTRIES);
+            ps.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Timestamp addedAt = rs.getTimestamp("added_at");
+                    sink.accept(rs.getInt("user_id"), rs.getInt("movie_id"), addedAt == null ? 0 : addedAt.getTime());
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlist(int userId) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.WATCHLIST_BY_USER);
+            ps.setInt(1, userId);
+            return readWatchlist(ps);
+        });
+    }
+
+    /**
+     * Keyset page of the watchlist, newest first: up to {@code limit} entries
+     * added before {@code after} ({@code null} for the first page).
+     */
+    @Override
+    public List<WatchlistEntry> watchlistAfter(int userId, WatchlistEntry after, int limit) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps;
+            if (after == null) {
+                ps = pc.prepare(Sql.WATCHLIST_FIRST_PAGE);
+                ps.setInt(1, userId);
+                ps.setInt(2, limit);
+            } else {
+                ps = pc.prepare(Sql.WATCHLIST_OLDER_THAN);
+                ps.setInt(1, userId);
+                ps.setTimestamp(2, after.addedAt());
+                ps.setInt(3, after.id());
+                ps.setInt(4, limit);
+            }
+            return readWatchlist(ps);
+        });
+    }
+
+    // The page of up to {@code limit} entries just newer than {@code before}, still newest first.
+    @Override
+    public List<WatchlistEntry> watchlistBefore(int userId, WatchlistEntry before, int limit) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.WATCHLIST_NEWER_THAN);
+            ps.setInt(1, userId);
+            ps.setTimestamp(2, before.addedAt());
+            ps.setInt(3, before.id());
+            ps.setInt(4, limit);
+            List<WatchlistEntry> entries = readWatchlist(ps);
+            Collections.reverse(entries);
+            return entries;
+        });
+    }
+
+    // ---------- WRITE-BEHIND ----------
+    /** Highest sequence number of {@code journal} already applied, or 0 when none has been. */
+    public long appliedSeq(String journal) throws SQLException {
+        return pool.read(pc -> {
+            PreparedStatement ps = pc.prepare(Sql.WRITE_BEHIND_APPLIED);
+            ps.setString(1, journal);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Applies journaled reviews and watchlist additions as JDBC batches in one
+     * transaction, together with the checkpoint {@code throughSeq}, then
+     * notifies listeners of what was inserted. {@code writes} may be empty
+     * to move the checkpoint past writes that were dropped.
+     */
+    public void applyQueued(String journal, List<QueuedWrite> writes, long throughSeq) throws SQLException {
+        List<QueuedWrite> reviews = new ArrayList<>();
+        List<QueuedWrite> watches = new ArrayList<>();
+        for (QueuedWrite w : writes) (w.isWatchlist() ? watches : reviews).add(w);
+        int[] reviewIds = new int[reviews.size()];
+        int[][] watchCounts = {new int[0]};
+        pool.inTransaction(pc -> {
+            if (!reviews.isEmpty()) {
+                PreparedStatement ps = pc.prepare(Sql.INSERT_REVIEW);
+                PreparedStatement stats = pc.prepare(Sql.ADD_TO_MOVIE_STATS);
+                ps.clearBatch(); // a failed batch leaves its rows on the cached statement
+                stats.clearBatch();
+                for (QueuedWrite w : reviews) {
+                    ps.setInt(1, w.movieId());
+                    ps.setInt(2, w.userId());
+                    ps.setInt(3, w.rating());
+                    ps.setString(4, w.comment());
+                    ps.setTimestamp(5, new Timestamp(w.createdAtMillis()));
+                    ps.addBatch();
+                    stats.setInt(1, w.movieId());
+                    stats.setLong(2, w.rating());
+                    stats.setLong(3, (long) w.rating() * w.rating());
+                    for (int r = 1; r <= RatingStats.MAX_RATING; r++) stats.setInt(3 + r, r == w.rating() ? 1 : 0);
+                    stats.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (int i = 0; i < reviewIds.length; i++) reviewIds[i] = keys.next() ? keys.getInt(1) : -1;
+                }
+                stats.executeBatch();
+            }
+            if (!watches.isEmpty()) {
+                PreparedStatement ps = pc.prepare(Sql.INSERT_WATCHLIST);
+                ps.clearBatch();
+                for (QueuedWrite w : watches) {
+                    ps.setInt(1, w.userId());
+                    ps.setInt(2, w.movieId());
+                    ps.setTimestamp(3, new Timestamp(w.createdAtMillis()));
+                    ps.addBatch();
+                }
+                watchCounts[0] = ps.executeBatch();
+            }
+            PreparedStatement checkpoint = pc.prepare(Sql.SAVE_WRITE_BEHIND_APPLIED);
+            checkpoint.setString(1, journal);
+            checkpoint.setLong(2, throughSeq);
+            checkpoint.executeUpdate();
+            return null;
+        });
+        for (int i = 0; i < reviewIds.length; i++) {
+            QueuedWrite w = reviews.get(i);
+            if (reviewIds[i] <= 0) continue;
+            for (CatalogListener l : listeners) l.reviewAdded(reviewIds[i], w.movieId(), w.userId(), w.rating(), new Timestamp(w.createdAtMillis()));
+        }
+        for (int i = 0; i < watchCounts[0].length; i++) {
+            QueuedWrite w = watches.get(i);
+            if (watchCounts[0][i] <= 0) continue; // INSERT IGNORE skipped a duplicate
+            for (CatalogListener l : listeners) l.watchlistAdded(w.userId(), w.movieId(), new Timestamp(w.createdAtMillis()));
+        }
+    }
+
+    // ---------- HELPERS ----------
+    private static void readReviewRows(PreparedStatement ps, ReviewRow sink) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                Timestamp createdAt = rs.getTimestamp("created_at");
+                sink.accept(rs.getInt("id"), rs.getInt("movie_id"), rs.getInt("user_id"), rs.getInt("rating"),
+                        createdAt == null ? 0 : createdAt.getTime());
+            }
+        }
+    }
+
+    private static List<WatchlistEntry> readWatchlist(PreparedStatement ps) throws SQLException {
+        List<WatchlistEntry> entries = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                entries.add(new WatchlistEntry(rs.getInt("id"), rs.getInt("movie_id"), rs.getString("title"),
+                        rs.getTimestamp("added_at")));
+            }
+        }
+        return entries;
+    }
+
+    static MovieSummary readSummary(ResultSet rs) throws SQLException {
+        return new MovieSummary(rs.getInt("id"), rs.getString("title"), nullableInt(rs, "year"));
+    }
+
+    static Integer nullableInt(ResultSet rs, String column) throws SQLException {
+        int v = rs.getInt(column);
+        return rs.wasNull() ? null : v;
+    }
+}
@@ -0,0 +1,92 @@
+package moviediary.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Recomputes {@code movie_stats} from the reviews table. The movie id range is
+ * cut into fixed-size chunks and each chunk is rebuilt in its own transaction
+ * on a separate pooled connection, so the work spreads over the pool and no
+ * single transaction holds locks on the whole table.
+ *
+ * Normal operation never needs this: {@link MovieDao#addReview} keeps the
+ * stats current. It is for the first start on an existing database and for
+ * repairs after reviews were edited by hand.
+ */
+public class MovieStatsRebuilder {
+    public static final int DEFAULT_CHUNK_SIZE = 1_000;
+
+    private final ConnectionPool pool;
+    private final int chunkSize;
+
+    public MovieStatsRebuilder(ConnectionPool pool) {
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MovieStatsRebuilder(ConnectionPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Rebuilds every chunk and returns the number of movies that have stats. */
+    public int rebuildAll() throws SQLException {
+        int[] range = pool.read(pc -> {
+            try (ResultSet rs = pc.prepare(Sql.MOVIE_ID_RANGE).executeQuery()) {
+                rs.next();
+                return new int[]{rs.getInt(1), rs.getInt(2)};
+            }
+        });
+        if (range[1] == 0) return 0;
+
+        // Leave one connection for the screens while the rebuild runs.
+        int threads = Math.max(1, Math.min(pool.maxSize() - 1, Runtime.getRuntime().availableProcessors()));
+        ExecutorService workers = Executors.newFixedThreadPool(threads, DbExecutor.daemonThreads("stats-rebuild"));
+        try {
+            List<Future<Integer>> chunks = new ArrayList<>();
+            for (long lo = range[0]; lo <= range[1]; lo += chunkSize) {
+                int from = (int) lo;
+                int to = (int) Math.min(range[1], lo + chunkSize - 1);
+                chunks.add(workers.submit(() -> rebuildChunk(from, to)));
+            }
+            int movies = 0;
+            for (Future<Integer> chunk : chunks) movies += await(chunk);
+            return movies;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /** Rebuilds the stats of movies {@code from..to} (inclusive) in one transaction. */
+    public int rebuildChunk(int from, int to) throws SQLException {
+        return pool.inTransaction(pc -> {
+            PreparedStatement delete = pc.prepare(Sql.DELETE_MOVIE_STATS_RANGE);
+            delete.setInt(1, from);
+            delete.setInt(2, to);
+            delete.executeUpdate();
+
+            PreparedStatement insert = pc.prepare(Sql.REBUILD_MOVIE_STATS_RANGE);
+            insert.setInt(1, from);
+            insert.setInt(2, to);
+            return insert.executeUpdate();
+        });
+    }
+
+    private static int await(Future<Integer> chunk) throws SQLException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while rebuilding movie stats", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new SQLException("Movie stats rebuild failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package moviediary.db;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import moviediary.model.MovieDetail;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.RatingSummary;
+import moviediary.model.ReviewEntry;
+import moviediary.model.UserCredential;
+import moviediary.model.WatchlistEntry;
+
+/**
+ * The operations the console and Swing screens need from storage. {@link
+ * MovieDao} implements them against MySQL; {@code moviediary.embedded.EmbeddedStore}
+ * keeps the same tables in process for single-user and test runs. Which one a
+ * front-end uses is picked at startup by {@link StoreMode}.
+ *
+ * Both implementations report constraint violations (duplicate username,
+ * unknown movie or user) as {@link java.sql.SQLIntegrityConstraintViolationException}
+ * with MySQL's wording, so callers handle them the same way.
+ */
+public interface MovieStore extends AutoCloseable {
+    void addListener(CatalogListener listener);
+
+    // ---------- USERS ----------
+    // Stores a password hash from moviediary.auth.PasswordHasher; front-ends go through CredentialService.
+    void register(String username, String passwordHash) throws SQLException;
+
+    // The user's id and stored password, or null when nobody has that username.
+    UserCredential credentialOf(String username) throws SQLException;
+
+    // Swaps the stored password only while it is still {@code expected}; returns whether it did.
+    boolean replacePassword(int userId, String expected, String replacement) throws SQLException;
+
+    // Returns null when nobody has that username.
+    Integer findUserId(String username) throws SQLException;
+
+    // ---------- MOVIES ----------
+    // Inserts a movie with its cast links and returns its generated id.
+    int addMovie(String title, Integer year, String starring, String description) throws SQLException;
+
+    List<MovieSummary> listMovies(MovieOrder order) throws SQLException;
+
+    int countMovies() throws SQLException;
+
+    /** Up to {@code limit} movies sorting strictly after {@code after} ({@code null} for the first page). */
+    List<MovieSummary> moviesAfter(MovieOrder order, MovieSummary after, int limit) throws SQLException;
+
+    /** Up to {@code limit} movies sorting strictly before {@code before}, in ascending order. */
+    List<MovieSummary> moviesBefore(MovieOrder order, MovieSummary before, int limit) throws SQLException;
+
+    /** Sort key of the movie at zero-based {@code position}, or null past the end. */
+    MovieSummary movieAt(MovieOrder order, int position) throws SQLException;
+
+    /** Every movie in id order, streamed to {@code sink}. */
+    void forEachMovie(Consumer<MovieRecord> sink) throws SQLException;
+
+    // Returns null when no movie has that id.
+    MovieRecord findMovie(int movieId) throws SQLException;
+
+    /**
+     * The movie with its cast, rating stats and latest reviews, or null when
+     * no movie has that id. The default makes the four calls; {@link
+     * MovieDao} answers in one round trip. Front-ends go through {@code
+     * moviediary.detail.DetailLoader}, which caches the result.
+     */
+    default MovieDetail movieDetail(int movieId) throws SQLException {
+        MovieRecord movie = findMovie(movieId);
+        if (movie == null) return null;
+        return new MovieDetail(movie, castOf(movieId), ratingStats(movieId), latestReviews(movieId));
+    }
+
+    // ---------- CAST ----------
+    // Credited names in billing order.
+    List<String> castOf(int movieId) throws SQLException;
+
+    // Every movie crediting {@code name}, oldest first.
+    List<MovieSummary> filmography(String name) throws SQLException;
+
+    // Up to {@code limit} known names starting with {@code prefix}, for suggestions.
+    List<String> peopleStartingWith(String prefix, int limit) throws SQLException;
+
+    // ---------- REVIEWS ----------
+    default RatingSummary ratingSummary(int movieId) throws SQLException {
+        return ratingStats(movieId).summary();
+    }
+
+    RatingStats ratingStats(int movieId) throws SQLException;
+
+    // Newest reviews first, at most MovieDao.LATEST_REVIEW_LIMIT of them.
+    List<ReviewEntry> latestReviews(int movieId) throws SQLException;
+
+    void addReview(int movieId, int userId, int rating, String comment) throws SQLException;
+
+    /** Every review in id order, streamed to {@code sink}. Comments are left out. */
+    void forEachReview(ReviewRow sink) throws SQLException;
+
+    @FunctionalInterface
+    interface ReviewRow {
+        void accept(int reviewId, int movieId, int userId, int rating, long createdAtMillis);
+    }
+
+    /** Reviews created at or after {@code sinceMillis}. The default filters {@link #forEachReview}. */
+    default void forEachReviewSince(long sinceMillis, ReviewRow sink) throws SQLException {
+        forEachReview((id, movieId, userId, rating, createdAt) -> {
+            if (createdAt >= sinceMillis) sink.accept(id, movieId, userId, rating, createdAt);
+        });
+    }
+
+    /** Review count and rating sum of every reviewed movie. The default adds up {@link #forEachReview}. */
+    default void forEachRatingTotal(RatingTotalRow sink) throws SQLException {
+        int[][] counts = {new int[0]};
+        long[][] sums = {new long[0]};
+        forEachReview((id, movieId, userId, rating, createdAt) -> {
+            if (movieId >= counts[0].length) {
+                counts[0] = Arrays.copyOf(counts[0], Math.max(movieId + 1, counts[0].length * 2));
+                sums[0] = Arrays.copyOf(sums[0], counts[0].length);
+            }
+            counts[0][movieId]++;
+            sums[0][movieId] += rating;
+        });
+        for (int m = 0; m < counts[0].length; m++) {
+            if (counts[0][m] > 0) sink.accept(m, counts[0][m], sums[0][m]);
+        }
+    }
+
+    @FunctionalInterface
+    interface RatingTotalRow {
+        void accept(int movieId, int reviewCount, long ratingSum);
+    }
+
+    // ---------- WATCHLIST ----------
+    // Returns false when the movie was already on the user's watchlist.
+    boolean addToWatchlist(int userId, int movieId) throws SQLException;
+
+    // Newest first.
+    List<WatchlistEntry> watchlist(int userId) throws SQLException;
+
+    /** Keyset page, newest first: up to {@code limit} entries added before {@code after} ({@code null} for the first page). */
+    List<WatchlistEntry> watchlistAfter(int userId, WatchlistEntry after, int limit) throws SQLException;
+
+    // The page of up to {@code limit} entries just newer than {@code before}, still newest first.
+    List<WatchlistEntry> watchlistBefore(int userId, WatchlistEntry before, int limit) throws SQLException;
+
+    /** Every watchlist entry in insertion order, streamed to {@code sink}. */
+    void forEachWatchlistEntry(WatchlistRow sink) throws SQLException;
+
+    @FunctionalInterface
+    interface WatchlistRow {
+        void accept(int userId, int movieId, long addedAtMillis);
+    }
+
+    /** How many watchlists each saved movie is on. The default counts {@link #forEachWatchlistEntry}. */
+    default void forEachWatchlistCount(MovieCountRow sink) throws SQLException {
+        int[][] counts = {new int[0]};
+        forEachWatchlistEntry((userId, movieId, addedAt) -> {
+            if (movieId >= counts[0].length) counts[0] = Arrays.copyOf(counts[0], Math.max(movieId + 1, counts[0].length * 2));
+            counts[0][movieId]++;
+        });
+        for (int m = 0; m < counts[0].length; m++) {
+            if (counts[0][m] > 0) sink.accept(m, counts[0][m]);
+        }
+    }
+
+    @FunctionalInterface
+    interface MovieCountRow {
+        void accept(int movieId, int count);
+    }
+
+    /** Releases whatever the store owns. The MySQL store does not own its pool, so this does nothing there. */
+    @Override
+    default void close() throws SQLException {}
+}
@@ -0,0 +1,35 @@
+package moviediary.db;
+
+// Point-in-time snapshot of ConnectionPool counters. Times are in microseconds.
+public record PoolStats(
+        int maxSize,
+        int active,
+        int idle,
+        long borrows,
+        long waits,
+        long timeouts,
+        long totalWaitMicros,
+        long maxWaitMicros,
+        long totalBorrowMicros,
+        long created,
+        long discarded,
+        long validationFailures,
+        long statementPrepares,
+        long statementCacheHits) {
+
+    public double avgWaitMicros() {
+        return waits == 0 ? 0 : (double) totalWaitMicros / waits;
+    }
+
+    public double avgBorrowMicros() {
+        return borrows == 0 ? 0 : (double) totalBorrowMicros / borrows;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "pool[active=%d idle=%d max=%d] borrows=%d avgBorrow=%.1fus waits=%d avgWait=%.1fus maxWait=%dus timeouts=%d created=%d discarded=%d invalid=%d prepares=%d stmtHits=%d",
+                active, idle, maxSize, borrows, avgBorrowMicros(), waits, avgWaitMicros(), maxWaitMicros,
+                timeouts, created, discarded, validationFailures, statementPrepares, statementCacheHits);
+    }
+}
@@ -0,0 +1,67 @@
+package moviediary.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A physical connection on loan from a {@link ConnectionPool}. Closing it hands
+ * the connection back to the pool instead of closing the socket.
+ */
+public final class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection conn;
+    private final StatementCache statements;
+    private long lastUsedNanos;
+    private boolean broken;
+    private boolean borrowed;
+
+    PooledConnection(ConnectionPool pool, Connection conn, StatementCache statements) {
+        this.pool = pool;
+        this.conn = conn;
+        this.statements = statements;
+        this.lastUsedNanos = System.nanoTime();
+    }
+
+    public Connection connection() {
+        if (!borrowed) throw new IllegalStateException("connection already returned to pool");
+        return conn;
+    }
+
+    /**
+     * Returns this connection's cached statement for {@code sql}, preparing it
+     * on first use. Do not close the returned statement.
+     */
+    public PreparedStatement prepare(Sql sql) throws SQLException {
+        if (!borrowed) throw new IllegalStateException("connection already returned to pool");
+        SqlTrace.note(sql);
+        return statements.get(sql);
+    }
+
+    // Flags the socket as unusable so the pool drops it rather than reusing it.
+    public void markBroken() {
+        broken = true;
+    }
+
+    @Override
+    public void close() {
+        if (borrowed) pool.release(this);
+    }
+
+    Connection physical() { return conn; }
+
+    StatementCache statements() { return statements; }
+
+    boolean isBroken() { return broken; }
+
+    long lastUsedNanos() { return lastUsedNanos; }
+
+    void onBorrow() {
+        borrowed = true;
+    }
+
+    void onReturn() {
+        borrowed = false;
+        lastUsedNanos = System.nanoTime();
+    }
+}
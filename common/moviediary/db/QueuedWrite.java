@@ -0,0 +1,11 @@
+package moviediary.db;
+
+/**
+ * A review or watchlist addition waiting in the write-behind journal.
+ * {@code rating} is 0 for a watchlist addition, which has no comment.
+ */
+public record QueuedWrite(long seq, int userId, int movieId, int rating, String comment, long createdAtMillis) {
+    public boolean isWatchlist() {
+        return rating == 0;
+    }
+}
@@ -0,0 +1,112 @@
+package moviediary.db;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tables and secondary indexes the shared code relies on. The front-ends
+ * still create the core tables in setupDB(); they call these afterwards.
+ */
+public final class Schema {
+    // MySQL error 1061: ER_DUP_KEYNAME (the index already exists).
+    private static final int ER_DUP_KEYNAME = 1061;
+
+    private Schema() {}
+
+    /**
+     * The core tables, as the console creates them, for front-ends that do
+     * not have a setupDB() of their own (the API server).
+     */
+    public static void createCoreTables(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, password VARCHAR(100) NOT NULL)");
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS movies (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200) NOT NULL, year INT, starring VARCHAR(300), description TEXT)");
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS reviews (id INT AUTO_INCREMENT PRIMARY KEY, movie_id INT NOT NULL, user_id INT NOT NULL, rating INT NOT NULL CHECK(rating >= 1 AND rating <= 10), comment TEXT, created_at DATETIME, FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS watchlist (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT NOT NULL, movie_id INT NOT NULL, added_at DATETIME NOT NULL, UNIQUE(user_id, movie_id), FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
+    }
+
+    public static void createIndexes(Statement st) throws SQLException {
+        // Keyset pagination of the catalogue by (title, id); also covers the anchor lookups.
+        ensureIndex(st, "movies", "idx_movies_title_id", "title, id");
+        // Newest-first watchlist pages per user by (added_at, id).
+        requireWatchlistDates(st);
+        ensureIndex(st, "watchlist", "idx_watchlist_user_added_id", "user_id, added_at, id");
+        // Recent-review window for the trending leaderboard.
+        ensureIndex(st, "reviews", "idx_reviews_created_at", "created_at");
+        // A movie's newest reviews, read backwards from the end of its range instead of sorting all of them.
+        ensureIndex(st, "reviews", "idx_reviews_movie_created_id", "movie_id, created_at, id");
+    }
+
+    /**
+     * Creates {@code movie_stats}, the per-movie rating aggregates kept up to
+     * date by {@link MovieDao#addReview}. r1..r10 count the reviews at each
+     * rating. On the first start against an existing database the table is
+     * filled from the reviews already there.
+     */
+    public static void createStatsTables(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS movie_stats (movie_id INT PRIMARY KEY, review_count INT NOT NULL DEFAULT 0, "
+                + "rating_sum BIGINT NOT NULL DEFAULT 0, rating_sum_sq BIGINT NOT NULL DEFAULT 0, "
+                + "r1 INT NOT NULL DEFAULT 0, r2 INT NOT NULL DEFAULT 0, r3 INT NOT NULL DEFAULT 0, r4 INT NOT NULL DEFAULT 0, "
+                + "r5 INT NOT NULL DEFAULT 0, r6 INT NOT NULL DEFAULT 0, r7 INT NOT NULL DEFAULT 0, r8 INT NOT NULL DEFAULT 0, "
+                + "r9 INT NOT NULL DEFAULT 0, r10 INT NOT NULL DEFAULT 0, FOREIGN KEY(movie_id) REFERENCES movies(id))");
+
+        boolean statsEmpty;
+        try (ResultSet rs = st.executeQuery("SELECT NOT EXISTS (SELECT 1 FROM movie_stats) AND EXISTS (SELECT 1 FROM reviews)")) {
+            statsEmpty = rs.next() && rs.getBoolean(1);
+        }
+        if (statsEmpty) {
+            try (PreparedStatement ps = st.getConnection().prepareStatement(Sql.REBUILD_MOVIE_STATS_RANGE.text())) {
+                ps.setInt(1, 0);
+                ps.setInt(2, Integer.MAX_VALUE);
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Creates the normalized cast model: one {@code people} row per distinct
+     * name and a {@code movie_cast} link per credit. The (person_id, movie_id)
+     * key answers filmography lookups without touching {@code movies.starring}.
+     */
+    public static void createCastTables(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS people (id INT AUTO_INCREMENT PRIMARY KEY, name VARCHAR(200) NOT NULL, UNIQUE KEY uq_people_name(name))");
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS movie_cast (movie_id INT NOT NULL, person_id INT NOT NULL, position SMALLINT NOT NULL, "
+                + "PRIMARY KEY(movie_id, person_id), KEY idx_movie_cast_person(person_id, movie_id), "
+                + "FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(person_id) REFERENCES people(id))");
+    }
+
+    /**
+     * Creates {@code write_behind_checkpoints}: per journal, the highest
+     * sequence number applied. It is written in the same transaction as each
+     * flushed batch, so a restart replays exactly the writes that are missing.
+     */
+    public static void createWriteBehindTables(Statement st) throws SQLException {
+        st.executeUpdate("CREATE TABLE IF NOT EXISTS write_behind_checkpoints (journal VARCHAR(255) PRIMARY KEY, applied_seq BIGINT NOT NULL)");
+    }
+
+    /**
+     * Makes {@code watchlist.added_at} NOT NULL. Watchlist pages are keyed on
+     * (added_at, id), and a row comparison with a NULL date is never true, so
+     * undated entries were skipped or ended paging early. Entries saved before
+     * the date was always filled in are dated at the epoch, which keeps them
+     * last in newest-first order, where they already sorted.
+     */
+    static void requireWatchlistDates(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT IS_NULLABLE FROM information_schema.COLUMNS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'watchlist' AND COLUMN_NAME = 'added_at'")) {
+            if (!rs.next() || rs.getString(1).equals("NO")) return;
+        }
+        st.executeUpdate("UPDATE watchlist SET added_at = '1970-01-01 00:00:00' WHERE added_at IS NULL");
+        st.executeUpdate("ALTER TABLE watchlist MODIFY added_at DATETIME NOT NULL");
+    }
+
+    // MySQL has no CREATE INDEX IF NOT EXISTS, so treat "duplicate key name" as success.
+    static void ensureIndex(Statement st, String table, String name, String columns) throws SQLException {
+        try {
+            st.executeUpdate("CREATE INDEX " + name + " ON " + table + " (" + columns + ")");
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ER_DUP_KEYNAME) throw e;
+        }
+    }
+}
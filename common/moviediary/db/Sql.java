@@ -0,0 +1,91 @@
+package moviediary.db;
+
+/**
+ * The fixed set of statements the screens run. Each one is prepared at most
+ * once per pooled connection by {@link StatementCache} and reused after that.
+ */
+public enum Sql {
+    REGISTER_USER("INSERT INTO users(username, password) VALUES(?,?)"),
+    USER_CREDENTIAL("SELECT id, password FROM users WHERE username = ?"),
+    REPLACE_PASSWORD("UPDATE users SET password = ? WHERE id = ? AND password = ?"),
+    USER_ID_BY_NAME("SELECT id FROM users WHERE username = ?"),
+    INSERT_MOVIE("INSERT INTO movies(title, year, starring, description) VALUES(?,?,?,?)", true),
+    // Bulk loads skip generated keys so Connector/J can rewrite batches into multi-row INSERTs.
+    IMPORT_MOVIE("INSERT INTO movies(title, year, starring, description) VALUES(?,?,?,?)"),
+    MOVIE_TITLES_AND_YEARS("SELECT title, year FROM movies"),
+    MOVIES_BY_TITLE("SELECT id, title, year FROM movies ORDER BY title"),
+    MOVIES_BY_ID("SELECT id, title, year FROM movies ORDER BY id"),
+    COUNT_MOVIES("SELECT COUNT(*) FROM movies"),
+    MOVIES_AFTER_BY_TITLE("SELECT id, title, year FROM movies WHERE (title, id) > (?, ?) ORDER BY title, id LIMIT ?"),
+    MOVIES_AFTER_BY_ID("SELECT id, title, year FROM movies WHERE id > ? ORDER BY id LIMIT ?"),
+    MOVIES_BEFORE_BY_TITLE("SELECT id, title, year FROM movies WHERE (title, id) < (?, ?) ORDER BY title DESC, id DESC LIMIT ?"),
+    MOVIES_BEFORE_BY_ID("SELECT id, title, year FROM movies WHERE id < ? ORDER BY id DESC LIMIT ?"),
+    MOVIE_KEY_AT_BY_TITLE("SELECT id, title, NULL AS year FROM movies ORDER BY title, id LIMIT 1 OFFSET ?"),
+    MOVIE_KEY_AT_BY_ID("SELECT id, title, NULL AS year FROM movies ORDER BY id LIMIT 1 OFFSET ?"),
+    ALL_MOVIES("SELECT id, title, year, starring, description FROM movies ORDER BY id"),
+    MOVIE_BY_ID("SELECT id, title, year, starring, description FROM movies WHERE id = ?"),
+    MOVIE_STATS_BY_ID("SELECT review_count, rating_sum, rating_sum_sq, r1, r2, r3, r4, r5, r6, r7, r8, r9, r10 FROM movie_stats WHERE movie_id = ?"),
+    // Folds one new review into movie_stats: count, sum, sum of squares and the matching histogram bucket.
+    ADD_TO_MOVIE_STATS("INSERT INTO movie_stats(movie_id, review_count, rating_sum, rating_sum_sq, r1, r2, r3, r4, r5, r6, r7, r8, r9, r10) VALUES(?, 1, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE review_count = review_count + 1, rating_sum = rating_sum + VALUES(rating_sum), "
+            + "rating_sum_sq = rating_sum_sq + VALUES(rating_sum_sq), "
+            + "r1 = r1 + VALUES(r1), r2 = r2 + VALUES(r2), r3 = r3 + VALUES(r3), r4 = r4 + VALUES(r4), r5 = r5 + VALUES(r5), r6 = r6 + VALUES(r6), r7 = r7 + VALUES(r7), r8 = r8 + VALUES(r8), r9 = r9 + VALUES(r9), r10 = r10 + VALUES(r10)"),
+    MOVIE_ID_RANGE("SELECT COALESCE(MIN(id), 0), COALESCE(MAX(id), 0) FROM movies"),
+    DELETE_MOVIE_STATS_RANGE("DELETE FROM movie_stats WHERE movie_id BETWEEN ? AND ?"),
+    REBUILD_MOVIE_STATS_RANGE("INSERT INTO movie_stats(movie_id, review_count, rating_sum, rating_sum_sq, r1, r2, r3, r4, r5, r6, r7, r8, r9, r10) "
+            + "SELECT movie_id, COUNT(*), SUM(rating), SUM(rating * rating), "
+            + "SUM(rating = 1), SUM(rating = 2), SUM(rating = 3), SUM(rating = 4), SUM(rating = 5), SUM(rating = 6), SUM(rating = 7), SUM(rating = 8), SUM(rating = 9), SUM(rating = 10) "
+            + "FROM reviews WHERE movie_id BETWEEN ? AND ? GROUP BY movie_id"),
+    // LAST_INSERT_ID(id) makes getGeneratedKeys return the existing id when the name is already there.
+    UPSERT_PERSON("INSERT INTO people(name) VALUES(?) ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)", true),
+    INSERT_CAST("INSERT IGNORE INTO movie_cast(movie_id, person_id, position) VALUES(?,?,?)"),
+    CAST_OF_MOVIE("SELECT p.name FROM movie_cast c JOIN people p ON p.id = c.person_id WHERE c.movie_id = ? ORDER BY c.position"),
+    FILMOGRAPHY("SELECT m.id, m.title, m.year FROM people p JOIN movie_cast c ON c.person_id = p.id JOIN movies m ON m.id = c.movie_id WHERE p.name = ? ORDER BY m.year, m.title, m.id"),
+    PEOPLE_BY_PREFIX("SELECT name FROM people WHERE name LIKE ? ORDER BY name LIMIT ?"),
+    UNMIGRATED_CAST("SELECT m.id, m.starring FROM movies m WHERE m.id > ? AND m.starring IS NOT NULL AND m.starring <> '' "
+            + "AND NOT EXISTS (SELECT 1 FROM movie_cast c WHERE c.movie_id = m.id) ORDER BY m.id LIMIT ?"),
+    // The detail screen in one round trip: part 0 is the movie and its movie_stats row, part 1 the cast in billing
+    // order, part 2 the newest reviews. The branches share one column list; columns a part does not use are NULL.
+    MOVIE_DETAIL("SELECT 0 AS part, 0 AS pos, m.title AS s1, m.starring AS s2, m.description AS s3, m.year AS n1, "
+            + "s.review_count, s.rating_sum, s.rating_sum_sq, s.r1, s.r2, s.r3, s.r4, s.r5, s.r6, s.r7, s.r8, s.r9, s.r10, NULL AS created_at, 0 AS rid "
+            + "FROM movies m LEFT JOIN movie_stats s ON s.movie_id = m.id WHERE m.id = ? "
+            + "UNION ALL SELECT 1, c.position, p.name, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, 0 "
+            + "FROM movie_cast c JOIN people p ON p.id = c.person_id WHERE c.movie_id = ? "
+            + "UNION ALL (SELECT 2, 0, u.username, r.comment, NULL, r.rating, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL, r.created_at, r.id "
+            + "FROM reviews r JOIN users u ON u.id = r.user_id WHERE r.movie_id = ? ORDER BY r.created_at DESC, r.id DESC LIMIT ?) "
+            + "ORDER BY part, pos, created_at DESC, rid DESC"),
+    LATEST_REVIEWS("SELECT r.rating, r.comment, r.created_at, u.username FROM reviews r JOIN users u ON r.user_id = u.id WHERE r.movie_id = ? ORDER BY r.created_at DESC, r.id DESC LIMIT ?"),
+    INSERT_REVIEW("INSERT INTO reviews(movie_id, user_id, rating, comment, created_at) VALUES(?,?,?,?,?)", true),
+    ALL_REVIEW_RATINGS("SELECT id, movie_id, user_id, rating, created_at FROM reviews ORDER BY id"),
+    REVIEWS_SINCE("SELECT id, movie_id, user_id, rating, created_at FROM reviews WHERE created_at >= ? ORDER BY created_at, id"),
+    RATING_TOTALS("SELECT movie_id, review_count, rating_sum FROM movie_stats"),
+    INSERT_WATCHLIST("INSERT IGNORE INTO watchlist(user_id, movie_id, added_at) VALUES(?,?,?)"),
+    WATCHLIST_BY_USER("SELECT w.id, w.movie_id, m.title, w.added_at FROM watchlist w JOIN movies m ON w.movie_id = m.id WHERE w.user_id = ? ORDER BY w.added_at DESC, w.id DESC"),
+    WATCHLIST_FIRST_PAGE("SELECT w.id, w.movie_id, m.title, w.added_at FROM watchlist w JOIN movies m ON w.movie_id = m.id WHERE w.user_id = ? ORDER BY w.added_at DESC, w.id DESC LIMIT ?"),
+    WATCHLIST_OLDER_THAN("SELECT w.id, w.movie_id, m.title, w.added_at FROM watchlist w JOIN movies m ON w.movie_id = m.id WHERE w.user_id = ? AND (w.added_at, w.id) < (?, ?) ORDER BY w.added_at DESC, w.id DESC LIMIT ?"),
+    ALL_WATCHLIST_ENTRIES("SELECT user_id, movie_id, added_at FROM watchlist ORDER BY id"),
+    WATCHLIST_COUNTS("SELECT movie_id, COUNT(*) AS saves FROM watchlist GROUP BY movie_id"),
+    WATCHLIST_NEWER_THAN("SELECT w.id, w.movie_id, m.title, w.added_at FROM watchlist w JOIN movies m ON w.movie_id = m.id WHERE w.user_id = ? AND (w.added_at, w.id) > (?, ?) ORDER BY w.added_at, w.id LIMIT ?"),
+    // Write-behind: journal sequence numbers already applied, updated in each batch transaction.
+    WRITE_BEHIND_APPLIED("SELECT applied_seq FROM write_behind_checkpoints WHERE journal = ?"),
+    SAVE_WRITE_BEHIND_APPLIED("INSERT INTO write_behind_checkpoints(journal, applied_seq) VALUES(?, ?) "
+            + "ON DUPLICATE KEY UPDATE applied_seq = GREATEST(applied_seq, VALUES(applied_seq))"),
+    // Columnar export: whole tables in id order, streamed.
+    EXPORT_MOVIES("SELECT id, title, year, starring, description FROM movies ORDER BY id"),
+    EXPORT_REVIEWS("SELECT r.id, r.movie_id, r.user_id, u.username, m.title, r.rating, r.comment, r.created_at FROM reviews r JOIN users u ON u.id = r.user_id JOIN movies m ON m.id = r.movie_id ORDER BY r.id"),
+    EXPORT_WATCHLIST("SELECT w.id, w.user_id, u.username, w.movie_id, m.title, w.added_at FROM watchlist w JOIN users u ON u.id = w.user_id JOIN movies m ON m.id = w.movie_id ORDER BY w.id");
+
+    final String text;
+    final boolean returnsKeys;
+
+    Sql(String text) {
+        this(text, false);
+    }
+
+    Sql(String text, boolean returnsKeys) {
+        this.text = text;
+        this.returnsKeys = returnsKeys;
+    }
+
+    public String text() { return text; }
+}
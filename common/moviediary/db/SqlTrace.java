@@ -0,0 +1,52 @@
+package moviediary.db;
+
+import java.util.StringJoiner;
+
+/**
+ * Remembers which statements the current thread prepared between {@link
+ * #begin} and {@link #end}, so a slow operation can be reported with its SQL.
+ * Statements come from {@link PooledConnection#prepare}; outside a trace that
+ * costs one thread-local read.
+ *
+ * Traces do not nest: beginning one on a thread that already has one starts
+ * it over.
+ */
+public final class SqlTrace {
+    private static final int MAX_STATEMENTS = 8;
+    private static final ThreadLocal<SqlTrace> CURRENT = ThreadLocal.withInitial(SqlTrace::new);
+
+    private final Sql[] seen = new Sql[MAX_STATEMENTS];
+    private int count;
+    private boolean active;
+
+    private SqlTrace() {}
+
+    public static void begin() {
+        SqlTrace trace = CURRENT.get();
+        trace.count = 0;
+        trace.active = true;
+    }
+
+    static void note(Sql sql) {
+        SqlTrace trace = CURRENT.get();
+        if (!trace.active) return;
+        for (int i = 0; i < trace.count; i++) {
+            if (trace.seen[i] == sql) return;
+        }
+        if (trace.count < MAX_STATEMENTS) trace.seen[trace.count++] = sql;
+    }
+
+    /** Stops recording and returns this thread's trace, which is reused by its next {@link #begin}. */
+    public static SqlTrace end() {
+        SqlTrace trace = CURRENT.get();
+        trace.active = false;
+        return trace;
+    }
+
+    /** The distinct statements seen, in first-use order, or an empty string when none were. */
+    public String text() {
+        StringJoiner joined = new StringJoiner("; ");
+        for (int i = 0; i < count; i++) joined.add(seen[i].text);
+        return joined.toString();
+    }
+}
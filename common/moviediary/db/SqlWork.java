@@ -0,0 +1,9 @@
+package moviediary.db;
+
+import java.sql.SQLException;
+
+// A unit of JDBC work run against a borrowed connection.
+@FunctionalInterface
+public interface SqlWork<T> {
+    T run(PooledConnection pc) throws SQLException;
+}
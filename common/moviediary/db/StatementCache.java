@@ -0,0 +1,52 @@
+package moviediary.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-connection registry of prepared {@link Sql} statements. A statement is
+ * prepared the first time it is asked for and handed out again (with its
+ * parameters cleared) on every later call, so the hot paths skip the parse
+ * round trip. Statements live as long as the physical connection; callers
+ * must close their ResultSets but never the statement itself.
+ *
+ * Not thread-safe: a pooled connection is only ever used by its borrower.
+ */
+final class StatementCache {
+    private final Connection conn;
+    private final PreparedStatement[] statements = new PreparedStatement[Sql.values().length];
+    private final LongAdder prepares;
+    private final LongAdder hits;
+
+    StatementCache(Connection conn, LongAdder prepares, LongAdder hits) {
+        this.conn = conn;
+        this.prepares = prepares;
+        this.hits = hits;
+    }
+
+    PreparedStatement get(Sql sql) throws SQLException {
+        PreparedStatement ps = statements[sql.ordinal()];
+        if (ps != null && !ps.isClosed()) {
+            hits.increment();
+            ps.clearParameters();
+            return ps;
+        }
+        ps = sql.returnsKeys
+                ? conn.prepareStatement(sql.text, Statement.RETURN_GENERATED_KEYS)
+                : conn.prepareStatement(sql.text);
+        prepares.increment();
+        statements[sql.ordinal()] = ps;
+        return ps;
+    }
+
+    void closeAll() {
+        for (int i = 0; i < statements.length; i++) {
+            if (statements[i] == null) continue;
+            try { statements[i].close(); } catch (SQLException ignored) {}
+            statements[i] = null;
+        }
+    }
+}
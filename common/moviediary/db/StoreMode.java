@@ -0,0 +1,38 @@
+package moviediary.db;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import moviediary.embedded.EmbeddedStore;
+import moviediary.mapped.MappedStore;
+
+/**
+ * Which {@link MovieStore} a front-end opens, from
+ * {@code -Dmoviediary.store=mysql|embedded|mapped} (default mysql).
+ */
+public enum StoreMode {
+    /** {@link MovieDao} over a {@link ConnectionPool}. */
+    MYSQL,
+    /** {@link EmbeddedStore}: heap tables plus a journal, no server needed. */
+    EMBEDDED,
+    /** {@link MappedStore}: memory-mapped log and index files, no server needed. */
+    MAPPED;
+
+    public static StoreMode current() {
+        String value = System.getProperty("moviediary.store", "mysql").trim().toUpperCase(Locale.ROOT);
+        try {
+            return valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown moviediary.store '" + value.toLowerCase(Locale.ROOT)
+                    + "', expected mysql, embedded or mapped");
+        }
+    }
+
+    /** Opens this mode's in-process store in its default directory. MySQL needs a pool and is opened by the caller. */
+    public MovieStore openLocal() throws SQLException {
+        return switch (this) {
+            case EMBEDDED -> EmbeddedStore.open(EmbeddedStore.defaultDirectory());
+            case MAPPED -> MappedStore.open(MappedStore.defaultDirectory());
+            case MYSQL -> throw new IllegalStateException("The MySQL store is opened from a ConnectionPool");
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package moviediary.detail;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieStore;
+import moviediary.model.MovieDetail;
+
+/**
+ * Loads {@link MovieDetail}s for the console, both Swing frames and the HTTP
+ * API, and keeps the most recently opened ones. A popular movie opened over
+ * and over costs one {@link MovieStore#movieDetail} round trip per
+ * {@code ttl} instead of one per click.
+ *
+ * Register the loader as a {@link CatalogListener} on the store: a new
+ * review drops that movie's entry, so the author sees it the next time the
+ * movie is opened. Reviews written by other processes are picked up when the
+ * entry expires, after {@code -Dmoviediary.detail.ttlSeconds} (default 30).
+ * A load that was running while its movie was invalidated is not cached;
+ * loads of other movies are.
+ *
+ * Each front-end has one loader for the process and hands it to
+ * {@link moviediary.metrics.MetricsRegistry#watchDetailLoader} for its hit
+ * and miss gauges.
+ */
+public final class DetailLoader implements CatalogListener {
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("moviediary.detail.cacheSize", 1024);
+    public static final long DEFAULT_TTL_SECONDS = Long.getLong("moviediary.detail.ttlSeconds", 30);
+
+    private record Entry(MovieDetail detail, long loadedAtNanos) {}
+
+    private final MovieStore store;
+    private final int capacity;
+    private final long ttlNanos;
+    private final LinkedHashMap<Integer, Entry> entries;
+    // Per movie, bumped by each invalidation; a load only caches its result if its movie's epoch did not move meanwhile.
+    private final ConcurrentHashMap<Integer, Long> epochs = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DetailLoader(MovieStore store) {
+        this(store, DEFAULT_CAPACITY, TimeUnit.SECONDS.toNanos(DEFAULT_TTL_SECONDS));
+    }
+
+    public DetailLoader(MovieStore store, int capacity, long ttlNanos) {
+        this.store = store;
+        this.capacity = capacity;
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<>(Math.max(16, capacity / 4), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > DetailLoader.this.capacity;
+            }
+        };
+    }
+
+    /** The movie's detail, or null when no movie has that id. */
+    public MovieDetail load(int movieId) throws SQLException {
+        long now = System.nanoTime();
+        synchronized (this) {
+            Entry e = entries.get(movieId);
+            if (e != null && now - e.loadedAtNanos() < ttlNanos) {
+                hits.increment();
+                return e.detail();
+            }
+        }
+        misses.increment();
+        long seen = epochs.getOrDefault(movieId, 0L);
+        MovieDetail detail = store.movieDetail(movieId);
+        if (detail == null || capacity <= 0) return detail;
+        synchronized (this) {
+            if (epochs.getOrDefault(movieId, 0L) == seen) entries.put(movieId, new Entry(detail, now));
+        }
+        return detail;
+    }
+
+    public synchronized void invalidate(int movieId) {
+        epochs.merge(movieId, 1L, Long::sum);
+        entries.remove(movieId);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** Loads answered from the cache. */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /** Loads that went to the store. */
+    public long misses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void reviewAdded(int reviewId, int movieId, int userId, int rating, Timestamp createdAt) {
+        invalidate(movieId);
+    }
+}
@@ -0,0 +1,698 @@
+package moviediary.embedded;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStore;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.ReviewEntry;
+import moviediary.model.UserCredential;
+import moviediary.model.WatchlistEntry;
+
+/**
+ * In-process {@link MovieStore}: the tables from the front-ends' setupDB()
+ * (users, movies, reviews, watchlist, plus the derived movie_stats, people
+ * and movie_cast) held in heap structures behind one read-write lock, with
+ * every insert written to a {@link Journal} first. Opening the store replays
+ * the journal, so data survives restarts without a database server.
+ *
+ * The schema's rules carry over: unique usernames (case-insensitive, like
+ * MySQL's default collation), the VARCHAR lengths, ratings 1 to 10, foreign
+ * keys from reviews and watchlist entries, and one watchlist row per user and
+ * movie. Violations raise the same SQLExceptions MySQL would.
+ *
+ * Reads are map and array lookups with no I/O, which makes this the backend
+ * for single-user desktop runs ({@code -Dmoviediary.store=embedded}) and for
+ * benchmarks and load tests that must not depend on a server.
+ * {@link #inMemory()} skips the journal altogether.
+ */
+public final class EmbeddedStore implements MovieStore {
+    public static final String JOURNAL_FILE = "moviediary.journal";
+
+    // Column limits from setupDB().
+    private static final int MAX_USERNAME = 50;
+    private static final int MAX_PASSWORD = 100;
+    private static final int MAX_TITLE = 200;
+    private static final int MAX_STARRING = 300;
+
+    private static final byte USER = 1;
+    private static final byte MOVIE = 2;
+    private static final byte REVIEW = 3;
+    private static final byte WATCH = 4;
+
+    // MySQL compares titles case-insensitively; id breaks ties like the (title, id) index.
+    private static final Comparator<MovieSummary> BY_TITLE = Comparator
+            .comparing((MovieSummary m) -> m.title() == null ? "" : m.title(), String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(MovieSummary::id);
+    // ORDER BY m.year, m.title, m.id with MySQL's NULLs-first.
+    private static final Comparator<MovieSummary> BY_YEAR = Comparator
+            .comparing(MovieSummary::year, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()))
+            .thenComparing(BY_TITLE);
+
+    private record User(int id, String username, String password) {}
+
+    private record Review(int id, int userId, int rating, String comment, long createdAt) {}
+
+    private record Watch(int id, int movieId, long addedAt) {}
+
+    private static final class Movie {
+        final MovieRecord record;
+        final MovieSummary summary;
+        final List<Person> cast = new ArrayList<>(4);
+        // Ordered by (created_at, id).
+        final List<Review> reviews = new ArrayList<>(0);
+        int count;
+        long sum;
+        long sumOfSquares;
+        final int[] histogram = new int[RatingStats.MAX_RATING];
+
+        Movie(MovieRecord record) {
+            this.record = record;
+            this.summary = new MovieSummary(record.id(), record.title(), record.year());
+        }
+    }
+
+    private static final class Person {
+        final String name;
+        final List<Integer> movies = new ArrayList<>(2);
+
+        Person(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Watchlist {
+        // Ordered by (added_at, id); pages are read from the end.
+        final List<Watch> entries = new ArrayList<>();
+        final Set<Integer> movies = new HashSet<>();
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private final Journal journal;
+
+    // Index i holds id i + 1; ids are handed out here, so they are dense.
+    private final List<User> users = new ArrayList<>();
+    private final Map<String, User> usersByName = new HashMap<>();
+    private final List<Movie> movies = new ArrayList<>();
+    private final List<MovieSummary> byTitle = new ArrayList<>();
+    private final TreeMap<String, Person> people = new TreeMap<>();
+    private final Map<Integer, Watchlist> watchlists = new HashMap<>();
+    private int lastReviewId;
+    private int lastWatchId;
+
+    private EmbeddedStore(Path dir, boolean fsync) throws IOException {
+        if (dir == null) {
+            journal = null;
+        } else {
+            Files.createDirectories(dir);
+            journal = Journal.open(dir.resolve(JOURNAL_FILE), fsync, this::replay);
+        }
+    }
+
+    /** Opens the store kept in {@code dir}, creating it if needed. Only one process may have it open. */
+    public static EmbeddedStore open(Path dir) throws SQLException {
+        try {
+            return new EmbeddedStore(dir, Boolean.getBoolean("moviediary.embedded.fsync"));
+        } catch (IOException e) {
+            throw new SQLException("Cannot open embedded store in " + dir + ": " + e.getMessage(), "08001", e);
+        }
+    }
+
+    /** A store that lives only as long as the JVM. */
+    public static EmbeddedStore inMemory() {
+        try {
+            return new EmbeddedStore(null, false);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // no file is touched
+        }
+    }
+
+    /** {@code -Dmoviediary.embedded.dir}, or {@code moviediary-data} in the working directory. */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("moviediary.embedded.dir", "moviediary-data"));
+    }
+
+    @Override
+    public void addListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    // ---------- USERS ----------
+    @Override
+    public void register(String username, String passwordHash) throws SQLException {
+        if (username == null || passwordHash == null) {
+            throw new SQLIntegrityConstraintViolationException(
+                    "Column '" + (username == null ? "username" : "password") + "' cannot be null", "23000", 1048);
+        }
+        checkLength("username", username, MAX_USERNAME);
+        checkLength("password", passwordHash, MAX_PASSWORD);
+        lock.writeLock().lock();
+        try {
+            if (usersByName.containsKey(nameKey(username))) {
+                throw new SQLIntegrityConstraintViolationException(
+                        "Duplicate entry '" + username + "' for key 'users.username'", "23000", 1062);
+            }
+            int id = users.size() + 1;
+            log(USER, out -> {
+                out.writeInt(id);
+                Journal.writeString(out, username);
+                Journal.writeString(out, passwordHash);
+            });
+            applyUser(id, username, passwordHash);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public UserCredential credentialOf(String username) {
+        lock.readLock().lock();
+        try {
+            User u = username == null ? null : usersByName.get(nameKey(username));
+            return u == null ? null : new UserCredential(u.id(), u.password());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Logged as a fresh USER record for the same id; replaying it replaces the earlier one.
+    @Override
+    public boolean replacePassword(int userId, String expected, String replacement) throws SQLException {
+        checkLength("password", replacement, MAX_PASSWORD);
+        lock.writeLock().lock();
+        try {
+            if (userId < 1 || userId > users.size()) return false;
+            User u = users.get(userId - 1);
+            if (!u.password().equals(expected)) return false;
+            log(USER, out -> {
+                out.writeInt(userId);
+                Journal.writeString(out, u.username());
+                Journal.writeString(out, replacement);
+            });
+            applyUser(userId, u.username(), replacement);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Integer findUserId(String username) {
+        lock.readLock().lock();
+        try {
+            User u = username == null ? null : usersByName.get(nameKey(username));
+            return u == null ? null : u.id();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- MOVIES ----------
+    @Override
+    public int addMovie(String title, Integer year, String starring, String description) throws SQLException {
+        checkLength("title", title, MAX_TITLE);
+        checkLength("starring", starring, MAX_STARRING);
+        MovieRecord movie;
+        lock.writeLock().lock();
+        try {
+            movie = new MovieRecord(movies.size() + 1, title, year, starring, description);
+            log(MOVIE, out -> {
+                out.writeInt(movie.id());
+                Journal.writeString(out, title);
+                Journal.writeNullableInt(out, year);
+                Journal.writeString(out, starring);
+                Journal.writeString(out, description);
+            });
+            applyMovie(movie);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (CatalogListener l : listeners) l.movieAdded(movie);
+        return movie.id();
+    }
+
+    @Override
+    public List<MovieSummary> listMovies(MovieOrder order) {
+        lock.readLock().lock();
+        try {
+            if (order != MovieOrder.ID) return new ArrayList<>(byTitle);
+            List<MovieSummary> all = new ArrayList<>(movies.size());
+            for (Movie m : movies) all.add(m.summary);
+            return all;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countMovies() {
+        lock.readLock().lock();
+        try {
+            return movies.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MovieSummary> moviesAfter(MovieOrder order, MovieSummary after, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = after == null ? 0 : positionAfter(order, after);
+            return page(order, from, Math.min(size(order), from + limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MovieSummary> moviesBefore(MovieOrder order, MovieSummary before, int limit) {
+        lock.readLock().lock();
+        try {
+            int to = positionBefore(order, before);
+            return page(order, Math.max(0, to - limit), to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public MovieSummary movieAt(MovieOrder order, int position) {
+        lock.readLock().lock();
+        try {
+            if (position < 0 || position >= size(order)) return null;
+            return order == MovieOrder.ID ? movies.get(position).summary : byTitle.get(position);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachMovie(Consumer<MovieRecord> sink) {
+        // Snapshot under the lock, feed the sink outside it so a slow consumer does not block writers.
+        List<MovieRecord> snapshot;
+        lock.readLock().lock();
+        try {
+            snapshot = new ArrayList<>(movies.size());
+            for (Movie m : movies) snapshot.add(m.record);
+        } finally {
+            lock.readLock().unlock();
+        }
+        snapshot.forEach(sink);
+    }
+
+    @Override
+    public MovieRecord findMovie(int movieId) {
+        lock.readLock().lock();
+        try {
+            Movie m = movie(movieId);
+            return m == null ? null : m.record;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- CAST ----------
+    @Override
+    public List<String> castOf(int movieId) {
+        lock.readLock().lock();
+        try {
+            Movie m = movie(movieId);
+            List<String> names = new ArrayList<>();
+            if (m != null) for (Person p : m.cast) names.add(p.name);
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MovieSummary> filmography(String name) {
+        lock.readLock().lock();
+        try {
+            Person p = people.get(nameKey(name.trim()));
+            List<MovieSummary> result = new ArrayList<>();
+            if (p == null) return result;
+            for (int id : p.movies) result.add(movies.get(id - 1).summary);
+            result.sort(BY_YEAR);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> peopleStartingWith(String prefix, int limit) {
+        String from = nameKey(prefix.trim());
+        lock.readLock().lock();
+        try {
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<String, Person> e : people.tailMap(from, true).entrySet()) {
+                if (names.size() == limit || !e.getKey().startsWith(from)) break;
+                names.add(e.getValue().name);
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- REVIEWS ----------
+    @Override
+    public RatingStats ratingStats(int movieId) {
+        lock.readLock().lock();
+        try {
+            Movie m = movie(movieId);
+            if (m == null || m.count == 0) return RatingStats.empty();
+            return new RatingStats(m.count, m.sum, m.sumOfSquares, m.histogram.clone());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ReviewEntry> latestReviews(int movieId) {
+        lock.readLock().lock();
+        try {
+            Movie m = movie(movieId);
+            List<ReviewEntry> latest = new ArrayList<>(MovieDao.LATEST_REVIEW_LIMIT);
+            if (m == null) return latest;
+            for (int i = m.reviews.size() - 1; i >= 0 && latest.size() < MovieDao.LATEST_REVIEW_LIMIT; i--) {
+                Review r = m.reviews.get(i);
+                latest.add(new ReviewEntry(users.get(r.userId() - 1).username(), r.rating(), r.comment(),
+                        new Timestamp(r.createdAt())));
+            }
+            return latest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addReview(int movieId, int userId, int rating, String comment) throws SQLException {
+        if (rating < 1 || rating > RatingStats.MAX_RATING) {
+            throw new SQLException("Check constraint 'reviews_chk_1' is violated.", "HY000", 3819);
+        }
+        long now = System.currentTimeMillis();
+        int reviewId;
+        lock.writeLock().lock();
+        try {
+            checkForeignKeys(movieId, userId);
+            int id = lastReviewId + 1;
+            log(REVIEW, out -> {
+                out.writeInt(id);
+                out.writeInt(movieId);
+                out.writeInt(userId);
+                out.writeByte(rating);
+                Journal.writeString(out, comment);
+                out.writeLong(now);
+            });
+            applyReview(movieId, new Review(id, userId, rating, comment, now));
+            reviewId = id;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Timestamp createdAt = new Timestamp(now);
+        for (CatalogListener l : listeners) l.reviewAdded(reviewId, movieId, userId, rating, createdAt);
+    }
+
+    @Override
+    public void forEachReview(ReviewRow sink) {
+        // Review ids are dense, so the snapshot is indexed by id - 1.
+        int[] movieIds;
+        int[] userIds;
+        byte[] ratings;
+        long[] createdAt;
+        lock.readLock().lock();
+        try {
+            movieIds = new int[lastReviewId];
+            userIds = new int[lastReviewId];
+            ratings = new byte[lastReviewId];
+            createdAt = new long[lastReviewId];
+            for (Movie m : movies) {
+                for (Review r : m.reviews) {
+                    int i = r.id() - 1;
+                    movieIds[i] = m.record.id();
+                    userIds[i] = r.userId();
+                    ratings[i] = (byte) r.rating();
+                    createdAt[i] = r.createdAt();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < movieIds.length; i++) {
+            if (movieIds[i] != 0) sink.accept(i + 1, movieIds[i], userIds[i], ratings[i], createdAt[i]);
+        }
+    }
+
+    // ---------- WATCHLIST ----------
+    @Override
+    public boolean addToWatchlist(int userId, int movieId) throws SQLException {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            checkForeignKeys(movieId, userId);
+            Watchlist list = watchlists.get(userId);
+            if (list != null && list.movies.contains(movieId)) return false; // INSERT IGNORE on UNIQUE(user_id, movie_id)
+            int id = lastWatchId + 1;
+            log(WATCH, out -> {
+                out.writeInt(id);
+                out.writeInt(userId);
+                out.writeInt(movieId);
+                out.writeLong(now);
+            });
+            applyWatch(userId, new Watch(id, movieId, now));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Timestamp addedAt = new Timestamp(now);
+        for (CatalogListener l : listeners) l.watchlistAdded(userId, movieId, addedAt);
+        return true;
+    }
+
+    @Override
+    public void forEachWatchlistEntry(WatchlistRow sink) {
+        long[][] rows; // {id, userId, movieId, addedAt}
+        lock.readLock().lock();
+        try {
+            rows = new long[lastWatchId][];
+            for (Map.Entry<Integer, Watchlist> e : watchlists.entrySet()) {
+                for (Watch w : e.getValue().entries) rows[w.id() - 1] = new long[] {w.id(), e.getKey(), w.movieId(), w.addedAt()};
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (long[] r : rows) {
+            if (r != null) sink.accept((int) r[1], (int) r[2], r[3]);
+        }
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlist(int userId) {
+        return watchlistAfter(userId, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistAfter(int userId, WatchlistEntry after, int limit) {
+        lock.readLock().lock();
+        try {
+            Watchlist list = watchlists.get(userId);
+            if (list == null) return new ArrayList<>();
+            int end = after == null ? list.entries.size() : insertionPoint(list, after);
+            List<WatchlistEntry> page = new ArrayList<>(Math.min(limit, end));
+            for (int i = end - 1; i >= 0 && page.size() < limit; i--) page.add(entry(list.entries.get(i)));
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistBefore(int userId, WatchlistEntry before, int limit) {
+        lock.readLock().lock();
+        try {
+            Watchlist list = watchlists.get(userId);
+            if (list == null) return new ArrayList<>();
+            int from = insertionPoint(list, before);
+            if (from < list.entries.size() && sameKey(list.entries.get(from), before)) from++;
+            int to = (int) Math.min(list.entries.size(), (long) from + limit);
+            List<WatchlistEntry> page = new ArrayList<>(to - from);
+            for (int i = to - 1; i >= from; i--) page.add(entry(list.entries.get(i)));
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new SQLException("Closing embedded store failed: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------- APPLYING CHANGES (live and replayed) ----------
+    private void applyUser(int id, String username, String password) {
+        User u = new User(id, username, password);
+        if (id <= users.size()) users.set(id - 1, u);
+        else users.add(u);
+        usersByName.put(nameKey(username), u);
+    }
+
+    private void applyMovie(MovieRecord record) {
+        Movie m = new Movie(record);
+        movies.add(m);
+        int at = Collections.binarySearch(byTitle, m.summary, BY_TITLE);
+        byTitle.add(at < 0 ? -at - 1 : at, m.summary);
+        for (String name : MovieDao.parseCast(record.starring())) {
+            Person p = people.computeIfAbsent(nameKey(name), k -> new Person(name));
+            p.movies.add(record.id());
+            m.cast.add(p);
+        }
+    }
+
+    private void applyReview(int movieId, Review r) {
+        Movie m = movies.get(movieId - 1);
+        int at = m.reviews.size();
+        while (at > 0 && m.reviews.get(at - 1).createdAt() > r.createdAt()) at--; // clock went backwards
+        m.reviews.add(at, r);
+        m.count++;
+        m.sum += r.rating();
+        m.sumOfSquares += (long) r.rating() * r.rating();
+        m.histogram[r.rating() - 1]++;
+        lastReviewId = Math.max(lastReviewId, r.id());
+    }
+
+    private void applyWatch(int userId, Watch w) {
+        Watchlist list = watchlists.computeIfAbsent(userId, k -> new Watchlist());
+        int at = list.entries.size();
+        while (at > 0 && list.entries.get(at - 1).addedAt() > w.addedAt()) at--;
+        list.entries.add(at, w);
+        list.movies.add(w.movieId());
+        lastWatchId = Math.max(lastWatchId, w.id());
+    }
+
+    private void replay(byte type, DataInputStream in) throws IOException {
+        switch (type) {
+            case USER -> applyUser(in.readInt(), Journal.readString(in), Journal.readString(in));
+            case MOVIE -> applyMovie(new MovieRecord(in.readInt(), Journal.readString(in), Journal.readNullableInt(in),
+                    Journal.readString(in), Journal.readString(in)));
+            case REVIEW -> {
+                int id = in.readInt();
+                int movieId = in.readInt();
+                applyReview(movieId, new Review(id, in.readInt(), in.readByte(), Journal.readString(in), in.readLong()));
+            }
+            case WATCH -> {
+                int id = in.readInt();
+                int userId = in.readInt();
+                applyWatch(userId, new Watch(id, in.readInt(), in.readLong()));
+            }
+            default -> throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private void log(byte type, Journal.Payload payload) throws SQLException {
+        if (journal == null) return;
+        try {
+            journal.append(type, payload);
+        } catch (IOException e) {
+            throw new SQLException("Journal write failed: " + e.getMessage(), "58030", e);
+        }
+    }
+
+    // ---------- HELPERS ----------
+    private Movie movie(int id) {
+        return id >= 1 && id <= movies.size() ? movies.get(id - 1) : null;
+    }
+
+    private int size(MovieOrder order) {
+        return order == MovieOrder.ID ? movies.size() : byTitle.size();
+    }
+
+    private List<MovieSummary> page(MovieOrder order, int from, int to) {
+        List<MovieSummary> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) page.add(order == MovieOrder.ID ? movies.get(i).summary : byTitle.get(i));
+        return page;
+    }
+
+    // Position of the first movie sorting strictly after `key`.
+    private int positionAfter(MovieOrder order, MovieSummary key) {
+        if (order == MovieOrder.ID) return Math.max(0, Math.min(movies.size(), key.id()));
+        int at = Collections.binarySearch(byTitle, key, BY_TITLE);
+        return at >= 0 ? at + 1 : -at - 1;
+    }
+
+    // Position just past the last movie sorting strictly before `key`.
+    private int positionBefore(MovieOrder order, MovieSummary key) {
+        if (order == MovieOrder.ID) return Math.max(0, Math.min(movies.size(), key.id() - 1));
+        int at = Collections.binarySearch(byTitle, key, BY_TITLE);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    // First entry not older than `key` in (added_at, id) order.
+    private static int insertionPoint(Watchlist list, WatchlistEntry key) {
+        long time = key.addedAt().getTime();
+        int lo = 0;
+        int hi = list.entries.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Watch w = list.entries.get(mid);
+            if (w.addedAt() < time || (w.addedAt() == time && w.id() < key.id())) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static boolean sameKey(Watch w, WatchlistEntry key) {
+        return w.id() == key.id() && w.addedAt() == key.addedAt().getTime();
+    }
+
+    private WatchlistEntry entry(Watch w) {
+        return new WatchlistEntry(w.id(), w.movieId(), movies.get(w.movieId() - 1).record.title(), new Timestamp(w.addedAt()));
+    }
+
+    private void checkForeignKeys(int movieId, int userId) throws SQLIntegrityConstraintViolationException {
+        if (movie(movieId) == null || userId < 1 || userId > users.size()) {
+            throw new SQLIntegrityConstraintViolationException(
+                    "Cannot add or update a child row: a foreign key constraint fails", "23000", 1452);
+        }
+    }
+
+    private static void checkLength(String column, String value, int max) throws SQLException {
+        if (value != null && value.length() > max) {
+            throw new SQLException("Data too long for column '" + column + "' at row 1", "22001", 1406);
+        }
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,169 @@
+package moviediary.embedded;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only redo log behind {@link EmbeddedStore}. Every insert is one
+ * record: {@code length:int crc32:int type:byte payload}. Opening the journal
+ * replays it in order; a torn or corrupt record at the tail (the process died
+ * mid-write) is cut off and the journal continues from the last good record.
+ *
+ * Records reach the OS on every append, so a crashed JVM loses nothing. With
+ * {@code fsync} they are also forced to disk, which survives power loss at
+ * the price of a disk flush per write.
+ */
+final class Journal implements Closeable {
+    // Guards against reading garbage lengths as huge allocations during replay.
+    private static final int MAX_RECORD = 1 << 24;
+
+    @FunctionalInterface
+    interface Replayer {
+        void apply(byte type, DataInputStream in) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final boolean fsync;
+    private final CRC32 crc = new CRC32();
+    // Set when a failed append could not be cut back off; nothing may be written after it.
+    private IOException failed;
+
+    private Journal(FileChannel channel, FileLock lock, boolean fsync) {
+        this.channel = channel;
+        this.lock = lock;
+        this.fsync = fsync;
+    }
+
+    /** Opens (or creates) the journal, replays every intact record into {@code replayer} and returns it ready for appends. */
+    static Journal open(Path file, boolean fsync, Replayer replayer) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) throw new IOException(file + " is in use by another process");
+            long good = replay(channel, replayer);
+            if (good < channel.size()) {
+                System.err.println("Journal " + file + ": dropping " + (channel.size() - good) + " bytes of incomplete tail");
+                channel.truncate(good);
+                channel.force(true);
+            }
+            channel.position(good);
+            return new Journal(channel, lock, fsync);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Returns the offset just past the last intact record.
+    private static long replay(FileChannel channel, Replayer replayer) throws IOException {
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        CRC32 crc = new CRC32();
+        long good = 0;
+        while (true) {
+            int length;
+            int checksum;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length < 1 || length > MAX_RECORD) return good;
+                payload = in.readNBytes(length);
+            } catch (EOFException e) {
+                return good;
+            }
+            if (payload.length != length) return good;
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) return good;
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload, 1, length - 1));
+            replayer.apply(payload[0], record);
+            good += 8 + length;
+        }
+    }
+
+    synchronized void append(byte type, Payload payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        bytes.write(new byte[8], 0, 8); // header, filled in below
+        bytes.write(type);
+        payload.write(new DataOutputStream(bytes));
+        byte[] record = bytes.toByteArray();
+        int length = record.length - 8;
+        crc.reset();
+        crc.update(record, 8, length);
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        buf.putInt(0, length).putInt(4, (int) crc.getValue());
+        if (failed != null) throw new IOException("journal is unusable after an earlier write failure", failed);
+        long start = channel.position();
+        try {
+            while (buf.hasRemaining()) channel.write(buf);
+            if (fsync) channel.force(false);
+        } catch (IOException e) {
+            // a torn record here would make the next open drop every record after it
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+                failed = e;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ---------- FIELD CODECS ----------
+    // Nullable strings of any length (DataOutput.writeUTF stops at 64 KB).
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    static void writeNullableInt(DataOutputStream out, Integer v) throws IOException {
+        out.writeBoolean(v != null);
+        if (v != null) out.writeInt(v);
+    }
+
+    static Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
@@ -0,0 +1,19 @@
+package moviediary.export;
+
+/**
+ * Encoding of one column in a columnar export. Every value is a
+ * variable-length integer (7 bits per byte) unless noted; 0 marks NULL in the
+ * nullable types, so stored values are shifted up by one.
+ */
+public enum ColumnType {
+    /** Non-null, mostly increasing ids: zigzag delta from the previous row of the block. */
+    ID_DELTA,
+    /** Nullable int: zigzag(value) + 1. */
+    INT,
+    /** Nullable epoch millis: zigzag delta from the previous non-null value of the block, + 1. */
+    TIMESTAMP,
+    /** Nullable low-cardinality string: block dictionary, then one code + 1 per row. */
+    DICT,
+    /** Nullable free text: UTF-8 length + 1, then the bytes. */
+    TEXT
+}
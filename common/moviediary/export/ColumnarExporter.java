@@ -0,0 +1,123 @@
+package moviediary.export;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import moviediary.db.ConnectionPool;
+import moviediary.db.DbConfig;
+import moviediary.db.PooledConnection;
+import moviediary.db.Sql;
+import moviediary.export.ColumnarWriter.Column;
+
+/**
+ * Dumps movies, reviews and watchlist entries to one columnar file (see
+ * {@link ColumnarWriter} for the layout and {@link ColumnarReader} to load it
+ * back). Rows are streamed from MySQL and written a block at a time, so the
+ * export runs in constant memory whatever the size of the tables. All three
+ * are read in one read-only REPEATABLE READ transaction started with a
+ * consistent snapshot, so reviews and watchlist entries added during a long
+ * export do not show up for some tables and not others. The file only appears
+ * once every table is written (see {@link ColumnarWriter#commit}).
+ *
+ * Reviews and watchlist rows carry the username and movie title alongside
+ * the ids; both are dictionary-encoded, so the repetition costs little and
+ * analysis jobs do not have to join.
+ *
+ * <pre>java moviediary.export.ColumnarExporter out.mdc</pre>
+ */
+public class ColumnarExporter {
+    public static final List<Column> MOVIE_COLUMNS = List.of(
+            new Column("id", ColumnType.ID_DELTA),
+            new Column("title", ColumnType.DICT),
+            new Column("year", ColumnType.INT),
+            new Column("starring", ColumnType.TEXT),
+            new Column("description", ColumnType.TEXT));
+
+    public static final List<Column> REVIEW_COLUMNS = List.of(
+            new Column("id", ColumnType.ID_DELTA),
+            new Column("movie_id", ColumnType.INT),
+            new Column("user_id", ColumnType.INT),
+            new Column("username", ColumnType.DICT),
+            new Column("title", ColumnType.DICT),
+            new Column("rating", ColumnType.INT),
+            new Column("comment", ColumnType.TEXT),
+            new Column("created_at", ColumnType.TIMESTAMP));
+
+    public static final List<Column> WATCHLIST_COLUMNS = List.of(
+            new Column("id", ColumnType.ID_DELTA),
+            new Column("user_id", ColumnType.INT),
+            new Column("username", ColumnType.DICT),
+            new Column("movie_id", ColumnType.INT),
+            new Column("title", ColumnType.DICT),
+            new Column("added_at", ColumnType.TIMESTAMP));
+
+    /** Rows written per table. */
+    public record Result(long movies, long reviews, long watchlist, long bytes, long millis) {}
+
+    private final ConnectionPool pool;
+
+    public ColumnarExporter(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public Result export(Path file) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        long movies, reviews, watchlist;
+        try (ColumnarWriter out = new ColumnarWriter(file); PooledConnection pc = pool.borrow()) {
+            Connection conn = pc.connection();
+            int isolation = conn.getTransactionIsolation();
+            try {
+                conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                conn.setAutoCommit(false);
+                try (Statement st = conn.createStatement()) {
+                    st.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY");
+                }
+                movies = table(out, pc, "movies", Sql.EXPORT_MOVIES, MOVIE_COLUMNS);
+                reviews = table(out, pc, "reviews", Sql.EXPORT_REVIEWS, REVIEW_COLUMNS);
+                watchlist = table(out, pc, "watchlist", Sql.EXPORT_WATCHLIST, WATCHLIST_COLUMNS);
+                conn.commit();
+            } catch (SQLException e) {
+                if (ConnectionPool.isConnectionFailure(e)) pc.markBroken();
+                throw e;
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.setTransactionIsolation(isolation);
+                } catch (SQLException ignored) {
+                    // release() rolls back and resets connections that are still mid-transaction.
+                }
+            }
+            out.commit();
+        }
+        return new Result(movies, reviews, watchlist, Files.size(file), System.currentTimeMillis() - start);
+    }
+
+    private static long table(ColumnarWriter out, PooledConnection pc, String name, Sql sql, List<Column> columns)
+            throws IOException, SQLException {
+        PreparedStatement ps = pc.prepare(sql);
+        ps.setFetchSize(Integer.MIN_VALUE); // Connector/J: stream rows instead of buffering the result
+        try (ResultSet rs = ps.executeQuery()) {
+            return out.writeTable(name, rs, columns);
+        }
+    }
+
+    // ---------- CLI ----------
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: ColumnarExporter FILE");
+            System.exit(2);
+        }
+        try (ConnectionPool pool = DbConfig.pool(1, null)) {
+            Result r = new ColumnarExporter(pool).export(Paths.get(args[0]));
+            System.out.printf("Exported %d movies, %d reviews, %d watchlist entries to %s (%,d bytes) in %.1f s%n",
+                    r.movies(), r.reviews(), r.watchlist(), args[0], r.bytes(), r.millis() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package moviediary.export;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Loads a file written by {@link ColumnarWriter} into {@link ColumnarTable}s.
+ * Blocks are inflated one column at a time straight into primitive arrays;
+ * block dictionaries are merged into one dictionary per column. Tables that
+ * were not asked for are skipped without inflating them.
+ */
+public final class ColumnarReader {
+    private ColumnarReader() {}
+
+    /** Every table in the file, in file order. */
+    public static Map<String, ColumnarTable> read(Path file) throws IOException {
+        return read(file, null);
+    }
+
+    /** Only the named tables ({@code null} for all). */
+    public static Map<String, ColumnarTable> read(Path file, Set<String> tables) throws IOException {
+        Map<String, ColumnarTable> out = new LinkedHashMap<>();
+        Inflater inflater = new Inflater();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != ColumnarWriter.MAGIC) throw new IOException(file + " is not a columnar export");
+            short version = in.readShort();
+            if (version != ColumnarWriter.VERSION) throw new IOException("Unsupported export version " + version);
+            while (true) {
+                byte tag = in.readByte();
+                if (tag == ColumnarWriter.TAG_EOF) break;
+                if (tag != ColumnarWriter.TAG_TABLE) throw new IOException("Corrupt export: tag " + tag);
+                String name = in.readUTF();
+                ColumnarTable t = readTable(in, name, tables == null || tables.contains(name), inflater);
+                if (t != null) out.put(name, t);
+            }
+        } catch (EOFException e) {
+            throw new IOException(file + " is truncated", e);
+        } finally {
+            inflater.end();
+        }
+        return out;
+    }
+
+    private static ColumnarTable readTable(DataInputStream in, String name, boolean wanted, Inflater inflater)
+            throws IOException {
+        int n = in.readUnsignedShort();
+        String[] names = new String[n];
+        Builder[] builders = new Builder[n];
+        ColumnType[] types = ColumnType.values();
+        for (int i = 0; i < n; i++) {
+            names[i] = in.readUTF();
+            int type = in.readUnsignedByte();
+            if (type >= types.length) throw new IOException("Unknown column type " + type + " in " + name);
+            builders[i] = new Builder(types[type]);
+        }
+
+        int rows = 0;
+        while (true) {
+            byte tag = in.readByte();
+            if (tag == ColumnarWriter.TAG_END) {
+                long total = in.readLong();
+                if (wanted && total != rows) throw new IOException(name + ": expected " + total + " rows, read " + rows);
+                break;
+            }
+            if (tag != ColumnarWriter.TAG_BLOCK) throw new IOException("Corrupt export: tag " + tag + " in " + name);
+            int blockRows = in.readInt();
+            for (Builder b : builders) {
+                int rawLength = in.readInt();
+                int packedLength = in.readInt();
+                if (!wanted) {
+                    in.skipNBytes(packedLength);
+                    continue;
+                }
+                byte[] packed = in.readNBytes(packedLength);
+                if (packed.length != packedLength) throw new EOFException();
+                b.decode(ByteBuffer.wrap(inflate(inflater, packed, rawLength)), rows, blockRows);
+            }
+            rows += blockRows;
+        }
+        if (!wanted) return null;
+
+        Map<String, Object> columns = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) columns.put(names[i], builders[i].build(rows));
+        return new ColumnarTable(name, rows, columns);
+    }
+
+    private static byte[] inflate(Inflater inflater, byte[] packed, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(packed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int off = 0;
+            while (off < rawLength) {
+                int got = inflater.inflate(raw, off, rawLength - off);
+                if (got == 0 && (inflater.finished() || inflater.needsInput())) break;
+                off += got;
+            }
+            if (off != rawLength) throw new IOException("Corrupt block: expected " + rawLength + " bytes, got " + off);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block", e);
+        }
+        return raw;
+    }
+
+    // Growable primitive storage for one column across all blocks.
+    private static final class Builder {
+        private final ColumnType type;
+        private long[] longs;
+        private int[] ints;
+        private String[] strings;
+        private final BitSet nulls = new BitSet();
+        // DICT: table-wide dictionary, in order of first appearance.
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] dictionary = new String[16];
+
+        Builder(ColumnType type) {
+            this.type = type;
+        }
+
+        void decode(ByteBuffer buf, int at, int count) {
+            ensure(at + count);
+            switch (type) {
+                case ID_DELTA -> {
+                    long prev = 0;
+                    for (int i = 0; i < count; i++) longs[at + i] = prev += VarInts.unzigzag(VarInts.read(buf));
+                }
+                case INT -> {
+                    for (int i = 0; i < count; i++) {
+                        long v = VarInts.read(buf);
+                        if (v == 0) nulls.set(at + i);
+                        else ints[at + i] = (int) VarInts.unzigzag(v - 1);
+                    }
+                }
+                case TIMESTAMP -> {
+                    long prev = 0;
+                    for (int i = 0; i < count; i++) {
+                        long v = VarInts.read(buf);
+                        if (v == 0) nulls.set(at + i);
+                        else longs[at + i] = prev += VarInts.unzigzag(v - 1);
+                    }
+                }
+                case DICT -> {
+                    int size = (int) VarInts.read(buf);
+                    int[] local = new int[size];
+                    for (int d = 0; d < size; d++) {
+                        String s = readString(buf, (int) VarInts.read(buf));
+                        Integer code = codes.get(s);
+                        if (code == null) {
+                            code = codes.size();
+                            codes.put(s, code);
+                            if (code == dictionary.length) dictionary = Arrays.copyOf(dictionary, code * 2);
+                            dictionary[code] = s;
+                        }
+                        local[d] = code;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        int v = (int) VarInts.read(buf);
+                        ints[at + i] = v == 0 ? -1 : local[v - 1];
+                    }
+                }
+                case TEXT -> {
+                    for (int i = 0; i < count; i++) {
+                        int v = (int) VarInts.read(buf);
+                        strings[at + i] = v == 0 ? null : readString(buf, v - 1);
+                    }
+                }
+            }
+        }
+
+        private void ensure(int size) {
+            switch (type) {
+                case ID_DELTA, TIMESTAMP -> longs = longs == null ? new long[size] : grow(longs, size);
+                case INT, DICT -> ints = ints == null ? new int[size] : grow(ints, size);
+                case TEXT -> strings = strings == null ? new String[size] : grow(strings, size);
+            }
+        }
+
+        Object build(int rows) {
+            ensure(rows);
+            return switch (type) {
+                case ID_DELTA, TIMESTAMP -> new ColumnarTable.Longs(Arrays.copyOf(longs, rows), nulls);
+                case INT -> new ColumnarTable.Ints(Arrays.copyOf(ints, rows), nulls);
+                case DICT -> new ColumnarTable.Dict(Arrays.copyOf(ints, rows), Arrays.copyOf(dictionary, codes.size()));
+                case TEXT -> new ColumnarTable.Texts(Arrays.copyOf(strings, rows));
+            };
+        }
+
+        private static long[] grow(long[] a, int size) {
+            return size <= a.length ? a : Arrays.copyOf(a, Math.max(size, a.length * 2));
+        }
+
+        private static int[] grow(int[] a, int size) {
+            return size <= a.length ? a : Arrays.copyOf(a, Math.max(size, a.length * 2));
+        }
+
+        private static String[] grow(String[] a, int size) {
+            return size <= a.length ? a : Arrays.copyOf(a, Math.max(size, a.length * 2));
+        }
+
+        private static String readString(ByteBuffer buf, int length) {
+            String s = new String(buf.array(), buf.position(), length, StandardCharsets.UTF_8);
+            buf.position(buf.position() + length);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package moviediary.export;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * One table loaded by {@link ColumnarReader}: every column is a primitive
+ * array indexed by row, so scans run without boxing or per-row objects.
+ * NULLs are tracked in a {@link BitSet} next to the values (which read 0).
+ */
+public final class ColumnarTable {
+    private final String name;
+    private final int rows;
+    private final Map<String, Object> columns;
+
+    ColumnarTable(String name, int rows, Map<String, Object> columns) {
+        this.name = name;
+        this.rows = rows;
+        this.columns = Collections.unmodifiableMap(new LinkedHashMap<>(columns));
+    }
+
+    public String name() { return name; }
+
+    public int rows() { return rows; }
+
+    /** Column names in file order. */
+    public Iterable<String> columnNames() { return columns.keySet(); }
+
+    /** An {@link ColumnType#ID_DELTA} or {@link ColumnType#TIMESTAMP} column. */
+    public Longs longs(String column) { return get(column, Longs.class); }
+
+    /** An {@link ColumnType#INT} column. */
+    public Ints ints(String column) { return get(column, Ints.class); }
+
+    /** A {@link ColumnType#DICT} column. */
+    public Dict dict(String column) { return get(column, Dict.class); }
+
+    /** A {@link ColumnType#TEXT} column. */
+    public Texts texts(String column) { return get(column, Texts.class); }
+
+    private <T> T get(String column, Class<T> kind) {
+        Object c = columns.get(column);
+        if (c == null) throw new NoSuchElementException(name + " has no column " + column);
+        if (!kind.isInstance(c)) throw new IllegalArgumentException(name + "." + column + " is not " + kind.getSimpleName());
+        return kind.cast(c);
+    }
+
+    /** 64-bit values (ids, epoch millis). */
+    public record Longs(long[] values, BitSet nulls) {
+        public boolean isNull(int row) { return nulls.get(row); }
+    }
+
+    /** 32-bit values. */
+    public record Ints(int[] values, BitSet nulls) {
+        public boolean isNull(int row) { return nulls.get(row); }
+    }
+
+    /** Per-row codes into one dictionary for the whole table; -1 is NULL. */
+    public record Dict(int[] codes, String[] dictionary) {
+        public String get(int row) {
+            int c = codes[row];
+            return c < 0 ? null : dictionary[c];
+        }
+    }
+
+    /** Free text, one string (or null) per row. */
+    public record Texts(String[] values) {
+        public String get(int row) { return values[row]; }
+    }
+}
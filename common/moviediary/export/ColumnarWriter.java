@@ -0,0 +1,233 @@
+package moviediary.export;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Writes tables to the columnar export format, one block of at most
+ * {@value #BLOCK_ROWS} rows at a time, so memory use is bounded by the block
+ * and not by the table. A block is also cut once its encoded values pass
+ * {@value #BLOCK_BYTES} bytes, since long descriptions and comments would
+ * otherwise let one block grow without limit.
+ *
+ * <pre>
+ * file  := MAGIC:int VERSION:short table* TAG_EOF
+ * table := TAG_TABLE name:UTF columns:short (name:UTF type:byte)* block* TAG_END rows:long
+ * block := TAG_BLOCK rows:int (rawLength:int deflatedLength:int bytes)*   -- one entry per column
+ * </pre>
+ *
+ * Each column of a block is encoded on its own (see {@link ColumnType}) and
+ * then deflated, so similar values sit together and compress well. Blocks
+ * decode independently: deltas and dictionaries restart in every block.
+ *
+ * The file is written next to its destination under a temporary name and
+ * only moved into place by {@link #commit}, which is also what writes
+ * {@code TAG_EOF}. Closing the writer without committing deletes the partial
+ * file, so a failed export never leaves a complete-looking file behind.
+ */
+public final class ColumnarWriter implements Closeable {
+    public static final int MAGIC = 0x4D44434C; // "MDCL"
+    public static final short VERSION = 1;
+    public static final int BLOCK_ROWS = 65_536;
+    public static final int BLOCK_BYTES = 8 << 20;
+
+    static final byte TAG_EOF = 0;
+    static final byte TAG_TABLE = 1;
+    static final byte TAG_BLOCK = 2;
+    static final byte TAG_END = 3;
+
+    /** A column to export: its name in the file and how to encode it. Read from the ResultSet by position. */
+    public record Column(String name, ColumnType type) {}
+
+    private final Path file;
+    private final Path tmp;
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] deflateBuffer = new byte[64 * 1024];
+    private boolean committed;
+
+    public ColumnarWriter(Path file) throws IOException {
+        this.file = file;
+        this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+    }
+
+    /** Streams every row of {@code rs} into a new table and returns the row count. */
+    public long writeTable(String name, ResultSet rs, List<Column> columns) throws IOException, SQLException {
+        out.writeByte(TAG_TABLE);
+        out.writeUTF(name);
+        out.writeShort(columns.size());
+        ColumnBuffer[] buffers = new ColumnBuffer[columns.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            out.writeUTF(columns.get(i).name());
+            out.writeByte(columns.get(i).type().ordinal());
+            buffers[i] = new ColumnBuffer(columns.get(i).type());
+        }
+
+        long total = 0;
+        int inBlock = 0;
+        while (rs.next()) {
+            for (int i = 0; i < buffers.length; i++) buffers[i].add(rs, i + 1);
+            total++;
+            if (++inBlock == BLOCK_ROWS || bufferedBytes(buffers) >= BLOCK_BYTES) {
+                flushBlock(buffers, inBlock);
+                inBlock = 0;
+            }
+        }
+        if (inBlock > 0) flushBlock(buffers, inBlock);
+        out.writeByte(TAG_END);
+        out.writeLong(total);
+        return total;
+    }
+
+    private static long bufferedBytes(ColumnBuffer[] buffers) {
+        long n = 0;
+        for (ColumnBuffer b : buffers) n += b.size();
+        return n;
+    }
+
+    private void flushBlock(ColumnBuffer[] buffers, int rows) throws IOException {
+        out.writeByte(TAG_BLOCK);
+        out.writeInt(rows);
+        for (ColumnBuffer b : buffers) {
+            byte[] raw = b.finish();
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream packed = new ByteArrayOutputStream(raw.length / 2 + 16);
+            while (!deflater.finished()) {
+                int n = deflater.deflate(deflateBuffer);
+                packed.write(deflateBuffer, 0, n);
+            }
+            out.writeInt(raw.length);
+            out.writeInt(packed.size());
+            packed.writeTo(out);
+        }
+    }
+
+    /** Ends the file and moves it into place, replacing any earlier export. */
+    public void commit() throws IOException {
+        out.writeByte(TAG_EOF);
+        out.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        committed = true;
+    }
+
+    /** Releases the writer; without a {@link #commit} first, the partial file is deleted. */
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        if (committed) return;
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // One column's values for the current block, already encoded.
+    private static final class ColumnBuffer {
+        private final ColumnType type;
+        private ByteArrayOutputStream values = new ByteArrayOutputStream();
+        private long previous;
+        // DICT only: block dictionary in first-seen order.
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final ByteArrayOutputStream dictionaryBytes = new ByteArrayOutputStream();
+
+        ColumnBuffer(ColumnType type) {
+            this.type = type;
+        }
+
+        void add(ResultSet rs, int column) throws SQLException {
+            switch (type) {
+                case ID_DELTA -> {
+                    long v = rs.getLong(column);
+                    VarInts.write(values, VarInts.zigzag(v - previous));
+                    previous = v;
+                }
+                case INT -> {
+                    long v = rs.getLong(column);
+                    VarInts.write(values, rs.wasNull() ? 0 : VarInts.zigzag(v) + 1);
+                }
+                case TIMESTAMP -> {
+                    Timestamp ts = rs.getTimestamp(column);
+                    if (ts == null) {
+                        VarInts.write(values, 0);
+                    } else {
+                        long v = ts.getTime();
+                        VarInts.write(values, VarInts.zigzag(v - previous) + 1);
+                        previous = v;
+                    }
+                }
+                case DICT -> {
+                    String s = rs.getString(column);
+                    if (s == null) {
+                        VarInts.write(values, 0);
+                    } else {
+                        Integer code = dictionary.get(s);
+                        if (code == null) {
+                            code = dictionary.size();
+                            dictionary.put(s, code);
+                            writeString(dictionaryBytes, s);
+                        }
+                        VarInts.write(values, code + 1);
+                    }
+                }
+                case TEXT -> {
+                    String s = rs.getString(column);
+                    if (s == null) VarInts.write(values, 0);
+                    else {
+                        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                        VarInts.write(values, b.length + 1);
+                        values.write(b, 0, b.length);
+                    }
+                }
+            }
+        }
+
+        int size() {
+            return values.size() + dictionaryBytes.size();
+        }
+
+        // Encoded bytes of the block; resets for the next one.
+        byte[] finish() {
+            byte[] result;
+            if (type == ColumnType.DICT) {
+                ByteArrayOutputStream all = new ByteArrayOutputStream(dictionaryBytes.size() + values.size() + 5);
+                VarInts.write(all, dictionary.size());
+                all.writeBytes(dictionaryBytes.toByteArray());
+                all.writeBytes(values.toByteArray());
+                result = all.toByteArray();
+                dictionary.clear();
+                dictionaryBytes.reset();
+            } else {
+                result = values.toByteArray();
+            }
+            values = new ByteArrayOutputStream(Math.max(32, Math.min(result.length, BLOCK_BYTES)));
+            previous = 0;
+            return result;
+        }
+
+        private static void writeString(ByteArrayOutputStream out, String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            VarInts.write(out, b.length);
+            out.write(b, 0, b.length);
+        }
+    }
+}
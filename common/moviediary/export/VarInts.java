@@ -0,0 +1,36 @@
+package moviediary.export;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+// LEB128 varints and zigzag mapping shared by the columnar writer and reader.
+final class VarInts {
+    private VarInts() {}
+
+    static void write(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static long read(ByteBuffer in) {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+            shift += 7;
+        }
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
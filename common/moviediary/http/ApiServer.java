@@ -0,0 +1,474 @@
+package moviediary.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import moviediary.auth.CredentialService;
+import moviediary.db.ConnectionPool;
+import moviediary.db.DbConfig;
+import moviediary.db.DbExecutor;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStore;
+import moviediary.db.PooledConnection;
+import moviediary.db.Schema;
+import moviediary.db.StoreMode;
+import moviediary.detail.DetailLoader;
+import moviediary.metrics.InstrumentedStore;
+import moviediary.metrics.MetricsEndpoint;
+import moviediary.metrics.MetricsRegistry;
+import moviediary.model.MovieDetail;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.ReviewEntry;
+import moviediary.model.WatchlistEntry;
+import moviediary.session.SessionRegistry;
+import moviediary.session.UserSession;
+import moviediary.writebehind.WriteBehindStore;
+
+/**
+ * Headless HTTP/JSON front-end over any {@link MovieStore}, on the JDK's
+ * built-in server. Each request runs on its own virtual thread (JDK 21+;
+ * older JDKs get a fixed pool of {@value #FALLBACK_THREADS} threads), so a
+ * request blocked on the database costs almost nothing and concurrency is
+ * bounded by the connection pool rather than by threads.
+ *
+ * <pre>
+ * POST /api/register                {"username", "password"}
+ * POST /api/login                   {"username", "password"} → {"token", "userId", "username"}
+ * POST /api/logout                  (token)
+ * GET  /api/movies?order=id|title&amp;after=ID&amp;limit=N
+ * GET  /api/movies/ID               movie, cast, rating stats and latest reviews
+ * POST /api/movies/ID/reviews       (token) {"rating", "comment"}
+ * GET  /api/watchlist?after=CURSOR&amp;limit=N   (token)
+ * POST /api/watchlist               (token) {"movieId"}
+ * GET  /metrics                     plain-text metrics, see MetricsEndpoint
+ * </pre>
+ *
+ * The token goes in an {@code Authorization: Bearer} header. Errors come
+ * back as {@code {"error": "..."}} with a 4xx or 5xx status.
+ */
+public final class ApiServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_PAGE = 20;
+    public static final int MAX_PAGE = 100;
+    static final int FALLBACK_THREADS = 200;
+    private static final int BACKLOG = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    // users.username and users.password
+    private static final int MAX_USERNAME = 50;
+    private static final int MAX_PASSWORD = 100;
+
+    private final MovieStore store;
+    private final CredentialService credentials;
+    private final DetailLoader details;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SessionRegistry sessions;
+    private final boolean ownsSessions;
+
+    public ApiServer(MovieStore store, InetSocketAddress address) throws IOException {
+        this(store, address, new SessionRegistry(), true);
+    }
+
+    /** Serves logins from {@code sessions}, which the caller keeps and closes. */
+    public ApiServer(MovieStore store, InetSocketAddress address, SessionRegistry sessions) throws IOException {
+        this(store, address, sessions, false);
+    }
+
+    private ApiServer(MovieStore store, InetSocketAddress address, SessionRegistry sessions, boolean ownsSessions) throws IOException {
+        this.store = store;
+        this.credentials = new CredentialService(store);
+        this.details = new DetailLoader(store);
+        store.addListener(details);
+        this.sessions = sessions;
+        this.ownsSessions = ownsSessions;
+        server = HttpServer.create(address, BACKLOG);
+        ExecutorService vt = DbExecutor.newVirtualThreadExecutor();
+        executor = vt != null ? vt : Executors.newFixedThreadPool(FALLBACK_THREADS, DbExecutor.daemonThreads("http"));
+        server.setExecutor(executor);
+        server.createContext("/api/", this::handle);
+        if (MetricsRegistry.enabled()) server.createContext("/metrics", MetricsEndpoint.handler(MetricsRegistry.global()));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public DetailLoader detailLoader() {
+        return details;
+    }
+
+    public int openSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        credentials.close();
+        if (ownsSessions) sessions.close();
+    }
+
+    // ---------- DISPATCH ----------
+    private record Response(int status, String body) {}
+
+    // Thrown for anything the client got wrong; the message goes back as the error.
+    private static final class ApiError extends RuntimeException {
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        Response r;
+        try {
+            r = route(ex);
+        } catch (ApiError e) {
+            r = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            r = error(400, e.getMessage());
+        } catch (SQLIntegrityConstraintViolationException e) {
+            r = error(409, e.getMessage());
+        } catch (SQLTransientException | RejectedExecutionException e) {
+            r = error(503, "Busy, try again shortly");
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("API " + ex.getRequestMethod() + " " + ex.getRequestURI().getPath() + " failed: " + e.getMessage());
+            r = error(500, "Internal error");
+        }
+        try {
+            send(ex, r);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private Response route(HttpExchange ex) throws IOException, SQLException {
+        String method = ex.getRequestMethod().toUpperCase(Locale.ROOT);
+        String[] path = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+        switch (path[0]) {
+            case "register":
+                requireMethod(method, "POST");
+                return register(body(ex));
+            case "login":
+                requireMethod(method, "POST");
+                return login(body(ex));
+            case "logout":
+                requireMethod(method, "POST");
+                sessions.close(token(ex));
+                return new Response(204, null);
+            case "movies":
+                if (path.length == 1) {
+                    requireMethod(method, "GET");
+                    return browse(query(ex));
+                }
+                int movieId = intSegment(path[1]);
+                if (path.length == 2) {
+                    requireMethod(method, "GET");
+                    return detail(movieId);
+                }
+                if (path.length == 3 && path[2].equals("reviews")) {
+                    requireMethod(method, "POST");
+                    return addReview(session(ex), movieId, body(ex));
+                }
+                break;
+            case "watchlist":
+                if (path.length != 1) break;
+                if (method.equals("GET")) return watchlist(session(ex), query(ex));
+                requireMethod(method, "POST");
+                return addToWatchlist(session(ex), body(ex));
+            default:
+                break;
+        }
+        throw new ApiError(404, "No such endpoint");
+    }
+
+    // ---------- USERS ----------
+    private Response register(Map<String, Object> body) throws SQLException {
+        String username = string(body, "username").trim();
+        String password = string(body, "password");
+        if (username.isEmpty() || username.length() > MAX_USERNAME) throw new ApiError(400, "username must be 1-" + MAX_USERNAME + " characters");
+        if (password.isEmpty() || password.length() > MAX_PASSWORD) throw new ApiError(400, "password must be 1-" + MAX_PASSWORD + " characters");
+        try {
+            credentials.register(username, password);
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw new ApiError(409, "Username already exists");
+        }
+        return new Response(201, new Json().beginObject().field("username", username).endObject().toString());
+    }
+
+    private Response login(Map<String, Object> body) throws SQLException {
+        String username = string(body, "username").trim();
+        Integer userId = credentials.login(username, string(body, "password"));
+        if (userId == null) throw new ApiError(401, "Invalid credentials");
+        UserSession s = sessions.open(userId, username);
+        return ok(new Json().beginObject()
+                .field("token", s.token()).field("userId", s.userId()).field("username", s.username())
+                .endObject());
+    }
+
+    // ---------- MOVIES ----------
+    private Response browse(Map<String, String> query) throws SQLException {
+        MovieOrder order = "title".equalsIgnoreCase(query.get("order")) ? MovieOrder.TITLE : MovieOrder.ID;
+        int limit = limit(query);
+        MovieSummary after = null;
+        if (query.get("after") != null) {
+            MovieRecord anchor = store.findMovie(intParam(query, "after"));
+            if (anchor == null) throw new ApiError(400, "Unknown movie in 'after'");
+            after = new MovieSummary(anchor.id(), anchor.title(), anchor.year());
+        }
+        List<MovieSummary> movies = store.moviesAfter(order, after, limit);
+        Json json = new Json().beginObject().name("movies").beginArray();
+        for (MovieSummary m : movies) {
+            json.beginObject().field("id", m.id()).field("title", m.title()).field("year", m.year()).endObject();
+        }
+        json.endArray();
+        if (movies.size() == limit) json.field("next", movies.get(movies.size() - 1).id());
+        else json.name("next").nullValue();
+        return ok(json.endObject());
+    }
+
+    private Response detail(int movieId) throws SQLException {
+        MovieDetail detail = details.load(movieId);
+        if (detail == null) throw new ApiError(404, "No such movie");
+        MovieRecord m = detail.movie();
+        RatingStats stats = detail.stats();
+        Json json = new Json().beginObject()
+                .field("id", m.id()).field("title", m.title()).field("year", m.year())
+                .field("starring", m.starring()).field("description", m.description());
+        json.name("cast").beginArray();
+        for (String name : detail.cast()) json.value(name);
+        json.endArray();
+        json.name("ratings").beginObject()
+                .field("count", stats.count())
+                .field("average", stats.average())
+                .name("histogram").beginArray();
+        for (int n : stats.histogram()) json.value(n);
+        json.endArray().endObject();
+        json.name("latestReviews").beginArray();
+        for (ReviewEntry r : detail.latestReviews()) {
+            json.beginObject().field("username", r.username()).field("rating", r.rating())
+                    .field("comment", r.comment()).field("createdAt", r.createdAt() == null ? null : r.createdAt().toInstant().toString())
+                    .endObject();
+        }
+        json.endArray();
+        return ok(json.endObject());
+    }
+
+    private Response addReview(UserSession s, int movieId, Map<String, Object> body) throws SQLException {
+        int rating = intValue(body, "rating");
+        if (rating < 1 || rating > RatingStats.MAX_RATING) throw new ApiError(400, "rating must be 1-" + RatingStats.MAX_RATING);
+        Object comment = body.get("comment");
+        if (store.findMovie(movieId) == null) throw new ApiError(404, "No such movie");
+        store.addReview(movieId, s.userId(), rating, comment == null ? "" : comment.toString());
+        return new Response(201, new Json().beginObject().field("movieId", movieId).field("rating", rating).endObject().toString());
+    }
+
+    // ---------- WATCHLIST ----------
+    // The cursor is "addedAtMillis:entryId" of the last entry on the previous page.
+    private Response watchlist(UserSession s, Map<String, String> query) throws SQLException {
+        int limit = limit(query);
+        WatchlistEntry after = null;
+        String cursor = query.get("after");
+        if (cursor != null) {
+            int colon = cursor.indexOf(':');
+            try {
+                after = new WatchlistEntry(Integer.parseInt(cursor.substring(colon + 1)), 0, null,
+                        new Timestamp(Long.parseLong(cursor.substring(0, colon))));
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new ApiError(400, "Bad 'after' cursor");
+            }
+        }
+        List<WatchlistEntry> entries = store.watchlistAfter(s.userId(), after, limit);
+        Json json = new Json().beginObject().name("entries").beginArray();
+        for (WatchlistEntry w : entries) {
+            json.beginObject().field("movieId", w.movieId()).field("title", w.title())
+                    .field("addedAt", w.addedAt().toInstant().toString()).endObject();
+        }
+        json.endArray();
+        if (entries.size() == limit) {
+            WatchlistEntry last = entries.get(entries.size() - 1);
+            json.field("next", last.addedAt().getTime() + ":" + last.id());
+        } else {
+            json.name("next").nullValue();
+        }
+        return ok(json.endObject());
+    }
+
+    private Response addToWatchlist(UserSession s, Map<String, Object> body) throws SQLException {
+        int movieId = intValue(body, "movieId");
+        if (store.findMovie(movieId) == null) throw new ApiError(404, "No such movie");
+        boolean added = store.addToWatchlist(s.userId(), movieId);
+        return new Response(added ? 201 : 200, new Json().beginObject().field("movieId", movieId).field("added", added).endObject().toString());
+    }
+
+    // ---------- REQUEST HELPERS ----------
+    private UserSession session(HttpExchange ex) {
+        UserSession s = sessions.find(token(ex));
+        if (s == null) throw new ApiError(401, "Log in first");
+        return s;
+    }
+
+    private static String token(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return auth.substring(7).trim();
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) throw new ApiError(405, "Use " + expected);
+    }
+
+    private static Map<String, Object> body(HttpExchange ex) throws IOException {
+        byte[] bytes;
+        try (InputStream in = ex.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (bytes.length > MAX_BODY_BYTES) throw new ApiError(413, "Request body too large");
+        return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int limit(Map<String, String> query) {
+        if (query.get("limit") == null) return DEFAULT_PAGE;
+        int limit = intParam(query, "limit");
+        if (limit < 1 || limit > MAX_PAGE) throw new ApiError(400, "limit must be 1-" + MAX_PAGE);
+        return limit;
+    }
+
+    private static int intParam(Map<String, String> query, String name) {
+        try {
+            return Integer.parseInt(query.get(name));
+        } catch (NumberFormatException e) {
+            throw new ApiError(400, "'" + name + "' must be a number");
+        }
+    }
+
+    private static int intSegment(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw new ApiError(404, "No such endpoint");
+        }
+    }
+
+    private static String string(Map<String, Object> body, String name) {
+        Object v = body.get(name);
+        if (!(v instanceof String s)) throw new ApiError(400, "'" + name + "' is required");
+        return s;
+    }
+
+    private static int intValue(Map<String, Object> body, String name) {
+        Object v = body.get(name);
+        if (!(v instanceof Long n) || n < Integer.MIN_VALUE || n > Integer.MAX_VALUE) throw new ApiError(400, "'" + name + "' must be an integer");
+        return n.intValue();
+    }
+
+    // ---------- RESPONSE HELPERS ----------
+    private static Response ok(Json json) {
+        return new Response(200, json.toString());
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, new Json().beginObject().field("error", message).endObject().toString());
+    }
+
+    private static void send(HttpExchange ex, Response r) throws IOException {
+        if (r.body() == null) {
+            ex.sendResponseHeaders(r.status(), -1);
+            return;
+        }
+        byte[] bytes = r.body().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(r.status(), bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // ---------- MAIN ----------
+    /**
+     * Serves the store picked by {@code -Dmoviediary.store} on the given port
+     * (default {@value #DEFAULT_PORT}). MySQL uses {@link DbConfig} and a pool
+     * of {@code -Dmoviediary.http.dbConnections} connections (default 32).
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        ConnectionPool pool = null;
+        MovieStore store;
+        if (StoreMode.current() == StoreMode.MYSQL) {
+            pool = DbConfig.pool(Integer.getInteger("moviediary.http.dbConnections", 32), null);
+            try (PooledConnection pc = pool.borrow(); Statement st = pc.connection().createStatement()) {
+                Schema.createCoreTables(st);
+                Schema.createCastTables(st);
+                Schema.createStatsTables(st);
+                Schema.createIndexes(st);
+                Schema.createWriteBehindTables(st);
+            }
+            MovieDao dao = new MovieDao(pool);
+            MetricsRegistry.global().watchPool(pool);
+            MetricsRegistry.global().watchMovieCache(dao.movieCache());
+            if (WriteBehindStore.enabled()) {
+                WriteBehindStore writeBehind = WriteBehindStore.open(dao);
+                MetricsRegistry.global().watchWriteBehind(writeBehind);
+                store = InstrumentedStore.wrap(writeBehind);
+            } else {
+                store = InstrumentedStore.wrap(dao);
+            }
+        } else {
+            store = InstrumentedStore.wrap(StoreMode.current().openLocal());
+        }
+        ApiServer server = new ApiServer(store, new InetSocketAddress(port));
+        MetricsRegistry.global().watchDetailLoader(server.detailLoader());
+        ConnectionPool openedPool = pool;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                store.close();
+            } catch (SQLException e) {
+                System.err.println("Closing store failed: " + e.getMessage());
+            }
+            if (openedPool != null) openedPool.close();
+        }, "api-shutdown"));
+        server.start();
+        System.out.println("Movie Diary API listening on http://localhost:" + server.port() + "/api/");
+    }
+}
@@ -0,0 +1,256 @@
+package moviediary.http;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the API: a streaming writer for responses and a
+ * parser for flat request objects (string, number, boolean and null values).
+ */
+final class Json {
+    private final StringBuilder out = new StringBuilder(256);
+    // One flag per open object/array: does the next member need a comma?
+    private long needsComma;
+    private int depth;
+    private boolean afterName;
+
+    Json beginObject() {
+        value();
+        out.append('{');
+        push();
+        return this;
+    }
+
+    Json endObject() {
+        depth--;
+        out.append('}');
+        return this;
+    }
+
+    Json beginArray() {
+        value();
+        out.append('[');
+        push();
+        return this;
+    }
+
+    Json endArray() {
+        depth--;
+        out.append(']');
+        return this;
+    }
+
+    Json name(String name) {
+        value();
+        string(name);
+        out.append(':');
+        afterName = true;
+        return this;
+    }
+
+    Json value(String s) {
+        value();
+        if (s == null) out.append("null");
+        else string(s);
+        return this;
+    }
+
+    Json value(long n) {
+        value();
+        out.append(n);
+        return this;
+    }
+
+    Json value(double d) {
+        value();
+        if (Double.isFinite(d)) out.append(d);
+        else out.append("null");
+        return this;
+    }
+
+    Json value(boolean b) {
+        value();
+        out.append(b);
+        return this;
+    }
+
+    Json nullValue() {
+        value();
+        out.append("null");
+        return this;
+    }
+
+    Json field(String name, String s) { return name(name).value(s); }
+
+    Json field(String name, long n) { return name(name).value(n); }
+
+    Json field(String name, double d) { return name(name).value(d); }
+
+    Json field(String name, boolean b) { return name(name).value(b); }
+
+    Json field(String name, Integer n) { return n == null ? name(name).nullValue() : name(name).value(n); }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+
+    private void push() {
+        depth++;
+        needsComma &= ~(1L << depth);
+    }
+
+    // Emits the separator before a value or a member name.
+    private void value() {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) return;
+        long bit = 1L << depth;
+        if ((needsComma & bit) != 0) out.append(',');
+        needsComma |= bit;
+    }
+
+    private void string(String s) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') out.append(String.format("\\u%04x", (int) c));
+                    else out.append(c);
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    // ---------- PARSING ----------
+    /** Parses one JSON object whose values are all scalars; numbers come back as Long or Double. */
+    static Map<String, Object> parseObject(String text) {
+        Parser p = new Parser(text);
+        Map<String, Object> result = p.object();
+        p.skipSpace();
+        if (p.pos != text.length()) throw p.error("trailing characters");
+        return result;
+    }
+
+    private static final class Parser {
+        private final String s;
+        private int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                map.put(key, scalar());
+                skipSpace();
+                char c = next();
+                if (c == '}') return map;
+                if (c != ',') throw error("expected ',' or '}'");
+            }
+        }
+
+        private Object scalar() {
+            char c = peek();
+            if (c == '"') return string();
+            if (s.startsWith("true", pos)) { pos += 4; return Boolean.TRUE; }
+            if (s.startsWith("false", pos)) { pos += 5; return Boolean.FALSE; }
+            if (s.startsWith("null", pos)) { pos += 4; return null; }
+            if (c == '-' || (c >= '0' && c <= '9')) return number();
+            throw error("only strings, numbers, booleans and null are accepted");
+        }
+
+        private Object number() {
+            int start = pos;
+            boolean fraction = false;
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c == '.' || c == 'e' || c == 'E') fraction = true;
+                else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) break;
+                pos++;
+            }
+            String n = s.substring(start, pos);
+            try {
+                return fraction ? (Object) Double.parseDouble(n) : (Object) Long.parseLong(n);
+            } catch (NumberFormatException e) {
+                throw error("bad number " + n);
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder b = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') return b.toString();
+                if (c != '\\') {
+                    b.append(c);
+                    continue;
+                }
+                char e = next();
+                switch (e) {
+                    case '"', '\\', '/' -> b.append(e);
+                    case 'n' -> b.append('\n');
+                    case 'r' -> b.append('\r');
+                    case 't' -> b.append('\t');
+                    case 'b' -> b.append('\b');
+                    case 'f' -> b.append('\f');
+                    case 'u' -> {
+                        if (pos + 4 > s.length()) throw error("bad escape");
+                        try {
+                            b.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("bad escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("bad escape");
+                }
+            }
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        private char peek() {
+            if (pos >= s.length()) throw error("unexpected end");
+            return s.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) {
+            if (next() != c) throw error("expected '" + c + "'");
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at " + pos + ": " + message);
+        }
+    }
+}
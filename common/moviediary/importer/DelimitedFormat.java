@@ -0,0 +1,76 @@
+package moviediary.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Field splitting for the two dump formats the importer reads. CSV follows
+ * RFC 4180: fields may be double-quoted, quotes inside are doubled, and a
+ * quoted field may span lines. TSV is split on tabs with no quoting, which is
+ * how the IMDb dumps are written; their {@code \N} marks a missing value.
+ */
+public enum DelimitedFormat {
+    CSV(','),
+    TSV('\t');
+
+    private final char delimiter;
+
+    DelimitedFormat(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /** Picks the format from a file name; anything not ending in .csv is read as TSV. */
+    public static DelimitedFormat forFile(String fileName) {
+        return fileName.toLowerCase().endsWith(".csv") ? CSV : TSV;
+    }
+
+    /** False while a CSV record still has an open quoted field and needs the next line appended. */
+    public boolean isComplete(CharSequence record) {
+        if (this == TSV) return true;
+        boolean open = false;
+        for (int i = 0; i < record.length(); i++) {
+            if (record.charAt(i) == '"') open = !open;
+        }
+        return !open;
+    }
+
+    public List<String> split(String record) {
+        List<String> fields = new ArrayList<>();
+        if (this == TSV) {
+            int start = 0;
+            for (int i = 0; i <= record.length(); i++) {
+                if (i == record.length() || record.charAt(i) == delimiter) {
+                    String f = record.substring(start, i);
+                    fields.add(f.equals("\\N") ? null : f);
+                    start = i + 1;
+                }
+            }
+            return fields;
+        }
+
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
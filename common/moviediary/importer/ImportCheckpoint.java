@@ -0,0 +1,53 @@
+package moviediary.importer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * How far an import got: the number of input records whose rows are
+ * committed. Saved after every commit (written to a temp file and renamed so
+ * a crash never leaves half a checkpoint) and read back on the next run of
+ * the same file so those records are skipped.
+ */
+final class ImportCheckpoint {
+    private final Path file;
+    private final String source;
+
+    ImportCheckpoint(Path file, Path source) {
+        this.file = file;
+        this.source = source.toAbsolutePath().normalize().toString();
+    }
+
+    /** Records already committed for this source, or 0 when there is no matching checkpoint. */
+    long load() throws IOException {
+        if (!Files.exists(file)) return 0;
+        Properties p = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            p.load(in);
+        }
+        if (!source.equals(p.getProperty("source"))) return 0;
+        return Long.parseLong(p.getProperty("records", "0"));
+    }
+
+    void save(long records, long inserted) throws IOException {
+        Properties p = new Properties();
+        p.setProperty("source", source);
+        p.setProperty("records", Long.toString(records));
+        p.setProperty("inserted", Long.toString(inserted));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            p.store(out, "movie import checkpoint");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
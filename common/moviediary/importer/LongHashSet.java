@@ -0,0 +1,56 @@
+package moviediary.importer;
+
+/**
+ * Open-addressing set of longs, used to remember (title, year) fingerprints
+ * at eight bytes per movie instead of a String pair per movie. Not thread-safe.
+ */
+final class LongHashSet {
+    private static final long EMPTY = 0;
+
+    private long[] slots;
+    private int size;
+
+    LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        slots = new long[capacity];
+    }
+
+    /** Adds {@code value}; returns false if it was already present. */
+    boolean add(long value) {
+        if (value == EMPTY) value = 1; // 0 marks a free slot
+        if (size * 2 >= slots.length) grow();
+        int mask = slots.length - 1;
+        int i = (int) mix(value) & mask;
+        while (slots[i] != EMPTY) {
+            if (slots[i] == value) return false;
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        size++;
+        return true;
+    }
+
+    int size() { return size; }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        int mask = slots.length - 1;
+        for (long v : old) {
+            if (v == EMPTY) continue;
+            int i = (int) mix(v) & mask;
+            while (slots[i] != EMPTY) i = (i + 1) & mask;
+            slots[i] = v;
+        }
+    }
+
+    // MurmurHash3 fmix64 finalizer.
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,397 @@
+package moviediary.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import moviediary.db.CastMigration;
+import moviediary.db.ConnectionPool;
+import moviediary.db.DbConfig;
+import moviediary.db.DbExecutor;
+import moviediary.db.PooledConnection;
+import moviediary.db.Schema;
+import moviediary.db.Sql;
+
+/**
+ * Streaming bulk loader for large CSV/TSV movie dumps.
+ *
+ * One thread reads the file and cuts it into chunks of {@code batchSize}
+ * records, a worker pool parses the chunks, and the calling thread inserts
+ * them in file order with JDBC batches ({@code rewriteBatchedStatements}
+ * turns each batch into multi-row INSERTs), committing every
+ * {@code commitSize} rows. Queues between the stages are bounded, so memory
+ * use does not depend on the file size.
+ *
+ * After each commit the number of committed records goes to a checkpoint
+ * file; rerunning the same import skips them. Rows whose (title, year)
+ * already exists in the database or earlier in the file are skipped as
+ * duplicates. Cast links for the new movies are made by {@link CastMigration}
+ * once the rows are in.
+ *
+ * <pre>java moviediary.importer.MovieImporter [options] file.tsv|file.csv
+ *   --batch=N        records per chunk and JDBC batch (default 1000)
+ *   --commit=N       rows per transaction (default 20000)
+ *   --workers=N      parser threads (default: CPU count)
+ *   --no-header      file has no header; columns are title, year, starring, description
+ *   --format=csv|tsv override the format picked from the file name
+ *   --no-cast        skip linking cast after the import</pre>
+ *
+ * The header may name columns title/primaryTitle, year/startYear,
+ * starring/cast/stars and description/plot/overview (any case), so the IMDb
+ * title.basics dump loads as is.
+ */
+public class MovieImporter {
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+    public static final int DEFAULT_COMMIT_SIZE = 20_000;
+
+    // Column limits from the movies table.
+    private static final int MAX_TITLE = 200;
+    private static final int MAX_STARRING = 300;
+    private static final int MAX_DESCRIPTION = 16_000; // TEXT is 64 KB; leave room for 4-byte characters
+    private static final int MAX_LOGGED_REJECTS = 10;
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
+    private final ConnectionPool pool;
+    private final Path input;
+    private final DelimitedFormat format;
+    private final boolean header;
+    private final int batchSize;
+    private final int commitSize;
+    private final int workers;
+    private final ImportCheckpoint checkpoint;
+
+    private final AtomicLong recordsRead = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** Totals of one run. {@code skipped} records were committed by an earlier run. */
+    public record Result(long records, long skipped, long inserted, long duplicates, long rejected, long millis) {
+        public double rowsPerSecond() {
+            return millis == 0 ? 0 : inserted * 1000.0 / millis;
+        }
+    }
+
+    private record Row(String title, Integer year, String starring, String description, long key) {}
+
+    private record Chunk(long lastRecord, List<Row> rows) {}
+
+    // Where each movies column sits in a record; -1 when the file does not have it.
+    private record Columns(int title, int year, int starring, int description) {
+        static final Columns POSITIONAL = new Columns(0, 1, 2, 3);
+
+        static Columns fromHeader(List<String> names) {
+            int title = -1, year = -1, starring = -1, description = -1;
+            for (int i = 0; i < names.size(); i++) {
+                String n = names.get(i) == null ? "" : names.get(i).trim().toLowerCase(Locale.ROOT);
+                switch (n) {
+                    case "title", "primarytitle" -> { if (title < 0) title = i; }
+                    case "year", "startyear" -> { if (year < 0) year = i; }
+                    case "starring", "cast", "stars" -> { if (starring < 0) starring = i; }
+                    case "description", "plot", "overview" -> { if (description < 0) description = i; }
+                    default -> { }
+                }
+            }
+            if (title < 0) throw new IllegalArgumentException("Header has no title column: " + names);
+            return new Columns(title, year, starring, description);
+        }
+    }
+
+    public MovieImporter(ConnectionPool pool, Path input, DelimitedFormat format, boolean header,
+                         int batchSize, int commitSize, int workers) {
+        this.pool = pool;
+        this.input = input;
+        this.format = format;
+        this.header = header;
+        this.batchSize = batchSize;
+        this.commitSize = Math.max(commitSize, batchSize);
+        this.workers = workers;
+        this.checkpoint = new ImportCheckpoint(input.resolveSibling(input.getFileName() + ".checkpoint"), input);
+    }
+
+    public Result run() throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        long resumeAfter = checkpoint.load();
+        if (resumeAfter > 0) System.out.println("Resuming after record " + resumeAfter);
+
+        LongHashSet seen = loadExistingKeys();
+        System.out.println(seen.size() + " movies already in the database");
+
+        ExecutorService parsers = Executors.newFixedThreadPool(workers, DbExecutor.daemonThreads("import-parse"));
+        BlockingQueue<Future<Chunk>> ordered = new ArrayBlockingQueue<>(workers * 2);
+        Thread reader = new Thread(() -> readChunks(resumeAfter, parsers, ordered), "import-read");
+        reader.setDaemon(true);
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(DbExecutor.daemonThreads("import-progress"));
+        progress.scheduleAtFixedRate(() -> report(start, false), PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        reader.start();
+        try {
+            writeChunks(ordered, seen);
+        } finally {
+            reader.interrupt();
+            parsers.shutdownNow();
+            progress.shutdownNow();
+        }
+        checkpoint.delete();
+        report(start, true);
+        return new Result(recordsRead.get(), resumeAfter, inserted.get(), duplicates.get(), rejected.get(),
+                System.currentTimeMillis() - start);
+    }
+
+    // ---------- READ + PARSE ----------
+    private void readChunks(long resumeAfter, ExecutorService parsers, BlockingQueue<Future<Chunk>> ordered) {
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(input), StandardCharsets.UTF_8), 1 << 20)) {
+            Columns columns = Columns.POSITIONAL;
+            if (header) {
+                String first = nextRecord(in);
+                if (first == null) {
+                    ordered.put(CompletableFuture.completedFuture(null));
+                    return;
+                }
+                if (first.startsWith("\uFEFF")) first = first.substring(1); // UTF-8 BOM
+                columns = Columns.fromHeader(format.split(first));
+            }
+            final Columns cols = columns;
+
+            long record = 0;
+            List<String> chunk = new ArrayList<>(batchSize);
+            String line;
+            while ((line = nextRecord(in)) != null) {
+                record++;
+                recordsRead.incrementAndGet();
+                if (record <= resumeAfter) continue;
+                chunk.add(line);
+                if (chunk.size() == batchSize) {
+                    List<String> lines = chunk;
+                    long last = record;
+                    ordered.put(parsers.submit(() -> parse(lines, last, cols)));
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                List<String> lines = chunk;
+                long last = record;
+                ordered.put(parsers.submit(() -> parse(lines, last, cols)));
+            }
+            ordered.put(CompletableFuture.completedFuture(null)); // end of input
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            try {
+                ordered.put(CompletableFuture.failedFuture(e)); // the writer rethrows it in order
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // One logical record; a quoted CSV field may continue on the next physical line.
+    private String nextRecord(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null || format.isComplete(line)) return line;
+        StringBuilder record = new StringBuilder(line);
+        while (!format.isComplete(record)) {
+            String next = in.readLine();
+            if (next == null) break;
+            record.append('\n').append(next);
+        }
+        return record.toString();
+    }
+
+    private Chunk parse(List<String> lines, long lastRecord, Columns cols) {
+        List<Row> rows = new ArrayList<>(lines.size());
+        long first = lastRecord - lines.size() + 1;
+        for (int i = 0; i < lines.size(); i++) {
+            List<String> f = format.split(lines.get(i));
+            String title = clip(field(f, cols.title()), MAX_TITLE);
+            if (title == null || title.isEmpty()) {
+                reject(first + i, "no title");
+                continue;
+            }
+            Integer year = parseYear(field(f, cols.year()));
+            rows.add(new Row(title, year, clip(field(f, cols.starring()), MAX_STARRING),
+                    clip(field(f, cols.description()), MAX_DESCRIPTION), key(title, year)));
+        }
+        return new Chunk(lastRecord, rows);
+    }
+
+    private static String field(List<String> fields, int index) {
+        if (index < 0 || index >= fields.size()) return null;
+        String v = fields.get(index);
+        return v == null ? null : v.trim();
+    }
+
+    private static String clip(String s, int max) {
+        return s == null || s.length() <= max ? s : s.substring(0, max);
+    }
+
+    private static Integer parseYear(String s) {
+        if (s == null || s.isEmpty()) return null;
+        try {
+            return Integer.valueOf(s);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void reject(long record, String reason) {
+        if (rejected.incrementAndGet() <= MAX_LOGGED_REJECTS) System.err.println("Skipping record " + record + ": " + reason);
+    }
+
+    // 64-bit fingerprint of (title, year), case-insensitive like the default MySQL collation.
+    static long key(String title, Integer year) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        String t = title.trim().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < t.length(); i++) {
+            h ^= t.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return LongHashSet.mix(h ^ (year == null ? 0x9e3779b97f4a7c15L : year));
+    }
+
+    // ---------- WRITE ----------
+    private LongHashSet loadExistingKeys() throws SQLException {
+        return pool.withConnection(pc -> {
+            LongHashSet keys = new LongHashSet(1 << 16);
+            PreparedStatement ps = pc.prepare(Sql.MOVIE_TITLES_AND_YEARS);
+            ps.setFetchSize(Integer.MIN_VALUE); // stream
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String title = rs.getString(1);
+                    if (title == null) continue; // imported rows always have a title, so it cannot match one
+                    int year = rs.getInt(2);
+                    keys.add(key(title, rs.wasNull() ? null : year));
+                }
+            }
+            return keys;
+        });
+    }
+
+    private void writeChunks(BlockingQueue<Future<Chunk>> ordered, LongHashSet seen) throws IOException, SQLException {
+        try (PooledConnection pc = pool.borrow()) {
+            Connection conn = pc.connection();
+            conn.setAutoCommit(false);
+            PreparedStatement insert = pc.prepare(Sql.IMPORT_MOVIE);
+            int uncommitted = 0;
+            try {
+                while (true) {
+                    Chunk chunk = await(ordered.take());
+                    if (chunk == null) break;
+
+                    int batched = 0;
+                    for (Row r : chunk.rows()) {
+                        if (!seen.add(r.key())) {
+                            duplicates.incrementAndGet();
+                            continue;
+                        }
+                        insert.setString(1, r.title());
+                        if (r.year() == null) insert.setNull(2, Types.INTEGER); else insert.setInt(2, r.year());
+                        insert.setString(3, r.starring());
+                        insert.setString(4, r.description());
+                        insert.addBatch();
+                        batched++;
+                    }
+                    if (batched > 0) insert.executeBatch();
+                    inserted.addAndGet(batched);
+                    uncommitted += batched;
+
+                    if (uncommitted >= commitSize) {
+                        conn.commit();
+                        checkpoint.save(chunk.lastRecord(), inserted.get());
+                        uncommitted = 0;
+                    }
+                }
+                conn.commit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Import interrupted", e);
+            } catch (SQLException e) {
+                if (ConnectionPool.isConnectionFailure(e)) pc.markBroken();
+                throw e;
+            }
+        }
+    }
+
+    private static Chunk await(Future<Chunk> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(cause);
+        }
+    }
+
+    private void report(long start, boolean done) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        System.out.printf("%s records=%d inserted=%d duplicates=%d rejected=%d (%.0f rows/s)%n",
+                done ? "Done:" : "...", recordsRead.get(), inserted.get(), duplicates.get(), rejected.get(),
+                inserted.get() * 1000.0 / elapsed);
+    }
+
+    // ---------- CLI ----------
+    public static void main(String[] args) throws Exception {
+        Path file = null;
+        DelimitedFormat format = null;
+        boolean header = true;
+        boolean linkCast = true;
+        int batch = DEFAULT_BATCH_SIZE;
+        int commit = DEFAULT_COMMIT_SIZE;
+        int workers = Runtime.getRuntime().availableProcessors();
+        for (String a : args) {
+            if (a.startsWith("--batch=")) batch = Integer.parseInt(a.substring(8));
+            else if (a.startsWith("--commit=")) commit = Integer.parseInt(a.substring(9));
+            else if (a.startsWith("--workers=")) workers = Integer.parseInt(a.substring(10));
+            else if (a.startsWith("--format=")) format = DelimitedFormat.valueOf(a.substring(9).toUpperCase(Locale.ROOT));
+            else if (a.equals("--no-header")) header = false;
+            else if (a.equals("--no-cast")) linkCast = false;
+            else if (a.startsWith("--")) throw new IllegalArgumentException("Unknown option " + a);
+            else file = Paths.get(a);
+        }
+        if (file == null) {
+            System.err.println("usage: MovieImporter [--batch=N] [--commit=N] [--workers=N] [--format=csv|tsv] [--no-header] [--no-cast] FILE");
+            System.exit(2);
+        }
+        if (format == null) format = DelimitedFormat.forFile(file.getFileName().toString());
+
+        try (ConnectionPool pool = DbConfig.pool(2, "rewriteBatchedStatements=true")) {
+            Result r = new MovieImporter(pool, file, format, header, batch, commit, workers).run();
+            System.out.printf("Imported %d movies from %d records in %.1f s (%.0f rows/s), %d duplicates, %d rejected%n",
+                    r.inserted(), r.records() - r.skipped(), r.millis() / 1000.0, r.rowsPerSecond(), r.duplicates(), r.rejected());
+            if (linkCast && r.inserted() > 0) {
+                System.out.println("Linking cast...");
+                pool.withConnection(pc -> {
+                    try (Statement st = pc.connection().createStatement()) {
+                        Schema.createCastTables(st); // in case no front-end has run against this database yet
+                    }
+                    return null;
+                });
+                System.out.println("Linked cast for " + new CastMigration(pool).run() + " movies");
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package moviediary.leaderboard;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import moviediary.analytics.ReviewAnalytics;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieStore;
+
+/**
+ * Three leaderboards kept in memory so the screens never aggregate
+ * {@code reviews}: best rated of all time (Bayesian average), trending
+ * (most reviews in the last {@link #TRENDING_WINDOW}) and most watchlisted.
+ *
+ * Per-movie totals live in primitive arrays; each board is a {@link
+ * TopBoard} of the best {@value #CAPACITY} that is adjusted on every {@code
+ * addReview} and {@code addToWatchlist} through the {@link CatalogListener}
+ * callbacks, so showing the top N costs O(N).
+ *
+ * {@link #reconcile} reloads the totals from the store and rebuilds the
+ * boards; {@link #startReconciling} runs it periodically to pick up writes
+ * made by other processes. The catalogue-wide mean used as the Bayesian
+ * prior is fixed at each reconcile, so one review moves one movie. A write
+ * that races a reconcile may be counted twice until the next one.
+ */
+public class Leaderboards implements CatalogListener {
+    public static final int CAPACITY = 100;
+    public static final Duration TRENDING_WINDOW = Duration.ofDays(7);
+    public static final Duration RECONCILE_PERIOD =
+            Duration.ofMinutes(Long.getLong("moviediary.leaderboards.reconcileMinutes", 15));
+
+    private final double priorWeight = ReviewAnalytics.DEFAULT_PRIOR_WEIGHT;
+
+    // ---------- STATE (guarded by this) ----------
+    private int[] reviewCount = new int[0];
+    private long[] ratingSum = new long[0];
+    private int[] recentCount = new int[0];
+    private int[] watchCount = new int[0];
+    private double priorMean;
+    // Reviews inside the trending window, oldest first.
+    private final RecentReviews recent = new RecentReviews();
+    // Writes seen while a reconcile is reading; null when none is running.
+    private List<long[]> racing;
+    private volatile boolean ready;
+
+    private final TopBoard topRated = new TopBoard(CAPACITY, new TopBoard.Scores() {
+        @Override public int length() { return reviewCount.length; }
+        @Override public int count(int m) { return reviewCount[m]; }
+        @Override public double score(int m) { return (priorWeight * priorMean + ratingSum[m]) / (priorWeight + reviewCount[m]); }
+    });
+    private final TopBoard trending = new TopBoard(CAPACITY, new TopBoard.Scores() {
+        @Override public int length() { return recentCount.length; }
+        @Override public int count(int m) { return recentCount[m]; }
+        @Override public double score(int m) { return recentCount[m]; }
+    });
+    private final TopBoard mostWatchlisted = new TopBoard(CAPACITY, new TopBoard.Scores() {
+        @Override public int length() { return watchCount.length; }
+        @Override public int count(int m) { return watchCount[m]; }
+        @Override public double score(int m) { return watchCount[m]; }
+    });
+
+    /** Loads the boards for the first time. */
+    public void buildFrom(MovieStore store) throws SQLException {
+        reconcile(store);
+    }
+
+    public boolean isReady() { return ready; }
+
+    // ---------- READS ----------
+    /** Highest Bayesian average first; {@code count} is the number of reviews. */
+    public List<RankedMovie> topRated(int n) {
+        return topRated.top(n);
+    }
+
+    /** Most reviews in the last {@link #TRENDING_WINDOW} first. */
+    public List<RankedMovie> trending(int n) {
+        synchronized (this) {
+            expire(System.currentTimeMillis()); // the window moves even when nobody writes
+            trending.settle();
+        }
+        return trending.top(n);
+    }
+
+    public List<RankedMovie> mostWatchlisted(int n) {
+        return mostWatchlisted.top(n);
+    }
+
+    // ---------- LIVE UPDATES ----------
+    @Override
+    public synchronized void reviewAdded(int reviewId, int movieId, int userId, int rating, Timestamp createdAt) {
+        if (racing != null) racing.add(new long[] {reviewId, movieId, rating, createdAt.getTime()});
+        applyReview(movieId, rating, createdAt.getTime());
+        expire(System.currentTimeMillis());
+        settle();
+    }
+
+    @Override
+    public synchronized void watchlistAdded(int userId, int movieId, Timestamp addedAt) {
+        if (racing != null) racing.add(new long[] {-1, movieId});
+        applyWatch(movieId);
+        settle();
+    }
+
+    // ---------- RECONCILE ----------
+    /**
+     * Replaces every total with a fresh read from {@code store} and rebuilds
+     * the boards. Reads run without the lock; live updates keep applying to
+     * the old totals meanwhile and are replayed onto the new ones.
+     */
+    public void reconcile(MovieStore store) throws SQLException {
+        synchronized (this) {
+            if (racing != null) return; // one is already running
+            racing = new ArrayList<>();
+        }
+        long since = System.currentTimeMillis() - TRENDING_WINDOW.toMillis();
+        Totals reviews = new Totals();
+        Totals watched = new Totals();
+        RecentReviews window = new RecentReviews();
+        try {
+            store.forEachRatingTotal(reviews::add);
+            store.forEachReviewSince(since, (id, movieId, userId, rating, at) -> window.add(id, movieId, at));
+            store.forEachWatchlistCount((movieId, n) -> watched.add(movieId, n, 0));
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                racing = null;
+            }
+            throw e;
+        }
+        window.sortByTime();
+        synchronized (this) {
+            List<long[]> seen = racing;
+            racing = null;
+            install(reviews, watched, window, seen);
+        }
+    }
+
+    /** Reconciles every {@link #RECONCILE_PERIOD} on a daemon thread until the JVM exits. */
+    public void startReconciling(MovieStore store) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "leaderboard-reconcile");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = RECONCILE_PERIOD.toMillis();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile(store);
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("Leaderboard reconcile failed: " + e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void install(Totals reviews, Totals watched, RecentReviews window, List<long[]> seen) {
+        reviewCount = reviews.counts;
+        ratingSum = reviews.sums;
+        watchCount = watched.counts;
+        recentCount = new int[reviewCount.length];
+        recent.replaceWith(window);
+        for (int i = recent.head; i < recent.head + recent.size; i++) {
+            int movieId = recent.movieId[i];
+            grow(movieId);
+            recentCount[movieId]++;
+        }
+        long total = 0;
+        long sum = 0;
+        for (int m = 0; m < reviewCount.length; m++) {
+            total += reviewCount[m];
+            sum += ratingSum[m];
+        }
+        priorMean = total == 0 ? 0 : (double) sum / total;
+        for (long[] w : seen) {
+            if (w[0] < 0) applyWatch((int) w[1]);
+            else if (!window.contains((int) w[0])) applyReview((int) w[1], (int) w[2], w[3]);
+        }
+        expire(System.currentTimeMillis());
+        topRated.invalidate();
+        trending.invalidate();
+        mostWatchlisted.invalidate();
+        settle();
+        ready = true;
+    }
+
+    // ---------- HELPERS ----------
+    private void applyReview(int movieId, int rating, long createdAt) {
+        grow(movieId);
+        reviewCount[movieId]++;
+        ratingSum[movieId] += rating;
+        topRated.changed(movieId);
+        if (createdAt >= System.currentTimeMillis() - TRENDING_WINDOW.toMillis()) {
+            recent.add(0, movieId, createdAt);
+            recentCount[movieId]++;
+            trending.changed(movieId);
+        }
+    }
+
+    private void applyWatch(int movieId) {
+        grow(movieId);
+        watchCount[movieId]++;
+        mostWatchlisted.changed(movieId);
+    }
+
+    private void expire(long now) {
+        long cutoff = now - TRENDING_WINDOW.toMillis();
+        while (recent.size > 0 && recent.oldest() < cutoff) {
+            int movieId = recent.removeOldest();
+            recentCount[movieId]--;
+            trending.changed(movieId);
+        }
+    }
+
+    private void settle() {
+        topRated.settle();
+        trending.settle();
+        mostWatchlisted.settle();
+    }
+
+    // Makes every per-movie array long enough to index movieId.
+    private void grow(int movieId) {
+        if (movieId >= reviewCount.length) {
+            reviewCount = Arrays.copyOf(reviewCount, grownLength(reviewCount.length, movieId));
+            ratingSum = Arrays.copyOf(ratingSum, reviewCount.length);
+        }
+        if (movieId >= recentCount.length) recentCount = Arrays.copyOf(recentCount, grownLength(recentCount.length, movieId));
+        if (movieId >= watchCount.length) watchCount = Arrays.copyOf(watchCount, grownLength(watchCount.length, movieId));
+    }
+
+    private static int grownLength(int length, int movieId) {
+        return Math.max(movieId + 1, length + (length >> 1));
+    }
+
+    // Per-movie (count, sum) rows gathered into arrays indexed by movie id.
+    private static final class Totals {
+        int[] counts = new int[0];
+        long[] sums = new long[0];
+
+        void add(int movieId, int count, long sum) {
+            if (movieId < 0) return;
+            if (movieId >= counts.length) {
+                int n = Math.max(movieId + 1, counts.length * 2);
+                counts = Arrays.copyOf(counts, n);
+                sums = Arrays.copyOf(sums, n);
+            }
+            counts[movieId] += count;
+            sums[movieId] += sum;
+        }
+    }
+
+    // FIFO of (review id, movie, created_at) in primitive arrays; ids are 0 for live entries.
+    private static final class RecentReviews {
+        int[] id = new int[64];
+        int[] movieId = new int[64];
+        long[] createdAt = new long[64];
+        int head;
+        int size;
+        // Sorted copy of the ids, for contains(); only built for a freshly loaded window.
+        int[] sortedIds;
+
+        void add(int reviewId, int movie, long at) {
+            if (head + size == id.length) {
+                if (head > id.length / 2) compact();
+                else {
+                    int n = id.length * 2;
+                    id = Arrays.copyOf(id, n);
+                    movieId = Arrays.copyOf(movieId, n);
+                    createdAt = Arrays.copyOf(createdAt, n);
+                }
+            }
+            int i = head + size++;
+            id[i] = reviewId;
+            movieId[i] = movie;
+            createdAt[i] = at;
+        }
+
+        long oldest() {
+            return createdAt[head];
+        }
+
+        int removeOldest() {
+            size--;
+            return movieId[head++];
+        }
+
+        private void compact() {
+            System.arraycopy(id, head, id, 0, size);
+            System.arraycopy(movieId, head, movieId, 0, size);
+            System.arraycopy(createdAt, head, createdAt, 0, size);
+            head = 0;
+        }
+
+        // The window has to expire in time order; stores stream it in id order, which nearly always is.
+        void sortByTime() {
+            compact();
+            sortedIds = Arrays.copyOf(id, size);
+            Arrays.sort(sortedIds);
+            boolean inOrder = true;
+            for (int i = 1; i < size && inOrder; i++) inOrder = createdAt[i - 1] <= createdAt[i];
+            if (inOrder) return;
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Long.compare(createdAt[a], createdAt[b]));
+            int[] ids = new int[size];
+            int[] movies = new int[size];
+            long[] times = new long[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = id[order[i]];
+                movies[i] = movieId[order[i]];
+                times[i] = createdAt[order[i]];
+            }
+            id = Arrays.copyOf(ids, Math.max(64, size));
+            movieId = Arrays.copyOf(movies, Math.max(64, size));
+            createdAt = Arrays.copyOf(times, Math.max(64, size));
+        }
+
+        boolean contains(int reviewId) {
+            return sortedIds != null && Arrays.binarySearch(sortedIds, reviewId) >= 0;
+        }
+
+        void replaceWith(RecentReviews other) {
+            id = other.id;
+            movieId = other.movieId;
+            createdAt = other.createdAt;
+            head = other.head;
+            size = other.size;
+            sortedIds = null;
+        }
+    }
+}
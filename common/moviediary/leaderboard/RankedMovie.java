@@ -0,0 +1,8 @@
+package moviediary.leaderboard;
+
+/**
+ * One row of a leaderboard. {@code score} is what the board is ordered by
+ * (a Bayesian average, or a plain count); {@code count} is the number of
+ * reviews or saves behind it.
+ */
+public record RankedMovie(int movieId, double score, int count) {}
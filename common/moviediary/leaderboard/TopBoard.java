@@ -0,0 +1,119 @@
+package moviediary.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The best {@code capacity} movies by one score, in a skip list that readers
+ * walk without locking. Writers (serialized by {@link Leaderboards}) report
+ * each movie whose score changed; the board moves it, admits it or evicts
+ * the weakest member.
+ *
+ * The board tracks up to twice {@code capacity} movies, always the best
+ * ones, so the reserve below the cut refills the board when a member loses
+ * ground. A member that falls below every tracked movie while others wait
+ * outside is dropped; only when the tracked set has shrunk under {@code
+ * capacity} is the board marked stale and rebuilt from the per-movie scores
+ * by {@link #settle()}.
+ */
+final class TopBoard {
+    static final Comparator<RankedMovie> ORDER = Comparator.comparingDouble(RankedMovie::score).reversed()
+            .thenComparing(Comparator.comparingInt(RankedMovie::count).reversed())
+            .thenComparingInt(RankedMovie::movieId);
+
+    /** Current per-movie values the board ranks; a movie with count 0 is not ranked. */
+    interface Scores {
+        int length();
+        int count(int movieId);
+        double score(int movieId);
+    }
+
+    private final int capacity;
+    // Movies tracked at most: the visible ones plus a reserve just below them.
+    private final int tracked;
+    private final Scores scores;
+    private volatile ConcurrentSkipListSet<RankedMovie> ranked = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<Integer, RankedMovie> members = new HashMap<>();
+    // Some ranked movie is not tracked; every such movie ranks below all tracked ones.
+    private boolean truncated;
+    private boolean stale;
+
+    TopBoard(int capacity, Scores scores) {
+        this.capacity = capacity;
+        this.tracked = capacity * 2;
+        this.scores = scores;
+    }
+
+    /** Up to {@code n} movies, best first. */
+    List<RankedMovie> top(int n) {
+        n = Math.min(n, capacity);
+        List<RankedMovie> top = new ArrayList<>(n);
+        for (RankedMovie r : ranked) {
+            if (top.size() == n) break;
+            top.add(r);
+        }
+        return top;
+    }
+
+    void changed(int movieId) {
+        if (stale) return; // the rebuild will pick it up
+        RankedMovie old = members.remove(movieId);
+        if (old != null) ranked.remove(old);
+        int count = scores.count(movieId);
+        RankedMovie now = count == 0 ? null : new RankedMovie(movieId, scores.score(movieId), count);
+        if (now != null && (!truncated || (!ranked.isEmpty() && ORDER.compare(now, ranked.last()) < 0))) {
+            put(now);
+            if (members.size() > tracked) {
+                RankedMovie weakest = ranked.pollLast();
+                members.remove(weakest.movieId());
+                truncated = true;
+            }
+            return;
+        }
+        // Gone, or now below every tracked movie where an untracked one may beat it
+        if (old != null && truncated && members.size() < capacity) stale = true;
+    }
+
+    /** Marks the whole board for recomputation, for changes that touch every score. */
+    void invalidate() {
+        stale = true;
+    }
+
+    /**
+     * Rebuilds the board if a change could not be applied incrementally.
+     * O(movies) when it does, which is at most once per {@code capacity}
+     * demotions.
+     */
+    void settle() {
+        if (!stale) return;
+        // Weakest on top, so it is the one dropped when a better movie turns up
+        PriorityQueue<RankedMovie> best = new PriorityQueue<>(tracked + 1, ORDER.reversed());
+        int candidates = 0;
+        for (int m = 0; m < scores.length(); m++) {
+            int count = scores.count(m);
+            if (count == 0) continue;
+            candidates++;
+            best.add(new RankedMovie(m, scores.score(m), count));
+            if (best.size() > tracked) best.poll();
+        }
+        ConcurrentSkipListSet<RankedMovie> rebuilt = new ConcurrentSkipListSet<>(ORDER);
+        members.clear();
+        for (RankedMovie r : best) {
+            rebuilt.add(r);
+            members.put(r.movieId(), r);
+        }
+        this.ranked = rebuilt;
+        truncated = candidates > tracked;
+        stale = false;
+    }
+
+    private void put(RankedMovie r) {
+        members.put(r.movieId(), r);
+        ranked.add(r);
+    }
+}
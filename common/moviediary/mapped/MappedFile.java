@@ -0,0 +1,111 @@
+package moviediary.mapped;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file mapped into memory in fixed regions of {@value #REGION_SIZE} bytes
+ * and addressed with long offsets, so it can grow past the 2 GB limit of a
+ * single {@link MappedByteBuffer}. Regions are mapped as the file grows; the
+ * file is extended a region at a time (sparse on the usual filesystems).
+ *
+ * Accesses must not straddle a region boundary. Index slots keep that true
+ * by being 8-byte aligned; log records are placed so they never cross one.
+ *
+ * Not synchronized: {@link MappedStore} serializes writers and lets readers
+ * in under its read lock.
+ */
+final class MappedFile implements Closeable {
+    static final int REGION_BITS = 26;
+    static final int REGION_SIZE = 1 << REGION_BITS; // 64 MB
+    private static final long REGION_MASK = REGION_SIZE - 1;
+
+    private final FileChannel channel;
+    private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private boolean closed;
+
+    MappedFile(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        ensureCapacity(Math.max(size, 1));
+    }
+
+    FileChannel channel() { return channel; }
+
+    long capacity() {
+        return (long) regions.length << REGION_BITS;
+    }
+
+    /** Maps (and if needed extends the file to) enough regions to cover {@code size} bytes. */
+    void ensureCapacity(long size) throws IOException {
+        int needed = (int) ((size + REGION_MASK) >>> REGION_BITS);
+        if (needed <= regions.length) return;
+        MappedByteBuffer[] grown = Arrays.copyOf(regions, needed);
+        for (int i = regions.length; i < needed; i++) {
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << REGION_BITS, REGION_SIZE);
+        }
+        regions = grown;
+    }
+
+    /** Like {@link #ensureCapacity} but for a slot index: grows by doubling to avoid remapping on every insert. */
+    void ensureSlot(long end) throws IOException {
+        if (end <= capacity()) return;
+        ensureCapacity(Math.max(end, capacity() * 2));
+    }
+
+    private MappedByteBuffer region(long pos) {
+        return regions[(int) (pos >>> REGION_BITS)];
+    }
+
+    private static int at(long pos) {
+        return (int) (pos & REGION_MASK);
+    }
+
+    /** Bytes left in the region that {@code pos} falls in. */
+    static long remainingInRegion(long pos) {
+        return REGION_SIZE - (pos & REGION_MASK);
+    }
+
+    byte get(long pos) { return region(pos).get(at(pos)); }
+
+    void put(long pos, byte v) { region(pos).put(at(pos), v); }
+
+    int getInt(long pos) { return region(pos).getInt(at(pos)); }
+
+    void putInt(long pos, int v) { region(pos).putInt(at(pos), v); }
+
+    long getLong(long pos) { return region(pos).getLong(at(pos)); }
+
+    void putLong(long pos, long v) { region(pos).putLong(at(pos), v); }
+
+    void get(long pos, byte[] dst, int off, int len) { region(pos).get(at(pos), dst, off, len); }
+
+    void put(long pos, byte[] src, int off, int len) { region(pos).put(at(pos), src, off, len); }
+
+    /** Zeroes {@code [from, to)}; both ends inside one region. */
+    void zero(long from, long to) {
+        MappedByteBuffer r = region(from);
+        byte[] zeros = new byte[(int) Math.min(8192, to - from)];
+        for (long p = from; p < to; p += zeros.length) {
+            r.put(at(p), zeros, 0, (int) Math.min(zeros.length, to - p));
+        }
+    }
+
+    void force() {
+        for (MappedByteBuffer r : regions) r.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        force();
+        regions = new MappedByteBuffer[0]; // unmapped once collected
+        channel.close();
+    }
+}
@@ -0,0 +1,1001 @@
+package moviediary.mapped;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStore;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.ReviewEntry;
+import moviediary.model.UserCredential;
+import moviediary.model.WatchlistEntry;
+
+/**
+ * {@link MovieStore} over memory-mapped files, with no JDBC at all.
+ *
+ * <pre>
+ * records.log    append-only log of users, movies, reviews and watchlist rows
+ * movies.idx     movie id  -> log offset, newest review offset, rating aggregates
+ * users.idx      user id   -> log offset, newest watchlist offset, watchlist size
+ * watchlist.idx  entry id  -> log offset
+ * </pre>
+ *
+ * Index slots are fixed-width and addressed by id, so a lookup is one
+ * multiplication. Review and watchlist records carry the offset of the
+ * previous record for the same movie or user, so "latest 5 reviews" and a
+ * watchlist page walk a short chain backwards from the index. Scalars are read
+ * straight out of the mapping; only strings handed to callers are decoded.
+ *
+ * Each append writes the record body, then its CRC, then its length, so a
+ * record becomes visible to a scan only once it is complete. The log header
+ * carries a clean-shutdown flag. If it is missing on open, the log is scanned
+ * up to the first torn or corrupt record, the tail is zeroed, and the index
+ * files are rebuilt from the log. Title order, usernames, people and
+ * watchlist membership bitmaps are rebuilt in memory on open.
+ */
+public final class MappedStore implements MovieStore {
+    private static final int MAGIC = 0x4D444D53; // "MDMS"
+    private static final int VERSION = 1;
+
+    // records.log header
+    private static final int LOG_HEADER = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_END = 8;
+    private static final int H_CLEAN = 16;
+    private static final int H_USERS = 20;
+    private static final int H_MOVIES = 24;
+    private static final int H_REVIEWS = 28;
+    private static final int H_WATCHES = 32;
+
+    // Record framing: length:int crc:int, then type:byte payload, padded to 8 bytes.
+    private static final int PAD = -1; // rest of the region is unused
+    private static final byte USER = 1;
+    private static final byte MOVIE = 2;
+    private static final byte REVIEW = 3;
+    private static final byte WATCH = 4;
+
+    // movies.idx slot
+    private static final int MOVIE_SLOT = 80;
+    private static final int M_RECORD = 0;
+    private static final int M_REVIEW_HEAD = 8;
+    private static final int M_COUNT = 16;
+    private static final int M_SUM = 24;
+    private static final int M_SUM_SQ = 32;
+    private static final int M_HISTOGRAM = 40;
+
+    // users.idx slot
+    private static final int USER_SLOT = 24;
+    private static final int U_RECORD = 0;
+    private static final int U_WATCH_HEAD = 8;
+    private static final int U_WATCH_COUNT = 16;
+
+    private static final int WATCH_SLOT = 8;
+
+    // Column limits from setupDB().
+    private static final int MAX_USERNAME = 50;
+    private static final int MAX_PASSWORD = 100;
+    private static final int MAX_TITLE = 200;
+    private static final int MAX_STARRING = 300;
+
+    private static final Comparator<MovieSummary> BY_YEAR = Comparator
+            .comparing(MovieSummary::year, Comparator.nullsFirst(Comparator.<Integer>naturalOrder()))
+            .thenComparing((MovieSummary m) -> m.title() == null ? "" : m.title(), String.CASE_INSENSITIVE_ORDER)
+            .thenComparingInt(MovieSummary::id);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock; the header is written once, by the first close.
+    private boolean closed;
+    private final List<CatalogListener> listeners = new CopyOnWriteArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    private final MappedFile log;
+    private final MappedFile movieIndex;
+    private final MappedFile userIndex;
+    private final MappedFile watchIndex;
+    private final FileLock fileLock;
+    private long end;
+    private int users;
+    private int movies;
+    private int reviews;
+    private int watches;
+
+    // Rebuilt on open.
+    private final Map<String, Integer> userIds = new HashMap<>();
+    private int[] byTitle = new int[16];
+    private final TreeMap<String, Person> people = new TreeMap<>();
+    private final Map<Integer, BitSet> watched = new HashMap<>();
+
+    private static final class Person {
+        final String name;
+        int[] movies = new int[2];
+        int size;
+
+        Person(String name) {
+            this.name = name;
+        }
+
+        void add(int movieId) {
+            if (size == movies.length) movies = Arrays.copyOf(movies, size * 2);
+            movies[size++] = movieId;
+        }
+    }
+
+    private MappedStore(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        log = new MappedFile(dir.resolve("records.log"));
+        fileLock = log.channel().tryLock();
+        if (fileLock == null) {
+            log.close();
+            throw new IOException(dir + " is in use by another process");
+        }
+        // From here on every failure must give the lock back and close what is open, or the
+        // directory stays locked until this process exits.
+        List<MappedFile> opened = new ArrayList<>(List.of(log));
+        try {
+            boolean fresh = log.getInt(H_MAGIC) == 0;
+            if (!fresh && (log.getInt(H_MAGIC) != MAGIC || log.getInt(H_VERSION) != VERSION)) {
+                throw new IOException(dir + " does not hold a version " + VERSION + " movie store");
+            }
+            boolean clean = !fresh && log.getInt(H_CLEAN) == 1;
+            if (!clean) {
+                // The indexes are rebuilt from the log; start from new files, since a mapped file cannot be truncated everywhere
+                for (String index : new String[] {"movies.idx", "users.idx", "watchlist.idx"}) Files.deleteIfExists(dir.resolve(index));
+            }
+            movieIndex = openIndex(opened, dir.resolve("movies.idx"));
+            userIndex = openIndex(opened, dir.resolve("users.idx"));
+            watchIndex = openIndex(opened, dir.resolve("watchlist.idx"));
+
+            if (fresh) {
+                log.putInt(H_MAGIC, MAGIC);
+                log.putInt(H_VERSION, VERSION);
+                end = LOG_HEADER;
+            } else if (clean) {
+                end = log.getLong(H_END);
+                users = log.getInt(H_USERS);
+                movies = log.getInt(H_MOVIES);
+                reviews = log.getInt(H_REVIEWS);
+                watches = log.getInt(H_WATCHES);
+            } else {
+                recover();
+            }
+            log.putInt(H_CLEAN, 0);
+            writeHeader();
+            log.force();
+            loadMemoryIndexes();
+        } catch (IOException | RuntimeException e) {
+            try {
+                fileLock.release();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            for (MappedFile f : opened) {
+                try {
+                    f.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static MappedFile openIndex(List<MappedFile> opened, Path file) throws IOException {
+        MappedFile f = new MappedFile(file);
+        opened.add(f);
+        return f;
+    }
+
+    /** Opens the store in {@code dir}, creating it if needed. Only one process may have it open. */
+    public static MappedStore open(Path dir) throws SQLException {
+        try {
+            return new MappedStore(dir);
+        } catch (IOException e) {
+            throw new SQLException("Cannot open mapped store in " + dir + ": " + e.getMessage(), "08001", e);
+        }
+    }
+
+    /** {@code -Dmoviediary.mapped.dir}, or {@code moviediary-mapped} in the working directory. */
+    public static Path defaultDirectory() {
+        return Paths.get(System.getProperty("moviediary.mapped.dir", "moviediary-mapped"));
+    }
+
+    @Override
+    public void addListener(CatalogListener listener) {
+        listeners.add(listener);
+    }
+
+    // ---------- USERS ----------
+    @Override
+    public void register(String username, String passwordHash) throws SQLException {
+        if (username == null || passwordHash == null) {
+            throw new SQLIntegrityConstraintViolationException(
+                    "Column '" + (username == null ? "username" : "password") + "' cannot be null", "23000", 1048);
+        }
+        checkLength("username", username, MAX_USERNAME);
+        checkLength("password", passwordHash, MAX_PASSWORD);
+        lock.writeLock().lock();
+        try {
+            if (userIds.containsKey(nameKey(username))) {
+                throw new SQLIntegrityConstraintViolationException(
+                        "Duplicate entry '" + username + "' for key 'users.username'", "23000", 1062);
+            }
+            byte[] name = utf8(username);
+            byte[] pass = utf8(passwordHash);
+            int id = users + 1;
+            ByteBuffer r = record(USER, 4 + 8 + name.length + pass.length);
+            r.putInt(id);
+            putString(r, name);
+            putString(r, pass);
+            commit(r);
+            userIds.put(nameKey(username), id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public UserCredential credentialOf(String username) {
+        lock.readLock().lock();
+        try {
+            Integer id = username == null ? null : userIds.get(nameKey(username));
+            return id == null ? null : new UserCredential(id, storedPassword(id));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Appends a fresh USER record for the same id; the index then points at it.
+    @Override
+    public boolean replacePassword(int userId, String expected, String replacement) throws SQLException {
+        checkLength("password", replacement, MAX_PASSWORD);
+        lock.writeLock().lock();
+        try {
+            if (userId < 1 || userId > users || !storedPassword(userId).equals(expected)) return false;
+            byte[] name = utf8(username(userId));
+            byte[] pass = utf8(replacement);
+            ByteBuffer r = record(USER, 4 + 8 + name.length + pass.length);
+            r.putInt(userId);
+            putString(r, name);
+            putString(r, pass);
+            commit(r);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private String storedPassword(int userId) {
+        return readString(skipString(userIndex.getLong(userSlot(userId) + U_RECORD) + 13));
+    }
+
+    @Override
+    public Integer findUserId(String username) {
+        lock.readLock().lock();
+        try {
+            return username == null ? null : userIds.get(nameKey(username));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- MOVIES ----------
+    @Override
+    public int addMovie(String title, Integer year, String starring, String description) throws SQLException {
+        checkLength("title", title, MAX_TITLE);
+        checkLength("starring", starring, MAX_STARRING);
+        MovieRecord movie;
+        lock.writeLock().lock();
+        try {
+            byte[] t = utf8(title);
+            byte[] s = utf8(starring);
+            byte[] d = utf8(description);
+            int id = movies + 1;
+            ByteBuffer r = record(MOVIE, 8 + len(t) + len(s) + len(d));
+            r.putInt(id);
+            r.putInt(year == null ? Integer.MIN_VALUE : year);
+            putString(r, t);
+            putString(r, s);
+            putString(r, d);
+            commit(r);
+            movie = new MovieRecord(id, title, year, starring, description);
+            insertByTitle(id);
+            addCast(movie);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (CatalogListener l : listeners) l.movieAdded(movie);
+        return movie.id();
+    }
+
+    @Override
+    public List<MovieSummary> listMovies(MovieOrder order) {
+        lock.readLock().lock();
+        try {
+            return page(order, 0, movies);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int countMovies() {
+        lock.readLock().lock();
+        try {
+            return movies;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MovieSummary> moviesAfter(MovieOrder order, MovieSummary after, int limit) {
+        lock.readLock().lock();
+        try {
+            int from = after == null ? 0 : position(order, after, true);
+            return page(order, from, (int) Math.min(movies, (long) from + limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<MovieSummary> moviesBefore(MovieOrder order, MovieSummary before, int limit) {
+        lock.readLock().lock();
+        try {
+            int to = position(order, before, false);
+            return page(order, Math.max(0, to - limit), to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public MovieSummary movieAt(MovieOrder order, int position) {
+        lock.readLock().lock();
+        try {
+            if (position < 0 || position >= movies) return null;
+            return summary(order == MovieOrder.ID ? position + 1 : byTitle[position]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachMovie(Consumer<MovieRecord> sink) {
+        int count;
+        lock.readLock().lock();
+        try {
+            count = movies;
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Records never move, so each one can be read under a short lock of its own.
+        for (int id = 1; id <= count; id++) sink.accept(findMovie(id));
+    }
+
+    @Override
+    public MovieRecord findMovie(int movieId) {
+        lock.readLock().lock();
+        try {
+            if (movieId < 1 || movieId > movies) return null;
+            long r = movieRecord(movieId);
+            int year = log.getInt(r + 13);
+            long p = r + 17;
+            String title = readString(p);
+            p = skipString(p);
+            String starring = readString(p);
+            p = skipString(p);
+            return new MovieRecord(movieId, title, year == Integer.MIN_VALUE ? null : year, starring, readString(p));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- CAST ----------
+    @Override
+    public List<String> castOf(int movieId) {
+        MovieRecord m = findMovie(movieId);
+        if (m == null) return new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Credited under the spelling first seen, like the people table.
+            for (String name : MovieDao.parseCast(m.starring())) {
+                Person p = people.get(nameKey(name));
+                names.add(p == null ? name : p.name);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return names;
+    }
+
+    @Override
+    public List<MovieSummary> filmography(String name) {
+        lock.readLock().lock();
+        try {
+            Person p = people.get(nameKey(name.trim()));
+            List<MovieSummary> result = new ArrayList<>();
+            if (p == null) return result;
+            for (int i = 0; i < p.size; i++) result.add(summary(p.movies[i]));
+            result.sort(BY_YEAR);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> peopleStartingWith(String prefix, int limit) {
+        String from = nameKey(prefix.trim());
+        lock.readLock().lock();
+        try {
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<String, Person> e : people.tailMap(from, true).entrySet()) {
+                if (names.size() == limit || !e.getKey().startsWith(from)) break;
+                names.add(e.getValue().name);
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- REVIEWS ----------
+    @Override
+    public RatingStats ratingStats(int movieId) {
+        lock.readLock().lock();
+        try {
+            if (movieId < 1 || movieId > movies) return RatingStats.empty();
+            long slot = movieSlot(movieId);
+            int count = movieIndex.getInt(slot + M_COUNT);
+            if (count == 0) return RatingStats.empty();
+            int[] histogram = new int[RatingStats.MAX_RATING];
+            for (int i = 0; i < histogram.length; i++) histogram[i] = movieIndex.getInt(slot + M_HISTOGRAM + 4L * i);
+            return new RatingStats(count, movieIndex.getLong(slot + M_SUM), movieIndex.getLong(slot + M_SUM_SQ), histogram);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ReviewEntry> latestReviews(int movieId) {
+        lock.readLock().lock();
+        try {
+            List<ReviewEntry> latest = new ArrayList<>(MovieDao.LATEST_REVIEW_LIMIT);
+            if (movieId < 1 || movieId > movies) return latest;
+            long r = movieIndex.getLong(movieSlot(movieId) + M_REVIEW_HEAD);
+            while (r != 0 && latest.size() < MovieDao.LATEST_REVIEW_LIMIT) {
+                // REVIEW: id movieId userId rating:byte createdAt:long prev:long comment
+                int userId = log.getInt(r + 17);
+                int rating = log.get(r + 21);
+                long createdAt = log.getLong(r + 22);
+                latest.add(new ReviewEntry(username(userId), rating, readString(r + 38), new Timestamp(createdAt)));
+                r = log.getLong(r + 30);
+            }
+            return latest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addReview(int movieId, int userId, int rating, String comment) throws SQLException {
+        if (rating < 1 || rating > RatingStats.MAX_RATING) {
+            throw new SQLException("Check constraint 'reviews_chk_1' is violated.", "HY000", 3819);
+        }
+        int reviewId;
+        long now;
+        lock.writeLock().lock();
+        try {
+            checkForeignKeys(movieId, userId);
+            byte[] c = utf8(comment);
+            long head = movieIndex.getLong(movieSlot(movieId) + M_REVIEW_HEAD);
+            // Keep each chain in time order even if the wall clock steps back.
+            now = Math.max(System.currentTimeMillis(), head == 0 ? 0 : log.getLong(head + 22));
+            ByteBuffer r = record(REVIEW, 12 + 1 + 16 + len(c));
+            reviewId = reviews + 1;
+            r.putInt(reviewId);
+            r.putInt(movieId);
+            r.putInt(userId);
+            r.put((byte) rating);
+            r.putLong(now);
+            r.putLong(head);
+            putString(r, c);
+            commit(r);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Timestamp createdAt = new Timestamp(now);
+        for (CatalogListener l : listeners) l.reviewAdded(reviewId, movieId, userId, rating, createdAt);
+    }
+
+    @Override
+    public void forEachReview(ReviewRow sink) {
+        // Walk every movie's chain under the lock; ids are dense, so the snapshot is indexed by id - 1.
+        int[] movieIds;
+        int[] userIds;
+        byte[] ratings;
+        long[] createdAt;
+        lock.readLock().lock();
+        try {
+            movieIds = new int[reviews];
+            userIds = new int[reviews];
+            ratings = new byte[reviews];
+            createdAt = new long[reviews];
+            for (int m = 1; m <= movies; m++) {
+                for (long r = movieIndex.getLong(movieSlot(m) + M_REVIEW_HEAD); r != 0; r = log.getLong(r + 30)) {
+                    int i = log.getInt(r + 9) - 1;
+                    movieIds[i] = m;
+                    userIds[i] = log.getInt(r + 17);
+                    ratings[i] = log.get(r + 21);
+                    createdAt[i] = log.getLong(r + 22);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < movieIds.length; i++) {
+            if (movieIds[i] != 0) sink.accept(i + 1, movieIds[i], userIds[i], ratings[i], createdAt[i]);
+        }
+    }
+
+    // ---------- WATCHLIST ----------
+    @Override
+    public boolean addToWatchlist(int userId, int movieId) throws SQLException {
+        Timestamp addedAt;
+        lock.writeLock().lock();
+        try {
+            checkForeignKeys(movieId, userId);
+            BitSet onList = watchedBy(userId);
+            if (onList.get(movieId)) return false; // INSERT IGNORE on UNIQUE(user_id, movie_id)
+            long head = userIndex.getLong(userSlot(userId) + U_WATCH_HEAD);
+            long now = Math.max(System.currentTimeMillis(), head == 0 ? 0 : log.getLong(head + 21));
+            ByteBuffer r = record(WATCH, 12 + 16);
+            r.putInt(watches + 1);
+            r.putInt(userId);
+            r.putInt(movieId);
+            r.putLong(now);
+            r.putLong(head);
+            commit(r);
+            onList.set(movieId);
+            addedAt = new Timestamp(now);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        for (CatalogListener l : listeners) l.watchlistAdded(userId, movieId, addedAt);
+        return true;
+    }
+
+    @Override
+    public void forEachWatchlistEntry(WatchlistRow sink) {
+        // Copy the three columns under the lock, feed the sink outside it.
+        int[] userIds;
+        int[] movieIds;
+        long[] addedAt;
+        lock.readLock().lock();
+        try {
+            userIds = new int[watches];
+            movieIds = new int[watches];
+            addedAt = new long[watches];
+            for (int id = 1; id <= watches; id++) {
+                long r = watchIndex.getLong((long) id * WATCH_SLOT);
+                userIds[id - 1] = log.getInt(r + 13);
+                movieIds[id - 1] = log.getInt(r + 17);
+                addedAt[id - 1] = log.getLong(r + 21);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < userIds.length; i++) sink.accept(userIds[i], movieIds[i], addedAt[i]);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlist(int userId) {
+        return watchlistAfter(userId, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistAfter(int userId, WatchlistEntry after, int limit) {
+        lock.readLock().lock();
+        try {
+            List<WatchlistEntry> page = new ArrayList<>();
+            if (userId < 1 || userId > users) return page;
+            long r = after == null ? userIndex.getLong(userSlot(userId) + U_WATCH_HEAD) : previousWatch(userId, after);
+            while (r != 0 && page.size() < limit) {
+                page.add(watchEntry(r));
+                r = log.getLong(r + 29);
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistBefore(int userId, WatchlistEntry before, int limit) {
+        lock.readLock().lock();
+        try {
+            List<WatchlistEntry> page = new ArrayList<>();
+            if (userId < 1 || userId > users) return page;
+            // The chain only runs backwards: walk from the newest entry, keeping the last `limit` seen.
+            ArrayDeque<Long> window = new ArrayDeque<>();
+            for (long r = userIndex.getLong(userSlot(userId) + U_WATCH_HEAD); r != 0 && isNewer(r, before); r = log.getLong(r + 29)) {
+                if (window.size() == limit) window.removeFirst();
+                window.addLast(r);
+            }
+            for (long r : window) page.add(watchEntry(r));
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            movieIndex.close();
+            userIndex.close();
+            watchIndex.close();
+            writeHeader();
+            log.force(); // everything on disk before the flag says so
+            log.putInt(H_CLEAN, 1);
+            log.close();
+        } catch (IOException e) {
+            throw new SQLException("Closing mapped store failed: " + e.getMessage(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ---------- LOG ----------
+    // A buffer for one record: room for the framing, the type byte and `payload` bytes.
+    private static ByteBuffer record(byte type, int payload) {
+        ByteBuffer r = ByteBuffer.allocate(8 + 1 + payload);
+        r.position(8);
+        r.put(type);
+        return r;
+    }
+
+    // Appends a complete record (framing filled in here) and returns its offset.
+    private long append(ByteBuffer record) throws SQLException {
+        byte[] bytes = record.array();
+        int size = align(bytes.length);
+        if (size > MappedFile.REGION_SIZE) throw new SQLException("Record of " + size + " bytes is too large");
+        try {
+            long pos = end;
+            if (MappedFile.remainingInRegion(pos) < size) {
+                log.putInt(pos, PAD);
+                pos += MappedFile.remainingInRegion(pos);
+            }
+            log.ensureCapacity(pos + size);
+            crc.reset();
+            crc.update(bytes, 8, bytes.length - 8);
+            log.put(pos + 8, bytes, 8, bytes.length - 8); // body and crc first...
+            log.putInt(pos + 4, (int) crc.getValue());
+            log.putInt(pos, bytes.length - 8);            // ...length last marks the record complete
+            end = pos + size;
+            log.putLong(H_END, end);
+            return pos;
+        } catch (IOException e) {
+            throw new SQLException("Log write failed: " + e.getMessage(), "58030", e);
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    // Finds the last intact record, zeroes whatever follows it, and rebuilds the (new, empty) index files.
+    private void recover() throws IOException {
+        users = movies = reviews = watches = 0;
+        long pos = LOG_HEADER;
+        CRC32 check = new CRC32();
+        while (pos < log.capacity()) {
+            int length = log.getInt(pos);
+            if (length == PAD) {
+                pos += MappedFile.remainingInRegion(pos);
+                continue;
+            }
+            if (length <= 0 || 8L + length > MappedFile.remainingInRegion(pos)) break;
+            byte[] body = new byte[length];
+            log.get(pos + 8, body, 0, length);
+            check.reset();
+            check.update(body);
+            if ((int) check.getValue() != log.getInt(pos + 4)) break;
+            applyRecord(pos);
+            pos += align(8 + length);
+        }
+        if (pos < log.capacity()) {
+            long regionEnd = pos + MappedFile.remainingInRegion(pos);
+            if (log.getInt(pos) != 0) System.err.println("Mapped store: discarding torn record at offset " + pos);
+            log.zero(pos, regionEnd);
+        }
+        end = pos;
+    }
+
+    private void writeHeader() {
+        log.putLong(H_END, end);
+        log.putInt(H_USERS, users);
+        log.putInt(H_MOVIES, movies);
+        log.putInt(H_REVIEWS, reviews);
+        log.putInt(H_WATCHES, watches);
+    }
+
+    // ---------- INDEX MAINTENANCE (live and recovery) ----------
+    // Index slots are grown before the record is appended: a record in the log that its index
+    // could not take would be replayed on the next open under an id already handed out again.
+    private void commit(ByteBuffer record) throws SQLException {
+        try {
+            reserveSlot(record);
+        } catch (IOException e) {
+            throw new SQLException("Index update failed: " + e.getMessage(), "58030", e);
+        }
+        long r = append(record);
+        try {
+            applyRecord(r);
+        } catch (IOException e) {
+            throw new SQLException("Index update failed: " + e.getMessage(), "58030", e);
+        }
+    }
+
+    private void reserveSlot(ByteBuffer record) throws IOException {
+        int id = record.getInt(9);
+        switch (record.get(8)) {
+            case USER -> userIndex.ensureSlot(userSlot(id) + USER_SLOT);
+            case MOVIE -> movieIndex.ensureSlot(movieSlot(id) + MOVIE_SLOT);
+            case WATCH -> watchIndex.ensureSlot((long) id * WATCH_SLOT + WATCH_SLOT);
+            default -> { } // reviews only update their movie's existing slot
+        }
+    }
+
+    private void applyRecord(long r) throws IOException {
+        byte type = log.get(r + 8);
+        switch (type) {
+            case USER -> applyUser(r);
+            case MOVIE -> applyMovie(r);
+            case REVIEW -> applyReview(r);
+            case WATCH -> applyWatch(r);
+            default -> throw new IOException("Unknown record type " + type + " at " + r);
+        }
+    }
+
+    private void applyUser(long r) throws IOException {
+        int id = log.getInt(r + 9);
+        userIndex.ensureSlot(userSlot(id) + USER_SLOT);
+        userIndex.putLong(userSlot(id) + U_RECORD, r);
+        users = Math.max(users, id);
+    }
+
+    private void applyMovie(long r) throws IOException {
+        int id = log.getInt(r + 9);
+        movieIndex.ensureSlot(movieSlot(id) + MOVIE_SLOT);
+        movieIndex.putLong(movieSlot(id) + M_RECORD, r);
+        movies = Math.max(movies, id);
+    }
+
+    private void applyReview(long r) {
+        int movieId = log.getInt(r + 13);
+        int rating = log.get(r + 21);
+        long slot = movieSlot(movieId);
+        movieIndex.putLong(slot + M_REVIEW_HEAD, r);
+        movieIndex.putInt(slot + M_COUNT, movieIndex.getInt(slot + M_COUNT) + 1);
+        movieIndex.putLong(slot + M_SUM, movieIndex.getLong(slot + M_SUM) + rating);
+        movieIndex.putLong(slot + M_SUM_SQ, movieIndex.getLong(slot + M_SUM_SQ) + (long) rating * rating);
+        long bucket = slot + M_HISTOGRAM + 4L * (rating - 1);
+        movieIndex.putInt(bucket, movieIndex.getInt(bucket) + 1);
+        reviews = Math.max(reviews, log.getInt(r + 9));
+    }
+
+    private void applyWatch(long r) throws IOException {
+        int id = log.getInt(r + 9);
+        int userId = log.getInt(r + 13);
+        watchIndex.ensureSlot((long) id * WATCH_SLOT + WATCH_SLOT);
+        watchIndex.putLong((long) id * WATCH_SLOT, r);
+        long slot = userSlot(userId);
+        userIndex.putLong(slot + U_WATCH_HEAD, r);
+        userIndex.putInt(slot + U_WATCH_COUNT, userIndex.getInt(slot + U_WATCH_COUNT) + 1);
+        watches = Math.max(watches, id);
+    }
+
+    // Usernames, title order and people: derived from the log, kept on the heap.
+    private void loadMemoryIndexes() {
+        for (int id = 1; id <= users; id++) {
+            userIds.put(nameKey(readString(userIndex.getLong(userSlot(id) + U_RECORD) + 13)), id);
+        }
+        String[] titles = new String[movies + 1];
+        Integer[] order = new Integer[movies];
+        for (int id = 1; id <= movies; id++) {
+            long r = movieRecord(id);
+            titles[id] = nullToEmpty(readString(r + 17));
+            order[id - 1] = id;
+            String starring = readString(skipString(r + 17));
+            for (String name : MovieDao.parseCast(starring)) people.computeIfAbsent(nameKey(name), k -> new Person(name)).add(id);
+        }
+        Arrays.sort(order, Comparator.comparing((Integer id) -> titles[id], String.CASE_INSENSITIVE_ORDER)
+                .thenComparingInt(id -> id));
+        byTitle = new int[Math.max(16, movies * 2)];
+        for (int i = 0; i < movies; i++) byTitle[i] = order[i];
+    }
+
+    private void insertByTitle(int id) {
+        int count = movies - 1; // `id` is already counted but not yet placed
+        int at = titleSearch(nullToEmpty(readString(movieRecord(id) + 17)), id, count);
+        if (count == byTitle.length) byTitle = Arrays.copyOf(byTitle, count * 2);
+        System.arraycopy(byTitle, at, byTitle, at + 1, count - at);
+        byTitle[at] = id;
+    }
+
+    private void addCast(MovieRecord movie) {
+        for (String name : MovieDao.parseCast(movie.starring())) {
+            people.computeIfAbsent(nameKey(name), k -> new Person(name)).add(movie.id());
+        }
+    }
+
+    private BitSet watchedBy(int userId) {
+        return watched.computeIfAbsent(userId, id -> {
+            BitSet bits = new BitSet();
+            for (long r = userIndex.getLong(userSlot(id) + U_WATCH_HEAD); r != 0; r = log.getLong(r + 29)) {
+                bits.set(log.getInt(r + 17));
+            }
+            return bits;
+        });
+    }
+
+    // ---------- READ HELPERS ----------
+    private static long movieSlot(int id) {
+        return (long) id * MOVIE_SLOT;
+    }
+
+    private static long userSlot(int id) {
+        return (long) id * USER_SLOT;
+    }
+
+    private long movieRecord(int id) {
+        return movieIndex.getLong(movieSlot(id) + M_RECORD);
+    }
+
+    private MovieSummary summary(int id) {
+        long r = movieRecord(id);
+        int year = log.getInt(r + 13);
+        return new MovieSummary(id, readString(r + 17), year == Integer.MIN_VALUE ? null : year);
+    }
+
+    private List<MovieSummary> page(MovieOrder order, int from, int to) {
+        List<MovieSummary> page = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) page.add(summary(order == MovieOrder.ID ? i + 1 : byTitle[i]));
+        return page;
+    }
+
+    // Position of the first movie after `key` (after = true) or just past the last one before it.
+    private int position(MovieOrder order, MovieSummary key, boolean after) {
+        if (order == MovieOrder.ID) return Math.max(0, Math.min(movies, after ? key.id() : key.id() - 1));
+        int at = titleSearch(nullToEmpty(key.title()), key.id(), movies);
+        boolean found = at < movies && byTitle[at] == key.id();
+        return after && found ? at + 1 : at;
+    }
+
+    // First position among the first `count` whose (title, id) is not less than the given key.
+    private int titleSearch(String title, int id, int count) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int other = byTitle[mid];
+            int c = String.CASE_INSENSITIVE_ORDER.compare(nullToEmpty(readString(movieRecord(other) + 17)), title);
+            if (c < 0 || (c == 0 && other < id)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private String username(int userId) {
+        return readString(userIndex.getLong(userSlot(userId) + U_RECORD) + 13);
+    }
+
+    // WATCH: id userId movieId addedAt:long prev:long
+    private WatchlistEntry watchEntry(long r) {
+        int movieId = log.getInt(r + 17);
+        return new WatchlistEntry(log.getInt(r + 9), movieId, readString(movieRecord(movieId) + 17),
+                new Timestamp(log.getLong(r + 21)));
+    }
+
+    // The entry just older than `after`; falls back to a walk when `after` is not this user's.
+    private long previousWatch(int userId, WatchlistEntry after) {
+        if (after.id() >= 1 && after.id() <= watches) {
+            long r = watchIndex.getLong((long) after.id() * WATCH_SLOT);
+            if (log.getInt(r + 13) == userId) return log.getLong(r + 29);
+        }
+        long r = userIndex.getLong(userSlot(userId) + U_WATCH_HEAD);
+        while (r != 0 && isNewer(r, after)) r = log.getLong(r + 29);
+        if (r != 0 && log.getInt(r + 9) == after.id()) r = log.getLong(r + 29);
+        return r;
+    }
+
+    // True when the entry at `r` sorts after `key` in (added_at, id) order.
+    private boolean isNewer(long r, WatchlistEntry key) {
+        long addedAt = log.getLong(r + 21);
+        long keyTime = key.addedAt().getTime();
+        return addedAt > keyTime || (addedAt == keyTime && log.getInt(r + 9) > key.id());
+    }
+
+    private String readString(long pos) {
+        int length = log.getInt(pos);
+        if (length < 0) return null;
+        byte[] b = new byte[length];
+        log.get(pos + 4, b, 0, length);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private long skipString(long pos) {
+        return pos + 4 + Math.max(0, log.getInt(pos));
+    }
+
+    private void checkForeignKeys(int movieId, int userId) throws SQLIntegrityConstraintViolationException {
+        if (movieId < 1 || movieId > movies || userId < 1 || userId > users) {
+            throw new SQLIntegrityConstraintViolationException(
+                    "Cannot add or update a child row: a foreign key constraint fails", "23000", 1452);
+        }
+    }
+
+    private static void checkLength(String column, String value, int max) throws SQLException {
+        if (value != null && value.length() > max) {
+            throw new SQLException("Data too long for column '" + column + "' at row 1", "22001", 1406);
+        }
+    }
+
+    // ---------- ENCODING ----------
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int len(byte[] b) {
+        return 4 + (b == null ? 0 : b.length);
+    }
+
+    private static void putString(ByteBuffer r, byte[] b) {
+        if (b == null) {
+            r.putInt(-1);
+        } else {
+            r.putInt(b.length);
+            r.put(b);
+        }
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,329 @@
+package moviediary.metrics;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieStore;
+import moviediary.db.StoreMode;
+import moviediary.model.MovieDetail;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.ReviewEntry;
+import moviediary.model.UserCredential;
+import moviediary.model.WatchlistEntry;
+
+/**
+ * Wraps any {@link MovieStore} and records every call in a {@link
+ * MetricsRegistry}, one operation per method, named by what the screens use
+ * it for: {@code browse.*}, {@code detail.*}, {@code review.*}, {@code
+ * watchlist.*}, {@code user.*} and {@code bulk.*} for the streaming scans
+ * the startup indexes are built from.
+ *
+ * Timing a call costs about 140 ns ({@code MetricsBenchmark}). A MySQL
+ * call costs a network round trip, so every one is timed and counted.
+ * In-process stores answer in 40-300 ns, where that would double or
+ * quadruple the cost of a read, so there one call in {@value
+ * #LOCAL_SAMPLE_EVERY} is measured and the counts are scaled up (see {@link
+ * OperationMetrics}); the benchmark cannot tell that from the bare store on
+ * {@code ratingStats}. The desktop apps time
+ * every call whatever the store: one user clicking cannot make enough calls
+ * for the cost to show. {@code -Dmoviediary.metrics.sampleEvery} overrides
+ * all of these.
+ */
+public final class InstrumentedStore implements MovieStore {
+    static final int LOCAL_SAMPLE_EVERY = 128;
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T run() throws SQLException;
+    }
+
+    private static final ToLongFunction<Object> ONE = r -> 1;
+    private static final ToLongFunction<Object> PRESENT = r -> r == null ? 0 : 1;
+    private static final ToLongFunction<Boolean> IF_TRUE = r -> r ? 1 : 0;
+    private static final ToLongFunction<List<?>> SIZE = List::size;
+
+    private final MovieStore store;
+    private final OperationMetrics register, credentialOf, replacePassword, findUserId, addMovie;
+    private final OperationMetrics listMovies, countMovies, moviesAfter, moviesBefore, movieAt;
+    private final OperationMetrics findMovie, movieDetail, castOf, filmography, peopleStartingWith, ratingStats, latestReviews;
+    private final OperationMetrics addReview;
+    private final OperationMetrics addToWatchlist, watchlist, watchlistAfter, watchlistBefore;
+    private final OperationMetrics forEachMovie, forEachReview, forEachReviewSince, forEachRatingTotal;
+    private final OperationMetrics forEachWatchlistEntry, forEachWatchlistCount;
+
+    public InstrumentedStore(MovieStore store, MetricsRegistry registry, int sampleEvery) {
+        this.store = store;
+        register = registry.operation("user.register", sampleEvery);
+        credentialOf = registry.operation("user.credentialOf", sampleEvery);
+        replacePassword = registry.operation("user.replacePassword", sampleEvery);
+        findUserId = registry.operation("user.findUserId", sampleEvery);
+        addMovie = registry.operation("catalog.addMovie", sampleEvery);
+        listMovies = registry.operation("browse.listMovies", sampleEvery);
+        countMovies = registry.operation("browse.countMovies", sampleEvery);
+        moviesAfter = registry.operation("browse.moviesAfter", sampleEvery);
+        moviesBefore = registry.operation("browse.moviesBefore", sampleEvery);
+        movieAt = registry.operation("browse.movieAt", sampleEvery);
+        findMovie = registry.operation("detail.findMovie", sampleEvery);
+        movieDetail = registry.operation("detail.movieDetail", sampleEvery);
+        castOf = registry.operation("detail.castOf", sampleEvery);
+        filmography = registry.operation("detail.filmography", sampleEvery);
+        peopleStartingWith = registry.operation("detail.peopleStartingWith", sampleEvery);
+        ratingStats = registry.operation("detail.ratingStats", sampleEvery);
+        latestReviews = registry.operation("detail.latestReviews", sampleEvery);
+        addReview = registry.operation("review.addReview", sampleEvery);
+        addToWatchlist = registry.operation("watchlist.addToWatchlist", sampleEvery);
+        watchlist = registry.operation("watchlist.watchlist", sampleEvery);
+        watchlistAfter = registry.operation("watchlist.watchlistAfter", sampleEvery);
+        watchlistBefore = registry.operation("watchlist.watchlistBefore", sampleEvery);
+        forEachMovie = registry.operation("bulk.forEachMovie", sampleEvery);
+        forEachReview = registry.operation("bulk.forEachReview", sampleEvery);
+        forEachReviewSince = registry.operation("bulk.forEachReviewSince", sampleEvery);
+        forEachRatingTotal = registry.operation("bulk.forEachRatingTotal", sampleEvery);
+        forEachWatchlistEntry = registry.operation("bulk.forEachWatchlistEntry", sampleEvery);
+        forEachWatchlistCount = registry.operation("bulk.forEachWatchlistCount", sampleEvery);
+    }
+
+    /**
+     * {@code store} instrumented in the global registry, sampling for the
+     * current {@link StoreMode}, or {@code store} itself when metrics are off.
+     */
+    public static MovieStore wrap(MovieStore store) {
+        return wrap(store, StoreMode.current() == StoreMode.MYSQL ? 1 : LOCAL_SAMPLE_EVERY);
+    }
+
+    /** As {@link #wrap(MovieStore)}, but timing one call in {@code sampleEvery} unless the property says otherwise. */
+    public static MovieStore wrap(MovieStore store, int sampleEvery) {
+        if (!MetricsRegistry.enabled()) return store;
+        return new InstrumentedStore(store, MetricsRegistry.global(),
+                Integer.getInteger("moviediary.metrics.sampleEvery", sampleEvery));
+    }
+
+    public MovieStore delegate() { return store; }
+
+    private static <T> T timed(OperationMetrics op, Call<T> call, ToLongFunction<? super T> rows) throws SQLException {
+        long started = op.start();
+        try {
+            T result = call.run();
+            op.success(started, rows.applyAsLong(result));
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            op.failure(started, e);
+            throw e;
+        }
+    }
+
+    // Streams count what reached the sink.
+    private static void streamed(OperationMetrics op, Call<long[]> call) throws SQLException {
+        timed(op, call, counted -> counted[0]);
+    }
+
+    // ---------- USERS ----------
+    @Override
+    public void addListener(CatalogListener listener) {
+        store.addListener(listener);
+    }
+
+    @Override
+    public void register(String username, String passwordHash) throws SQLException {
+        timed(register, () -> {
+            store.register(username, passwordHash);
+            return null;
+        }, ONE);
+    }
+
+    @Override
+    public UserCredential credentialOf(String username) throws SQLException {
+        return timed(credentialOf, () -> store.credentialOf(username), PRESENT);
+    }
+
+    @Override
+    public boolean replacePassword(int userId, String expected, String replacement) throws SQLException {
+        return timed(replacePassword, () -> store.replacePassword(userId, expected, replacement), IF_TRUE);
+    }
+
+    @Override
+    public Integer findUserId(String username) throws SQLException {
+        return timed(findUserId, () -> store.findUserId(username), PRESENT);
+    }
+
+    // ---------- MOVIES ----------
+    @Override
+    public int addMovie(String title, Integer year, String starring, String description) throws SQLException {
+        return timed(addMovie, () -> store.addMovie(title, year, starring, description), ONE);
+    }
+
+    @Override
+    public List<MovieSummary> listMovies(MovieOrder order) throws SQLException {
+        return timed(listMovies, () -> store.listMovies(order), SIZE);
+    }
+
+    @Override
+    public int countMovies() throws SQLException {
+        return timed(countMovies, store::countMovies, ONE);
+    }
+
+    @Override
+    public List<MovieSummary> moviesAfter(MovieOrder order, MovieSummary after, int limit) throws SQLException {
+        return timed(moviesAfter, () -> store.moviesAfter(order, after, limit), SIZE);
+    }
+
+    @Override
+    public List<MovieSummary> moviesBefore(MovieOrder order, MovieSummary before, int limit) throws SQLException {
+        return timed(moviesBefore, () -> store.moviesBefore(order, before, limit), SIZE);
+    }
+
+    @Override
+    public MovieSummary movieAt(MovieOrder order, int position) throws SQLException {
+        return timed(movieAt, () -> store.movieAt(order, position), PRESENT);
+    }
+
+    @Override
+    public void forEachMovie(Consumer<MovieRecord> sink) throws SQLException {
+        streamed(forEachMovie, () -> {
+            long[] n = {0};
+            store.forEachMovie(m -> {
+                n[0]++;
+                sink.accept(m);
+            });
+            return n;
+        });
+    }
+
+    @Override
+    public MovieRecord findMovie(int movieId) throws SQLException {
+        return timed(findMovie, () -> store.findMovie(movieId), PRESENT);
+    }
+
+    // Rows are the movie, its cast and its reviews, as they would be for the separate calls.
+    @Override
+    public MovieDetail movieDetail(int movieId) throws SQLException {
+        return timed(movieDetail, () -> store.movieDetail(movieId),
+                d -> d == null ? 0 : 1 + d.cast().size() + d.latestReviews().size());
+    }
+
+    // ---------- CAST ----------
+    @Override
+    public List<String> castOf(int movieId) throws SQLException {
+        return timed(castOf, () -> store.castOf(movieId), SIZE);
+    }
+
+    @Override
+    public List<MovieSummary> filmography(String name) throws SQLException {
+        return timed(filmography, () -> store.filmography(name), SIZE);
+    }
+
+    @Override
+    public List<String> peopleStartingWith(String prefix, int limit) throws SQLException {
+        return timed(peopleStartingWith, () -> store.peopleStartingWith(prefix, limit), SIZE);
+    }
+
+    // ---------- REVIEWS ----------
+    @Override
+    public RatingStats ratingStats(int movieId) throws SQLException {
+        return timed(ratingStats, () -> store.ratingStats(movieId), ONE);
+    }
+
+    @Override
+    public List<ReviewEntry> latestReviews(int movieId) throws SQLException {
+        return timed(latestReviews, () -> store.latestReviews(movieId), SIZE);
+    }
+
+    @Override
+    public void addReview(int movieId, int userId, int rating, String comment) throws SQLException {
+        timed(addReview, () -> {
+            store.addReview(movieId, userId, rating, comment);
+            return null;
+        }, ONE);
+    }
+
+    @Override
+    public void forEachReview(ReviewRow sink) throws SQLException {
+        streamed(forEachReview, () -> {
+            long[] n = {0};
+            store.forEachReview((id, movieId, userId, rating, createdAt) -> {
+                n[0]++;
+                sink.accept(id, movieId, userId, rating, createdAt);
+            });
+            return n;
+        });
+    }
+
+    @Override
+    public void forEachReviewSince(long sinceMillis, ReviewRow sink) throws SQLException {
+        streamed(forEachReviewSince, () -> {
+            long[] n = {0};
+            store.forEachReviewSince(sinceMillis, (id, movieId, userId, rating, createdAt) -> {
+                n[0]++;
+                sink.accept(id, movieId, userId, rating, createdAt);
+            });
+            return n;
+        });
+    }
+
+    @Override
+    public void forEachRatingTotal(RatingTotalRow sink) throws SQLException {
+        streamed(forEachRatingTotal, () -> {
+            long[] n = {0};
+            store.forEachRatingTotal((movieId, count, sum) -> {
+                n[0]++;
+                sink.accept(movieId, count, sum);
+            });
+            return n;
+        });
+    }
+
+    // ---------- WATCHLIST ----------
+    @Override
+    public boolean addToWatchlist(int userId, int movieId) throws SQLException {
+        return timed(addToWatchlist, () -> store.addToWatchlist(userId, movieId), IF_TRUE);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlist(int userId) throws SQLException {
+        return timed(watchlist, () -> store.watchlist(userId), SIZE);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistAfter(int userId, WatchlistEntry after, int limit) throws SQLException {
+        return timed(watchlistAfter, () -> store.watchlistAfter(userId, after, limit), SIZE);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistBefore(int userId, WatchlistEntry before, int limit) throws SQLException {
+        return timed(watchlistBefore, () -> store.watchlistBefore(userId, before, limit), SIZE);
+    }
+
+    @Override
+    public void forEachWatchlistEntry(WatchlistRow sink) throws SQLException {
+        streamed(forEachWatchlistEntry, () -> {
+            long[] n = {0};
+            store.forEachWatchlistEntry((userId, movieId, addedAt) -> {
+                n[0]++;
+                sink.accept(userId, movieId, addedAt);
+            });
+            return n;
+        });
+    }
+
+    @Override
+    public void forEachWatchlistCount(MovieCountRow sink) throws SQLException {
+        streamed(forEachWatchlistCount, () -> {
+            long[] n = {0};
+            store.forEachWatchlistCount((movieId, count) -> {
+                n[0]++;
+                sink.accept(movieId, count);
+            });
+            return n;
+        });
+    }
+
+    @Override
+    public void close() throws SQLException {
+        store.close();
+    }
+}
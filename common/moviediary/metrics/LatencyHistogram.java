@@ -0,0 +1,99 @@
+package moviediary.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of microsecond latencies. Values below
+ * {@value #SUB_BUCKETS} get a bucket each; above that every power of two is
+ * split into {@value #SUB_BUCKETS} buckets, so a reported percentile is at
+ * most 1/16 (about 6%) above the true value. Everything from one microsecond
+ * to about 25 days fits in {@value #BUCKETS} counters.
+ *
+ * Recording is one array increment and two adders, with no allocation.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 41;
+    private static final int BUCKETS = SUB_BUCKETS * (MAX_EXPONENT - SUB_BITS + 2);
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        long v = Math.max(0, Math.min(micros, MAX_VALUE));
+        counts.incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+        // Reading first keeps the common case, not a new maximum, free of CAS traffic.
+        if (v > max.get()) max.accumulateAndGet(v, Math::max);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Snapshot(copy, count.sum(), sum.sum(), max.get());
+    }
+
+    static int bucketOf(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int shift = exponent - SUB_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    // Largest value that lands in bucket {@code index}.
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Bucket counts copied at one moment. Recording carries on while the copy
+     * is taken, so the total can be a few values off the bucket sum.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumMicros;
+        private final long maxMicros;
+
+        Snapshot(long[] counts, long count, long sumMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long count() { return count; }
+
+        public long sumMicros() { return sumMicros; }
+
+        public long maxMicros() { return maxMicros; }
+
+        public double meanMicros() {
+            return count == 0 ? 0 : (double) sumMicros / count;
+        }
+
+        /** The value at {@code quantile} (0..1), rounded up to its bucket's upper edge and capped at the maximum. */
+        public long percentile(double quantile) {
+            long total = 0;
+            for (long c : counts) total += c;
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBoundOf(i), maxMicros);
+            }
+            return maxMicros;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package moviediary.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import moviediary.db.DbExecutor;
+
+/**
+ * Serves {@link MetricsRegistry#scrape()} as plain text on {@code GET
+ * /metrics}, for Prometheus or curl. The API server mounts {@link #handler}
+ * next to its own routes; the console and Swing apps start a small server of
+ * their own when {@code -Dmoviediary.metrics.port} is set. The server's
+ * dispatcher thread keeps the JVM alive until {@link #close}.
+ */
+public final class MetricsEndpoint implements AutoCloseable {
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    public MetricsEndpoint(MetricsRegistry registry, InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.setExecutor(Executors.newSingleThreadExecutor(DbExecutor.daemonThreads("metrics")));
+        server.createContext("/metrics", handler(registry));
+        server.start();
+    }
+
+    /** The global registry on {@code -Dmoviediary.metrics.port}, or null when that is unset or metrics are off. */
+    public static MetricsEndpoint startIfConfigured() {
+        Integer port = Integer.getInteger("moviediary.metrics.port");
+        if (port == null || !MetricsRegistry.enabled()) return null;
+        try {
+            MetricsEndpoint endpoint = new MetricsEndpoint(MetricsRegistry.global(), new InetSocketAddress(port));
+            System.out.println("Metrics on http://localhost:" + endpoint.port() + "/metrics");
+            return endpoint;
+        } catch (IOException e) {
+            System.err.println("Metrics endpoint failed to start on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static HttpHandler handler(MetricsRegistry registry) {
+        return ex -> {
+            try {
+                if (!ex.getRequestMethod().equalsIgnoreCase("GET")) {
+                    ex.sendResponseHeaders(405, -1);
+                    return;
+                }
+                send(ex, registry.scrape());
+            } finally {
+                ex.close();
+            }
+        };
+    }
+
+    private static void send(HttpExchange ex, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        ex.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,16 @@
+package moviediary.metrics;
+
+import java.util.Map;
+
+/** JMX view of a {@link MetricsRegistry}, registered as {@code moviediary:type=Metrics}. */
+public interface MetricsMXBean {
+    long getSlowQueryThresholdMillis();
+
+    // Newest first, one line each.
+    String[] getSlowQueries();
+
+    Map<String, Double> getGauges();
+
+    // The same text as the scrape endpoint.
+    String scrape();
+}
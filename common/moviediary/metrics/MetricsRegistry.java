@@ -0,0 +1,200 @@
+package moviediary.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import moviediary.cache.MovieCache;
+import moviediary.db.ConnectionPool;
+import moviediary.detail.DetailLoader;
+import moviediary.writebehind.WriteBehindStore;
+
+/**
+ * Named {@link OperationMetrics}, gauges and the most recent slow queries for
+ * one process. Front-ends share {@link #global()}, which also registers every
+ * operation with the platform MBean server; {@link #scrape()} renders the
+ * lot in the Prometheus text format for {@link MetricsEndpoint}.
+ *
+ * Turn it off with {@code -Dmoviediary.metrics=false}; the slow-query
+ * threshold is {@code -Dmoviediary.metrics.slowMillis} (default 250).
+ */
+public final class MetricsRegistry implements MetricsMXBean {
+    public static final long DEFAULT_SLOW_MILLIS = Long.getLong("moviediary.metrics.slowMillis", 250);
+    public static final int SLOW_QUERY_SAMPLES = 50;
+    private static final String DOMAIN = "moviediary";
+
+    private record Gauge(String help, DoubleSupplier value) {}
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry(DEFAULT_SLOW_MILLIS, enabled());
+
+    private final long slowThresholdMicros;
+    private final boolean jmx;
+    private final ConcurrentSkipListMap<String, OperationMetrics> operations = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Gauge> gauges = new ConcurrentSkipListMap<>();
+    // Ring of the latest slow queries; next is where the one after goes.
+    private final SlowQuery[] slow = new SlowQuery[SLOW_QUERY_SAMPLES];
+    private int next;
+
+    public MetricsRegistry(long slowThresholdMillis, boolean jmx) {
+        this.slowThresholdMicros = slowThresholdMillis * 1000;
+        this.jmx = jmx;
+        if (jmx) register(this, "type=Metrics");
+    }
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public static boolean enabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("moviediary.metrics"));
+    }
+
+    /** The operation called {@code name}, created on first use. The first caller's {@code sampleEvery} sticks. */
+    public OperationMetrics operation(String name, int sampleEvery) {
+        OperationMetrics op = operations.get(name);
+        if (op != null) return op;
+        OperationMetrics created = new OperationMetrics(name, this, sampleEvery);
+        op = operations.putIfAbsent(name, created);
+        if (op != null) return op;
+        if (jmx) register(created, "type=Operation,name=" + ObjectName.quote(name));
+        return created;
+    }
+
+    /** Reports {@code value} under {@code name} on every scrape, replacing any gauge already called that. */
+    public void gauge(String name, String help, DoubleSupplier value) {
+        gauges.put(name, new Gauge(help, value));
+    }
+
+    public void watchPool(ConnectionPool pool) {
+        gauge("moviediary_pool_active", "Connections on loan.", () -> pool.stats().active());
+        gauge("moviediary_pool_idle", "Connections waiting in the pool.", () -> pool.stats().idle());
+        gauge("moviediary_pool_waits", "Borrows that had to wait for a connection.", () -> pool.stats().waits());
+        gauge("moviediary_pool_timeouts", "Borrows that gave up waiting.", () -> pool.stats().timeouts());
+    }
+
+    public void watchMovieCache(MovieCache cache) {
+        gauge("moviediary_movie_cache_hits", "Movie lookups served from the cache.", () -> cache.stats().hits());
+        gauge("moviediary_movie_cache_misses", "Movie lookups that went to MySQL.", () -> cache.stats().misses());
+        gauge("moviediary_movie_cache_evictions", "Movies dropped to stay under the byte cap.", () -> cache.stats().evictions());
+        gauge("moviediary_movie_cache_bytes", "Estimated heap held by cached movies.", () -> cache.stats().weightedBytes());
+        gauge("moviediary_movie_cache_max_bytes", "Byte cap of the movie cache.", () -> cache.stats().maxBytes());
+    }
+
+    public void watchDetailLoader(DetailLoader loader) {
+        gauge("moviediary_detail_cache_hits", "Movie details served from the cache.", loader::hits);
+        gauge("moviediary_detail_cache_misses", "Movie details loaded from the store.", loader::misses);
+    }
+
+    public void watchWriteBehind(WriteBehindStore store) {
+        gauge("moviediary_write_behind_queue_depth", "Writes journalled but not yet in MySQL.", () -> store.stats().queueDepth());
+        gauge("moviediary_write_behind_dropped", "Writes MySQL refused and that were dropped.", () -> store.stats().dropped());
+    }
+
+    long slowThresholdMicros() {
+        return slowThresholdMicros;
+    }
+
+    synchronized void slowQuery(SlowQuery query) {
+        slow[next] = query;
+        next = (next + 1) % slow.length;
+    }
+
+    /** Newest first. */
+    public synchronized List<SlowQuery> slowQueries() {
+        List<SlowQuery> out = new ArrayList<>();
+        for (int i = 1; i <= slow.length; i++) {
+            SlowQuery q = slow[Math.floorMod(next - i, slow.length)];
+            if (q == null) break;
+            out.add(q);
+        }
+        return out;
+    }
+
+    public List<OperationSnapshot> snapshot() {
+        List<OperationSnapshot> out = new ArrayList<>(operations.size());
+        for (OperationMetrics op : operations.values()) out.add(op.snapshot());
+        return out;
+    }
+
+    // ---------- JMX ----------
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return slowThresholdMicros / 1000;
+    }
+
+    @Override
+    public String[] getSlowQueries() {
+        return slowQueries().stream().map(SlowQuery::toString).toArray(String[]::new);
+    }
+
+    @Override
+    public Map<String, Double> getGauges() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        gauges.forEach((name, g) -> out.put(name, g.value().getAsDouble()));
+        return out;
+    }
+
+    private static void register(Object bean, String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(bean, name);
+        } catch (JMException | RuntimeException e) {
+            System.err.println("JMX registration of " + properties + " failed: " + e.getMessage());
+        }
+    }
+
+    // ---------- SCRAPE ----------
+    /** Every operation and gauge in the Prometheus text exposition format, latencies in seconds. */
+    @Override
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        List<OperationSnapshot> ops = snapshot();
+        family(out, "moviediary_operation_calls_total", "counter", "Calls per operation.");
+        for (OperationSnapshot s : ops) sample(out, "moviediary_operation_calls_total", s.name(), null, s.calls());
+        family(out, "moviediary_operation_errors_total", "counter", "Calls that threw.");
+        for (OperationSnapshot s : ops) sample(out, "moviediary_operation_errors_total", s.name(), null, s.errors());
+        family(out, "moviediary_operation_rows_total", "counter", "Rows returned or written.");
+        for (OperationSnapshot s : ops) sample(out, "moviediary_operation_rows_total", s.name(), null, s.rows());
+        family(out, "moviediary_operation_latency_seconds", "summary", "Latency of the timed calls.");
+        for (OperationSnapshot s : ops) {
+            String name = "moviediary_operation_latency_seconds";
+            sample(out, name, s.name(), "0.5", s.p50Micros() / 1e6);
+            sample(out, name, s.name(), "0.9", s.p90Micros() / 1e6);
+            sample(out, name, s.name(), "0.99", s.p99Micros() / 1e6);
+            sample(out, name, s.name(), "0.999", s.p999Micros() / 1e6);
+            sample(out, name + "_sum", s.name(), null, s.meanMicros() * s.timedCalls() / 1e6);
+            sample(out, name + "_count", s.name(), null, s.timedCalls());
+        }
+        family(out, "moviediary_operation_latency_max_seconds", "gauge", "Slowest timed call.");
+        for (OperationSnapshot s : ops) sample(out, "moviediary_operation_latency_max_seconds", s.name(), null, s.maxMicros() / 1e6);
+        gauges.forEach((name, g) -> {
+            family(out, name, "gauge", g.help());
+            out.append(name).append(' ').append(format(g.value().getAsDouble())).append('\n');
+        });
+        return out.toString();
+    }
+
+    private static void family(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String op, String quantile, double value) {
+        out.append(name).append("{op=\"").append(op).append('"');
+        if (quantile != null) out.append(",quantile=\"").append(quantile).append('"');
+        out.append("} ").append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+}
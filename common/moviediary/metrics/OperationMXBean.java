@@ -0,0 +1,24 @@
+package moviediary.metrics;
+
+/** JMX view of one {@link OperationMetrics}, registered as {@code moviediary:type=Operation,name=<op>}. Times are in milliseconds. */
+public interface OperationMXBean {
+    long getCalls();
+
+    long getErrors();
+
+    long getRows();
+
+    long getTimedCalls();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    String getLastError();
+}
@@ -0,0 +1,107 @@
+package moviediary.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import moviediary.db.SqlTrace;
+
+/**
+ * Counters for one named operation: calls, rows returned, errors and a
+ * latency histogram. Get one from {@link MetricsRegistry#operation} and
+ * bracket each call:
+ *
+ * <pre>
+ * long started = op.start();
+ * try {
+ *     List&lt;X&gt; rows = ...;
+ *     op.success(started, rows.size());
+ * } catch (SQLException | RuntimeException e) {
+ *     op.failure(started, e);
+ *     throw e;
+ * }
+ * </pre>
+ *
+ * With {@code sampleEvery} above one, only one call in {@code sampleEvery},
+ * picked at random, is timed and counted, and its calls and rows are scaled
+ * up by {@code sampleEvery}: the other calls cost one random draw, which
+ * keeps an in-process store's sub-microsecond lookups within budget. Failed
+ * calls are always counted exactly, in both calls and errors. Only timed
+ * calls can be reported as slow.
+ */
+public final class OperationMetrics implements OperationMXBean {
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private final String name;
+    private final MetricsRegistry registry;
+    private final int sampleEvery;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private volatile String lastError;
+
+    OperationMetrics(String name, MetricsRegistry registry, int sampleEvery) {
+        this.name = name;
+        this.registry = registry;
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+
+    public String name() { return name; }
+
+    /** Returns the token to hand to {@link #success} or {@link #failure}. */
+    public long start() {
+        if (sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) return NOT_TIMED;
+        SqlTrace.begin();
+        return System.nanoTime();
+    }
+
+    public void success(long started, long rowCount) {
+        if (started == NOT_TIMED) return;
+        calls.add(sampleEvery);
+        rows.add(rowCount * sampleEvery);
+        stop(started);
+    }
+
+    public void failure(long started, Throwable error) {
+        calls.increment();
+        errors.increment();
+        lastError = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (started != NOT_TIMED) stop(started);
+    }
+
+    private void stop(long started) {
+        long micros = (System.nanoTime() - started) / 1000;
+        SqlTrace trace = SqlTrace.end();
+        latency.record(micros);
+        if (micros >= registry.slowThresholdMicros()) {
+            registry.slowQuery(new SlowQuery(name, micros, System.currentTimeMillis(), trace.text()));
+        }
+    }
+
+    public OperationSnapshot snapshot() {
+        LatencyHistogram.Snapshot s = latency.snapshot();
+        return new OperationSnapshot(name, calls.sum(), errors.sum(), rows.sum(), s.count(), s.meanMicros(),
+                s.percentile(0.50), s.percentile(0.90), s.percentile(0.99), s.percentile(0.999), s.maxMicros(),
+                lastError);
+    }
+
+    // ---------- JMX ----------
+    @Override public long getCalls() { return calls.sum(); }
+
+    @Override public long getErrors() { return errors.sum(); }
+
+    @Override public long getRows() { return rows.sum(); }
+
+    @Override public long getTimedCalls() { return latency.snapshot().count(); }
+
+    @Override public double getMeanMillis() { return latency.snapshot().meanMicros() / 1000; }
+
+    @Override public double getP50Millis() { return latency.snapshot().percentile(0.50) / 1000.0; }
+
+    @Override public double getP99Millis() { return latency.snapshot().percentile(0.99) / 1000.0; }
+
+    @Override public double getP999Millis() { return latency.snapshot().percentile(0.999) / 1000.0; }
+
+    @Override public double getMaxMillis() { return latency.snapshot().maxMicros() / 1000.0; }
+
+    @Override public String getLastError() { return lastError; }
+}
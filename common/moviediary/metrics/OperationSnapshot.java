@@ -0,0 +1,24 @@
+package moviediary.metrics;
+
+// Point-in-time snapshot of one OperationMetrics. Times are in microseconds, taken from the timed calls only.
+public record OperationSnapshot(
+        String name,
+        long calls,
+        long errors,
+        long rows,
+        long timedCalls,
+        double meanMicros,
+        long p50Micros,
+        long p90Micros,
+        long p99Micros,
+        long p999Micros,
+        long maxMicros,
+        String lastError) {
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s calls=%d errors=%d rows=%d timed=%d mean=%.1fus p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+                name, calls, errors, rows, timedCalls, meanMicros, p50Micros, p90Micros, p99Micros, p999Micros, maxMicros);
+    }
+}
@@ -0,0 +1,12 @@
+package moviediary.metrics;
+
+import java.time.Instant;
+
+/** One operation that took longer than the slow-query threshold, with the statements it ran ({@code sql} is empty for in-process stores). */
+public record SlowQuery(String operation, long micros, long atMillis, String sql) {
+    @Override
+    public String toString() {
+        return String.format("%s %s %.1fms %s", Instant.ofEpochMilli(atMillis), operation, micros / 1000.0,
+                sql.isEmpty() ? "(no SQL)" : sql);
+    }
+}
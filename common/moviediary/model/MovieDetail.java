@@ -0,0 +1,21 @@
+package moviediary.model;
+
+import java.util.List;
+
+/**
+ * Everything the detail screens show for one movie: the row, its credited
+ * cast in billing order, its rating aggregate and its newest reviews. The
+ * lists and the histogram are copied on the way in, so a detail can be
+ * cached and handed to several screens at once.
+ */
+public record MovieDetail(MovieRecord movie, List<String> cast, RatingStats stats, List<ReviewEntry> latestReviews) {
+    public MovieDetail {
+        cast = List.copyOf(cast);
+        stats = new RatingStats(stats.count(), stats.sum(), stats.sumOfSquares(), stats.histogram().clone());
+        latestReviews = List.copyOf(latestReviews);
+    }
+
+    public int id() {
+        return movie.id();
+    }
+}
@@ -0,0 +1,7 @@
+package moviediary.model;
+
+// Sort order for the movie listings.
+public enum MovieOrder {
+    TITLE,
+    ID
+}
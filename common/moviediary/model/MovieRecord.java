@@ -0,0 +1,5 @@
+package moviediary.model;
+
+// A full movies row as shown on the detail screens.
+public record MovieRecord(int id, String title, Integer year, String starring, String description) {
+}
@@ -0,0 +1,5 @@
+package moviediary.model;
+
+// One row of the movie listings. year is null when it was never entered.
+public record MovieSummary(int id, String title, Integer year) {
+}
@@ -0,0 +1,33 @@
+package moviediary.model;
+
+/**
+ * Running rating aggregates for one movie, as kept in {@code movie_stats}.
+ * {@code histogram[i]} is the number of reviews that gave {@code i + 1} out
+ * of 10.
+ */
+public record RatingStats(int count, long sum, long sumOfSquares, int[] histogram) {
+    public static final int MAX_RATING = 10;
+
+    public static RatingStats empty() {
+        return new RatingStats(0, 0, 0, new int[MAX_RATING]);
+    }
+
+    public double average() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // Population standard deviation from the running sums.
+    public double stdDev() {
+        if (count == 0) return 0;
+        double mean = average();
+        return Math.sqrt(Math.max(0, (double) sumOfSquares / count - mean * mean));
+    }
+
+    public int countFor(int rating) {
+        return histogram[rating - 1];
+    }
+
+    public RatingSummary summary() {
+        return new RatingSummary(average(), count);
+    }
+}
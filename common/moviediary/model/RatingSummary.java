@@ -0,0 +1,5 @@
+package moviediary.model;
+
+// Average rating and review count for one movie.
+public record RatingSummary(double average, int count) {
+}
@@ -0,0 +1,7 @@
+package moviediary.model;
+
+import java.sql.Timestamp;
+
+// A review joined with its author's username.
+public record ReviewEntry(String username, int rating, String comment, Timestamp createdAt) {
+}
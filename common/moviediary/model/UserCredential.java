@@ -0,0 +1,5 @@
+package moviediary.model;
+
+// A user's id and stored password: a PBKDF2 hash, or plaintext for accounts from before hashing.
+public record UserCredential(int userId, String storedPassword) {
+}
@@ -0,0 +1,7 @@
+package moviediary.model;
+
+import java.sql.Timestamp;
+
+// A watchlist row joined with the movie title. (addedAt, id) is the keyset paging key.
+public record WatchlistEntry(int id, int movieId, String title, Timestamp addedAt) {
+}
@@ -0,0 +1,88 @@
+package moviediary.recommend;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The top-K neighbour lists on disk, so a restart does not repeat the full
+ * similarity computation. Layout: magic, version, build time, the
+ * fingerprint (store id, movies with a review or save, highest review id),
+ * list count, then per movie its id, K and K (neighbour id, similarity)
+ * pairs.
+ */
+final class NeighbourFile {
+    private static final int MAGIC = 0x4D444E42; // "MDNB"
+    private static final int VERSION = 2;
+
+    /** What the lists were computed from; a catalogue only ever grows, so a later one has at least as much. */
+    record Fingerprint(String storeId, int movieCount, long maxReviewId) {
+        boolean precedes(Fingerprint current) {
+            return storeId.equals(current.storeId) && movieCount <= current.movieCount && maxReviewId <= current.maxReviewId;
+        }
+    }
+
+    record Contents(long builtAt, Fingerprint fingerprint, Map<Integer, Neighbours> lists) {}
+
+    private NeighbourFile() {}
+
+    /** Writes to a temporary file and renames it over {@code file}, so a crash leaves the old copy. */
+    static void write(Path file, long builtAt, Fingerprint fingerprint, Map<Integer, Neighbours> lists) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(builtAt);
+            out.writeUTF(fingerprint.storeId());
+            out.writeInt(fingerprint.movieCount());
+            out.writeLong(fingerprint.maxReviewId());
+            out.writeInt(lists.size());
+            for (Map.Entry<Integer, Neighbours> e : lists.entrySet()) {
+                Neighbours n = e.getValue();
+                out.writeInt(e.getKey());
+                out.writeInt(n.size());
+                for (int i = 0; i < n.size(); i++) {
+                    out.writeInt(n.movieIds()[i]);
+                    out.writeFloat(n.similarities()[i]);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** The saved lists, or null when there is no usable file. */
+    static Contents read(Path file) {
+        if (!Files.isRegularFile(file)) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            long builtAt = in.readLong();
+            Fingerprint fingerprint = new Fingerprint(in.readUTF(), in.readInt(), in.readLong());
+            int movies = in.readInt();
+            Map<Integer, Neighbours> lists = new HashMap<>(Math.max(16, movies * 4 / 3));
+            for (int m = 0; m < movies; m++) {
+                int movieId = in.readInt();
+                int k = in.readInt();
+                int[] ids = new int[k];
+                float[] sims = new float[k];
+                for (int i = 0; i < k; i++) {
+                    ids[i] = in.readInt();
+                    sims[i] = in.readFloat();
+                }
+                lists.put(movieId, new Neighbours(ids, sims));
+            }
+            return new Contents(builtAt, fingerprint, lists);
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable neighbour file " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
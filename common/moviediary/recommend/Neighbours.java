@@ -0,0 +1,68 @@
+package moviediary.recommend;
+
+import java.util.Arrays;
+
+/** A movie's most similar movies, most similar first. Never modified once built. */
+record Neighbours(int[] movieIds, float[] similarities) {
+    static final Neighbours NONE = new Neighbours(new int[0], new float[0]);
+
+    int size() {
+        return movieIds.length;
+    }
+
+    /** A copy with {@code movieId} at {@code similarity}, keeping the best {@code k}; only positive similarities are kept. */
+    Neighbours with(int movieId, float similarity, int k) {
+        if (similarity <= 0) return without(movieId);
+        int n = movieIds.length;
+        if (n == k && similarity <= similarities[n - 1] && !contains(movieId)) return this;
+        int[] ids = new int[n + 1];
+        float[] sims = new float[n + 1];
+        int size = 0;
+        boolean placed = false;
+        for (int i = 0; i < n; i++) {
+            if (movieIds[i] == movieId) continue;
+            if (!placed && similarity > similarities[i]) {
+                ids[size] = movieId;
+                sims[size++] = similarity;
+                placed = true;
+            }
+            ids[size] = movieIds[i];
+            sims[size++] = similarities[i];
+        }
+        if (!placed) {
+            ids[size] = movieId;
+            sims[size++] = similarity;
+        }
+        size = Math.min(size, k);
+        return new Neighbours(Arrays.copyOf(ids, size), Arrays.copyOf(sims, size));
+    }
+
+    boolean contains(int movieId) {
+        for (int id : movieIds) {
+            if (id == movieId) return true;
+        }
+        return false;
+    }
+
+    /** The similarity listed for {@code movieId}, or NaN when it is not in the list. */
+    float similarityOf(int movieId) {
+        for (int i = 0; i < movieIds.length; i++) {
+            if (movieIds[i] == movieId) return similarities[i];
+        }
+        return Float.NaN;
+    }
+
+    Neighbours without(int movieId) {
+        for (int i = 0; i < movieIds.length; i++) {
+            if (movieIds[i] != movieId) continue;
+            int[] ids = new int[movieIds.length - 1];
+            float[] sims = new float[ids.length];
+            System.arraycopy(movieIds, 0, ids, 0, i);
+            System.arraycopy(movieIds, i + 1, ids, i, ids.length - i);
+            System.arraycopy(similarities, 0, sims, 0, i);
+            System.arraycopy(similarities, i + 1, sims, i, ids.length - i);
+            return new Neighbours(ids, sims);
+        }
+        return this;
+    }
+}
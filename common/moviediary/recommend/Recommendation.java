@@ -0,0 +1,7 @@
+package moviediary.recommend;
+
+/**
+ * A movie suggested to a user. {@code becauseOf} is the movie on the user's
+ * list that contributed most to {@code score}.
+ */
+public record Recommendation(int movieId, double score, int becauseOf) {}
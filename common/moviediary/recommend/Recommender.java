@@ -0,0 +1,577 @@
+package moviediary.recommend;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieStore;
+import moviediary.db.StoreMode;
+import moviediary.embedded.EmbeddedStore;
+import moviediary.mapped.MappedStore;
+
+/**
+ * Item-item collaborative filtering over reviews and watchlists.
+ *
+ * Every movie is a sparse vector over users: a rating minus that user's mean
+ * rating (adjusted cosine), or {@link #WATCHLIST_SIGNAL} for a movie saved
+ * but not rated. {@link #buildFrom} computes each movie's {@value
+ * #NEIGHBOURS} most similar movies on a fork-join pool and saves them to
+ * {@link #defaultFile}, next to the store, so the next start only
+ * recomputes the movies that were reviewed or saved since. The file records
+ * which store and how much of its catalogue it was built from, and a file
+ * from another store or a catalogue it has never seen is recomputed. A
+ * recommendation then reads the neighbour lists of the movies the user
+ * liked, which takes well under a millisecond.
+ *
+ * New reviews and watchlist saves arrive through the {@link CatalogListener}
+ * callbacks and are applied on a background thread: the movie's row is
+ * recomputed and the lists of every movie it shares a user with are
+ * adjusted, then the file is rewritten at most once a minute. A new rating
+ * also moves the user's mean, which shifts rows that are not recomputed, so
+ * after updates to a tenth of the catalogue (and at least {@value
+ * #MIN_UPDATES}) every row is computed again.
+ */
+public class Recommender implements CatalogListener {
+    public static final int NEIGHBOURS = 20;
+    /** Adjusted-rating value of a movie that was saved to a watchlist but not rated. */
+    static final float WATCHLIST_SIGNAL = 1f;
+    /** Ratings from here up count as liking a movie when recommending. */
+    static final int LIKED = 6;
+    /** Similarities are damped by common / (common + SHRINKAGE) so a couple of shared users cannot reach 1.0. */
+    static final int SHRINKAGE = 5;
+    /** Users with more movies than this are left out of similarity sums; they cost O(n²) and say little. */
+    static final int MAX_USER_MOVIES = 2000;
+    private static final int LEAF_MOVIES = 256;
+    /** Live updates always allowed between full recomputes, however small the catalogue. */
+    private static final int MIN_UPDATES = 100;
+    private static final long SAVE_INTERVAL_MS = 60_000;
+
+    private final Path file;
+    private final String storeId;
+
+    // ---------- VECTORS (guarded by lock) ----------
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private SparseRow[] byUser = new SparseRow[0];
+    private SparseRow[] byMovie = new SparseRow[0];
+    private float[] userMean = new float[0];
+    private float[] norm = new float[0];
+
+    // ---------- NEIGHBOURS (lock-free reads) ----------
+    private final ConcurrentHashMap<Integer, Neighbours> neighbours = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    // Watermark written to the file: everything up to it is reflected in the lists.
+    private long coveredUntil;
+
+    // ---------- LIVE UPDATES (updater thread only) ----------
+    private final CountDownLatch built = new CountDownLatch(1);
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "recommender-update");
+        t.setDaemon(true);
+        return t;
+    });
+    private RowComputer rowScratch;
+    private RowComputer restScratch;
+    private int updatesSinceFull;
+    private int movieCount;
+    private long maxReviewId;
+    private boolean dirty;
+    private long lastSaved;
+
+    /** For the store {@link StoreMode#current()} opens; {@code jdbcUrl} is the database used in MySQL mode. */
+    public Recommender(String jdbcUrl) {
+        this(defaultFile(jdbcUrl), storeId(jdbcUrl));
+    }
+
+    /** Saves to {@code file}; {@code storeId} names the store so another store's file is not reused. */
+    public Recommender(Path file, String storeId) {
+        this.file = file;
+        this.storeId = storeId;
+    }
+
+    /**
+     * {@code -Dmoviediary.recommend.file}, or neighbours.bin in the embedded
+     * or mapped store's directory, or in MySQL mode one
+     * moviediary-neighbours-HASH.bin per JDBC URL in the working directory.
+     */
+    public static Path defaultFile(String jdbcUrl) {
+        String configured = System.getProperty("moviediary.recommend.file");
+        if (configured != null) return Path.of(configured);
+        return switch (StoreMode.current()) {
+            case EMBEDDED -> EmbeddedStore.defaultDirectory().resolve("neighbours.bin");
+            case MAPPED -> MappedStore.defaultDirectory().resolve("neighbours.bin");
+            case MYSQL -> Path.of("moviediary-neighbours-" + Integer.toHexString(jdbcUrl.hashCode()) + ".bin");
+        };
+    }
+
+    private static String storeId(String jdbcUrl) {
+        return switch (StoreMode.current()) {
+            case EMBEDDED -> "embedded:" + EmbeddedStore.defaultDirectory().toAbsolutePath().normalize();
+            case MAPPED -> "mapped:" + MappedStore.defaultDirectory().toAbsolutePath().normalize();
+            case MYSQL -> jdbcUrl;
+        };
+    }
+
+    public boolean isReady() { return ready; }
+
+    // ---------- BUILD ----------
+    /**
+     * Loads every review and watchlist entry, then either reuses the saved
+     * neighbour lists (refreshing the movies touched since they were
+     * written) or, when there is no file, it belongs to another catalogue or
+     * most of it is stale, computes them all again.
+     */
+    public void buildFrom(MovieStore store) throws SQLException {
+        try {
+            NeighbourFile.Contents saved = NeighbourFile.read(file);
+            long startedAt = System.currentTimeMillis();
+            Loader loader = new Loader(saved == null ? Long.MAX_VALUE : saved.builtAt());
+            store.forEachReview((id, movieId, userId, rating, at) -> {
+                loader.add(userId, movieId, rating, at);
+                loader.maxReviewId = Math.max(loader.maxReviewId, id);
+            });
+            store.forEachWatchlistEntry((userId, movieId, at) -> loader.add(userId, movieId, 0, at));
+            lock.writeLock().lock();
+            try {
+                loader.install();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            movieCount = loader.movieCount();
+            maxReviewId = loader.maxReviewId;
+            if (saved != null && !saved.fingerprint().precedes(fingerprint())) {
+                System.err.println("Neighbour file " + file + " was built from another catalogue; recomputing");
+                saved = null;
+            }
+            if (saved == null || loader.stale.cardinality() > movieCount / 10) {
+                computeAll();
+            } else {
+                neighbours.putAll(saved.lists());
+                RowComputer rc = new RowComputer();
+                RowComputer rest = new RowComputer();
+                for (int m = loader.stale.nextSetBit(0); m >= 0; m = loader.stale.nextSetBit(m + 1)) refresh(m, rc, rest);
+            }
+            coveredUntil = startedAt;
+            save();
+            ready = true;
+        } finally {
+            built.countDown();
+        }
+    }
+
+    // Every movie's row on a dedicated pool, so the scratch arrays die with its threads.
+    private void computeAll() {
+        int[] movies;
+        lock.readLock().lock();
+        try {
+            movies = new int[byMovie.length];
+            int n = 0;
+            for (int m = 0; m < byMovie.length; m++) {
+                if (byMovie[m] != null) movies[n++] = m;
+            }
+            movies = Arrays.copyOf(movies, n);
+            Map<Integer, Neighbours> fresh = new ConcurrentHashMap<>(Math.max(16, n * 4 / 3));
+            ThreadLocal<RowComputer> scratch = ThreadLocal.withInitial(RowComputer::new);
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            try {
+                pool.invoke(new RowTask(movies, 0, n, scratch, fresh));
+            } finally {
+                pool.shutdown();
+            }
+            neighbours.putAll(fresh);
+            neighbours.keySet().retainAll(fresh.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private final class RowTask extends RecursiveAction {
+        private final int[] movies;
+        private final int from;
+        private final int to;
+        private final ThreadLocal<RowComputer> scratch;
+        private final Map<Integer, Neighbours> out;
+
+        RowTask(int[] movies, int from, int to, ThreadLocal<RowComputer> scratch, Map<Integer, Neighbours> out) {
+            this.movies = movies;
+            this.from = from;
+            this.to = to;
+            this.scratch = scratch;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_MOVIES) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(movies, from, mid, scratch, out), new RowTask(movies, mid, to, scratch, out));
+                return;
+            }
+            RowComputer rc = scratch.get();
+            for (int i = from; i < to; i++) {
+                rc.compute(movies[i]);
+                Neighbours top = rc.top(NEIGHBOURS);
+                if (top.size() > 0) out.put(movies[i], top);
+            }
+        }
+    }
+
+    // ---------- READS ----------
+    /**
+     * Up to {@code n} movies the user has neither reviewed nor saved, scored
+     * by the similarity-weighted sum over the movies they liked (rated
+     * {@value #LIKED} or more, or saved). Empty until the build finishes.
+     */
+    public List<Recommendation> recommend(int userId, int n) {
+        if (!ready || n <= 0) return List.of();
+        Map<Integer, double[]> scores = new HashMap<>(); // movie -> {score, best contribution, because}
+        lock.readLock().lock();
+        try {
+            SparseRow mine = userId >= 0 && userId < byUser.length ? byUser[userId] : null;
+            if (mine == null) return List.of();
+            for (int a = 0; a < mine.size; a++) {
+                int rating = mine.ratings[a];
+                double weight = rating == 0 ? WATCHLIST_SIGNAL : rating - LIKED + 1;
+                if (weight <= 0) continue;
+                Neighbours nb = neighbours.get(mine.ids[a]);
+                if (nb == null) continue;
+                for (int k = 0; k < nb.size(); k++) {
+                    int j = nb.movieIds()[k];
+                    if (mine.contains(j)) continue;
+                    double c = weight * nb.similarities()[k];
+                    double[] s = scores.computeIfAbsent(j, x -> new double[3]);
+                    s[0] += c;
+                    if (c > s[1]) {
+                        s[1] = c;
+                        s[2] = mine.ids[a];
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        PriorityQueue<Recommendation> best = new PriorityQueue<>(n + 1,
+                (x, y) -> x.score() != y.score() ? Double.compare(x.score(), y.score()) : Integer.compare(y.movieId(), x.movieId()));
+        for (Map.Entry<Integer, double[]> e : scores.entrySet()) {
+            double[] s = e.getValue();
+            best.add(new Recommendation(e.getKey(), s[0], (int) s[2]));
+            if (best.size() > n) best.poll();
+        }
+        List<Recommendation> out = new ArrayList<>(best);
+        out.sort(best.comparator().reversed());
+        return out;
+    }
+
+    /** The movies most similar to {@code movieId}, most similar first. */
+    public int[] similarTo(int movieId) {
+        Neighbours nb = neighbours.get(movieId);
+        return nb == null ? new int[0] : nb.movieIds().clone();
+    }
+
+    // ---------- LIVE UPDATES ----------
+    @Override
+    public void reviewAdded(int reviewId, int movieId, int userId, int rating, Timestamp createdAt) {
+        updater.execute(() -> apply(reviewId, userId, movieId, rating));
+    }
+
+    @Override
+    public void watchlistAdded(int userId, int movieId, Timestamp addedAt) {
+        updater.execute(() -> apply(0, userId, movieId, 0));
+    }
+
+    /** Writes the neighbour lists now; normally done after the build and then at most once a minute. */
+    public void save() {
+        try {
+            NeighbourFile.write(file, coveredUntil, fingerprint(), neighbours);
+            dirty = false;
+            lastSaved = System.currentTimeMillis();
+        } catch (IOException e) {
+            System.err.println("Could not save neighbour lists to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private NeighbourFile.Fingerprint fingerprint() {
+        return new NeighbourFile.Fingerprint(storeId, movieCount, maxReviewId);
+    }
+
+    // Runs on the updater thread; events wait for the build, which may already include them (put is idempotent).
+    private void apply(int reviewId, int userId, int movieId, int rating) {
+        if (userId < 0 || movieId < 0) return;
+        try {
+            built.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (movieId >= byMovie.length || byMovie[movieId] == null) movieCount++;
+            put(userId, movieId, rating);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        maxReviewId = Math.max(maxReviewId, reviewId);
+        if (!ready) return;
+        if (++updatesSinceFull > Math.max(MIN_UPDATES, movieCount / 10)) {
+            // means have drifted under rows that were not recomputed; start over
+            computeAll();
+            updatesSinceFull = 0;
+            coveredUntil = System.currentTimeMillis();
+        } else {
+            if (rowScratch == null) {
+                rowScratch = new RowComputer();
+                restScratch = new RowComputer();
+            }
+            refresh(movieId, rowScratch, restScratch);
+        }
+        dirty = true;
+        if (System.currentTimeMillis() - lastSaved >= SAVE_INTERVAL_MS) save();
+    }
+
+    // Recomputes one movie's list and moves it up or down in the lists of every movie it shares a user with.
+    private void refresh(int movieId, RowComputer rc, RowComputer rest) {
+        lock.readLock().lock();
+        try {
+            rc.compute(movieId);
+            Neighbours top = rc.top(NEIGHBOURS);
+            if (top.size() > 0) neighbours.put(movieId, top);
+            else neighbours.remove(movieId);
+            for (int t = 0; t < rc.touchedCount; t++) {
+                int j = rc.touched[t];
+                Neighbours old = neighbours.getOrDefault(j, Neighbours.NONE);
+                Neighbours next = old.with(movieId, rc.sims[t], NEIGHBOURS);
+                if (old.size() == NEIGHBOURS && rc.sims[t] < old.similarityOf(movieId)
+                        && (next.size() < NEIGHBOURS || next.movieIds()[NEIGHBOURS - 1] == movieId)) {
+                    // movieId sank to the bottom or out; a movie just outside the list may now beat it
+                    rest.compute(j);
+                    next = rest.top(NEIGHBOURS);
+                }
+                if (next.size() > 0) neighbours.put(j, next);
+                else neighbours.remove(j);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- VECTORS ----------
+    private void put(int userId, int movieId, int rating) {
+        if (userId >= byUser.length) {
+            int n = Math.max(userId + 1, byUser.length + (byUser.length >> 1));
+            byUser = Arrays.copyOf(byUser, n);
+            userMean = Arrays.copyOf(userMean, n);
+        }
+        if (movieId >= byMovie.length) {
+            int n = Math.max(movieId + 1, byMovie.length + (byMovie.length >> 1));
+            byMovie = Arrays.copyOf(byMovie, n);
+            norm = Arrays.copyOf(norm, n);
+        }
+        if (byUser[userId] == null) byUser[userId] = new SparseRow();
+        if (byMovie[movieId] == null) byMovie[movieId] = new SparseRow();
+        byUser[userId].set(movieId, rating);
+        byMovie[movieId].set(userId, rating);
+        // The user's other movies keep norms from the old mean until the next full build; the drift is tiny.
+        userMean[userId] = mean(byUser[userId]);
+        norm[movieId] = norm(byMovie[movieId]);
+    }
+
+    private static float mean(SparseRow movies) {
+        long sum = 0;
+        int count = 0;
+        for (int i = 0; i < movies.size; i++) {
+            if (movies.ratings[i] > 0) {
+                sum += movies.ratings[i];
+                count++;
+            }
+        }
+        return count == 0 ? 0 : (float) sum / count;
+    }
+
+    private float norm(SparseRow users) {
+        double sq = 0;
+        for (int i = 0; i < users.size; i++) {
+            double a = adjusted(users.ids[i], users.ratings[i]);
+            sq += a * a;
+        }
+        return (float) Math.sqrt(sq);
+    }
+
+    private double adjusted(int userId, int rating) {
+        return rating == 0 ? WATCHLIST_SIGNAL : rating - userMean[userId];
+    }
+
+    // One movie's similarity to every movie it shares a user with; reads the vectors, so callers hold the read lock.
+    private final class RowComputer {
+        private double[] dot = new double[0];
+        private int[] common = new int[0];
+        int[] touched = new int[0];
+        float[] sims = new float[0];
+        int touchedCount;
+
+        void compute(int movieId) {
+            if (dot.length < byMovie.length) {
+                dot = new double[byMovie.length];
+                common = new int[byMovie.length];
+                touched = new int[byMovie.length];
+            }
+            touchedCount = 0;
+            SparseRow users = movieId < byMovie.length ? byMovie[movieId] : null;
+            if (users == null || norm[movieId] == 0) return;
+            for (int a = 0; a < users.size; a++) {
+                int u = users.ids[a];
+                SparseRow movies = byUser[u];
+                if (movies.size > MAX_USER_MOVIES) continue;
+                double wi = adjusted(u, users.ratings[a]);
+                if (wi == 0) continue;
+                for (int b = 0; b < movies.size; b++) {
+                    int j = movies.ids[b];
+                    if (j == movieId) continue;
+                    if (common[j]++ == 0) touched[touchedCount++] = j;
+                    dot[j] += wi * adjusted(u, movies.ratings[b]);
+                }
+            }
+            if (sims.length < touchedCount) sims = new float[Math.max(touchedCount, sims.length * 2)];
+            double ni = norm[movieId];
+            for (int t = 0; t < touchedCount; t++) {
+                int j = touched[t];
+                double nj = norm[j];
+                double s = nj == 0 ? 0 : dot[j] / (ni * nj) * common[j] / (common[j] + SHRINKAGE);
+                sims[t] = (float) s;
+                dot[j] = 0;
+                common[j] = 0;
+            }
+        }
+
+        // The k best positive similarities of the last compute(), by insertion into a sorted prefix.
+        Neighbours top(int k) {
+            int[] ids = new int[k];
+            float[] best = new float[k];
+            int size = 0;
+            for (int t = 0; t < touchedCount; t++) {
+                float s = sims[t];
+                if (s <= 0 || (size == k && s <= best[k - 1])) continue;
+                int i = size < k ? size++ : k - 1;
+                while (i > 0 && (best[i - 1] < s || (best[i - 1] == s && ids[i - 1] > touched[t]))) {
+                    ids[i] = ids[i - 1];
+                    best[i] = best[i - 1];
+                    i--;
+                }
+                ids[i] = touched[t];
+                best[i] = s;
+            }
+            return size == 0 ? Neighbours.NONE : new Neighbours(Arrays.copyOf(ids, size), Arrays.copyOf(best, size));
+        }
+    }
+
+    // (user, movie, rating) triples in arrival order, sorted into both row layouts with two stable counting sorts each.
+    private final class Loader {
+        private final long staleSince;
+        private int[] user = new int[1024];
+        private int[] movie = new int[1024];
+        private byte[] rating = new byte[1024];
+        private int size;
+        private int maxUser = -1;
+        private int maxMovie = -1;
+        long maxReviewId;
+        final BitSet stale = new BitSet();
+
+        Loader(long staleSince) {
+            this.staleSince = staleSince;
+        }
+
+        void add(int userId, int movieId, int r, long at) {
+            if (userId < 0 || movieId < 0) return;
+            if (size == user.length) {
+                user = Arrays.copyOf(user, size * 2);
+                movie = Arrays.copyOf(movie, size * 2);
+                rating = Arrays.copyOf(rating, size * 2);
+            }
+            user[size] = userId;
+            movie[size] = movieId;
+            rating[size++] = (byte) r;
+            maxUser = Math.max(maxUser, userId);
+            maxMovie = Math.max(maxMovie, movieId);
+            if (at >= staleSince) stale.set(movieId);
+        }
+
+        int movieCount() {
+            int n = 0;
+            for (SparseRow r : byMovie) {
+                if (r != null) n++;
+            }
+            return n;
+        }
+
+        // Caller holds the write lock.
+        void install() {
+            byUser = rows(order(user, movie, maxUser, maxMovie), user, movie, maxUser);
+            byMovie = rows(order(movie, user, maxMovie, maxUser), movie, user, maxMovie);
+            userMean = new float[byUser.length];
+            norm = new float[byMovie.length];
+            for (int u = 0; u < byUser.length; u++) {
+                if (byUser[u] != null) userMean[u] = mean(byUser[u]);
+            }
+            for (int m = 0; m < byMovie.length; m++) {
+                if (byMovie[m] != null) norm[m] = norm(byMovie[m]);
+            }
+            user = movie = null;
+            rating = null;
+        }
+
+        // Positions sorted by (outer, inner), arrival order kept within equal pairs.
+        private int[] order(int[] outer, int[] inner, int maxOuter, int maxInner) {
+            int[] identity = new int[size];
+            for (int i = 0; i < size; i++) identity[i] = i;
+            return countingSort(countingSort(identity, inner, maxInner), outer, maxOuter);
+        }
+
+        private int[] countingSort(int[] in, int[] key, int max) {
+            int[] start = new int[max + 2];
+            for (int i = 0; i < size; i++) start[key[in[i]] + 1]++;
+            for (int k = 1; k < start.length; k++) start[k] += start[k - 1];
+            int[] out = new int[size];
+            for (int i = 0; i < size; i++) out[start[key[in[i]]]++] = in[i];
+            return out;
+        }
+
+        // A later rating of the same pair wins; a watchlist entry never replaces a rating.
+        private SparseRow[] rows(int[] order, int[] outer, int[] inner, int maxOuter) {
+            SparseRow[] rows = new SparseRow[maxOuter + 1];
+            int i = 0;
+            while (i < size) {
+                int o = outer[order[i]];
+                int j = i;
+                while (j < size && outer[order[j]] == o) j++;
+                int[] ids = new int[j - i];
+                byte[] r = new byte[j - i];
+                int n = 0;
+                for (int k = i; k < j; k++) {
+                    int p = order[k];
+                    if (n > 0 && ids[n - 1] == inner[p]) {
+                        if (rating[p] > 0) r[n - 1] = rating[p];
+                    } else {
+                        ids[n] = inner[p];
+                        r[n++] = rating[p];
+                    }
+                }
+                rows[o] = new SparseRow(ids, r, n);
+                i = j;
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package moviediary.recommend;
+
+import java.util.Arrays;
+
+/**
+ * One user's movies or one movie's users, sorted by id, with the rating
+ * given (1-10) or 0 for "on the watchlist, not rated".
+ */
+final class SparseRow {
+    int[] ids;
+    byte[] ratings;
+    int size;
+
+    SparseRow() {
+        this(new int[4], new byte[4], 0);
+    }
+
+    SparseRow(int[] ids, byte[] ratings, int size) {
+        this.ids = ids;
+        this.ratings = ratings;
+        this.size = size;
+    }
+
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /** Records a rating, or with {@code rating} 0 a watchlist save, which never replaces a rating. */
+    void set(int id, int rating) {
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        if (i >= 0) {
+            if (rating > 0) ratings[i] = (byte) rating;
+            return;
+        }
+        i = -i - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            ratings = Arrays.copyOf(ratings, size * 2);
+        }
+        System.arraycopy(ids, i, ids, i + 1, size - i);
+        System.arraycopy(ratings, i, ratings, i + 1, size - i);
+        ids[i] = id;
+        ratings[i] = (byte) rating;
+        size++;
+    }
+}
@@ -0,0 +1,5 @@
+package moviediary.search;
+
+// One ranked search result.
+public record SearchHit(int movieId, String title, Integer year, float score) {
+}
@@ -0,0 +1,708 @@
+package moviediary.search;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieStore;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+
+/**
+ * In-memory inverted index over movie title, starring and description.
+ *
+ * Text is split on anything that is not a letter or digit, accents are
+ * stripped and everything is lower-cased, so "Amélie" matches "amelie".
+ * Starring and description skip the commonest English words, which would
+ * otherwise match most of the catalogue; titles keep them, so "It" or "Us"
+ * can still be found. Every query word must match, except that those
+ * stopwords are left out of a query with other words in it; the last word
+ * also matches as a prefix while the user is still typing. Hits are ranked by
+ * field-weighted term frequency times inverse document frequency (title
+ * counts most, then starring).
+ *
+ * A prefix expands to the {@value #MAX_PREFIX_TERMS} commonest terms that
+ * start with it, found in a table kept per prefix of up to {@value
+ * #TOP_TERMS_PREFIX} characters. Each term also keeps its {@value #HEAD_SIZE}
+ * best-weighted movies, and within one term the ranking follows the weight,
+ * so a one-word query is answered exactly from those alone, however many
+ * movies the word matches. With more words the expansions have to be
+ * intersected with the rest of the query. A whole word typed so far goes
+ * first, then the expansions rarest first; past {@value #MAX_PREFIX_POSTINGS}
+ * postings, an expansion is skipped when even its heaviest movie could not
+ * reach the results found so far, and the rest are taken most promising
+ * first until {@value #MAX_PREFIX_WORK} postings have been read. Past that
+ * the results of a multi-word query still being typed are approximate; they
+ * become exact once the last word is finished. Common words also keep a
+ * bitmap, so two of them intersect a machine word at a time.
+ * {@code SearchBenchmark} times these on a million titles.
+ *
+ * The index is filled once from the database with {@link #buildFrom} and then
+ * follows {@link MovieStore#addMovie} as a {@link CatalogListener}. Searches may
+ * run on any thread, including while the initial build is still going.
+ */
+public class SearchIndex implements CatalogListener {
+    public static final int DEFAULT_LIMIT = 50;
+
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float STARRING_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    // Terms reached only through prefix expansion score a little below an exact word.
+    private static final float PREFIX_FACTOR = 0.7f;
+    private static final int MAX_PREFIX_TERMS = 64;
+    private static final int MAX_PREFIX_POSTINGS = 1 << 13;
+    private static final int MAX_PREFIX_WORK = 1 << 15;
+    private static final int HEAD_SIZE = 64;
+    // Postings of at least this many docs, and of one doc in DENSE_RATIO or more, also get a bitmap
+    // of their doc ids, no bigger than the postings themselves; common words intersect through it.
+    private static final int DENSE_MIN = 1024;
+    private static final int DENSE_RATIO = 64;
+    // Prefixes up to this long have their commonest terms kept up to date; longer ones scan the dictionary.
+    private static final int TOP_TERMS_PREFIX = 3;
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "has", "he", "her", "his",
+            "in", "is", "it", "its", "of", "on", "or", "she", "that", "the", "their", "they", "this", "to",
+            "was", "were", "who", "with");
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, TopTerms> topTerms = new HashMap<>();
+    private final Map<Integer, MovieSummary> docs = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int maxDocId;
+    private volatile boolean ready;
+
+    /** Indexes every movie in the database. Safe to call while searches and adds are running. */
+    public void buildFrom(MovieStore dao) throws SQLException {
+        dao.forEachMovie(this::add);
+        ready = true;
+    }
+
+    /** True once {@link #buildFrom} has finished; until then results cover only part of the catalogue. */
+    public boolean isReady() { return ready; }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void movieAdded(MovieRecord movie) {
+        add(movie);
+    }
+
+    /** Adds one movie. Adding a movie that is already indexed does nothing. */
+    public void add(MovieRecord movie) {
+        Map<String, Float> weights = new HashMap<>();
+        accumulate(weights, movie.title(), TITLE_WEIGHT, false);
+        accumulate(weights, movie.starring(), STARRING_WEIGHT, true);
+        accumulate(weights, movie.description(), DESCRIPTION_WEIGHT, true);
+
+        lock.writeLock().lock();
+        try {
+            if (docs.putIfAbsent(movie.id(), new MovieSummary(movie.id(), movie.title(), movie.year())) != null) return;
+            maxDocId = Math.max(maxDocId, movie.id());
+            for (Map.Entry<String, Float> e : weights.entrySet()) {
+                Postings p = terms.computeIfAbsent(e.getKey(), this::newPostings);
+                if (!p.add(movie.id(), e.getValue())) continue;
+                for (int level = 0; level < p.tops.length; level++) p.tops[level].offer(p, level);
+                if (p.bits == null && p.size >= DENSE_MIN && (long) p.size * DENSE_RATIO > maxDocId) p.densify();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SearchHit> search(String query) {
+        return search(query, DEFAULT_LIMIT);
+    }
+
+    /** The best {@code limit} matches for {@code query}, highest score first. */
+    public List<SearchHit> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) return Collections.emptyList();
+        // A trailing space means the last word is finished; otherwise treat it as a prefix.
+        boolean lastIsPrefix = !Character.isWhitespace(query.charAt(query.length() - 1));
+        // Finished stopwords only narrow a query that has other words by a little, at a high cost.
+        int finished = words.size() - (lastIsPrefix ? 1 : 0);
+        for (int i = finished - 1; i >= 0 && words.size() > 1; i--) {
+            if (STOPWORDS.contains(words.get(i))) words.remove(i);
+        }
+
+        lock.readLock().lock();
+        try {
+            int n = docs.size();
+            String last = words.get(words.size() - 1);
+            Postings whole = terms.get(last);
+            if (words.size() == 1 && limit <= HEAD_SIZE) {
+                List<Postings> candidates = lastIsPrefix ? prefixTerms(last) : new ArrayList<>();
+                if (whole != null && !candidates.contains(whole)) candidates.add(whole);
+                List<Scored> heads = new ArrayList<>(candidates.size());
+                for (Postings p : candidates) heads.add(Scored.head(p, scale(p, whole, n)));
+                return topHits(unionHeads(heads), limit);
+            }
+
+            // The finished words, intersected smallest first
+            List<Scored> perWord = new ArrayList<>(words.size());
+            for (int i = 0; i < words.size() - (lastIsPrefix ? 1 : 0); i++) {
+                Postings p = terms.get(words.get(i));
+                if (p == null) return Collections.emptyList();
+                perWord.add(Scored.of(p, idf(p, n)));
+            }
+            perWord.sort(Comparator.comparingInt(s -> s.size));
+            Scored result = perWord.isEmpty() ? null : perWord.get(0);
+            for (int i = 1; i < perWord.size() && result.size > 0; i++) result = result.intersect(perWord.get(i));
+            if (!lastIsPrefix) return topHits(result, limit);
+
+            // Each expansion of the word being typed against the rest of the query: rarest first
+            // up to MAX_PREFIX_POSTINGS, then the most promising of the rest that could still
+            // reach the results, up to MAX_PREFIX_WORK
+            List<Postings> expansions = prefixExpansions(last, whole);
+            if (result != null && expansions.size() > 2) result = result.withBitmap();
+            List<Scored> pieces = new ArrayList<>();
+            int scanned = 0;
+            int next = 0;
+            for (; next < expansions.size() && scanned < MAX_PREFIX_POSTINGS; next++) {
+                Postings p = expansions.get(next);
+                Scored s = Scored.of(p, scale(p, whole, n));
+                pieces.add(result == null ? s : result.intersect(s));
+                scanned += p.size;
+            }
+            if (next < expansions.size()) {
+                Scored found = union(pieces);
+                pieces.clear();
+                pieces.add(found);
+                float cut = found.kthScore(limit);
+                float restBest = result == null ? 0f : result.maxScore();
+                List<Postings> rest = new ArrayList<>(expansions.subList(next, expansions.size()));
+                float[] best = new float[rest.size()];
+                for (int i = 0; i < best.length; i++) best[i] = restBest + rest.get(i).maxWeight() * scale(rest.get(i), whole, n);
+                Integer[] order = new Integer[best.length];
+                for (int i = 0; i < order.length; i++) order[i] = i;
+                Arrays.sort(order, (x, y) -> Float.compare(best[y], best[x]));
+                for (int i : order) {
+                    Postings p = rest.get(i);
+                    if (best[i] < cut) break;
+                    if (scanned + p.size > MAX_PREFIX_WORK) continue;
+                    Scored s = Scored.of(p, scale(p, whole, n));
+                    pieces.add(result == null ? s : result.intersect(s));
+                    scanned += p.size;
+                }
+            }
+            return topHits(union(pieces), limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------- QUERY EVALUATION ----------
+    // `whole` is the word as typed; the other terms reached from it are prefix expansions.
+    private static float scale(Postings p, Postings whole, int n) {
+        return idf(p, n) * (p == whole ? 1f : PREFIX_FACTOR);
+    }
+
+    // The word as typed, then its commonest expansions rarest first.
+    private List<Postings> prefixExpansions(String prefix, Postings whole) {
+        List<Postings> candidates = prefixTerms(prefix);
+        candidates.remove(whole);
+        candidates.sort(Comparator.comparingInt(p -> p.size));
+        if (whole != null) candidates.add(0, whole);
+        return candidates;
+    }
+
+    // Every doc in any of the doc-ordered `pieces`, with its best score. Merges two at a time,
+    // smallest first, so a big piece is copied once or twice rather than once per small one.
+    private static Scored union(List<Scored> pieces) {
+        PriorityQueue<Scored> queue = new PriorityQueue<>(Math.max(1, pieces.size()), Comparator.comparingInt(s -> s.size));
+        for (Scored s : pieces) if (s.size > 0) queue.add(s);
+        if (queue.isEmpty()) return Scored.EMPTY;
+        while (queue.size() > 1) queue.add(queue.poll().union(queue.poll()));
+        return queue.poll();
+    }
+
+    // Every doc in any of the term heads, with its best score.
+    private static Scored unionHeads(List<Scored> pieces) {
+        if (pieces.isEmpty()) return Scored.EMPTY;
+        if (pieces.size() == 1) return pieces.get(0);
+
+        // k-way union in one sort: pack (doc, score bits) into longs; for a doc in several heads
+        // the best score sorts last. Non-negative float bits order like the floats.
+        int total = 0;
+        for (Scored s : pieces) total += s.size;
+        long[] packed = new long[total];
+        int k = 0;
+        for (Scored s : pieces) {
+            for (int i = 0; i < s.size; i++) packed[k++] = ((long) s.docs[i] << 32) | Float.floatToRawIntBits(s.score(i));
+        }
+        Arrays.sort(packed);
+        int[] docsOut = new int[total];
+        float[] scoresOut = new float[total];
+        int m = 0;
+        for (int i = 0; i < total; i++) {
+            int doc = (int) (packed[i] >>> 32);
+            if (i + 1 < total && (int) (packed[i + 1] >>> 32) == doc) continue;
+            docsOut[m] = doc;
+            scoresOut[m++] = Float.intBitsToFloat((int) packed[i]);
+        }
+        return new Scored(docsOut, scoresOut, m, 1f);
+    }
+
+    // The commonest terms starting with `prefix`, at most MAX_PREFIX_TERMS of them.
+    private List<Postings> prefixTerms(String prefix) {
+        if (prefix.length() <= TOP_TERMS_PREFIX) {
+            TopTerms top = topTerms.get(prefix);
+            return top == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(top.members).subList(0, top.count));
+        }
+        List<Postings> all = new ArrayList<>();
+        for (Postings p : terms.tailMap(prefix, true).values()) {
+            if (!p.term.startsWith(prefix)) break;
+            all.add(p);
+        }
+        if (all.size() <= MAX_PREFIX_TERMS) return all;
+        all.sort((a, b) -> Integer.compare(b.size, a.size));
+        return new ArrayList<>(all.subList(0, MAX_PREFIX_TERMS));
+    }
+
+    private List<SearchHit> topHits(Scored result, int limit) {
+        // Primitive min-heap of positions into `result`: the weakest of the current best on top.
+        int[] heap = new int[Math.min(limit, result.size)];
+        int n = 0;
+        for (int i = 0; i < result.size; i++) {
+            if (n < heap.length) {
+                heap[n] = i;
+                siftUp(heap, n++, result);
+            } else if (better(result, i, heap[0])) {
+                heap[0] = i;
+                siftDown(heap, n, result);
+            }
+        }
+        SearchHit[] hits = new SearchHit[n];
+        while (n > 0) {
+            int at = heap[0];
+            heap[0] = heap[--n];
+            siftDown(heap, n, result);
+            MovieSummary m = docs.get(result.docs[at]);
+            hits[n] = new SearchHit(m.id(), m.title(), m.year(), result.score(at));
+        }
+        return Arrays.asList(hits);
+    }
+
+    // Higher score wins; on a tie the lower (older) movie id wins.
+    private static boolean better(Scored r, int a, int b) {
+        int c = Float.compare(r.score(a), r.score(b));
+        return c != 0 ? c > 0 : r.docs[a] < r.docs[b];
+    }
+
+    private static void siftUp(int[] heap, int i, Scored r) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(r, heap[parent], heap[i])) break;
+            int t = heap[parent]; heap[parent] = heap[i]; heap[i] = t;
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int n, Scored r) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) break;
+            if (child + 1 < n && better(r, heap[child], heap[child + 1])) child++;
+            if (!better(r, heap[i], heap[child])) break;
+            int t = heap[i]; heap[i] = heap[child]; heap[child] = t;
+            i = child;
+        }
+    }
+
+    private static float idf(Postings p, int n) {
+        return (float) Math.log(1 + (double) n / p.size);
+    }
+
+    // ---------- TOKENIZING ----------
+    private static void accumulate(Map<String, Float> weights, String text, float weight, boolean skipStopwords) {
+        for (String t : tokenize(text)) {
+            if (!skipStopwords || !STOPWORDS.contains(t)) weights.merge(t, weight, Float::sum);
+        }
+    }
+
+    /** Case-folded, accent-free words of {@code text}. */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) return Collections.emptyList();
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> out = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean word = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                out.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    // ---------- POSTINGS ----------
+    private Postings newPostings(String term) {
+        TopTerms[] tops = new TopTerms[Math.min(term.length(), TOP_TERMS_PREFIX)];
+        for (int i = 0; i < tops.length; i++) tops[i] = topTerms.computeIfAbsent(term.substring(0, i + 1), k -> new TopTerms());
+        return new Postings(term, tops);
+    }
+
+    // Doc ids in ascending order with a parallel array of field-weighted term frequencies. Past
+    // HEAD_SIZE docs, the heaviest HEAD_SIZE are also kept heaviest first, the lower id first on a tie.
+    private static final class Postings {
+        final String term;
+        // The tables of the term's 1, 2 and 3-character prefixes; bit i of inTops is set while it is in tops[i].
+        final TopTerms[] tops;
+        int inTops;
+        int[] docs = new int[2];
+        float[] weights = new float[2];
+        int size;
+        int[] headDocs;
+        float[] headWeights;
+        // Bit d set for each doc d, once the term is common enough, and the docs before each of
+        // the first `words` words, so a doc's position is found without walking the postings.
+        long[] bits;
+        int[] ranks;
+        int words;
+
+        Postings(String term, TopTerms[] tops) {
+            this.term = term;
+            this.tops = tops;
+        }
+
+        // A throwaway bitmap over one query's working set, which is probed many times.
+        Postings(int[] docs, float[] weights, int size) {
+            this(null, new TopTerms[0]);
+            this.docs = docs;
+            this.weights = weights;
+            this.size = size;
+            if (size > 0) densify();
+        }
+
+        /** False when the doc was already present. */
+        boolean add(int doc, float weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            int at = size == 0 || docs[size - 1] < doc ? size : Arrays.binarySearch(docs, 0, size, doc);
+            if (at >= 0 && at < size) return false;
+            if (at < 0) {
+                // Out-of-order id (a new movie added while the initial build was still streaming).
+                at = -at - 1;
+                System.arraycopy(docs, at, docs, at + 1, size - at);
+                System.arraycopy(weights, at, weights, at + 1, size - at);
+            }
+            docs[at] = doc;
+            weights[at] = weight;
+            size++;
+            if (headDocs != null) offerHead(doc, weight);
+            else if (size > HEAD_SIZE) buildHead();
+            if (bits != null) setBit(doc);
+            return true;
+        }
+
+        void densify() {
+            words = (docs[size - 1] >>> 6) + 1;
+            bits = new long[words];
+            ranks = new int[words];
+            for (int i = 0; i < size; i++) bits[docs[i] >>> 6] |= 1L << docs[i];
+            for (int w = 0, r = 0; w < words; w++) {
+                ranks[w] = r;
+                r += Long.bitCount(bits[w]);
+            }
+        }
+
+        // After `doc` has gone into the postings.
+        private void setBit(int doc) {
+            int word = doc >>> 6;
+            if (word >= bits.length) {
+                int capacity = Math.max(word + 1, bits.length * 2);
+                bits = Arrays.copyOf(bits, capacity);
+                ranks = Arrays.copyOf(ranks, capacity);
+            }
+            if (word >= words) {
+                for (int w = words; w <= word; w++) ranks[w] = size - 1;
+                words = word + 1;
+            } else {
+                for (int w = word + 1; w < words; w++) ranks[w]++;
+            }
+            bits[word] |= 1L << doc;
+        }
+
+        private void buildHead() {
+            headDocs = new int[HEAD_SIZE];
+            headWeights = new float[HEAD_SIZE];
+            System.arraycopy(docs, 0, headDocs, 0, HEAD_SIZE);
+            System.arraycopy(weights, 0, headWeights, 0, HEAD_SIZE);
+            // Insertion sort of the first HEAD_SIZE docs, then the rest are offered like new ones.
+            for (int i = 1; i < HEAD_SIZE; i++) {
+                int d = headDocs[i];
+                float w = headWeights[i];
+                int j = i;
+                for (; j > 0 && heavier(w, d, headWeights[j - 1], headDocs[j - 1]); j--) {
+                    headDocs[j] = headDocs[j - 1];
+                    headWeights[j] = headWeights[j - 1];
+                }
+                headDocs[j] = d;
+                headWeights[j] = w;
+            }
+            for (int i = HEAD_SIZE; i < size; i++) offerHead(docs[i], weights[i]);
+        }
+
+        private void offerHead(int doc, float weight) {
+            int j = HEAD_SIZE - 1;
+            if (!heavier(weight, doc, headWeights[j], headDocs[j])) return;
+            for (; j > 0 && heavier(weight, doc, headWeights[j - 1], headDocs[j - 1]); j--) {
+                headDocs[j] = headDocs[j - 1];
+                headWeights[j] = headWeights[j - 1];
+            }
+            headDocs[j] = doc;
+            headWeights[j] = weight;
+        }
+
+        float maxWeight() {
+            if (headDocs != null) return headWeights[0];
+            float max = 0f;
+            for (int i = 0; i < size; i++) max = Math.max(max, weights[i]);
+            return max;
+        }
+
+        private static boolean heavier(float w, int doc, float otherW, int otherDoc) {
+            return w != otherW ? w > otherW : doc < otherDoc;
+        }
+    }
+
+    // The MAX_PREFIX_TERMS largest postings among the terms sharing one prefix. Postings only grow,
+    // so a term has to be offered each time it gains a doc and no outsider is ever larger than a member.
+    private static final class TopTerms {
+        final Postings[] members = new Postings[MAX_PREFIX_TERMS];
+        int count;
+        // No member is smaller than this; it lags behind as members grow, which only costs a rescan.
+        int floor;
+
+        void offer(Postings p, int level) {
+            int bit = 1 << level;
+            if ((p.inTops & bit) != 0) return;
+            if (count < members.length) {
+                members[count++] = p;
+                p.inTops |= bit;
+                return;
+            }
+            if (p.size <= floor) return;
+            int smallest = smallest();
+            if (members[smallest].size < p.size) {
+                members[smallest].inTops &= ~bit;
+                members[smallest] = p;
+                p.inTops |= bit;
+                smallest = smallest();
+            }
+            floor = members[smallest].size;
+        }
+
+        private int smallest() {
+            int at = 0;
+            for (int i = 1; i < count; i++) if (members[i].size < members[at].size) at = i;
+            return at;
+        }
+    }
+
+    // A doc-ordered list of partial scores, the working set of one query. Single-term lists are
+    // views over the postings arrays (stable while the read lock is held) scaled by `factor`.
+    private static final class Scored {
+        static final Scored EMPTY = new Scored(new int[0], new float[0], 0, 1f);
+
+        final int[] docs;
+        final float[] weights;
+        final int size;
+        final float factor;
+        // The postings this is a view of, if any
+        final Postings source;
+
+        Scored(int[] docs, float[] weights, int size, float factor) {
+            this(docs, weights, size, factor, null);
+        }
+
+        private Scored(int[] docs, float[] weights, int size, float factor, Postings source) {
+            this.docs = docs;
+            this.weights = weights;
+            this.size = size;
+            this.factor = factor;
+            this.source = source;
+        }
+
+        static Scored of(Postings p, float idf) {
+            return new Scored(p.docs, p.weights, p.size, idf, p);
+        }
+
+        // The term's heaviest docs: its best HEAD_SIZE, not in doc order. Not for intersecting.
+        static Scored head(Postings p, float idf) {
+            return p.headDocs == null ? of(p, idf) : new Scored(p.headDocs, p.headWeights, HEAD_SIZE, idf);
+        }
+
+        float score(int i) {
+            return weights[i] * factor;
+        }
+
+        float maxScore() {
+            if (source != null) return source.maxWeight() * factor;
+            float max = 0f;
+            for (int i = 0; i < size; i++) max = Math.max(max, score(i));
+            return max;
+        }
+
+        // The k-th best score, or 0 when there are fewer than k docs. Min-heap of the best k.
+        float kthScore(int k) {
+            if (size < k) return 0f;
+            float[] heap = new float[k];
+            for (int i = 0; i < size; i++) {
+                float v = score(i);
+                if (i < k) {
+                    int at = i;
+                    for (; at > 0 && heap[(at - 1) >>> 1] > v; at = (at - 1) >>> 1) heap[at] = heap[(at - 1) >>> 1];
+                    heap[at] = v;
+                } else if (v > heap[0]) {
+                    int at = 0;
+                    while (true) {
+                        int child = 2 * at + 1;
+                        if (child >= k) break;
+                        if (child + 1 < k && heap[child + 1] < heap[child]) child++;
+                        if (heap[child] >= v) break;
+                        heap[at] = heap[child];
+                        at = child;
+                    }
+                    heap[at] = v;
+                }
+            }
+            return heap[0];
+        }
+
+        // Docs in either list, with the better score; both in doc order.
+        Scored union(Scored other) {
+            int[] d = new int[size + other.size];
+            float[] s = new float[d.length];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                int a = i < size ? docs[i] : Integer.MAX_VALUE;
+                int b = j < other.size ? other.docs[j] : Integer.MAX_VALUE;
+                if (a < b) {
+                    d[n] = a;
+                    s[n++] = score(i++);
+                } else if (b < a) {
+                    d[n] = b;
+                    s[n++] = other.score(j++);
+                } else {
+                    d[n] = a;
+                    s[n++] = Math.max(score(i++), other.score(j++));
+                }
+            }
+            return new Scored(d, s, n, 1f);
+        }
+
+        private boolean dense() {
+            return source != null && source.bits != null;
+        }
+
+        // The same docs and scores, with a bitmap for intersect() to probe through.
+        Scored withBitmap() {
+            return dense() ? this : new Scored(docs, weights, size, factor, new Postings(docs, weights, size));
+        }
+
+        // Docs in both lists, scores added. Two bitmaps are ANDed a word at a time when there are
+        // about as many docs as words; otherwise a list with a bitmap is probed through it. Otherwise merges lists of similar length and gallops
+        // through the longer one when it is much bigger than the shorter.
+        Scored intersect(Scored other) {
+            Scored small = size <= other.size ? this : other;
+            Scored large = small == this ? other : this;
+            if (small.dense() && large.dense() && small.size >= Math.min(small.source.words, large.source.words)) {
+                return bothDense(small, large);
+            }
+            if (large.dense()) return probe(small, large);
+            if (small.dense()) return probe(large, small);
+            boolean skewed = large.size > 4L * small.size;
+            int[] d = new int[small.size];
+            float[] s = new float[small.size];
+            int n = 0;
+            int j = 0;
+            for (int i = 0; i < small.size && j < large.size; i++) {
+                int doc = small.docs[i];
+                if (skewed) {
+                    int step = 1;
+                    while (j + step < large.size && large.docs[j + step] < doc) step <<= 1;
+                    int at = Arrays.binarySearch(large.docs, j + (step >>> 1), Math.min(j + step + 1, large.size), doc);
+                    j = at >= 0 ? at : -at - 1;
+                } else {
+                    while (j < large.size && large.docs[j] < doc) j++;
+                }
+                if (j < large.size && large.docs[j] == doc) {
+                    d[n] = doc;
+                    s[n++] = small.score(i) + large.score(j++);
+                }
+            }
+            return new Scored(d, s, n, 1f);
+        }
+
+        // Positions are ranks in the bitmaps, counted along as the words go by.
+        private static Scored bothDense(Scored x, Scored y) {
+            long[] a = x.source.bits;
+            long[] b = y.source.bits;
+            int words = Math.min(x.source.words, y.source.words);
+            int count = 0;
+            for (int w = 0; w < words; w++) count += Long.bitCount(a[w] & b[w]);
+            int[] d = new int[count];
+            float[] s = new float[count];
+            int n = 0;
+            int ra = 0;
+            int rb = 0;
+            for (int w = 0; w < words; w++) {
+                long wa = a[w];
+                long wb = b[w];
+                for (long both = wa & wb; both != 0; both &= both - 1) {
+                    long below = (both & -both) - 1;
+                    d[n] = (w << 6) | Long.numberOfTrailingZeros(both);
+                    s[n++] = x.score(ra + Long.bitCount(wa & below)) + y.score(rb + Long.bitCount(wb & below));
+                }
+                ra += Long.bitCount(wa);
+                rb += Long.bitCount(wb);
+            }
+            return new Scored(d, s, n, 1f);
+        }
+
+        private static Scored probe(Scored small, Scored dense) {
+            long[] bits = dense.source.bits;
+            int[] ranks = dense.source.ranks;
+            int words = dense.source.words;
+            int[] d = new int[small.size];
+            float[] s = new float[small.size];
+            int n = 0;
+            for (int i = 0; i < small.size; i++) {
+                int doc = small.docs[i];
+                int w = doc >>> 6;
+                if (w >= words || (bits[w] & (1L << doc)) == 0) continue;
+                d[n] = doc;
+                s[n++] = small.score(i) + dense.score(ranks[w] + Long.bitCount(bits[w] & ((1L << doc) - 1)));
+            }
+            return new Scored(d, s, n, 1f);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package moviediary.session;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import moviediary.db.DbExecutor;
+
+/**
+ * Logged-in users by session token, shared by every front-end in the JVM.
+ *
+ * Lookups are lock-free: a {@link ConcurrentHashMap} read, an idle check and
+ * (at most once per tick) a volatile write of the access time. Sessions idle
+ * for longer than the timeout are refused by {@link #find} straight away and
+ * reclaimed by a hashed timer wheel: each session sits in the slot of the
+ * tick it could next expire at, and a background thread visits one slot per
+ * tick, dropping what has expired and moving the rest to the slot of their
+ * new deadline. Touching a session never moves it, so the read path does not
+ * write to the wheel at all.
+ */
+public final class SessionRegistry implements AutoCloseable {
+    public static final Duration DEFAULT_IDLE_TIMEOUT =
+            Duration.ofMinutes(Long.getLong("moviediary.session.idleMinutes", 30));
+    static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final int WHEEL_SLOTS = 512;
+
+    private final long idleNanos;
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, UserSession> byToken = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<UserSession>[] wheel;
+    private final long startNanos = System.nanoTime();
+    // Last tick the wheel has processed; written only by the ticker thread.
+    private volatile long tick;
+    private final ScheduledExecutorService ticker;
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public SessionRegistry() {
+        this(DEFAULT_IDLE_TIMEOUT);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SessionRegistry(Duration idleTimeout) {
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) throw new IllegalArgumentException("idleTimeout must be positive");
+        idleNanos = idleTimeout.toNanos();
+        wheel = new ConcurrentLinkedQueue[WHEEL_SLOTS];
+        for (int i = 0; i < WHEEL_SLOTS; i++) wheel[i] = new ConcurrentLinkedQueue<>();
+        ticker = new ScheduledThreadPoolExecutor(1, DbExecutor.daemonThreads("session-wheel"));
+        ticker.scheduleAtFixedRate(this::advance, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /** Starts a session for a user who has just logged in. */
+    public UserSession open(int userId, String username) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = System.nanoTime();
+        UserSession s = new UserSession(token, userId, username, now);
+        byToken.put(token, s);
+        schedule(s, now + idleNanos, tick);
+        opened.increment();
+        return s;
+    }
+
+    /** The live session for {@code token}, or null if it was never issued, was closed or has gone idle. */
+    public UserSession find(String token) {
+        if (token == null) return null;
+        UserSession s = byToken.get(token);
+        if (s == null) return null;
+        long now = System.nanoTime();
+        long last = s.lastAccessNanos;
+        if (now - last > idleNanos) {
+            if (byToken.remove(token, s)) expired.increment();
+            return null;
+        }
+        // Coarse-grained, so a busy session is not rewriting the same cache line on every request.
+        if (now - last >= TICK_NANOS) s.lastAccessNanos = now;
+        return s;
+    }
+
+    /** Logs the session out. Unknown or already expired tokens are ignored. */
+    public void close(String token) {
+        if (token != null) byToken.remove(token);
+    }
+
+    public int size() {
+        return byToken.size();
+    }
+
+    public long openedCount() {
+        return opened.sum();
+    }
+
+    public long expiredCount() {
+        return expired.sum();
+    }
+
+    public Duration idleTimeout() {
+        return Duration.ofNanos(idleNanos);
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    // ---------- TIMER WHEEL ----------
+    // Runs on the ticker thread only. Catches up if a run was delayed.
+    void advance() {
+        long due = (System.nanoTime() - startNanos) / TICK_NANOS;
+        for (long t = tick + 1; t <= due; t++) {
+            expireSlot(t);
+            tick = t;
+        }
+    }
+
+    private void expireSlot(long current) {
+        ConcurrentLinkedQueue<UserSession> slot = wheel[(int) (current % WHEEL_SLOTS)];
+        long now = System.nanoTime();
+        // schedule() never targets the slot being drained, so this loop ends.
+        UserSession s;
+        while ((s = slot.poll()) != null) {
+            if (byToken.get(s.token()) != s) continue; // logged out or already expired on lookup
+            long deadline = s.lastAccessNanos + idleNanos;
+            if (now - deadline > 0) {
+                if (byToken.remove(s.token(), s)) expired.increment();
+            } else {
+                schedule(s, deadline, current);
+            }
+        }
+    }
+
+    // Files the session under the tick its deadline falls in, at least one and at most
+    // one revolution minus one tick after {@code current}; longer deadlines just go round again.
+    private void schedule(UserSession s, long deadlineNanos, long current) {
+        long target = (deadlineNanos - startNanos + TICK_NANOS - 1) / TICK_NANOS;
+        if (target <= current) target = current + 1;
+        else if (target - current >= WHEEL_SLOTS) target = current + WHEEL_SLOTS - 1;
+        wheel[(int) (target % WHEEL_SLOTS)].add(s);
+    }
+}
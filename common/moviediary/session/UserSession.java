@@ -0,0 +1,36 @@
+package moviediary.session;
+
+/**
+ * One logged-in user, as handed out by {@link SessionRegistry}. Immutable
+ * apart from the last-access time the registry keeps for idle expiry.
+ */
+public final class UserSession {
+    private final String token;
+    private final int userId;
+    private final String username;
+    volatile long lastAccessNanos;
+
+    UserSession(String token, int userId, String username, long nowNanos) {
+        this.token = token;
+        this.userId = userId;
+        this.username = username;
+        this.lastAccessNanos = nowNanos;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public int userId() {
+        return userId;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSession[" + username + " #" + userId + "]";
+    }
+}
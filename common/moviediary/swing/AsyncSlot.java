@@ -0,0 +1,76 @@
+package moviediary.swing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import moviediary.db.DbExecutor;
+
+/**
+ * Holds the latest background request for one view (the movie table, the
+ * watchlist, the detail dialog...). Starting a new request cancels the one it
+ * replaces, and only the newest request's result is ever applied.
+ *
+ * All methods must be called on the event dispatch thread; the result and
+ * error callbacks are invoked there too, so they may touch Swing components.
+ */
+public final class AsyncSlot {
+    private final DbExecutor executor;
+    private final BusyIndicator indicator;
+    private CompletableFuture<?> current;
+
+    public AsyncSlot(DbExecutor executor, BusyIndicator indicator) {
+        this.executor = executor;
+        this.indicator = indicator;
+    }
+
+    public <T> void load(Callable<T> work, Consumer<? super T> onResult, Consumer<Throwable> onError) {
+        if (current != null) {
+            current.cancel(false);
+        } else if (indicator != null) {
+            indicator.begin();
+        }
+        CompletableFuture<T> future = executor.submit(work);
+        current = future;
+        future.whenComplete((value, error) -> SwingUtilities.invokeLater(() -> {
+            if (current != future) return; // superseded by a newer request
+            current = null;
+            if (indicator != null) indicator.end();
+            deliver(value, error, onResult, onError);
+        }));
+    }
+
+    public void cancel() {
+        if (current == null) return;
+        current.cancel(false);
+        current = null;
+        if (indicator != null) indicator.end();
+    }
+
+    public boolean isBusy() { return current != null; }
+
+    /**
+     * Runs a one-off request (typically a write) that must not be cancelled by
+     * later ones, showing the indicator while it is in flight.
+     */
+    public static <T> void run(DbExecutor executor, BusyIndicator indicator, Callable<T> work,
+                               Consumer<? super T> onResult, Consumer<Throwable> onError) {
+        if (indicator != null) indicator.begin();
+        executor.submit(work).whenComplete((value, error) -> SwingUtilities.invokeLater(() -> {
+            if (indicator != null) indicator.end();
+            deliver(value, error, onResult, onError);
+        }));
+    }
+
+    private static <T> void deliver(T value, Throwable error, Consumer<? super T> onResult, Consumer<Throwable> onError) {
+        if (error == null) {
+            onResult.accept(value);
+            return;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CancellationException) return;
+        onError.accept(cause);
+    }
+}
@@ -0,0 +1,26 @@
+package moviediary.swing;
+
+import javax.swing.JProgressBar;
+
+/**
+ * Indeterminate progress bar that is visible while at least one background
+ * request is running. Must only be touched on the event dispatch thread.
+ */
+public class BusyIndicator extends JProgressBar {
+    private int running;
+
+    public BusyIndicator() {
+        setIndeterminate(true);
+        setStringPainted(true);
+        setString("Loading…");
+        setVisible(false);
+    }
+
+    public void begin() {
+        if (running++ == 0) setVisible(true);
+    }
+
+    public void end() {
+        if (running > 0 && --running == 0) setVisible(false);
+    }
+}
@@ -0,0 +1,107 @@
+package moviediary.swing;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.util.List;
+import java.util.Map;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.Timer;
+import javax.swing.table.DefaultTableModel;
+import moviediary.metrics.MetricsRegistry;
+import moviediary.metrics.OperationSnapshot;
+import moviediary.metrics.SlowQuery;
+
+/**
+ * Live view of a {@link MetricsRegistry}: one row per operation that has
+ * been called, the gauges, and the latest slow queries with their SQL. It
+ * redraws every {@value #REFRESH_MS} ms while it is on screen. Reading the
+ * registry never touches the database, so this runs on the event dispatch
+ * thread.
+ */
+public class DiagnosticsPanel extends JPanel {
+    private static final int REFRESH_MS = 2_000;
+    private static final String[] COLUMNS = {
+            "Operation", "Calls", "Errors", "Rows", "p50 ms", "p99 ms", "p99.9 ms", "Max ms", "Last error"};
+
+    private final MetricsRegistry registry;
+    private final DefaultTableModel operations = new DefaultTableModel(COLUMNS, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final JLabel gauges = new JLabel(" ");
+    private final JTextArea slowQueries = new JTextArea();
+
+    public DiagnosticsPanel(MetricsRegistry registry) {
+        super(new BorderLayout(10, 10));
+        this.registry = registry;
+
+        JTable table = new JTable(operations);
+        table.setRowHeight(22);
+        table.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 13));
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(200);
+        table.getColumnModel().getColumn(8).setPreferredWidth(250);
+
+        slowQueries.setEditable(false);
+        slowQueries.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JScrollPane slowScroll = new JScrollPane(slowQueries);
+        slowScroll.setBorder(BorderFactory.createTitledBorder(
+                "Slow queries (over " + registry.getSlowQueryThresholdMillis() + " ms, newest first)"));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), slowScroll);
+        split.setResizeWeight(0.65);
+        add(split, BorderLayout.CENTER);
+
+        JButton refreshBtn = new JButton("Refresh");
+        refreshBtn.addActionListener(e -> refresh());
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(gauges, BorderLayout.CENTER);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(refreshBtn);
+        bottom.add(buttons, BorderLayout.EAST);
+        add(bottom, BorderLayout.SOUTH);
+
+        new Timer(REFRESH_MS, e -> {
+            if (isShowing()) refresh();
+        }).start();
+    }
+
+    public void refresh() {
+        operations.setRowCount(0);
+        for (OperationSnapshot s : registry.snapshot()) {
+            if (s.calls() == 0) continue;
+            operations.addRow(new Object[]{
+                    s.name(), s.calls(), s.errors(), s.rows(),
+                    millis(s.p50Micros()), millis(s.p99Micros()), millis(s.p999Micros()), millis(s.maxMicros()),
+                    s.lastError() == null ? "" : s.lastError()});
+        }
+
+        StringBuilder text = new StringBuilder("<html>");
+        for (Map.Entry<String, Double> g : registry.getGauges().entrySet()) {
+            double v = g.getValue();
+            text.append(g.getKey().replace("moviediary_", "")).append(": <b>")
+                    .append(v == Math.rint(v) ? Long.toString((long) v) : String.format("%.2f", v)).append("</b>&nbsp;&nbsp; ");
+        }
+        gauges.setText(text.append("</html>").toString());
+
+        List<SlowQuery> slow = registry.slowQueries();
+        StringBuilder lines = new StringBuilder();
+        for (SlowQuery q : slow) lines.append(q).append('\n');
+        slowQueries.setText(slow.isEmpty() ? "None yet." : lines.toString());
+        slowQueries.setCaretPosition(0);
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+}
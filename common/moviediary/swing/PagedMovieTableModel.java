@@ -0,0 +1,210 @@
+package moviediary.swing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+import moviediary.db.DbExecutor;
+import moviediary.db.MovieStore;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieSummary;
+
+/**
+ * Movie catalogue table model that only holds the pages the user is looking
+ * at. Rows are fetched a page at a time with keyset pagination as the JTable
+ * asks for them, the most recently used pages are kept in an LRU, and the next
+ * page is prefetched in the background. Memory use and time to first paint do
+ * not depend on the catalogue size.
+ *
+ * A row whose page is not loaded yet reads as null; the page is requested and
+ * the rows repaint once it arrives. Everything here is EDT-confined apart from
+ * the DAO calls, which run on the {@link DbExecutor}.
+ */
+public class PagedMovieTableModel extends AbstractTableModel {
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    public static final int DEFAULT_MAX_PAGES = 32;
+    // Older page requests are cancelled once more than this many are queued (fast scrolling).
+    private static final int MAX_PENDING = 4;
+
+    private static final String[] COLUMNS = {"ID", "Title", "Year"};
+
+    private final MovieStore dao;
+    private final DbExecutor executor;
+    private final MovieOrder order;
+    private final int pageSize;
+    private final BusyIndicator indicator;
+    private final Consumer<Throwable> onError;
+
+    private final LinkedHashMap<Integer, List<MovieSummary>> pages;
+    // Sort key of the last row before page N, learned from loaded pages and anchor lookups.
+    private final Map<Integer, MovieSummary> boundaries = new HashMap<>();
+    private final LinkedHashMap<Integer, CompletableFuture<List<MovieSummary>>> pending = new LinkedHashMap<>();
+    private CompletableFuture<Integer> countRequest;
+    private int rowCount;
+    private int generation;
+
+    public PagedMovieTableModel(MovieStore dao, DbExecutor executor, MovieOrder order,
+                                BusyIndicator indicator, Consumer<Throwable> onError) {
+        this(dao, executor, order, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES, indicator, onError);
+    }
+
+    public PagedMovieTableModel(MovieStore dao, DbExecutor executor, MovieOrder order, int pageSize, int maxPages,
+                                BusyIndicator indicator, Consumer<Throwable> onError) {
+        this.dao = dao;
+        this.executor = executor;
+        this.order = order;
+        this.pageSize = pageSize;
+        this.indicator = indicator;
+        this.onError = onError;
+        this.pages = new LinkedHashMap<>(maxPages * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<MovieSummary>> eldest) {
+                return size() > maxPages;
+            }
+        };
+    }
+
+    /** Drops every cached page and reloads the row count and the first page. */
+    public void refresh() {
+        generation++;
+        cancelPending();
+        pages.clear();
+        boundaries.clear();
+        if (countRequest != null) countRequest.cancel(false);
+
+        int gen = generation;
+        begin();
+        CompletableFuture<Integer> request = executor.submit(dao::countMovies);
+        countRequest = request;
+        request.whenComplete((count, error) -> SwingUtilities.invokeLater(() -> {
+            end();
+            if (gen != generation || request.isCancelled()) return;
+            countRequest = null;
+            if (error != null) {
+                onError.accept(unwrap(error));
+                return;
+            }
+            rowCount = count;
+            fireTableDataChanged();
+        }));
+        requestPage(0);
+    }
+
+    /** The movie shown on {@code row}, or null while its page is still loading. */
+    public MovieSummary movieAt(int row) {
+        List<MovieSummary> page = pages.get(row / pageSize);
+        int index = row % pageSize;
+        return page != null && index < page.size() ? page.get(index) : null;
+    }
+
+    @Override
+    public int getRowCount() { return rowCount; }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 1 ? String.class : Integer.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int pageNo = row / pageSize;
+        List<MovieSummary> page = pages.get(pageNo);
+        if (page == null) {
+            requestPage(pageNo);
+            return null;
+        }
+        // Reading past the middle of a page warms up the next one.
+        if (row % pageSize >= pageSize / 2 && (pageNo + 1) * pageSize < rowCount) requestPage(pageNo + 1);
+
+        int index = row % pageSize;
+        if (index >= page.size()) return null;
+        MovieSummary m = page.get(index);
+        switch (column) {
+            case 0: return m.id();
+            case 1: return m.title();
+            default: return m.year();
+        }
+    }
+
+    // ---------- PAGE LOADING ----------
+    private void requestPage(int pageNo) {
+        if (pages.containsKey(pageNo) || pending.containsKey(pageNo)) return;
+        if (pending.size() >= MAX_PENDING) {
+            Iterator<CompletableFuture<List<MovieSummary>>> oldest = pending.values().iterator();
+            oldest.next().cancel(false);
+            oldest.remove();
+            end();
+        }
+
+        int gen = generation;
+        MovieSummary after = knownBoundary(pageNo);
+        boolean needsAnchor = pageNo > 0 && after == null;
+        begin();
+        CompletableFuture<List<MovieSummary>> request = executor.submit(() -> {
+            MovieSummary start = after;
+            if (needsAnchor) {
+                start = dao.movieAt(order, pageNo * pageSize - 1);
+                if (start == null) return new ArrayList<>();
+            }
+            return dao.moviesAfter(order, start, pageSize);
+        });
+        pending.put(pageNo, request);
+        request.whenComplete((rows, error) -> SwingUtilities.invokeLater(() -> {
+            if (gen != generation || pending.get(pageNo) != request) return; // refreshed or cancelled
+            pending.remove(pageNo);
+            end();
+            if (error != null) {
+                onError.accept(unwrap(error));
+                return;
+            }
+            onPageLoaded(pageNo, rows);
+        }));
+    }
+
+    private void onPageLoaded(int pageNo, List<MovieSummary> rows) {
+        pages.put(pageNo, rows);
+        if (!rows.isEmpty()) boundaries.put(pageNo + 1, rows.get(rows.size() - 1));
+        int first = pageNo * pageSize;
+        int last = Math.min(first + pageSize, rowCount) - 1;
+        if (last >= first) fireTableRowsUpdated(first, last);
+    }
+
+    private MovieSummary knownBoundary(int pageNo) {
+        if (pageNo == 0) return null;
+        List<MovieSummary> previous = pages.get(pageNo - 1);
+        if (previous != null && previous.size() == pageSize) return previous.get(pageSize - 1);
+        return boundaries.get(pageNo);
+    }
+
+    private void cancelPending() {
+        for (CompletableFuture<List<MovieSummary>> f : pending.values()) {
+            f.cancel(false);
+            end();
+        }
+        pending.clear();
+    }
+
+    private void begin() {
+        if (indicator != null) indicator.begin();
+    }
+
+    private void end() {
+        if (indicator != null) indicator.end();
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t.getCause() != null && t instanceof java.util.concurrent.CompletionException ? t.getCause() : t;
+    }
+}
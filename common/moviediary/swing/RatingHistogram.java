@@ -0,0 +1,78 @@
+package moviediary.swing;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import javax.swing.JComponent;
+import moviediary.model.RatingStats;
+
+/**
+ * Average rating plus a bar for each score from 1 to 10, drawn from a
+ * {@link RatingStats} snapshot.
+ */
+public class RatingHistogram extends JComponent {
+    private static final Color BAR = new Color(70, 130, 180);
+    private static final int ROW_HEIGHT = 16;
+    private static final int LABEL_WIDTH = 28;
+    private static final int COUNT_WIDTH = 44;
+
+    private RatingStats stats = RatingStats.empty();
+
+    public RatingHistogram() {
+        setFont(new Font("SansSerif", Font.PLAIN, 12));
+        setPreferredSize(new Dimension(360, ROW_HEIGHT * (RatingStats.MAX_RATING + 1) + 8));
+    }
+
+    public RatingHistogram(RatingStats stats) {
+        this();
+        setStats(stats);
+    }
+
+    public void setStats(RatingStats stats) {
+        this.stats = stats == null ? RatingStats.empty() : stats;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g0) {
+        Graphics2D g = (Graphics2D) g0.create();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setFont(getFont());
+            FontMetrics fm = g.getFontMetrics();
+            int baseline = fm.getAscent();
+            g.setColor(getForeground());
+
+            if (stats.count() == 0) {
+                g.drawString("No ratings yet.", 0, baseline);
+                return;
+            }
+            g.drawString(String.format("Average %.2f / 10 from %d reviews (std dev %.2f)",
+                    stats.average(), stats.count(), stats.stdDev()), 0, baseline);
+
+            int max = 1;
+            for (int c : stats.histogram()) max = Math.max(max, c);
+            int barSpace = Math.max(10, getWidth() - LABEL_WIDTH - COUNT_WIDTH);
+
+            // Highest score on top, like most rating widgets.
+            for (int rating = RatingStats.MAX_RATING; rating >= 1; rating--) {
+                int y = ROW_HEIGHT * (RatingStats.MAX_RATING - rating + 1);
+                int count = stats.countFor(rating);
+                int width = (int) Math.round((double) count / max * barSpace);
+
+                g.setColor(getForeground());
+                g.drawString(String.valueOf(rating), 0, y + baseline);
+                g.setColor(BAR);
+                g.fillRect(LABEL_WIDTH, y + 3, width, ROW_HEIGHT - 6);
+                g.setColor(getForeground());
+                g.drawString(String.valueOf(count), LABEL_WIDTH + width + 6, y + baseline);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+}
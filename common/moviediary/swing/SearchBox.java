@@ -0,0 +1,93 @@
+package moviediary.swing;
+
+import java.awt.BorderLayout;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import moviediary.db.DbExecutor;
+import moviediary.search.SearchHit;
+import moviediary.search.SearchIndex;
+
+/**
+ * Search-as-you-type field over a {@link SearchIndex}. Once typing pauses the
+ * query runs on the {@link DbExecutor}, so a search waiting on the index
+ * while movies are being added never holds up the EDT; a newer query
+ * replaces one still running. Clearing the field calls {@code onCleared} so
+ * the caller can go back to the full catalogue.
+ */
+public class SearchBox extends JPanel {
+    private static final int DEBOUNCE_MS = 150;
+
+    private final JTextField field = new JTextField(30);
+    private final JLabel status = new JLabel(" ");
+    private final SearchIndex index;
+    private final Consumer<List<SearchHit>> onResults;
+    private final Runnable onCleared;
+    private final Timer debounce;
+    private final AsyncSlot slot;
+
+    public SearchBox(SearchIndex index, DbExecutor executor, Consumer<List<SearchHit>> onResults, Runnable onCleared) {
+        super(new BorderLayout(8, 0));
+        this.index = index;
+        this.slot = new AsyncSlot(executor, null);
+        this.onResults = onResults;
+        this.onCleared = onCleared;
+        this.debounce = new Timer(DEBOUNCE_MS, e -> runQuery());
+        debounce.setRepeats(false);
+
+        setBorder(BorderFactory.createEmptyBorder(0, 0, 5, 0));
+        add(new JLabel("Search:"), BorderLayout.WEST);
+        add(field, BorderLayout.CENTER);
+        add(status, BorderLayout.EAST);
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { debounce.restart(); }
+            @Override public void removeUpdate(DocumentEvent e) { debounce.restart(); }
+            @Override public void changedUpdate(DocumentEvent e) { debounce.restart(); }
+        });
+        field.addActionListener(e -> {
+            debounce.stop();
+            runQuery();
+        });
+    }
+
+    public String query() {
+        return field.getText();
+    }
+
+    public boolean isSearching() {
+        return !field.getText().isBlank();
+    }
+
+    public void clear() {
+        field.setText("");
+    }
+
+    private void runQuery() {
+        String q = field.getText();
+        if (q.isBlank()) {
+            slot.cancel();
+            status.setText(" ");
+            onCleared.run();
+            return;
+        }
+        slot.load(() -> {
+            long start = System.nanoTime();
+            List<SearchHit> hits = index.search(q);
+            long micros = (System.nanoTime() - start) / 1000;
+            String note = index.isReady() ? "" : " (indexing, " + index.size() + " so far)";
+            return new Result(hits, hits.size() + " results in " + micros + " µs" + note);
+        }, r -> {
+            status.setText(r.status());
+            onResults.accept(r.hits());
+        }, e -> status.setText("Search failed: " + e.getMessage()));
+    }
+
+    private record Result(List<SearchHit> hits, String status) {}
+}
@@ -0,0 +1,327 @@
+package moviediary.watchlist;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the Roaring layout: values are
+ * grouped by their high 16 bits, and each group is a sorted {@code char[]}
+ * while it holds at most {@value #ARRAY_MAX} values and a 65536-bit bitmap
+ * after that. Sparse sets (a typical watchlist) cost two bytes per value;
+ * dense ones one bit. Intersections work group by group and never expand
+ * the sets.
+ *
+ * Not thread-safe; {@link WatchlistService} publishes copies.
+ */
+public final class RoaringBitmap {
+    static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+    private int groups;
+
+    public RoaringBitmap copy() {
+        RoaringBitmap c = new RoaringBitmap();
+        c.keys = Arrays.copyOf(keys, groups);
+        c.containers = new Container[groups];
+        for (int i = 0; i < groups; i++) c.containers[i] = containers[i].copy();
+        c.groups = groups;
+        return c;
+    }
+
+    /** Adds {@code x}; returns false when it was already present. */
+    public boolean add(int x) {
+        checkValue(x);
+        char key = (char) (x >>> 16);
+        int i = groupIndex(key);
+        if (i < 0) {
+            i = -i - 1;
+            if (groups == keys.length) {
+                int n = Math.max(4, groups * 2);
+                keys = Arrays.copyOf(keys, n);
+                containers = Arrays.copyOf(containers, n);
+            }
+            System.arraycopy(keys, i, keys, i + 1, groups - i);
+            System.arraycopy(containers, i, containers, i + 1, groups - i);
+            keys[i] = key;
+            containers[i] = new ArrayContainer();
+            groups++;
+        }
+        Container c = containers[i];
+        int before = c.cardinality();
+        containers[i] = c.add((char) x);
+        return containers[i].cardinality() != before;
+    }
+
+    public boolean contains(int x) {
+        if (x < 0) return false;
+        int i = groupIndex((char) (x >>> 16));
+        return i >= 0 && containers[i].contains((char) x);
+    }
+
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < groups; i++) n += containers[i].cardinality();
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return groups == 0;
+    }
+
+    /** Number of values less than or equal to {@code x}. */
+    public int rank(int x) {
+        if (x < 0) return 0;
+        char key = (char) (x >>> 16);
+        int n = 0;
+        for (int i = 0; i < groups; i++) {
+            if (keys[i] < key) n += containers[i].cardinality();
+            else {
+                if (keys[i] == key) n += containers[i].rank((char) x);
+                break;
+            }
+        }
+        return n;
+    }
+
+    /** Values in both sets. */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap out = new RoaringBitmap();
+        int n = Math.min(groups, other.groups);
+        out.keys = new char[n];
+        out.containers = new Container[n];
+        for (int i = 0, j = 0; i < groups && j < other.groups; ) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else {
+                Container c = containers[i].and(other.containers[j]);
+                if (c.cardinality() > 0) {
+                    out.keys[out.groups] = keys[i];
+                    out.containers[out.groups++] = c;
+                }
+                i++;
+                j++;
+            }
+        }
+        return out;
+    }
+
+    /** Size of the intersection, without building it. */
+    public int andCardinality(RoaringBitmap other) {
+        int n = 0;
+        for (int i = 0, j = 0; i < groups && j < other.groups; ) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else n += containers[i++].andCardinality(other.containers[j++]);
+        }
+        return n;
+    }
+
+    /** All values in ascending order. */
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int at = 0;
+        for (int i = 0; i < groups; i++) at = containers[i].copyTo(out, at, keys[i] << 16);
+        return out;
+    }
+
+    private int groupIndex(char key) {
+        return Arrays.binarySearch(keys, 0, groups, key);
+    }
+
+    private static void checkValue(int x) {
+        if (x < 0) throw new IllegalArgumentException("Negative value " + x);
+    }
+
+    // ---------- CONTAINERS ----------
+    private abstract static class Container {
+        abstract Container add(char v);
+        abstract boolean contains(char v);
+        abstract int cardinality();
+        abstract int rank(char v);
+        abstract Container and(Container other);
+        abstract int andCardinality(Container other);
+        abstract int copyTo(int[] out, int at, int base);
+        abstract Container copy();
+    }
+
+    // Sorted low halves; turns into a BitmapContainer past ARRAY_MAX values.
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Container add(char v) {
+            int i = Arrays.binarySearch(values, 0, size, v);
+            if (i >= 0) return this;
+            if (size == ARRAY_MAX) {
+                BitmapContainer b = new BitmapContainer();
+                for (int k = 0; k < size; k++) b.set(values[k]);
+                b.set(v);
+                return b;
+            }
+            i = -i - 1;
+            if (size == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            System.arraycopy(values, i, values, i + 1, size - i);
+            values[i] = v;
+            size++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return Arrays.binarySearch(values, 0, size, v) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        int rank(char v) {
+            int i = Arrays.binarySearch(values, 0, size, v);
+            return i >= 0 ? i + 1 : -i - 1;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[Math.min(size, other.cardinality())];
+            int n = 0;
+            if (other instanceof ArrayContainer a) {
+                for (int i = 0, j = 0; i < size && j < a.size; ) {
+                    if (values[i] < a.values[j]) i++;
+                    else if (values[i] > a.values[j]) j++;
+                    else {
+                        out[n++] = values[i++];
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) if (other.contains(values[i])) out[n++] = values[i];
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int n = 0;
+            if (other instanceof ArrayContainer a) {
+                for (int i = 0, j = 0; i < size && j < a.size; ) {
+                    if (values[i] < a.values[j]) i++;
+                    else if (values[i] > a.values[j]) j++;
+                    else {
+                        n++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) if (other.contains(values[i])) n++;
+            }
+            return n;
+        }
+
+        @Override
+        int copyTo(int[] out, int at, int base) {
+            for (int i = 0; i < size; i++) out[at++] = base | values[i];
+            return at;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(size, 1)), size);
+        }
+    }
+
+    // 2^16 bits for a dense group.
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(char v) {
+            long before = words[v >>> 6];
+            words[v >>> 6] = before | (1L << v);
+            if (before != words[v >>> 6]) cardinality++;
+        }
+
+        @Override
+        Container add(char v) {
+            set(v);
+            return this;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return (words[v >>> 6] & (1L << v)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int rank(char v) {
+            int n = 0;
+            int w = v >>> 6;
+            for (int i = 0; i < w; i++) n += Long.bitCount(words[i]);
+            return n + Long.bitCount(words[w] & (-1L >>> (63 - (v & 63))));
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            BitmapContainer b = (BitmapContainer) other;
+            long[] out = new long[1024];
+            int n = 0;
+            for (int i = 0; i < out.length; i++) n += Long.bitCount(out[i] = words[i] & b.words[i]);
+            if (n > ARRAY_MAX) return new BitmapContainer(out, n);
+            char[] values = new char[n];
+            int k = 0;
+            for (int i = 0; i < out.length; i++) {
+                for (long w = out[i]; w != 0; w &= w - 1) values[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(w));
+            }
+            return new ArrayContainer(values, n);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) return other.andCardinality(this);
+            BitmapContainer b = (BitmapContainer) other;
+            int n = 0;
+            for (int i = 0; i < words.length; i++) n += Long.bitCount(words[i] & b.words[i]);
+            return n;
+        }
+
+        @Override
+        int copyTo(int[] out, int at, int base) {
+            for (int i = 0; i < words.length; i++) {
+                for (long w = words[i]; w != 0; w &= w - 1) out[at++] = base | (i << 6) | Long.numberOfTrailingZeros(w);
+            }
+            return at;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+    }
+}
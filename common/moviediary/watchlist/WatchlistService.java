@@ -0,0 +1,159 @@
+package moviediary.watchlist;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import moviediary.db.CatalogListener;
+import moviediary.db.MovieStore;
+
+/**
+ * Every user's watchlist as a {@link RoaringBitmap} of movie ids, plus a
+ * per-movie count of how many users saved it. Answers "is it on my list?",
+ * "what do two users have in common?" and "how many people saved this?"
+ * from memory, so the screens do not need a query for any of them.
+ *
+ * Filled once with {@link #buildFrom} and then kept current as a {@link
+ * CatalogListener}. Entries are keyed by (user, movie), so one seen both by
+ * the build and by a live event is counted once.
+ *
+ * Reads take no lock: each user's list is an immutable snapshot in a
+ * concurrent map, replaced whole on every add. Writers are serialized.
+ */
+public class WatchlistService implements CatalogListener {
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    // Movies on one list, and when each was added (indexed by rank in the bitmap).
+    private record Saved(RoaringBitmap movies, long[] addedAt) {
+        Saved with(int movieId, long at) {
+            RoaringBitmap m = movies.copy();
+            m.add(movieId);
+            int i = m.rank(movieId) - 1;
+            long[] a = new long[addedAt.length + 1];
+            System.arraycopy(addedAt, 0, a, 0, i);
+            System.arraycopy(addedAt, i, a, i + 1, addedAt.length - i);
+            a[i] = at;
+            return new Saved(m, a);
+        }
+    }
+
+    // Lists being filled by the build; mutated in place, published when it ends.
+    private static final class Builder {
+        final RoaringBitmap movies = new RoaringBitmap();
+        long[] addedAt = new long[4];
+        int size;
+    }
+
+    private final Map<Integer, Saved> byUser = new ConcurrentHashMap<>();
+    private Map<Integer, Builder> building = new HashMap<>();
+    // savedBy[movieId]; grown by copying, so readers see either the old or the new array.
+    private volatile int[] savedBy = new int[0];
+    private volatile boolean ready;
+
+    /** Loads every watchlist entry in the store. Adds that happen meanwhile are kept. */
+    public void buildFrom(MovieStore store) throws SQLException {
+        store.forEachWatchlistEntry(this::apply);
+        publish();
+    }
+
+    /** True once {@link #buildFrom} has finished; until then callers should ask the store. */
+    public boolean isReady() { return ready; }
+
+    @Override
+    public void watchlistAdded(int userId, int movieId, Timestamp addedAt) {
+        apply(userId, movieId, addedAt.getTime());
+    }
+
+    public boolean contains(int userId, int movieId) {
+        Saved s = byUser.get(userId);
+        return s != null && s.movies.contains(movieId);
+    }
+
+    public int size(int userId) {
+        Saved s = byUser.get(userId);
+        return s == null ? 0 : s.addedAt.length;
+    }
+
+    /** When {@code movieId} went on the user's list, or null when it is not there. */
+    public Timestamp addedAt(int userId, int movieId) {
+        Saved s = byUser.get(userId);
+        if (s == null || !s.movies.contains(movieId)) return null;
+        return new Timestamp(s.addedAt[s.movies.rank(movieId) - 1]);
+    }
+
+    /** Movie ids on both users' lists, ascending. */
+    public int[] common(int userA, int userB) {
+        return movies(userA).and(movies(userB)).toArray();
+    }
+
+    public int commonCount(int userA, int userB) {
+        return movies(userA).andCardinality(movies(userB));
+    }
+
+    /** Number of users with {@code movieId} on their watchlist. */
+    public int savedBy(int movieId) {
+        int[] counts = savedBy;
+        return movieId >= 0 && movieId < counts.length ? counts[movieId] : 0;
+    }
+
+    /**
+     * Adds through {@code store} unless the index already knows the movie is
+     * on the list, in which case no write is made. Returns false for "already
+     * there", like {@link MovieStore#addToWatchlist}.
+     */
+    public boolean add(MovieStore store, int userId, int movieId) throws SQLException {
+        if (ready && contains(userId, movieId)) return false;
+        return store.addToWatchlist(userId, movieId); // the listener callback updates the index
+    }
+
+    private RoaringBitmap movies(int userId) {
+        Saved s = byUser.get(userId);
+        return s == null ? EMPTY : s.movies;
+    }
+
+    // ---------- WRITES ----------
+    private synchronized void apply(int userId, int movieId, long addedAt) {
+        if (building != null) {
+            Builder b = building.computeIfAbsent(userId, k -> new Builder());
+            if (!b.movies.add(movieId)) return;
+            b.addedAt = insertAt(b.addedAt, b.size, b.movies.rank(movieId) - 1, addedAt);
+            b.size++;
+        } else {
+            Saved s = byUser.get(userId);
+            if (s == null) s = new Saved(new RoaringBitmap(), new long[0]);
+            else if (s.movies.contains(movieId)) return;
+            byUser.put(userId, s.with(movieId, addedAt));
+        }
+        countSave(movieId);
+    }
+
+    private synchronized void publish() {
+        if (building == null) return;
+        for (Map.Entry<Integer, Builder> e : building.entrySet()) {
+            Builder b = e.getValue();
+            byUser.put(e.getKey(), new Saved(b.movies, Arrays.copyOf(b.addedAt, b.size)));
+        }
+        building = null;
+        ready = true;
+    }
+
+    private void countSave(int movieId) {
+        int[] counts = savedBy;
+        if (movieId >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(movieId + 1, counts.length * 2));
+        }
+        counts[movieId]++;
+        savedBy = counts;
+    }
+
+    // The first {@code size} values with {@code v} inserted at {@code at}; grows only when full.
+    private static long[] insertAt(long[] values, int size, int at, long v) {
+        long[] out = size < values.length ? values : new long[Math.max(size + 1, size + (size >> 1))];
+        if (out != values) System.arraycopy(values, 0, out, 0, at);
+        System.arraycopy(values, at, out, at + 1, size - at);
+        out[at] = v;
+        return out;
+    }
+}
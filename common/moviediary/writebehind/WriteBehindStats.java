@@ -0,0 +1,34 @@
+package moviediary.writebehind;
+
+// Point-in-time snapshot of WriteBehindStore counters. Times are in microseconds.
+public record WriteBehindStats(
+        int queueDepth,
+        int capacity,
+        long enqueued,
+        long flushed,
+        long dropped,
+        long batches,
+        long retries,
+        long blockedEnqueues,
+        long rejectedEnqueues,
+        long totalFlushMicros,
+        long maxFlushMicros,
+        long maxLagMicros,
+        long journalBytes) {
+
+    public double avgFlushMicros() {
+        return batches == 0 ? 0 : (double) totalFlushMicros / batches;
+    }
+
+    public double avgBatchSize() {
+        return batches == 0 ? 0 : (double) flushed / batches;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "writeBehind[queued=%d/%d] enqueued=%d flushed=%d dropped=%d batches=%d avgBatch=%.1f avgFlush=%.1fus maxFlush=%dus maxLag=%dus retries=%d blocked=%d rejected=%d journal=%dB",
+                queueDepth, capacity, enqueued, flushed, dropped, batches, avgBatchSize(), avgFlushMicros(),
+                maxFlushMicros, maxLagMicros, retries, blockedEnqueues, rejectedEnqueues, journalBytes);
+    }
+}
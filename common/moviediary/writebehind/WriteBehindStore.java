@@ -0,0 +1,462 @@
+package moviediary.writebehind;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import moviediary.db.CatalogListener;
+import moviediary.db.ConnectionPool;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStore;
+import moviediary.db.QueuedWrite;
+import moviediary.model.MovieDetail;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.ReviewEntry;
+import moviediary.model.UserCredential;
+import moviediary.model.WatchlistEntry;
+
+/**
+ * Write-behind wrapper around {@link MovieDao}, enabled with {@code
+ * -Dmoviediary.writeBehind=true}. {@link #addReview} and {@link
+ * #addToWatchlist} append to a local {@link WriteJournal} and return as soon
+ * as it is on disk; one writer thread drains the queue into MySQL in
+ * transactions of up to {@value #MAX_BATCH} writes. Everything else goes
+ * straight to the DAO.
+ *
+ * <ul>
+ * <li>Ordering: a single writer applies writes in journal order, so each
+ * user's writes land in the order they were made.</li>
+ * <li>Backpressure: at most {@code capacity} writes wait at once; beyond
+ * that callers block for up to {@value #ENQUEUE_TIMEOUT_MS} ms and then get
+ * an {@link SQLTransientException}.</li>
+ * <li>Retries: connection failures and transient errors are retried with
+ * exponential backoff. A batch that fails for another reason (an unknown
+ * movie, say) is applied one write at a time and the bad writes are
+ * dropped and logged.</li>
+ * <li>Exactly once: each batch stores the journal's sequence number in
+ * {@code write_behind_checkpoints} in the same transaction, and a restart
+ * replays only the writes after it.</li>
+ * </ul>
+ *
+ * Listeners hear about a write when it reaches MySQL, with its real id, so
+ * the in-memory indexes and the review list trail an acknowledged write by
+ * one flush.
+ */
+public final class WriteBehindStore implements MovieStore {
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int MAX_BATCH = 500;
+    static final long ENQUEUE_TIMEOUT_MS = 5_000;
+    private static final long RETRY_MIN_MS = 100;
+    private static final long RETRY_MAX_MS = 30_000;
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+    // The journal is emptied once it is this big and everything in it is applied.
+    private static final long TRUNCATE_BYTES = 1 << 20;
+    // write_behind_checkpoints.journal
+    private static final int MAX_NAME_LENGTH = 255;
+
+    private final MovieDao dao;
+    private final WriteJournal journal;
+    private final String name;
+    private final int capacity;
+    private final Semaphore room;
+    private final BlockingQueue<QueuedWrite> queue = new LinkedBlockingQueue<>();
+    // (user, movie) of queued watchlist additions, so a double click is not queued twice.
+    private final Set<Long> queuedWatches = ConcurrentHashMap.newKeySet();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    // ---------- METRICS ----------
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    private WriteBehindStore(MovieDao dao, WriteJournal journal, String name, int capacity, List<QueuedWrite> replay) {
+        this.dao = dao;
+        this.journal = journal;
+        this.name = name;
+        this.capacity = capacity;
+        this.room = new Semaphore(capacity - replay.size()); // negative until a backlog from last time drains
+        for (QueuedWrite w : replay) {
+            queue.add(w);
+            if (w.isWatchlist()) queuedWatches.add(key(w.userId(), w.movieId()));
+        }
+        writer = new Thread(this::runWriter, "write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** True when {@code -Dmoviediary.writeBehind=true}; only the MySQL store is wrapped. */
+    public static boolean enabled() {
+        return Boolean.getBoolean("moviediary.writeBehind");
+    }
+
+    /** {@code -Dmoviediary.writeBehind.journal}, or moviediary-writes.journal in the working directory. */
+    public static Path defaultJournal() {
+        return Path.of(System.getProperty("moviediary.writeBehind.journal", "moviediary-writes.journal"));
+    }
+
+    /** Wraps {@code dao} with the default journal and {@code -Dmoviediary.writeBehind.capacity} (default {@value #DEFAULT_CAPACITY}). */
+    public static WriteBehindStore open(MovieDao dao) throws SQLException {
+        return open(dao, defaultJournal(), Integer.getInteger("moviediary.writeBehind.capacity", DEFAULT_CAPACITY));
+    }
+
+    /** Opens the journal and queues whatever in it MySQL has not seen yet. */
+    public static WriteBehindStore open(MovieDao dao, Path journalFile, int capacity) throws SQLException {
+        String name = journalFile.toAbsolutePath().normalize().toString();
+        if (name.length() > MAX_NAME_LENGTH) name = name.substring(name.length() - MAX_NAME_LENGTH);
+        long applied = dao.appliedSeq(name);
+        List<QueuedWrite> replay = new ArrayList<>();
+        WriteJournal journal;
+        try {
+            journal = WriteJournal.open(journalFile, applied, replay);
+        } catch (IOException e) {
+            throw new SQLException("Cannot open write journal " + journalFile + ": " + e.getMessage(), e);
+        }
+        if (!replay.isEmpty()) System.err.println("Write-behind: replaying " + replay.size() + " writes from " + journalFile);
+        return new WriteBehindStore(dao, journal, name, capacity, replay);
+    }
+
+    public MovieDao dao() { return dao; }
+
+    public WriteBehindStats stats() {
+        return new WriteBehindStats(queue.size(), capacity,
+                enqueued.sum(), flushed.sum(), dropped.sum(), batches.sum(), retries.sum(),
+                blocked.sum(), rejected.sum(),
+                TimeUnit.NANOSECONDS.toMicros(flushNanos.sum()),
+                TimeUnit.NANOSECONDS.toMicros(maxFlushNanos.get()),
+                TimeUnit.MILLISECONDS.toMicros(maxLagMillis.get()),
+                journal.size());
+    }
+
+    // ---------- QUEUED WRITES ----------
+    /** Checks what can be checked without MySQL, then journals the review and returns. */
+    @Override
+    public void addReview(int movieId, int userId, int rating, String comment) throws SQLException {
+        if (rating < 1 || rating > RatingStats.MAX_RATING) {
+            throw new SQLException("Check constraint 'reviews_chk_1' is violated.", "HY000", 3819);
+        }
+        requireMovie(movieId);
+        enqueue(userId, movieId, rating, comment);
+    }
+
+    /**
+     * Journals the addition and returns true, or false when the same one is
+     * already queued. A movie that is already on the watchlist in MySQL is
+     * skipped by INSERT IGNORE when the queue is flushed.
+     */
+    @Override
+    public boolean addToWatchlist(int userId, int movieId) throws SQLException {
+        requireMovie(movieId);
+        long key = key(userId, movieId);
+        if (!queuedWatches.add(key)) return false;
+        try {
+            enqueue(userId, movieId, 0, null);
+        } catch (SQLException | RuntimeException e) {
+            queuedWatches.remove(key);
+            throw e;
+        }
+        return true;
+    }
+
+    private void enqueue(int userId, int movieId, int rating, String comment) throws SQLException {
+        if (closed) throw new SQLException("The write-behind store is closed");
+        try {
+            if (!room.tryAcquire()) {
+                blocked.increment();
+                if (!room.tryAcquire(ENQUEUE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    throw new SQLTransientException("Too many writes are waiting for the database; try again shortly");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for room in the write queue", e);
+        }
+        Consumer<QueuedWrite> toQueue = queue::add;
+        try {
+            journal.append(userId, movieId, rating, comment, System.currentTimeMillis(), toQueue);
+        } catch (IOException e) {
+            room.release();
+            throw new SQLException("Could not write to the write journal: " + e.getMessage(), e);
+        }
+        enqueued.increment();
+    }
+
+    // Same error MySQL raises, but before the write is acknowledged; findMovie is served from the movie cache.
+    private void requireMovie(int movieId) throws SQLException {
+        if (dao.findMovie(movieId) == null) {
+            throw new SQLIntegrityConstraintViolationException(
+                    "Cannot add or update a child row: a foreign key constraint fails", "23000", 1452);
+        }
+    }
+
+    private static long key(int userId, int movieId) {
+        return (long) userId << 32 | (movieId & 0xFFFFFFFFL);
+    }
+
+    // ---------- WRITER ----------
+    private void runWriter() {
+        List<QueuedWrite> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            QueuedWrite first;
+            try {
+                first = queue.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return; // abandoned by close(); the rest stays in the journal
+            }
+            if (first == null) {
+                if (closed) return;
+                continue;
+            }
+            batch.clear();
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            try {
+                flush(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (QueuedWrite w : batch) {
+                if (w.isWatchlist()) queuedWatches.remove(key(w.userId(), w.movieId()));
+            }
+            room.release(batch.size());
+            if (queue.isEmpty() && journal.size() > TRUNCATE_BYTES) {
+                try {
+                    journal.truncateIfApplied(batch.get(batch.size() - 1).seq());
+                } catch (IOException e) {
+                    System.err.println("Could not truncate write journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void flush(List<QueuedWrite> batch) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            apply(batch, batch.get(batch.size() - 1).seq());
+            flushed.add(batch.size());
+        } catch (SQLException e) {
+            // One bad write fails the whole batch; apply them alone and drop the ones that still fail.
+            for (QueuedWrite w : batch) {
+                try {
+                    apply(List.of(w), w.seq());
+                    flushed.increment();
+                } catch (SQLException bad) {
+                    dropped.increment();
+                    System.err.println("Write-behind: dropping " + (w.isWatchlist() ? "watchlist addition" : "review")
+                            + " by user " + w.userId() + " for movie " + w.movieId() + ": " + bad.getMessage());
+                    try {
+                        apply(List.of(), w.seq());
+                    } catch (SQLException ignored) {
+                        // the checkpoint stays behind; the write is retried, and dropped again, after a restart
+                    }
+                }
+            }
+        }
+        long took = System.nanoTime() - start;
+        batches.increment();
+        flushNanos.add(took);
+        maxFlushNanos.accumulateAndGet(took, Math::max);
+        maxLagMillis.accumulateAndGet(System.currentTimeMillis() - batch.get(0).createdAtMillis(), Math::max);
+    }
+
+    // Retries connection failures and transient errors with backoff; other errors are thrown.
+    private void apply(List<QueuedWrite> writes, long throughSeq) throws SQLException, InterruptedException {
+        long backoff = RETRY_MIN_MS;
+        while (true) {
+            try {
+                dao.applyQueued(name, writes, throughSeq);
+                return;
+            } catch (SQLException e) {
+                if (!ConnectionPool.isConnectionFailure(e) && !(e instanceof SQLTransientException)) throw e;
+                retries.increment();
+                System.err.println("Write-behind flush failed, retrying in " + backoff + " ms: " + e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, RETRY_MAX_MS);
+            }
+        }
+    }
+
+    /**
+     * Stops taking writes and waits up to {@value #CLOSE_TIMEOUT_MS} ms for
+     * the queue to drain. Whatever is left is flushed on the next start.
+     */
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+            if (writer.isAlive()) {
+                System.err.println("Write-behind: " + queue.size() + " writes left in the journal for the next start");
+                writer.interrupt();
+                writer.join(CLOSE_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new SQLException("Could not close write journal: " + e.getMessage(), e);
+        }
+        dao.close();
+    }
+
+    // ---------- DELEGATED ----------
+    @Override
+    public void addListener(CatalogListener listener) {
+        dao.addListener(listener);
+    }
+
+    @Override
+    public void register(String username, String passwordHash) throws SQLException {
+        dao.register(username, passwordHash);
+    }
+
+    @Override
+    public UserCredential credentialOf(String username) throws SQLException {
+        return dao.credentialOf(username);
+    }
+
+    @Override
+    public boolean replacePassword(int userId, String expected, String replacement) throws SQLException {
+        return dao.replacePassword(userId, expected, replacement);
+    }
+
+    @Override
+    public Integer findUserId(String username) throws SQLException {
+        return dao.findUserId(username);
+    }
+
+    @Override
+    public int addMovie(String title, Integer year, String starring, String description) throws SQLException {
+        return dao.addMovie(title, year, starring, description);
+    }
+
+    @Override
+    public List<MovieSummary> listMovies(MovieOrder order) throws SQLException {
+        return dao.listMovies(order);
+    }
+
+    @Override
+    public int countMovies() throws SQLException {
+        return dao.countMovies();
+    }
+
+    @Override
+    public List<MovieSummary> moviesAfter(MovieOrder order, MovieSummary after, int limit) throws SQLException {
+        return dao.moviesAfter(order, after, limit);
+    }
+
+    @Override
+    public List<MovieSummary> moviesBefore(MovieOrder order, MovieSummary before, int limit) throws SQLException {
+        return dao.moviesBefore(order, before, limit);
+    }
+
+    @Override
+    public MovieSummary movieAt(MovieOrder order, int position) throws SQLException {
+        return dao.movieAt(order, position);
+    }
+
+    @Override
+    public void forEachMovie(Consumer<MovieRecord> sink) throws SQLException {
+        dao.forEachMovie(sink);
+    }
+
+    @Override
+    public MovieRecord findMovie(int movieId) throws SQLException {
+        return dao.findMovie(movieId);
+    }
+
+    @Override
+    public MovieDetail movieDetail(int movieId) throws SQLException {
+        return dao.movieDetail(movieId);
+    }
+
+    @Override
+    public List<String> castOf(int movieId) throws SQLException {
+        return dao.castOf(movieId);
+    }
+
+    @Override
+    public List<MovieSummary> filmography(String name) throws SQLException {
+        return dao.filmography(name);
+    }
+
+    @Override
+    public List<String> peopleStartingWith(String prefix, int limit) throws SQLException {
+        return dao.peopleStartingWith(prefix, limit);
+    }
+
+    @Override
+    public RatingStats ratingStats(int movieId) throws SQLException {
+        return dao.ratingStats(movieId);
+    }
+
+    @Override
+    public List<ReviewEntry> latestReviews(int movieId) throws SQLException {
+        return dao.latestReviews(movieId);
+    }
+
+    @Override
+    public void forEachReview(ReviewRow sink) throws SQLException {
+        dao.forEachReview(sink);
+    }
+
+    @Override
+    public void forEachReviewSince(long sinceMillis, ReviewRow sink) throws SQLException {
+        dao.forEachReviewSince(sinceMillis, sink);
+    }
+
+    @Override
+    public void forEachRatingTotal(RatingTotalRow sink) throws SQLException {
+        dao.forEachRatingTotal(sink);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlist(int userId) throws SQLException {
+        return dao.watchlist(userId);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistAfter(int userId, WatchlistEntry after, int limit) throws SQLException {
+        return dao.watchlistAfter(userId, after, limit);
+    }
+
+    @Override
+    public List<WatchlistEntry> watchlistBefore(int userId, WatchlistEntry before, int limit) throws SQLException {
+        return dao.watchlistBefore(userId, before, limit);
+    }
+
+    @Override
+    public void forEachWatchlistEntry(WatchlistRow sink) throws SQLException {
+        dao.forEachWatchlistEntry(sink);
+    }
+
+    @Override
+    public void forEachWatchlistCount(MovieCountRow sink) throws SQLException {
+        dao.forEachWatchlistCount(sink);
+    }
+}
@@ -0,0 +1,238 @@
+package moviediary.writebehind;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import moviediary.db.QueuedWrite;
+
+/**
+ * Append-only file of {@link QueuedWrite}s. A write is durable once {@link
+ * #append} returns: the record is written and the file forced to disk.
+ * Appenders that arrive while another thread is forcing share its next
+ * force, so a burst costs a few fsyncs rather than one each. A write is
+ * handed on for draining only after the force that covers it succeeds.
+ *
+ * If a force fails, every write it covered fails too and is cut off the
+ * file, and the journal refuses further appends; what was already forced
+ * still drains.
+ *
+ * Record layout: payload length, CRC32 of the payload, then seq, user,
+ * movie, rating, created_at and the UTF-8 comment. A torn record at the end
+ * (a crash mid-append) fails its length or CRC check and is cut off on open.
+ */
+final class WriteJournal implements AutoCloseable {
+    private static final int HEADER = 8;
+
+    private record Unsynced(QueuedWrite write, long end, Consumer<QueuedWrite> queue) {}
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Object syncLock = new Object();
+    // Guarded by this; written is also read without it by sync().
+    private long lastSeq;
+    private volatile long written;
+    // Guarded by syncLock.
+    private long synced;
+    // Written but not yet forced, in sequence order; added under this, taken under syncLock.
+    private final Queue<Unsynced> unsynced = new ConcurrentLinkedQueue<>();
+    // The force that failed; set under syncLock, after which nothing is appended.
+    private volatile IOException failed;
+
+    private WriteJournal(Path file, FileChannel channel, long lastSeq, long written) {
+        this.file = file;
+        this.channel = channel;
+        this.lastSeq = lastSeq;
+        this.written = written;
+        this.synced = written;
+    }
+
+    /**
+     * Opens or creates the journal, adds every intact record with a sequence
+     * number above {@code appliedSeq} to {@code pending}, and continues
+     * numbering after the highest one seen.
+     */
+    static WriteJournal open(Path file, long appliedSeq, List<QueuedWrite> pending) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long lastSeq = appliedSeq;
+        long end = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (true) {
+            header.clear();
+            if (channel.read(header, end) < HEADER) break;
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length <= 0 || end + HEADER + length > channel.size()) break;
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            while (payload.hasRemaining() && channel.read(payload, end + HEADER + payload.position()) > 0) {
+                // keep reading
+            }
+            if (crc(payload.array(), length) != crc) break;
+            payload.flip();
+            QueuedWrite w = decode(payload);
+            if (w.seq() > appliedSeq) pending.add(w);
+            lastSeq = Math.max(lastSeq, w.seq());
+            end += HEADER + length;
+        }
+        if (end < channel.size()) {
+            System.err.println("Write journal " + file + ": dropping " + (channel.size() - end) + " bytes of incomplete record");
+            channel.truncate(end);
+            channel.force(false);
+        }
+        channel.position(end);
+        return new WriteJournal(file, channel, lastSeq, end);
+    }
+
+    Path file() { return file; }
+
+    /**
+     * Durably appends a write and returns it with its sequence number. {@code
+     * queue} is handed the write once it is forced, possibly by another
+     * appender's thread; writes reach it in sequence order.
+     */
+    QueuedWrite append(int userId, int movieId, int rating, String comment, long createdAtMillis,
+                       Consumer<QueuedWrite> queue) throws IOException {
+        QueuedWrite w;
+        long end;
+        synchronized (this) {
+            if (failed != null) throw new IOException("The write journal failed to force earlier writes", failed);
+            w = new QueuedWrite(lastSeq + 1, userId, movieId, rating, comment, createdAtMillis);
+            byte[] payload = encode(w);
+            ByteBuffer record = ByteBuffer.allocate(HEADER + payload.length);
+            record.putInt(payload.length).putInt(crc(payload, payload.length)).put(payload).flip();
+            try {
+                while (record.hasRemaining()) channel.write(record);
+            } catch (IOException e) {
+                // cut off the partial record so later appends are not hidden behind it
+                try {
+                    channel.truncate(written);
+                    channel.position(written);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            lastSeq++;
+            end = written + HEADER + payload.length;
+            unsynced.add(new Unsynced(w, end, queue)); // before written moves, so a force that covers it publishes it
+            written = end;
+        }
+        sync(end);
+        return w;
+    }
+
+    // Forces the file unless a force that started after our write already covered it, then publishes what it covered.
+    private void sync(long end) throws IOException {
+        IOException failure;
+        synchronized (syncLock) {
+            if (synced >= end) return;
+            if (failed != null) throw new IOException("The write journal could not be forced to disk", failed);
+            long target = written;
+            try {
+                channel.force(false);
+                synced = target;
+                for (Unsynced u = unsynced.peek(); u != null && u.end() <= target; u = unsynced.peek()) {
+                    unsynced.poll().queue().accept(u.write());
+                }
+                return;
+            } catch (IOException e) {
+                failed = e;
+                failure = e;
+            }
+        }
+        discardUnsynced(failure);
+        throw failure;
+    }
+
+    // Cuts off every record no force covered, so a restart does not replay writes whose appenders got an error.
+    private void discardUnsynced(IOException failure) {
+        synchronized (this) {
+            synchronized (syncLock) {
+                unsynced.clear();
+                try {
+                    channel.truncate(synced);
+                    channel.position(synced);
+                    written = synced;
+                } catch (IOException e) {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the file once every write up to {@code appliedSeq} is in MySQL
+     * and nothing newer has been appended. Sequence numbers keep counting,
+     * and the checkpoint table carries them across a restart.
+     */
+    synchronized boolean truncateIfApplied(long appliedSeq) throws IOException {
+        if (lastSeq != appliedSeq || written == 0) return false;
+        synchronized (syncLock) {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(false);
+            written = 0;
+            synced = 0;
+        }
+        return true;
+    }
+
+    synchronized long size() {
+        return written;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ---------- ENCODING ----------
+    private static byte[] encode(QueuedWrite w) throws IOException {
+        byte[] comment = w.comment() == null ? null : w.comment().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(40 + (comment == null ? 0 : comment.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(w.seq());
+        out.writeInt(w.userId());
+        out.writeInt(w.movieId());
+        out.writeByte(w.rating());
+        out.writeLong(w.createdAtMillis());
+        out.writeInt(comment == null ? -1 : comment.length);
+        if (comment != null) out.write(comment);
+        return bytes.toByteArray();
+    }
+
+    private static QueuedWrite decode(ByteBuffer in) {
+        long seq = in.getLong();
+        int userId = in.getInt();
+        int movieId = in.getInt();
+        int rating = in.get();
+        long createdAt = in.getLong();
+        int length = in.getInt();
+        String comment = null;
+        if (length >= 0) {
+            byte[] b = new byte[length];
+            in.get(b);
+            comment = new String(b, StandardCharsets.UTF_8);
+        }
+        return new QueuedWrite(seq, userId, movieId, rating, comment, createdAt);
+    }
+
+    private static int crc(byte[] b, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(b, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -3,7 +3,39 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.sql.*;
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import moviediary.analytics.ReviewAnalytics;
+import moviediary.auth.CredentialService;
+import moviediary.db.CastMigration;
+import moviediary.db.ConnectionPool;
+import moviediary.db.DbExecutor;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStore;
+import moviediary.db.PooledConnection;
+import moviediary.db.Schema;
+import moviediary.db.StoreMode;
+import moviediary.detail.DetailLoader;
+import moviediary.metrics.InstrumentedStore;
+import moviediary.metrics.MetricsEndpoint;
+import moviediary.metrics.MetricsRegistry;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.WatchlistEntry;
+import moviediary.search.SearchHit;
+import moviediary.search.SearchIndex;
+import moviediary.session.SessionRegistry;
+import moviediary.session.UserSession;
+import moviediary.watchlist.WatchlistService;
+import moviediary.swing.AsyncSlot;
+import moviediary.swing.BusyIndicator;
+import moviediary.swing.DiagnosticsPanel;
+import moviediary.swing.PagedMovieTableModel;
+import moviediary.swing.RatingHistogram;
+import moviediary.swing.SearchBox;
+import moviediary.writebehind.WriteBehindStore;
 
 // 🎬 Movie Review App with Swing GUI + MySQL (Single File)
 public class MovieReviewAppGUI extends JFrame {
@@ -12,9 +44,16 @@ public class MovieReviewAppGUI extends JFrame {
     private static final String JDBC_USER = "root"; // change as needed
     private static final String JDBC_PASS = "root"; // change as needed
 
-    private static Connection conn;
-    private int currentUserId = -1;
-    private String currentUsername = null;
+    private static ConnectionPool pool; // null when running on an in-process store
+    private static MovieStore dao;
+    private static CredentialService credentials;
+    private static DetailLoader detailLoader;
+    private static DbExecutor db;
+    private static SearchIndex search;
+    private static WatchlistService watchlists;
+    private static ReviewAnalytics analytics;
+    private static final SessionRegistry sessions = new SessionRegistry();
+    private String sessionToken = null; // null when logged out
 
     // ---------- UI STATE ----------
     private CardLayout layout = new CardLayout();
@@ -23,6 +62,17 @@ public class MovieReviewAppGUI extends JFrame {
     private JTable watchlistTable = new JTable();
     private JTextArea movieDetailsArea = new JTextArea();
 
+    // ---------- BACKGROUND LOADING ----------
+    private final BusyIndicator loginBusy = new BusyIndicator();
+    private final BusyIndicator dashBusy = new BusyIndicator();
+    private AsyncSlot loginSlot;
+    private PagedMovieTableModel movieModel;
+    private AsyncSlot watchlistSlot;
+    private AsyncSlot detailSlot;
+    private AsyncSlot filmographySlot;
+
+    private record Filmography(String name, List<MovieSummary> movies, List<String> suggestions) {}
+
     // ---------- MAIN ----------
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
@@ -38,26 +88,95 @@ public class MovieReviewAppGUI extends JFrame {
     public MovieReviewAppGUI() throws SQLException {
         connectDB();
         setupDB();
+        if (pool != null && WriteBehindStore.enabled()) enableWriteBehind();
+        if (pool != null) MetricsRegistry.global().watchPool(pool);
+        dao = InstrumentedStore.wrap(dao, 1); // every store call shows up under Diagnostics
+        detailLoader = new DetailLoader(dao);
+        dao.addListener(detailLoader); // a new review drops that movie's cached detail
+        MetricsRegistry.global().watchDetailLoader(detailLoader);
+        MetricsEndpoint.startIfConfigured();
+        credentials = new CredentialService(dao); // PBKDF2 runs on its own bounded pool
+        // Searches made before this finishes see the part of the catalogue indexed so far
+        db.submit(() -> { search.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> { if (e != null) System.err.println("Search index build failed: " + e.getMessage()); });
+        // Until this finishes the watchlist screens fall back to the store
+        db.submit(() -> { watchlists.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> { if (e != null) System.err.println("Watchlist index build failed: " + e.getMessage()); });
+        db.submit(() -> { analytics.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> { if (e != null) System.err.println("Review analytics build failed: " + e.getMessage()); });
+        // Link cast of movies added before movie_cast existed; resumes where it left off
+        if (pool != null) db.submit(() -> new CastMigration(pool).run())
+                .whenComplete((n, e) -> { if (e != null) System.err.println("Cast migration failed: " + e.getMessage()); });
+        loginSlot = new AsyncSlot(db, loginBusy);
+        movieModel = new PagedMovieTableModel(dao, db, MovieOrder.TITLE, dashBusy,
+                e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+        watchlistSlot = new AsyncSlot(db, dashBusy);
+        detailSlot = new AsyncSlot(db, dashBusy);
+        filmographySlot = new AsyncSlot(db, dashBusy);
         setupUI();
     }
 
     private void connectDB() {
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            conn = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASS);
+            if (StoreMode.current() != StoreMode.MYSQL) {
+                dao = StoreMode.current().openLocal();
+                db = new DbExecutor(Runtime.getRuntime().availableProcessors());
+                // EXIT_ON_CLOSE skips any cleanup code; close the store so the next start skips recovery
+                MovieStore store = dao;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        store.close();
+                    } catch (SQLException e) {
+                        System.err.println("Closing store failed: " + e.getMessage());
+                    }
+                }, "store-shutdown"));
+            } else {
+                pool = new ConnectionPool(JDBC_URL, JDBC_USER, JDBC_PASS);
+                MovieDao mysql = new MovieDao(pool);
+                MetricsRegistry.global().watchMovieCache(mysql.movieCache());
+                dao = mysql;
+                db = new DbExecutor(pool.maxSize());
+                pool.borrow().close(); // fail fast if the server is unreachable
+            }
+            search = new SearchIndex();
+            dao.addListener(search); // new movies become searchable as soon as they are added
+            watchlists = new WatchlistService();
+            dao.addListener(watchlists);
+            analytics = new ReviewAnalytics();
+            dao.addListener(analytics);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "DB Connection failed: " + e.getMessage());
             System.exit(1);
         }
     }
 
+    // Reviews and watchlist additions are journaled locally and flushed to MySQL in batches.
+    private void enableWriteBehind() throws SQLException {
+        WriteBehindStore store = WriteBehindStore.open((MovieDao) dao);
+        dao = store;
+        MetricsRegistry.global().watchWriteBehind(store);
+        // EXIT_ON_CLOSE skips any cleanup code; drain the queue on the way out
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                store.close();
+            } catch (SQLException e) {
+                System.err.println("Closing write-behind store failed: " + e.getMessage());
+            }
+        }, "write-behind-shutdown"));
+    }
+
     private void setupDB() throws SQLException {
-        Statement st = conn.createStatement();
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, password VARCHAR(100) NOT NULL)");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS movies (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200), year INT, starring VARCHAR(300), description TEXT)");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS reviews (id INT AUTO_INCREMENT PRIMARY KEY, movie_id INT, user_id INT, rating INT, comment TEXT, created_at DATETIME, FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS watchlist (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT, movie_id INT, added_at DATETIME, UNIQUE(user_id, movie_id), FOREIGN KEY(user_id) REFERENCES users(id), FOREIGN KEY(movie_id) REFERENCES movies(id))");
-        st.close();
+        if (pool == null) return; // the in-process stores have these tables built in
+        try (PooledConnection pc = pool.borrow(); Statement st = pc.connection().createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, password VARCHAR(100) NOT NULL)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS movies (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200), year INT, starring VARCHAR(300), description TEXT)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS reviews (id INT AUTO_INCREMENT PRIMARY KEY, movie_id INT, user_id INT, rating INT, comment TEXT, created_at DATETIME, FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS watchlist (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT, movie_id INT, added_at DATETIME NOT NULL, UNIQUE(user_id, movie_id), FOREIGN KEY(user_id) REFERENCES users(id), FOREIGN KEY(movie_id) REFERENCES movies(id))");
+            Schema.createCastTables(st);
+            Schema.createStatsTables(st);
+            Schema.createIndexes(st);
+            Schema.createWriteBehindTables(st);
+        }
     }
 
     // ---------- UI SETUP ----------
@@ -94,42 +213,32 @@ public class MovieReviewAppGUI extends JFrame {
         panel.add(passField);
         panel.add(loginBtn);
         panel.add(regBtn);
+        panel.add(loginBusy);
 
         loginBtn.addActionListener(e -> {
-            try {
-                String u = userField.getText();
-                String p = new String(passField.getPassword());
-                PreparedStatement ps = conn.prepareStatement("SELECT id FROM users WHERE username=? AND password=?");
-                ps.setString(1, u);
-                ps.setString(2, p);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    currentUserId = rs.getInt("id");
-                    currentUsername = u;
+            String u = userField.getText();
+            String p = new String(passField.getPassword());
+            loginSlot.load(() -> credentials.login(u, p), userId -> {
+                if (userId != null) {
+                    sessionToken = sessions.open(userId, u).token();
                     JOptionPane.showMessageDialog(this, "Welcome " + u + "!");
                     refreshMovies();
                     refreshWatchlist();
                     layout.show(mainPanel, "dashboard");
                 } else JOptionPane.showMessageDialog(this, "Invalid credentials");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
-            }
+            }, ex -> JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage()));
         });
 
         regBtn.addActionListener(e -> {
-            try {
-                String u = userField.getText();
-                String p = new String(passField.getPassword());
-                PreparedStatement ps = conn.prepareStatement("INSERT INTO users(username,password) VALUES(?,?)");
-                ps.setString(1, u);
-                ps.setString(2, p);
-                ps.executeUpdate();
-                JOptionPane.showMessageDialog(this, "Registered successfully!");
-            } catch (SQLException ex) {
-                if (ex.getMessage().toLowerCase().contains("duplicate"))
-                    JOptionPane.showMessageDialog(this, "Username already exists!");
-                else JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
-            }
+            String u = userField.getText();
+            String p = new String(passField.getPassword());
+            AsyncSlot.run(db, loginBusy, () -> { credentials.register(u, p); return null; },
+                    ok -> JOptionPane.showMessageDialog(this, "Registered successfully!"),
+                    ex -> {
+                        if (ex instanceof SQLException && String.valueOf(ex.getMessage()).toLowerCase().contains("duplicate"))
+                            JOptionPane.showMessageDialog(this, "Username already exists!");
+                        else JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
+                    });
         });
 
         return panel;
@@ -142,12 +251,15 @@ public class MovieReviewAppGUI extends JFrame {
         JButton browseBtn = new JButton("Browse Movies");
         JButton addBtn = new JButton("Add Movie");
         JButton watchlistBtn = new JButton("My Watchlist");
+        JButton diagnosticsBtn = new JButton("Diagnostics");
         JButton logoutBtn = new JButton("Logout");
 
         top.add(browseBtn);
         top.add(addBtn);
         top.add(watchlistBtn);
+        top.add(diagnosticsBtn);
         top.add(logoutBtn);
+        top.add(dashBusy);
         dash.add(top, BorderLayout.NORTH);
 
         JPanel content = new JPanel(new CardLayout());
@@ -155,13 +267,26 @@ public class MovieReviewAppGUI extends JFrame {
         JPanel watchlistPanel = createWatchlistPanel();
         content.add(moviePanel, "movies");
         content.add(watchlistPanel, "watchlist");
+        DiagnosticsPanel diagnostics = new DiagnosticsPanel(MetricsRegistry.global());
+        content.add(diagnostics, "diagnostics");
         dash.add(content, BorderLayout.CENTER);
 
         CardLayout innerLayout = (CardLayout) content.getLayout();
 
         browseBtn.addActionListener(e -> innerLayout.show(content, "movies"));
         watchlistBtn.addActionListener(e -> innerLayout.show(content, "watchlist"));
-        logoutBtn.addActionListener(e -> layout.show(mainPanel, "login"));
+        diagnosticsBtn.addActionListener(e -> {
+            diagnostics.refresh();
+            innerLayout.show(content, "diagnostics");
+        });
+        logoutBtn.addActionListener(e -> {
+            watchlistSlot.cancel();
+            detailSlot.cancel();
+            filmographySlot.cancel();
+            sessions.close(sessionToken);
+            sessionToken = null;
+            layout.show(mainPanel, "login");
+        });
         addBtn.addActionListener(e -> addMovieDialog());
 
         return dash;
@@ -170,19 +295,23 @@ public class MovieReviewAppGUI extends JFrame {
     // ---------- MOVIE PANEL ----------
     private JPanel createMoviePanel() {
         JPanel panel = new JPanel(new BorderLayout());
-        movieTable.setModel(new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0));
+        movieTable.setModel(movieModel);
         JScrollPane scroll = new JScrollPane(movieTable);
         panel.add(scroll, BorderLayout.CENTER);
+        panel.add(new SearchBox(search, db, this::showSearchResults, () -> movieTable.setModel(movieModel)), BorderLayout.NORTH);
 
         JPanel bottom = new JPanel();
         JButton viewBtn = new JButton("View Details");
         JButton refreshBtn = new JButton("Refresh");
+        JButton filmographyBtn = new JButton("Filmography");
         bottom.add(viewBtn);
         bottom.add(refreshBtn);
+        bottom.add(filmographyBtn);
         panel.add(bottom, BorderLayout.SOUTH);
 
         viewBtn.addActionListener(e -> viewMovieDetails());
         refreshBtn.addActionListener(e -> refreshMovies());
+        filmographyBtn.addActionListener(e -> showFilmography());
 
         return panel;
     }
@@ -194,49 +323,140 @@ public class MovieReviewAppGUI extends JFrame {
         JScrollPane scroll = new JScrollPane(watchlistTable);
         panel.add(scroll, BorderLayout.CENTER);
 
+        JButton compareBtn = new JButton("Compare with...");
         JButton refreshBtn = new JButton("Refresh");
-        panel.add(refreshBtn, BorderLayout.SOUTH);
+        JPanel buttons = new JPanel();
+        buttons.add(compareBtn);
+        buttons.add(refreshBtn);
+        panel.add(buttons, BorderLayout.SOUTH);
+        compareBtn.addActionListener(e -> compareWatchlists());
         refreshBtn.addActionListener(e -> refreshWatchlist());
         return panel;
     }
 
     // ---------- HELPER FUNCTIONS ----------
     private void refreshMovies() {
-        try {
-            DefaultTableModel model = (DefaultTableModel) movieTable.getModel();
-            model.setRowCount(0);
-            Statement st = conn.createStatement();
-            ResultSet rs = st.executeQuery("SELECT id, title, year FROM movies ORDER BY title");
-            while (rs.next()) {
+        movieModel.refresh();
+    }
+
+    // Every movie an actor appears in, looked up through people and movie_cast.
+    private void showFilmography() {
+        String input = JOptionPane.showInputDialog(this, "Actor name:", "Filmography", JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.isBlank()) return;
+        String name = input.trim();
+        filmographySlot.load(() -> {
+            List<MovieSummary> movies = dao.filmography(name);
+            List<String> suggestions = movies.isEmpty() ? dao.peopleStartingWith(name, 10) : List.of();
+            return new Filmography(name, movies, suggestions);
+        }, f -> {
+            if (f.movies().isEmpty()) {
+                String msg = "No movies found for \"" + f.name() + "\".";
+                if (!f.suggestions().isEmpty()) msg += "\nDid you mean: " + String.join(", ", f.suggestions());
+                JOptionPane.showMessageDialog(this, msg);
+                return;
+            }
+            DefaultTableModel model = new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0);
+            for (MovieSummary m : f.movies()) {
                 model.addRow(new Object[]{
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getInt("year")
+                        m.id(),
+                        m.title(),
+                        m.year()
                 });
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
+            JTable table = new JTable(model);
+            JScrollPane scroll = new JScrollPane(table);
+            scroll.setPreferredSize(new Dimension(450, 250));
+            JOptionPane.showMessageDialog(this, scroll, f.name() + " (" + f.movies().size() + " movies)", JOptionPane.PLAIN_MESSAGE);
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+    }
+
+    private void showSearchResults(List<SearchHit> hits) {
+        DefaultTableModel model = new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0);
+        for (SearchHit h : hits) {
+            model.addRow(new Object[]{
+                    h.movieId(),
+                    h.title(),
+                    h.year()
+            });
         }
+        movieTable.setModel(model);
+    }
+
+    // The logged-in user's id, or -1 once logged out or idle past the session timeout.
+    private int currentUserId() {
+        UserSession user = sessions.find(sessionToken);
+        return user == null ? -1 : user.userId();
+    }
+
+    // Like currentUserId(), but an expired session sends the frame back to the login screen.
+    private int requireUserId() {
+        int userId = currentUserId();
+        if (userId < 0) {
+            sessionToken = null;
+            JOptionPane.showMessageDialog(this, "Your session has expired, please log in again.");
+            layout.show(mainPanel, "login");
+        }
+        return userId;
     }
 
     private void refreshWatchlist() {
-        try {
+        int userId = requireUserId();
+        if (userId < 0) return;
+        watchlistSlot.load(() -> dao.watchlist(userId), entries -> {
             DefaultTableModel model = (DefaultTableModel) watchlistTable.getModel();
             model.setRowCount(0);
-            PreparedStatement ps = conn.prepareStatement(
-                    "SELECT m.id, m.title, w.added_at FROM watchlist w JOIN movies m ON w.movie_id=m.id WHERE w.user_id=? ORDER BY w.added_at DESC");
-            ps.setInt(1, currentUserId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
+            for (WatchlistEntry w : entries) {
                 model.addRow(new Object[]{
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getTimestamp("added_at")
+                        w.movieId(),
+                        w.title(),
+                        w.addedAt()
                 });
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+    }
+
+    // Movies on both the current user's watchlist and another user's, intersected in memory.
+    private void compareWatchlists() {
+        if (!watchlists.isReady()) {
+            JOptionPane.showMessageDialog(this, "Watchlists are still loading, try again in a moment.");
+            return;
         }
+        String input = JOptionPane.showInputDialog(this, "Compare with username:", "Compare Watchlists", JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.isBlank()) return;
+        String other = input.trim();
+        int userId = requireUserId();
+        if (userId < 0) return;
+        AsyncSlot.run(db, dashBusy, () -> {
+            Integer otherId = dao.findUserId(other);
+            if (otherId == null) return null;
+            List<MovieRecord> shared = new ArrayList<>();
+            for (int id : watchlists.common(userId, otherId)) {
+                MovieRecord m = dao.findMovie(id);
+                if (m != null) shared.add(m);
+            }
+            return shared;
+        }, shared -> {
+            if (shared == null) {
+                JOptionPane.showMessageDialog(this, "No user named \"" + other + "\".");
+                return;
+            }
+            if (shared.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "You and " + other + " have no movies in common.");
+                return;
+            }
+            DefaultTableModel model = new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0);
+            for (MovieRecord m : shared) {
+                model.addRow(new Object[]{
+                        m.id(),
+                        m.title(),
+                        m.year()
+                });
+            }
+            JTable table = new JTable(model);
+            JScrollPane scroll = new JScrollPane(table);
+            scroll.setPreferredSize(new Dimension(450, 250));
+            JOptionPane.showMessageDialog(this, scroll, "In common with " + other + " (" + shared.size() + " movies)", JOptionPane.PLAIN_MESSAGE);
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
     }
 
     private void viewMovieDetails() {
@@ -245,25 +465,45 @@ public class MovieReviewAppGUI extends JFrame {
             JOptionPane.showMessageDialog(this, "Select a movie first.");
             return;
         }
-        int movieId = (int) movieTable.getValueAt(row, 0);
+        int movieId;
+        if (movieTable.getModel() == movieModel) {
+            MovieSummary selected = movieModel.movieAt(movieTable.convertRowIndexToModel(row));
+            if (selected == null) {
+                JOptionPane.showMessageDialog(this, "That row is still loading, try again in a moment.");
+                return;
+            }
+            movieId = selected.id();
+        } else {
+            movieId = (int) movieTable.getValueAt(row, 0); // search results
+        }
+        detailSlot.load(() -> detailLoader.load(movieId),
+                d -> showMovieDetails(movieId, d == null ? null : d.movie(), d == null ? null : d.stats(),
+                        d == null ? new SQLException("Movie not found.") : null),
+                e -> showMovieDetails(movieId, null, null, e));
+    }
 
+    private void showMovieDetails(int movieId, MovieRecord m, RatingStats stats, Throwable error) {
         JTextArea details = new JTextArea(15, 50);
         details.setEditable(false);
-        try {
-            PreparedStatement ps = conn.prepareStatement("SELECT * FROM movies WHERE id=?");
-            ps.setInt(1, movieId);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                details.append("Title: " + rs.getString("title") + "\n");
-                details.append("Year: " + rs.getInt("year") + "\n");
-                details.append("Starring: " + rs.getString("starring") + "\n\n");
-                details.append("Description: " + rs.getString("description") + "\n\n");
+        if (m != null) {
+            details.append("Title: " + m.title() + "\n");
+            details.append("Year: " + (m.year() == null ? "" : m.year()) + "\n");
+            details.append("Starring: " + m.starring() + "\n");
+            if (watchlists.isReady()) details.append("On " + watchlists.savedBy(movieId) + " watchlist(s)\n");
+            if (analytics.isReady() && analytics.count(movieId) > 0) {
+                details.append("Median rating: " + analytics.median(movieId)
+                        + ", middle half " + analytics.percentile(movieId, 25) + "-" + analytics.percentile(movieId, 75) + "\n");
             }
-        } catch (SQLException e) {
-            details.append("Error: " + e.getMessage());
+            details.append("\n");
+            details.append("Description: " + m.description() + "\n\n");
         }
+        if (error != null) details.append("Error: " + error.getMessage());
 
-        int opt = JOptionPane.showOptionDialog(this, new JScrollPane(details),
+        JPanel content = new JPanel(new BorderLayout(0, 10));
+        content.add(new JScrollPane(details), BorderLayout.CENTER);
+        if (stats != null) content.add(new RatingHistogram(stats), BorderLayout.SOUTH);
+
+        int opt = JOptionPane.showOptionDialog(this, content,
                 "Movie Details", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE,
                 null, new String[]{"Add Review", "Add to Watchlist", "Close"}, "Close");
 
@@ -285,18 +525,18 @@ public class MovieReviewAppGUI extends JFrame {
 
         int ok = JOptionPane.showConfirmDialog(this, p, "Add Movie", JOptionPane.OK_CANCEL_OPTION);
         if (ok == JOptionPane.OK_OPTION) {
+            int movieYear;
             try {
-                PreparedStatement ps = conn.prepareStatement("INSERT INTO movies(title,year,starring,description) VALUES(?,?,?,?)");
-                ps.setString(1, title.getText());
-                ps.setInt(2, Integer.parseInt(year.getText()));
-                ps.setString(3, stars.getText());
-                ps.setString(4, desc.getText());
-                ps.executeUpdate();
-                JOptionPane.showMessageDialog(this, "Movie added!");
-                refreshMovies();
-            } catch (Exception e) {
+                movieYear = Integer.parseInt(year.getText());
+            } catch (NumberFormatException e) {
                 JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
+                return;
             }
+            String t = title.getText(), s = stars.getText(), d = desc.getText();
+            AsyncSlot.run(db, dashBusy, () -> dao.addMovie(t, movieYear, s, d), id -> {
+                JOptionPane.showMessageDialog(this, "Movie added!");
+                refreshMovies();
+            }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
         }
     }
 
@@ -305,31 +545,30 @@ public class MovieReviewAppGUI extends JFrame {
         if (ratingStr == null) return;
         String comment = JOptionPane.showInputDialog("Comment:");
         if (comment == null) return;
+        int rating;
         try {
-            int rating = Integer.parseInt(ratingStr);
-            PreparedStatement ps = conn.prepareStatement("INSERT INTO reviews(movie_id,user_id,rating,comment,created_at) VALUES(?,?,?,?,?)");
-            ps.setInt(1, movieId);
-            ps.setInt(2, currentUserId);
-            ps.setInt(3, rating);
-            ps.setString(4, comment);
-            ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
-            ps.executeUpdate();
-            JOptionPane.showMessageDialog(this, "Review added!");
-        } catch (Exception e) {
+            rating = Integer.parseInt(ratingStr);
+        } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
+            return;
         }
+        int userId = requireUserId();
+        if (userId < 0) return;
+        AsyncSlot.run(db, dashBusy, () -> { dao.addReview(movieId, userId, rating, comment); return null; },
+                ok -> JOptionPane.showMessageDialog(this, "Review added!"),
+                e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
     }
 
     private void addToWatchlist(int movieId) {
-        try {
-            PreparedStatement ps = conn.prepareStatement("INSERT IGNORE INTO watchlist(user_id,movie_id,added_at) VALUES(?,?,NOW())");
-            ps.setInt(1, currentUserId);
-            ps.setInt(2, movieId);
-            int n = ps.executeUpdate();
-            JOptionPane.showMessageDialog(this, n > 0 ? "Added to watchlist!" : "Already in watchlist!");
-            refreshWatchlist();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
+        int userId = requireUserId();
+        if (userId < 0) return;
+        if (watchlists.isReady() && watchlists.contains(userId, movieId)) {
+            JOptionPane.showMessageDialog(this, "Already in watchlist!"); // known locally, no round trip
+            return;
         }
+        AsyncSlot.run(db, dashBusy, () -> dao.addToWatchlist(userId, movieId), added -> {
+            JOptionPane.showMessageDialog(this, added ? "Added to watchlist!" : "Already in watchlist!");
+            refreshWatchlist();
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
     }
-}
+}
\ No newline at end of file
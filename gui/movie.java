@@ -3,6 +3,44 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;  
+import java.util.ArrayList;
+import java.util.List;
+import moviediary.analytics.ReviewAnalytics;
+import moviediary.auth.CredentialService;
+import moviediary.db.CastMigration;
+import moviediary.db.ConnectionPool;
+import moviediary.db.DbExecutor;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStore;
+import moviediary.db.PooledConnection;
+import moviediary.db.Schema;
+import moviediary.db.StoreMode;
+import moviediary.detail.DetailLoader;
+import moviediary.leaderboard.Leaderboards;
+import moviediary.leaderboard.RankedMovie;
+import moviediary.metrics.InstrumentedStore;
+import moviediary.metrics.MetricsEndpoint;
+import moviediary.metrics.MetricsRegistry;
+import moviediary.recommend.Recommendation;
+import moviediary.recommend.Recommender;
+import moviediary.model.MovieDetail;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.ReviewEntry;
+import moviediary.model.WatchlistEntry;
+import moviediary.search.SearchHit;
+import moviediary.search.SearchIndex;
+import moviediary.session.SessionRegistry;
+import moviediary.session.UserSession;
+import moviediary.watchlist.WatchlistService;
+import moviediary.swing.AsyncSlot;
+import moviediary.swing.BusyIndicator;
+import moviediary.swing.DiagnosticsPanel;
+import moviediary.swing.PagedMovieTableModel;
+import moviediary.swing.RatingHistogram;
+import moviediary.swing.SearchBox;
+import moviediary.writebehind.WriteBehindStore;
 
 // 🎬 Movie Review App with Swing GUI + MySQL (Single File)
 public class movie extends JFrame {
@@ -10,16 +48,46 @@ public class movie extends JFrame {
     private static final String JDBC_URL = "jdbc:mysql://localhost:3306/moviereviewdb";
     private static final String JDBC_USER = "root"; // change as needed
     private static final String JDBC_PASS = "root"; // change as needed
-
-    private static Connection conn;
-    private int currentUserId = -1;
-    private String currentUsername = null;
+    private static final int LEADERBOARD_ROWS = 20;
+    private static final int RECOMMENDATION_ROWS = 20;
+
+    private static ConnectionPool pool; // null when running on an in-process store
+    private static MovieStore dao;
+    private static CredentialService credentials;
+    private static DetailLoader detailLoader;
+    private static DbExecutor db;
+    private static SearchIndex search;
+    private static WatchlistService watchlists;
+    private static ReviewAnalytics analytics;
+    private static Leaderboards leaderboards;
+    private static Recommender recommender;
+    private static final SessionRegistry sessions = new SessionRegistry();
+    private String sessionToken = null; // null when logged out
 
     // ---------- UI STATE ----------
     private CardLayout layout = new CardLayout();
     private JPanel mainPanel = new JPanel(layout);
     private JTable movieTable = new JTable();
     private JTable watchlistTable = new JTable();
+    private JTable topRatedTable = new JTable();
+    private JTable trendingTable = new JTable();
+    private JTable mostWatchlistedTable = new JTable();
+    private JTable recommendationTable = new JTable();
+
+    // ---------- BACKGROUND LOADING ----------
+    // JDBC never runs on the EDT: each view owns a slot whose newest request wins.
+    private final BusyIndicator loginBusy = new BusyIndicator();
+    private final BusyIndicator dashBusy = new BusyIndicator();
+    private AsyncSlot loginSlot;
+    private PagedMovieTableModel movieModel;
+    private AsyncSlot watchlistSlot;
+    private AsyncSlot detailSlot;
+    private AsyncSlot filmographySlot;
+    private AsyncSlot leaderboardSlot;
+    private AsyncSlot recommendationSlot;
+
+    private record Filmography(String name, List<MovieSummary> movies, List<String> suggestions) {}
+    private record LeaderboardRows(List<Object[]> topRated, List<Object[]> trending, List<Object[]> mostWatchlisted) {}
 
     // ---------- MAIN ----------
     public static void main(String[] args) {
@@ -51,26 +119,109 @@ public class movie extends JFrame {
     public movie() throws SQLException {
         connectDB();
         setupDB();
+        if (pool != null && WriteBehindStore.enabled()) enableWriteBehind();
+        if (pool != null) MetricsRegistry.global().watchPool(pool);
+        dao = InstrumentedStore.wrap(dao, 1); // every store call shows up under Diagnostics
+        detailLoader = new DetailLoader(dao);
+        dao.addListener(detailLoader); // a new review drops that movie's cached detail
+        MetricsRegistry.global().watchDetailLoader(detailLoader);
+        MetricsEndpoint.startIfConfigured();
+        credentials = new CredentialService(dao); // PBKDF2 runs on its own bounded pool
+        // Searches made before this finishes see the part of the catalogue indexed so far
+        db.submit(() -> { search.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> { if (e != null) System.err.println("Search index build failed: " + e.getMessage()); });
+        // Until this finishes the watchlist screens fall back to the store
+        db.submit(() -> { watchlists.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> { if (e != null) System.err.println("Watchlist index build failed: " + e.getMessage()); });
+        db.submit(() -> { analytics.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> { if (e != null) System.err.println("Review analytics build failed: " + e.getMessage()); });
+        db.submit(() -> { leaderboards.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> {
+                    if (e != null) System.err.println("Leaderboard build failed: " + e.getMessage());
+                    else leaderboards.startReconciling(dao);
+                });
+        // Reuses the saved neighbour lists when there are any; otherwise a full similarity pass
+        db.submit(() -> { recommender.buildFrom(dao); return null; })
+                .whenComplete((ok, e) -> { if (e != null) System.err.println("Recommender build failed: " + e.getMessage()); });
+        // Link cast of movies added before movie_cast existed; resumes where it left off
+        if (pool != null) db.submit(() -> new CastMigration(pool).run())
+                .whenComplete((n, e) -> { if (e != null) System.err.println("Cast migration failed: " + e.getMessage()); });
+        loginSlot = new AsyncSlot(db, loginBusy);
+        movieModel = new PagedMovieTableModel(dao, db, MovieOrder.ID, dashBusy,
+                e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+        watchlistSlot = new AsyncSlot(db, dashBusy);
+        detailSlot = new AsyncSlot(db, dashBusy);
+        filmographySlot = new AsyncSlot(db, dashBusy);
+        leaderboardSlot = new AsyncSlot(db, dashBusy);
+        recommendationSlot = new AsyncSlot(db, dashBusy);
         setupUI();
     }
 
     private void connectDB() {
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            conn = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASS);
+            if (StoreMode.current() != StoreMode.MYSQL) {
+                dao = StoreMode.current().openLocal();
+                db = new DbExecutor(Runtime.getRuntime().availableProcessors());
+                // EXIT_ON_CLOSE skips any cleanup code; close the store so the next start skips recovery
+                MovieStore store = dao;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        store.close();
+                    } catch (SQLException e) {
+                        System.err.println("Closing store failed: " + e.getMessage());
+                    }
+                }, "store-shutdown"));
+            } else {
+                pool = new ConnectionPool(JDBC_URL, JDBC_USER, JDBC_PASS);
+                MovieDao mysql = new MovieDao(pool);
+                MetricsRegistry.global().watchMovieCache(mysql.movieCache());
+                dao = mysql;
+                db = new DbExecutor(pool.maxSize());
+                pool.borrow().close(); // fail fast if the server is unreachable
+            }
+            search = new SearchIndex();
+            dao.addListener(search); // new movies become searchable as soon as they are added
+            watchlists = new WatchlistService();
+            dao.addListener(watchlists);
+            analytics = new ReviewAnalytics();
+            dao.addListener(analytics);
+            leaderboards = new Leaderboards();
+            dao.addListener(leaderboards);
+            recommender = new Recommender(JDBC_URL);
+            dao.addListener(recommender);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "DB Connection failed: " + e.getMessage());
             System.exit(1);
         }
     }
 
+    // Reviews and watchlist additions are journaled locally and flushed to MySQL in batches.
+    private void enableWriteBehind() throws SQLException {
+        WriteBehindStore store = WriteBehindStore.open((MovieDao) dao);
+        dao = store;
+        MetricsRegistry.global().watchWriteBehind(store);
+        // EXIT_ON_CLOSE skips any cleanup code; drain the queue on the way out
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                store.close();
+            } catch (SQLException e) {
+                System.err.println("Closing write-behind store failed: " + e.getMessage());
+            }
+        }, "write-behind-shutdown"));
+    }
+
     private void setupDB() throws SQLException {
-        Statement st = conn.createStatement();
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, password VARCHAR(100) NOT NULL)");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS movies (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200), year INT, starring VARCHAR(300), description TEXT)");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS reviews (id INT AUTO_INCREMENT PRIMARY KEY, movie_id INT, user_id INT, rating INT, comment TEXT, created_at DATETIME, FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS watchlist (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT, movie_id INT, added_at DATETIME, UNIQUE(user_id, movie_id), FOREIGN KEY(user_id) REFERENCES users(id), FOREIGN KEY(movie_id) REFERENCES movies(id))");
-        st.close();
+        if (pool == null) return; // the in-process stores have these tables built in
+        try (PooledConnection pc = pool.borrow(); Statement st = pc.connection().createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, password VARCHAR(100) NOT NULL)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS movies (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200), year INT, starring VARCHAR(300), description TEXT)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS reviews (id INT AUTO_INCREMENT PRIMARY KEY, movie_id INT, user_id INT, rating INT, comment TEXT, created_at DATETIME, FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS watchlist (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT, movie_id INT, added_at DATETIME NOT NULL, UNIQUE(user_id, movie_id), FOREIGN KEY(user_id) REFERENCES users(id), FOREIGN KEY(movie_id) REFERENCES movies(id))");
+            Schema.createCastTables(st);
+            Schema.createStatsTables(st);
+            Schema.createIndexes(st);
+            Schema.createWriteBehindTables(st);
+        }
     }
 
     // ---------- UI SETUP (MODIFIED) ----------
@@ -131,43 +282,33 @@ public class movie extends JFrame {
         
         container.add(new JLabel("<html><h1 style='color:#333333;'>🎬 CINEMA DIARY</h1></html>", SwingConstants.CENTER), BorderLayout.NORTH);
         container.add(centerPanel, BorderLayout.CENTER);
+        container.add(loginBusy, BorderLayout.SOUTH);
 
         // Action Listeners remain the same
         loginBtn.addActionListener(e -> {
-            try {
-                String u = userField.getText();
-                String p = new String(passField.getPassword());
-                PreparedStatement ps = conn.prepareStatement("SELECT id FROM users WHERE username=? AND password=?");
-                ps.setString(1, u);
-                ps.setString(2, p);
-                ResultSet rs = ps.executeQuery();
-                if (rs.next()) {
-                    currentUserId = rs.getInt("id");
-                    currentUsername = u;
+            String u = userField.getText();
+            String p = new String(passField.getPassword());
+            loginSlot.load(() -> credentials.login(u, p), userId -> {
+                if (userId != null) {
+                    sessionToken = sessions.open(userId, u).token();
                     JOptionPane.showMessageDialog(this, "Welcome " + u + "!");
                     refreshMovies();
                     refreshWatchlist();
                     layout.show(mainPanel, "dashboard");
                 } else JOptionPane.showMessageDialog(this, "Invalid credentials");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
-            }
+            }, ex -> JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage()));
         });
 
         regBtn.addActionListener(e -> {
-            try {
-                String u = userField.getText();
-                String p = new String(passField.getPassword());
-                PreparedStatement ps = conn.prepareStatement("INSERT INTO users(username,password) VALUES(?,?)");
-                ps.setString(1, u);
-                ps.setString(2, p);
-                ps.executeUpdate();
-                JOptionPane.showMessageDialog(this, "Registered successfully!");
-            } catch (SQLException ex) {
-                if (ex.getMessage().toLowerCase().contains("duplicate"))
-                    JOptionPane.showMessageDialog(this, "Username already exists!");
-                else JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
-            }
+            String u = userField.getText();
+            String p = new String(passField.getPassword());
+            AsyncSlot.run(db, loginBusy, () -> { credentials.register(u, p); return null; },
+                    ok -> JOptionPane.showMessageDialog(this, "Registered successfully!"),
+                    ex -> {
+                        if (ex instanceof SQLException && String.valueOf(ex.getMessage()).toLowerCase().contains("duplicate"))
+                            JOptionPane.showMessageDialog(this, "Username already exists!");
+                        else JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage());
+                    });
         });
 
         return container;
@@ -195,6 +336,9 @@ public class movie extends JFrame {
         JButton browseBtn = createStyledNavButton("Browse Movies");
         JButton addBtn = createStyledNavButton("Add Movie");
         JButton watchlistBtn = createStyledNavButton("My Watchlist");
+        JButton leaderboardBtn = createStyledNavButton("Leaderboards");
+        JButton forYouBtn = createStyledNavButton("For You");
+        JButton diagnosticsBtn = createStyledNavButton("Diagnostics");
         JButton logoutBtn = createStyledNavButton("Logout");
         
         logoutBtn.setBackground(new Color(200, 70, 70)); // Red for logout
@@ -202,9 +346,17 @@ public class movie extends JFrame {
         leftButtons.add(browseBtn);
         leftButtons.add(addBtn);
         leftButtons.add(watchlistBtn);
+        leftButtons.add(leaderboardBtn);
+        leftButtons.add(forYouBtn);
+        leftButtons.add(diagnosticsBtn);
         
+        JPanel rightButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 15, 10));
+        rightButtons.setOpaque(false);
+        rightButtons.add(dashBusy);
+        rightButtons.add(logoutBtn);
+
         top.add(leftButtons, BorderLayout.WEST);
-        top.add(logoutBtn, BorderLayout.EAST);
+        top.add(rightButtons, BorderLayout.EAST);
         
         dash.add(top, BorderLayout.NORTH);
 
@@ -216,6 +368,11 @@ public class movie extends JFrame {
         JPanel watchlistPanel = createWatchlistPanel();
         content.add(moviePanel, "movies");
         content.add(watchlistPanel, "watchlist");
+        content.add(createLeaderboardPanel(), "leaderboards");
+        content.add(createRecommendationPanel(), "foryou");
+        DiagnosticsPanel diagnostics = new DiagnosticsPanel(MetricsRegistry.global());
+        diagnostics.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), "Diagnostics", 0, 0, new Font("SansSerif", Font.BOLD, 16)));
+        content.add(diagnostics, "diagnostics");
         dash.add(content, BorderLayout.CENTER);
 
         CardLayout innerLayout = (CardLayout) content.getLayout();
@@ -225,7 +382,28 @@ public class movie extends JFrame {
             refreshWatchlist();
             innerLayout.show(content, "watchlist");
         });
-        logoutBtn.addActionListener(e -> layout.show(mainPanel, "login"));
+        leaderboardBtn.addActionListener(e -> {
+            refreshLeaderboards();
+            innerLayout.show(content, "leaderboards");
+        });
+        forYouBtn.addActionListener(e -> {
+            refreshRecommendations();
+            innerLayout.show(content, "foryou");
+        });
+        diagnosticsBtn.addActionListener(e -> {
+            diagnostics.refresh();
+            innerLayout.show(content, "diagnostics");
+        });
+        logoutBtn.addActionListener(e -> {
+            watchlistSlot.cancel();
+            leaderboardSlot.cancel();
+            recommendationSlot.cancel();
+            detailSlot.cancel();
+            filmographySlot.cancel();
+            sessions.close(sessionToken);
+            sessionToken = null;
+            layout.show(mainPanel, "login");
+        });
         addBtn.addActionListener(e -> addMovieDialog());
 
         return dash;
@@ -248,27 +426,34 @@ public class movie extends JFrame {
         panel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), "Movie Catalogue", 0, 0, new Font("SansSerif", Font.BOLD, 16)));
         
         // Movie Table Setup
-        movieTable.setModel(new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0));
+        movieTable.setModel(movieModel);
         movieTable.setRowHeight(25); // Taller rows
         movieTable.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 14));
         movieTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         JScrollPane scroll = new JScrollPane(movieTable);
         panel.add(scroll, BorderLayout.CENTER);
 
+        // Search box above the table; clearing it brings back the full catalogue
+        panel.add(new SearchBox(search, db, this::showSearchResults, () -> movieTable.setModel(movieModel)), BorderLayout.NORTH);
+
         // Bottom Actions Panel
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT)); // Buttons on the right
         JButton viewBtn = new JButton("View Details");
         JButton refreshBtn = new JButton("Refresh List");
+        JButton filmographyBtn = new JButton("Actor Filmography");
         
         viewBtn.putClientProperty("JComponent.sizeVariant", "large");
         refreshBtn.putClientProperty("JComponent.sizeVariant", "large");
+        filmographyBtn.putClientProperty("JComponent.sizeVariant", "large");
         
+        bottom.add(filmographyBtn);
         bottom.add(refreshBtn);
         bottom.add(viewBtn);
         panel.add(bottom, BorderLayout.SOUTH);
 
         viewBtn.addActionListener(e -> viewMovieDetails());
         refreshBtn.addActionListener(e -> refreshMovies());
+        filmographyBtn.addActionListener(e -> showFilmography());
 
         return panel;
     }
@@ -285,56 +470,254 @@ public class movie extends JFrame {
         JScrollPane scroll = new JScrollPane(watchlistTable);
         panel.add(scroll, BorderLayout.CENTER);
 
+        JButton compareBtn = new JButton("Compare with...");
         JButton refreshBtn = new JButton("Refresh Watchlist");
         refreshBtn.putClientProperty("JComponent.sizeVariant", "large");
         
         JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bottom.add(compareBtn);
         bottom.add(refreshBtn);
         
         panel.add(bottom, BorderLayout.SOUTH);
+        compareBtn.addActionListener(e -> compareWatchlists());
         refreshBtn.addActionListener(e -> refreshWatchlist());
         return panel;
     }
 
+    // ---------- LEADERBOARD PANEL ----------
+    private JPanel createLeaderboardPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), "Leaderboards", 0, 0, new Font("SansSerif", Font.BOLD, 16)));
+
+        JPanel boards = new JPanel(new GridLayout(1, 3, 10, 0));
+        boards.add(leaderboardColumn(topRatedTable, "Top Rated", "Score"));
+        boards.add(leaderboardColumn(trendingTable, "Trending This Week", "Reviews"));
+        boards.add(leaderboardColumn(mostWatchlistedTable, "Most Watchlisted", "Saves"));
+        panel.add(boards, BorderLayout.CENTER);
+
+        JButton refreshBtn = new JButton("Refresh Leaderboards");
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bottom.add(refreshBtn);
+        panel.add(bottom, BorderLayout.SOUTH);
+        refreshBtn.addActionListener(e -> refreshLeaderboards());
+        return panel;
+    }
+
+    private JPanel leaderboardColumn(JTable table, String title, String scoreHeader) {
+        table.setModel(new DefaultTableModel(new String[]{"#", "Movie ID", "Title", scoreHeader}, 0));
+        table.setRowHeight(25);
+        table.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 14));
+        table.getColumnModel().getColumn(0).setMaxWidth(40);
+        table.getColumnModel().getColumn(1).setMaxWidth(70);
+        JPanel column = new JPanel(new BorderLayout());
+        column.setBorder(BorderFactory.createTitledBorder(title));
+        column.add(new JScrollPane(table), BorderLayout.CENTER);
+        return column;
+    }
+
+    // The boards are in memory; only the titles are looked up (and mostly come from the movie cache).
+    private void refreshLeaderboards() {
+        if (!leaderboards.isReady()) {
+            JOptionPane.showMessageDialog(this, "Leaderboards are still loading, try again in a moment.");
+            return;
+        }
+        leaderboardSlot.load(() -> new LeaderboardRows(
+                leaderboardRows(leaderboards.topRated(LEADERBOARD_ROWS), true),
+                leaderboardRows(leaderboards.trending(LEADERBOARD_ROWS), false),
+                leaderboardRows(leaderboards.mostWatchlisted(LEADERBOARD_ROWS), false)), rows -> {
+            fillLeaderboard(topRatedTable, rows.topRated());
+            fillLeaderboard(trendingTable, rows.trending());
+            fillLeaderboard(mostWatchlistedTable, rows.mostWatchlisted());
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+    }
+
+    private static List<Object[]> leaderboardRows(List<RankedMovie> ranked, boolean average) throws SQLException {
+        List<Object[]> rows = new ArrayList<>(ranked.size());
+        for (RankedMovie r : ranked) {
+            MovieRecord m = dao.findMovie(r.movieId());
+            rows.add(new Object[]{
+                    rows.size() + 1,
+                    r.movieId(),
+                    m == null ? "?" : m.title(),
+                    average ? String.format("%.2f (%d)", r.score(), r.count()) : r.count()
+            });
+        }
+        return rows;
+    }
+
+    private static void fillLeaderboard(JTable table, List<Object[]> rows) {
+        DefaultTableModel model = (DefaultTableModel) table.getModel();
+        model.setRowCount(0);
+        for (Object[] row : rows) model.addRow(row);
+    }
+
+    // ---------- RECOMMENDATION PANEL ----------
+    private JPanel createRecommendationPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY), "Recommended For You", 0, 0, new Font("SansSerif", Font.BOLD, 16)));
+
+        recommendationTable.setModel(new DefaultTableModel(new String[]{"#", "Movie ID", "Title", "Because You Liked"}, 0));
+        recommendationTable.setRowHeight(25);
+        recommendationTable.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 14));
+        recommendationTable.getColumnModel().getColumn(0).setMaxWidth(40);
+        recommendationTable.getColumnModel().getColumn(1).setMaxWidth(70);
+        panel.add(new JScrollPane(recommendationTable), BorderLayout.CENTER);
+
+        JButton refreshBtn = new JButton("Refresh Recommendations");
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bottom.add(refreshBtn);
+        panel.add(bottom, BorderLayout.SOUTH);
+        refreshBtn.addActionListener(e -> refreshRecommendations());
+        return panel;
+    }
+
+    // Scoring reads the precomputed neighbour lists; only the titles are looked up.
+    private void refreshRecommendations() {
+        if (!recommender.isReady()) {
+            JOptionPane.showMessageDialog(this, "Recommendations are still loading, try again in a moment.");
+            return;
+        }
+        int userId = requireUserId();
+        if (userId < 0) return;
+        recommendationSlot.load(() -> {
+            List<Object[]> rows = new ArrayList<>();
+            for (Recommendation r : recommender.recommend(userId, RECOMMENDATION_ROWS)) {
+                MovieRecord m = dao.findMovie(r.movieId());
+                MovieRecord because = dao.findMovie(r.becauseOf());
+                rows.add(new Object[]{rows.size() + 1, r.movieId(), m == null ? "?" : m.title(), because == null ? "?" : because.title()});
+            }
+            return rows;
+        }, rows -> {
+            fillLeaderboard(recommendationTable, rows);
+            if (rows.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Review or save a few movies you like to get recommendations.");
+            }
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+    }
+
     // ---------- HELPER FUNCTIONS (MODIFIED LOGIC) ----------
     private void refreshMovies() {
-        try {
-            DefaultTableModel model = (DefaultTableModel) movieTable.getModel();
-            model.setRowCount(0);
-            Statement st = conn.createStatement();
-            // --- MODIFICATION: Changed ORDER BY to 'id' ASC (ascending) ---
-            ResultSet rs = st.executeQuery("SELECT id, title, year FROM movies ORDER BY id ASC");
-            // ------------------------------------------------------------------
-            while (rs.next()) {
+        movieModel.refresh();
+    }
+
+    // Every movie an actor appears in, looked up through people and movie_cast.
+    private void showFilmography() {
+        String input = JOptionPane.showInputDialog(this, "Actor name:", "Filmography", JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.isBlank()) return;
+        String name = input.trim();
+        filmographySlot.load(() -> {
+            List<MovieSummary> movies = dao.filmography(name);
+            List<String> suggestions = movies.isEmpty() ? dao.peopleStartingWith(name, 10) : List.of();
+            return new Filmography(name, movies, suggestions);
+        }, f -> {
+            if (f.movies().isEmpty()) {
+                String msg = "No movies found for \"" + f.name() + "\".";
+                if (!f.suggestions().isEmpty()) msg += "\nDid you mean: " + String.join(", ", f.suggestions());
+                JOptionPane.showMessageDialog(this, msg);
+                return;
+            }
+            DefaultTableModel model = new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0);
+            for (MovieSummary m : f.movies()) {
                 model.addRow(new Object[]{
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getInt("year")
+                        m.id(),
+                        m.title(),
+                        m.year()
                 });
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
+            JTable table = new JTable(model);
+            JScrollPane scroll = new JScrollPane(table);
+            scroll.setPreferredSize(new Dimension(450, 250));
+            JOptionPane.showMessageDialog(this, scroll, f.name() + " (" + f.movies().size() + " movies)", JOptionPane.PLAIN_MESSAGE);
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+    }
+
+    private void showSearchResults(List<SearchHit> hits) {
+        DefaultTableModel model = new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0);
+        for (SearchHit h : hits) {
+            model.addRow(new Object[]{
+                    h.movieId(),
+                    h.title(),
+                    h.year()
+            });
+        }
+        movieTable.setModel(model);
+    }
+
+    // The logged-in user's id, or -1 once logged out or idle past the session timeout.
+    private int currentUserId() {
+        UserSession user = sessions.find(sessionToken);
+        return user == null ? -1 : user.userId();
+    }
+
+    // Like currentUserId(), but an expired session sends the frame back to the login screen.
+    private int requireUserId() {
+        int userId = currentUserId();
+        if (userId < 0) {
+            sessionToken = null;
+            JOptionPane.showMessageDialog(this, "Your session has expired, please log in again.");
+            layout.show(mainPanel, "login");
         }
+        return userId;
     }
 
     private void refreshWatchlist() {
-        try {
+        int userId = requireUserId();
+        if (userId < 0) return;
+        watchlistSlot.load(() -> dao.watchlist(userId), entries -> {
             DefaultTableModel model = (DefaultTableModel) watchlistTable.getModel();
             model.setRowCount(0);
-            PreparedStatement ps = conn.prepareStatement(
-                    "SELECT m.id, m.title, w.added_at FROM watchlist w JOIN movies m ON w.movie_id=m.id WHERE w.user_id=? ORDER BY w.added_at DESC");
-            ps.setInt(1, currentUserId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
+            for (WatchlistEntry w : entries) {
                 model.addRow(new Object[]{
-                        rs.getInt("id"),
-                        rs.getString("title"),
-                        rs.getTimestamp("added_at")
+                        w.movieId(),
+                        w.title(),
+                        w.addedAt()
                 });
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
+    }
+
+    // Movies on both the current user's watchlist and another user's, intersected in memory.
+    private void compareWatchlists() {
+        if (!watchlists.isReady()) {
+            JOptionPane.showMessageDialog(this, "Watchlists are still loading, try again in a moment.");
+            return;
         }
+        String input = JOptionPane.showInputDialog(this, "Compare with username:", "Compare Watchlists", JOptionPane.QUESTION_MESSAGE);
+        if (input == null || input.isBlank()) return;
+        String other = input.trim();
+        int userId = requireUserId();
+        if (userId < 0) return;
+        AsyncSlot.run(db, dashBusy, () -> {
+            Integer otherId = dao.findUserId(other);
+            if (otherId == null) return null;
+            List<MovieRecord> shared = new ArrayList<>();
+            for (int id : watchlists.common(userId, otherId)) {
+                MovieRecord m = dao.findMovie(id);
+                if (m != null) shared.add(m);
+            }
+            return shared;
+        }, shared -> {
+            if (shared == null) {
+                JOptionPane.showMessageDialog(this, "No user named \"" + other + "\".");
+                return;
+            }
+            if (shared.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "You and " + other + " have no movies in common.");
+                return;
+            }
+            DefaultTableModel model = new DefaultTableModel(new String[]{"ID", "Title", "Year"}, 0);
+            for (MovieRecord m : shared) {
+                model.addRow(new Object[]{
+                        m.id(),
+                        m.title(),
+                        m.year()
+                });
+            }
+            JTable table = new JTable(model);
+            JScrollPane scroll = new JScrollPane(table);
+            scroll.setPreferredSize(new Dimension(450, 250));
+            JOptionPane.showMessageDialog(this, scroll, "In common with " + other + " (" + shared.size() + " movies)", JOptionPane.PLAIN_MESSAGE);
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
     }
 
     private void viewMovieDetails() {
@@ -343,8 +726,28 @@ public class movie extends JFrame {
             JOptionPane.showMessageDialog(this, "Select a movie first.");
             return;
         }
-        int movieId = (int) movieTable.getValueAt(row, 0);
+        int movieId;
+        if (movieTable.getModel() == movieModel) {
+            MovieSummary selected = movieModel.movieAt(movieTable.convertRowIndexToModel(row));
+            if (selected == null) {
+                JOptionPane.showMessageDialog(this, "That row is still loading, try again in a moment.");
+                return;
+            }
+            movieId = selected.id();
+        } else {
+            movieId = (int) movieTable.getValueAt(row, 0); // search results
+        }
 
+        // Fetch in the background (one round trip, or none when cached); the dialog is built on the EDT
+        detailSlot.load(() -> detailLoader.load(movieId),
+                details -> {
+                    if (details == null) JOptionPane.showMessageDialog(this, "Movie not found.");
+                    else showMovieDetails(movieId, details);
+                },
+                e -> JOptionPane.showMessageDialog(this, "Error fetching details: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private void showMovieDetails(int movieId, MovieDetail details) {
         String movieTitle = "Movie Details";
 
         // Main Dialog Content Panel using BorderLayout
@@ -378,85 +781,79 @@ public class movie extends JFrame {
         descriptionArea.setBackground(detailsPanel.getBackground()); 
         descriptionArea.setBorder(null);
         
-        // Database Fetch and UI Population
-        try {
-            // Fetch movie details
-            PreparedStatement ps = conn.prepareStatement("SELECT * FROM movies WHERE id=?");
-            ps.setInt(1, movieId);
-            ResultSet rs = ps.executeQuery();
-            
-            int rowNum = 0; // Start row counter
-
-            if (rs.next()) {
-                movieTitle = rs.getString("title");
-                descriptionArea.setText(rs.getString("description"));
-                descriptionArea.setCaretPosition(0); // Scroll to top
-
-                // Populate detailsPanel (GridBagLayout)
-                
-                // Row 0: Title
-                gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0; gbc.anchor = GridBagConstraints.WEST; gbc.fill = GridBagConstraints.HORIZONTAL;
-                detailsPanel.add(new JLabel("Title:"), gbc);
-                gbc.gridx = 1; gbc.weightx = 1.0;
-                detailsPanel.add(new JLabel("<html><b>" + rs.getString("title") + "</b></html>"), gbc);
+        // UI Population
+        MovieRecord m = details.movie();
+        
+        int rowNum = 0; // Start row counter
 
-                rowNum++;
-                // Row 1: Year
-                gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0;
-                detailsPanel.add(new JLabel("Year:"), gbc);
-                gbc.gridx = 1; gbc.weightx = 1.0;
-                detailsPanel.add(new JLabel(String.valueOf(rs.getInt("year"))), gbc);
+        if (m != null) {
+            movieTitle = m.title();
+            descriptionArea.setText(m.description());
+            descriptionArea.setCaretPosition(0); // Scroll to top
 
+            // Populate detailsPanel (GridBagLayout)
+            
+            // Row 0: Title
+            gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0; gbc.anchor = GridBagConstraints.WEST; gbc.fill = GridBagConstraints.HORIZONTAL;
+            detailsPanel.add(new JLabel("Title:"), gbc);
+            gbc.gridx = 1; gbc.weightx = 1.0;
+            detailsPanel.add(new JLabel("<html><b>" + m.title() + "</b></html>"), gbc);
+
+            rowNum++;
+            // Row 1: Year
+            gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0;
+            detailsPanel.add(new JLabel("Year:"), gbc);
+            gbc.gridx = 1; gbc.weightx = 1.0;
+            detailsPanel.add(new JLabel(m.year() == null ? "" : String.valueOf(m.year())), gbc);
+
+            rowNum++;
+            // Row 2: Starring
+            gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0;
+            detailsPanel.add(new JLabel("Starring:"), gbc);
+            gbc.gridx = 1; gbc.weightx = 1.0;
+            detailsPanel.add(new JLabel("<html><b>" + m.starring() + "</b></html>"), gbc);
+
+            if (watchlists.isReady()) {
                 rowNum++;
-                // Row 2: Starring
                 gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0;
-                detailsPanel.add(new JLabel("Starring:"), gbc);
+                detailsPanel.add(new JLabel("Saved by:"), gbc);
                 gbc.gridx = 1; gbc.weightx = 1.0;
-                detailsPanel.add(new JLabel("<html><b>" + rs.getString("starring") + "</b></html>"), gbc);
-                
-                rowNum++;
-                // *** KEY CHANGE 2: Add Description Label ***
-                gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0; gbc.gridwidth = 2; // Span two columns
-                gbc.anchor = GridBagConstraints.WEST;
-                detailsPanel.add(createStyledLabel("Description:"), gbc); 
-
-                rowNum++;
-                // *** KEY CHANGE 3: Add Description JTextArea directly ***
-                gbc.gridx = 0; gbc.gridy = rowNum; gbc.gridwidth = 2; // Span two columns
-                gbc.weightx = 1.0; gbc.weighty = 1.0; // Give it space to grow
-                gbc.fill = GridBagConstraints.BOTH; // Fill both horizontally and vertically
-                detailsPanel.add(descriptionArea, gbc);
+                int saved = watchlists.savedBy(movieId);
+                String onList = watchlists.contains(currentUserId(), movieId) ? " (including you)" : "";
+                detailsPanel.add(new JLabel(saved + (saved == 1 ? " user" : " users") + onList), gbc);
             }
-            rs.close();
-            ps.close();
-
-            // Fetch reviews
-            PreparedStatement reviewPs = conn.prepareStatement(
-                "SELECT r.rating, r.comment, u.username FROM reviews r JOIN users u ON r.user_id = u.id WHERE r.movie_id = ? ORDER BY r.created_at DESC LIMIT 5");
-            reviewPs.setInt(1, movieId);
-            ResultSet reviewRs = reviewPs.executeQuery();
             
-            StringBuilder reviewText = new StringBuilder();
-            boolean hasReviews = false;
-            while(reviewRs.next()) {
-                reviewText.append("User: ").append(reviewRs.getString("username")).append("\n");
-                reviewText.append("⭐ Rating: ").append(reviewRs.getInt("rating")).append("/10\n");
-                reviewText.append("Comment: ").append(reviewRs.getString("comment")).append("\n\n");
-                hasReviews = true;
-            }
-            if (!hasReviews) {
-                reviewArea.setText("No reviews yet. Be the first!");
-            } else {
-                reviewArea.setText(reviewText.toString());
-            }
-            reviewArea.setCaretPosition(0); // Scroll to top
-            reviewRs.close();
-            reviewPs.close();
+            rowNum++;
+            // *** KEY CHANGE 2: Add Description Label ***
+            gbc.gridx = 0; gbc.gridy = rowNum; gbc.weightx = 0; gbc.gridwidth = 2; // Span two columns
+            gbc.anchor = GridBagConstraints.WEST;
+            detailsPanel.add(createStyledLabel("Description:"), gbc); 
+
+            rowNum++;
+            // *** KEY CHANGE 3: Add Description JTextArea directly ***
+            gbc.gridx = 0; gbc.gridy = rowNum; gbc.gridwidth = 2; // Span two columns
+            gbc.weightx = 1.0; gbc.weighty = 1.0; // Give it space to grow
+            gbc.fill = GridBagConstraints.BOTH; // Fill both horizontally and vertically
+            detailsPanel.add(descriptionArea, gbc);
+        }
 
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error fetching details: " + e.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-            return;
+        // Reviews
+        List<ReviewEntry> reviews = details.latestReviews();
+        
+        StringBuilder reviewText = new StringBuilder();
+        boolean hasReviews = false;
+        for (ReviewEntry r : reviews) {
+            reviewText.append("User: ").append(r.username()).append("\n");
+            reviewText.append("⭐ Rating: ").append(r.rating()).append("/10\n");
+            reviewText.append("Comment: ").append(r.comment()).append("\n\n");
+            hasReviews = true;
+        }
+        if (!hasReviews) {
+            reviewArea.setText("No reviews yet. Be the first!");
+        } else {
+            reviewArea.setText(reviewText.toString());
         }
+        reviewArea.setCaretPosition(0); // Scroll to top
 
         // 4. Action Buttons Panel
         JButton addReviewBtn = new JButton("Add Review");
@@ -468,15 +865,33 @@ public class movie extends JFrame {
         btnPanel.add(addToWatchlistBtn);
         btnPanel.add(closeBtn);
         
+        // Ratings Panel (average and 1-10 distribution from movie_stats)
+        RatingHistogram histogram = new RatingHistogram(details.stats());
+        histogram.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        JPanel ratingsPanel = new JPanel(new BorderLayout());
+        ratingsPanel.setBorder(BorderFactory.createTitledBorder("Ratings"));
+        ratingsPanel.add(histogram, BorderLayout.CENTER);
+        if (analytics.isReady() && analytics.count(movieId) > 0) {
+            JLabel spread = new JLabel("Median " + analytics.median(movieId) + "  ·  middle half "
+                    + analytics.percentile(movieId, 25) + "-" + analytics.percentile(movieId, 75)
+                    + "  ·  90th percentile " + analytics.percentile(movieId, 90));
+            spread.setBorder(BorderFactory.createEmptyBorder(0, 5, 5, 5));
+            ratingsPanel.add(spread, BorderLayout.SOUTH);
+        }
+
+        JPanel centerPanel = new JPanel(new BorderLayout(10, 10));
+        centerPanel.add(ratingsPanel, BorderLayout.NORTH);
+        centerPanel.add(reviewScroll, BorderLayout.CENTER);
+
         // Combine Panels into the main dialogContent
         dialogContent.add(detailsPanel, BorderLayout.NORTH);
-        dialogContent.add(reviewScroll, BorderLayout.CENTER);
+        dialogContent.add(centerPanel, BorderLayout.CENTER);
         dialogContent.add(btnPanel, BorderLayout.SOUTH);
 
         // Final Dialog Setup
         JDialog detailDialog = new JDialog(this, movieTitle + " Details", true);
         detailDialog.setContentPane(dialogContent);
-        detailDialog.setSize(650, 600); // Adjusted size since the panels are stacked differently now
+        detailDialog.setSize(650, 800); // Taller to fit the ratings panel
         detailDialog.setLocationRelativeTo(this);
         
         // Add action listeners to custom buttons
@@ -576,25 +991,25 @@ public class movie extends JFrame {
                 if (movieYear < 1888 || movieYear > LocalDateTime.now().getYear() + 1) {
                     throw new IllegalArgumentException("Invalid year. Must be between 1888 and next year.");
                 }
+                String title = titleField.getText().trim();
+                String stars = starsField.getText().trim();
+                String desc = descArea.getText().trim();
                 
-                // Database insert
-                PreparedStatement ps = conn.prepareStatement("INSERT INTO movies(title,year,starring,description) VALUES(?,?,?,?)");
-                ps.setString(1, titleField.getText().trim());
-                ps.setInt(2, movieYear);
-                ps.setString(3, starsField.getText().trim());
-                ps.setString(4, descArea.getText().trim());
-                ps.executeUpdate();
-                
-                JOptionPane.showMessageDialog(addMovieDialog, "Movie added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                refreshMovies();
-                addMovieDialog.dispose(); // Close dialog on success
+                // Database insert (in the background; the dialog stays open until it finishes)
+                saveBtn.setEnabled(false);
+                AsyncSlot.run(db, dashBusy, () -> dao.addMovie(title, movieYear, stars, desc), id -> {
+                    JOptionPane.showMessageDialog(addMovieDialog, "Movie added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    refreshMovies();
+                    addMovieDialog.dispose(); // Close dialog on success
+                }, ex -> {
+                    saveBtn.setEnabled(true);
+                    JOptionPane.showMessageDialog(addMovieDialog, "Database Error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                });
                 
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(addMovieDialog, "Please enter a valid number for the year.", "Input Error", JOptionPane.ERROR_MESSAGE);
             } catch (IllegalArgumentException ex) {
                 JOptionPane.showMessageDialog(addMovieDialog, ex.getMessage(), "Input Error", JOptionPane.ERROR_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(addMovieDialog, "Database Error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
             }
         });
 
@@ -683,16 +1098,16 @@ public class movie extends JFrame {
                      throw new IllegalArgumentException("Rating must be between 1 and 10.");
                 }
                 
-                PreparedStatement ps = conn.prepareStatement("INSERT INTO reviews(movie_id,user_id,rating,comment,created_at) VALUES(?,?,?,?,?)");
-                ps.setInt(1, movieId);
-                ps.setInt(2, currentUserId);
-                ps.setInt(3, rating);
-                ps.setString(4, comment);
-                ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
-                ps.executeUpdate();
-                
-                JOptionPane.showMessageDialog(reviewDialog, "Review submitted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
-                reviewDialog.dispose();
+                int userId = requireUserId();
+                if (userId < 0) return;
+                submitBtn.setEnabled(false);
+                AsyncSlot.run(db, dashBusy, () -> { dao.addReview(movieId, userId, rating, comment); return null; }, ok -> {
+                    JOptionPane.showMessageDialog(reviewDialog, "Review submitted successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                    reviewDialog.dispose();
+                }, ex -> {
+                    submitBtn.setEnabled(true);
+                    JOptionPane.showMessageDialog(reviewDialog, "Error: " + ex.getMessage(), "Review Error", JOptionPane.ERROR_MESSAGE);
+                });
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(reviewDialog, "Error: " + ex.getMessage(), "Review Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -703,18 +1118,16 @@ public class movie extends JFrame {
     }
 
     private void addToWatchlist(int movieId) {
-        try {
-            PreparedStatement ps = conn.prepareStatement("INSERT IGNORE INTO watchlist(user_id,movie_id,added_at) VALUES(?,?,NOW())");
-            ps.setInt(1, currentUserId);
-            ps.setInt(2, movieId);
-            int n = ps.executeUpdate();
-            
-            JOptionPane.showMessageDialog(this, n > 0 ? "Added to watchlist!" : "Already in watchlist!");
+        int userId = requireUserId();
+        if (userId < 0) return;
+        if (watchlists.isReady() && watchlists.contains(userId, movieId)) {
+            JOptionPane.showMessageDialog(this, "Already in watchlist!"); // known locally, no round trip
+            return;
+        }
+        AsyncSlot.run(db, dashBusy, () -> dao.addToWatchlist(userId, movieId), added -> {
+            JOptionPane.showMessageDialog(this, added ? "Added to watchlist!" : "Already in watchlist!");
             
             refreshWatchlist();
-            
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error: " + e.getMessage());
-        }
+        }, e -> JOptionPane.showMessageDialog(this, "Error: " + e.getMessage()));
     }
 }
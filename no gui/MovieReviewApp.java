@@ -1,7 +1,37 @@
 import java.sql.*;
+import java.util.List;
 import java.util.Scanner;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import moviediary.analytics.ReviewAnalytics;
+import moviediary.auth.CredentialService;
+import moviediary.db.CastMigration;
+import moviediary.db.ConnectionPool;
+import moviediary.db.MovieDao;
+import moviediary.db.MovieStatsRebuilder;
+import moviediary.db.MovieStore;
+import moviediary.db.PooledConnection;
+import moviediary.db.Schema;
+import moviediary.db.StoreMode;
+import moviediary.detail.DetailLoader;
+import moviediary.leaderboard.Leaderboards;
+import moviediary.leaderboard.RankedMovie;
+import moviediary.metrics.InstrumentedStore;
+import moviediary.metrics.MetricsEndpoint;
+import moviediary.metrics.MetricsRegistry;
+import moviediary.model.MovieDetail;
+import moviediary.model.MovieOrder;
+import moviediary.model.MovieRecord;
+import moviediary.model.MovieSummary;
+import moviediary.model.RatingStats;
+import moviediary.model.ReviewEntry;
+import moviediary.model.WatchlistEntry;
+import moviediary.recommend.Recommendation;
+import moviediary.recommend.Recommender;
+import moviediary.search.SearchHit;
+import moviediary.search.SearchIndex;
+import moviediary.session.SessionRegistry;
+import moviediary.session.UserSession;
+import moviediary.watchlist.WatchlistService;
+import moviediary.writebehind.WriteBehindStore;
 
 public class MovieReviewApp {
     // ---------- CONFIG ----------
@@ -9,36 +39,128 @@ public class MovieReviewApp {
     private static final String JDBC_URL = "jdbc:mysql://localhost:3306/moviereviewdb";
     private static final String JDBC_USER = "root"; // change as needed
     private static final String JDBC_PASS = "root"; // change as needed
+    private static final int PAGE_SIZE = 20; // rows per screen when browsing
 
     // ---------- STATE ----------
-    private static Connection conn;
+    private static ConnectionPool pool; // null when running on an in-process store
+    private static MovieStore dao;
+    private static CredentialService credentials;
+    private static DetailLoader detailLoader;
+    private static SearchIndex search;
+    private static WatchlistService watchlists;
+    private static ReviewAnalytics analytics;
+    private static Leaderboards leaderboards;
+    private static Recommender recommender;
     private static Scanner sc = new Scanner(System.in);
-    private static Integer currentUserId = null;
-    private static String currentUsername = null;
+    private static final SessionRegistry sessions = new SessionRegistry();
+    private static String sessionToken = null; // null when logged out
 
     public static void main(String[] args) {
+        MetricsEndpoint metrics = null;
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            conn = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASS);
-            conn.setAutoCommit(true);
-            setupDB();
+            if (StoreMode.current() != StoreMode.MYSQL) {
+                dao = StoreMode.current().openLocal();
+            } else {
+                pool = new ConnectionPool(JDBC_URL, JDBC_USER, JDBC_PASS);
+                MovieDao mysql = new MovieDao(pool);
+                MetricsRegistry.global().watchMovieCache(mysql.movieCache());
+                dao = mysql;
+                setupDB();
+                // Reviews and watchlist additions are journaled locally and flushed to MySQL in batches
+                if (WriteBehindStore.enabled()) {
+                    WriteBehindStore writeBehind = WriteBehindStore.open(mysql);
+                    MetricsRegistry.global().watchWriteBehind(writeBehind);
+                    dao = writeBehind;
+                }
+                MetricsRegistry.global().watchPool(pool);
+            }
+            // Timings go to JMX, and to /metrics when -Dmoviediary.metrics.port is set; one user, so time every call
+            dao = InstrumentedStore.wrap(dao, 1);
+            metrics = MetricsEndpoint.startIfConfigured();
+            credentials = new CredentialService(dao);
+            detailLoader = new DetailLoader(dao);
+            dao.addListener(detailLoader); // a new review drops that movie's cached detail
+            MetricsRegistry.global().watchDetailLoader(detailLoader);
+            startBackgroundTasks();
             showWelcome();
         } catch (Exception e) {
             System.err.println("Fatal error connecting to DB: " + e.getMessage());
             e.printStackTrace();
         } finally {
-            try { if (conn != null) conn.close(); } catch (Exception ignored) {}
+            if (dao != null) {
+                try {
+                    dao.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing store: " + e.getMessage());
+                }
+            }
+            if (pool != null) pool.close();
+            if (metrics != null) metrics.close();
         }
     }
 
     // Create tables if not exist
     private static void setupDB() throws SQLException {
-        Statement st = conn.createStatement();
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, password VARCHAR(100) NOT NULL)");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS movies (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200) NOT NULL, year INT, starring VARCHAR(300), description TEXT)");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS reviews (id INT AUTO_INCREMENT PRIMARY KEY, movie_id INT NOT NULL, user_id INT NOT NULL, rating INT NOT NULL CHECK(rating >= 1 AND rating <= 10), comment TEXT, created_at DATETIME, FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
-        st.executeUpdate("CREATE TABLE IF NOT EXISTS watchlist (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT NOT NULL, movie_id INT NOT NULL, added_at DATETIME, UNIQUE(user_id, movie_id), FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
-        st.close();
+        try (PooledConnection pc = pool.borrow(); Statement st = pc.connection().createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS users (id INT AUTO_INCREMENT PRIMARY KEY, username VARCHAR(50) UNIQUE NOT NULL, password VARCHAR(100) NOT NULL)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS movies (id INT AUTO_INCREMENT PRIMARY KEY, title VARCHAR(200) NOT NULL, year INT, starring VARCHAR(300), description TEXT)");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS reviews (id INT AUTO_INCREMENT PRIMARY KEY, movie_id INT NOT NULL, user_id INT NOT NULL, rating INT NOT NULL CHECK(rating >= 1 AND rating <= 10), comment TEXT, created_at DATETIME, FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS watchlist (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT NOT NULL, movie_id INT NOT NULL, added_at DATETIME NOT NULL, UNIQUE(user_id, movie_id), FOREIGN KEY(movie_id) REFERENCES movies(id), FOREIGN KEY(user_id) REFERENCES users(id))");
+            Schema.createCastTables(st);
+            Schema.createStatsTables(st);
+            Schema.createIndexes(st);
+            Schema.createWriteBehindTables(st);
+        }
+    }
+
+    // Builds the search and watchlist indexes and links legacy cast on a daemon thread so the menu comes up straight away.
+    private static void startBackgroundTasks() {
+        search = new SearchIndex();
+        dao.addListener(search);
+        watchlists = new WatchlistService();
+        dao.addListener(watchlists);
+        analytics = new ReviewAnalytics();
+        dao.addListener(analytics);
+        leaderboards = new Leaderboards();
+        dao.addListener(leaderboards);
+        recommender = new Recommender(JDBC_URL);
+        dao.addListener(recommender);
+        Thread worker = new Thread(() -> {
+            try {
+                search.buildFrom(dao);
+            } catch (SQLException e) {
+                System.err.println("Search index build failed: " + e.getMessage());
+            }
+            try {
+                watchlists.buildFrom(dao);
+            } catch (SQLException e) {
+                System.err.println("Watchlist index build failed: " + e.getMessage());
+            }
+            try {
+                analytics.buildFrom(dao);
+            } catch (SQLException e) {
+                System.err.println("Review analytics build failed: " + e.getMessage());
+            }
+            try {
+                leaderboards.buildFrom(dao);
+                leaderboards.startReconciling(dao);
+            } catch (SQLException e) {
+                System.err.println("Leaderboard build failed: " + e.getMessage());
+            }
+            try {
+                recommender.buildFrom(dao);
+            } catch (SQLException e) {
+                System.err.println("Recommender build failed: " + e.getMessage());
+            }
+            if (pool == null) return; // the in-process stores link cast as movies are added
+            try {
+                new CastMigration(pool).run();
+            } catch (SQLException e) {
+                System.err.println("Cast migration failed: " + e.getMessage());
+            }
+        }, "background-tasks");
+        worker.setDaemon(true);
+        worker.start();
     }
 
     private static void showWelcome() throws SQLException {
@@ -47,14 +169,18 @@ public class MovieReviewApp {
             System.out.println("1) Register");
             System.out.println("2) Login");
             System.out.println("3) Browse movies (no login required)");
-            System.out.println("4) Exit");
+            System.out.println("4) Search movies");
+            System.out.println("5) Actor filmography");
+            System.out.println("6) Exit");
             System.out.print("Choose: ");
             String c = sc.nextLine().trim();
             switch (c) {
                 case "1": register(); break;
                 case "2": if (login()) userMenu(); break;
                 case "3": browseMovies(); break;
-                case "4": System.out.println("Bye!"); return;
+                case "4": searchMovies(); break;
+                case "5": filmography(); break;
+                case "6": System.out.println("Bye!"); return;
                 default: System.out.println("Invalid choice");
             }
         }
@@ -66,11 +192,7 @@ public class MovieReviewApp {
             String username = sc.nextLine().trim();
             System.out.print("Choose password: ");
             String password = sc.nextLine().trim();
-            PreparedStatement ps = conn.prepareStatement("INSERT INTO users(username, password) VALUES(?,?)");
-            ps.setString(1, username);
-            ps.setString(2, password);
-            ps.executeUpdate();
-            ps.close();
+            credentials.register(username, password);
             System.out.println("Registered. You can log in now.");
         } catch (SQLException e) {
             if (e.getMessage().toLowerCase().contains("duplicate")) {
@@ -87,19 +209,13 @@ public class MovieReviewApp {
             String username = sc.nextLine().trim();
             System.out.print("Password: ");
             String password = sc.nextLine().trim();
-            PreparedStatement ps = conn.prepareStatement("SELECT id FROM users WHERE username = ? AND password = ?");
-            ps.setString(1, username);
-            ps.setString(2, password);
-            ResultSet rs = ps.executeQuery();
-            if (rs.next()) {
-                currentUserId = rs.getInt("id");
-                currentUsername = username;
+            Integer userId = credentials.login(username, password);
+            if (userId != null) {
+                sessionToken = sessions.open(userId, username).token();
                 System.out.println("Welcome, " + username + "!");
-                rs.close(); ps.close();
                 return true;
             } else {
                 System.out.println("Invalid credentials.");
-                rs.close(); ps.close();
                 return false;
             }
         } catch (SQLException e) {
@@ -108,22 +224,51 @@ public class MovieReviewApp {
         }
     }
 
+    // The logged-in user, or null once logged out or idle past the session timeout.
+    private static UserSession currentUser() {
+        return sessions.find(sessionToken);
+    }
+
+    private static UserSession requireUser(String action) {
+        UserSession user = currentUser();
+        if (user == null) System.out.println("Must be logged in to " + action + ".");
+        return user;
+    }
+
     private static void userMenu() throws SQLException {
         while (true) {
-            System.out.println("\n--- User: " + currentUsername + " ---");
+            UserSession user = currentUser();
+            if (user == null) {
+                System.out.println("Session expired, please log in again.");
+                sessionToken = null;
+                return;
+            }
+            System.out.println("\n--- User: " + user.username() + " ---");
             System.out.println("1) Add movie");
             System.out.println("2) Browse movies");
-            System.out.println("3) View movie details / add review");
-            System.out.println("4) My watchlist");
-            System.out.println("5) Logout");
+            System.out.println("3) Search movies");
+            System.out.println("4) Actor filmography");
+            System.out.println("5) View movie details / add review");
+            System.out.println("6) My watchlist");
+            System.out.println("7) My reviews");
+            System.out.println("8) Leaderboards");
+            System.out.println("9) Recommended for you");
+            System.out.println("10) Rebuild rating stats");
+            System.out.println("11) Logout");
             System.out.print("Choose: ");
             String c = sc.nextLine().trim();
             switch (c) {
                 case "1": addMovie(); break;
                 case "2": browseMovies(); break;
-                case "3": viewAndReviewMovie(); break;
-                case "4": viewWatchlist(); break;
-                case "5": currentUserId = null; currentUsername = null; return;
+                case "3": searchMovies(); break;
+                case "4": filmography(); break;
+                case "5": viewAndReviewMovie(); break;
+                case "6": viewWatchlist(); break;
+                case "7": myReviews(); break;
+                case "8": showLeaderboards(); break;
+                case "9": showRecommendations(); break;
+                case "10": rebuildStats(); break;
+                case "11": sessions.close(sessionToken); sessionToken = null; return;
                 default: System.out.println("Invalid choice");
             }
         }
@@ -142,13 +287,7 @@ public class MovieReviewApp {
             System.out.print("Short description: ");
             String desc = sc.nextLine().trim();
 
-            PreparedStatement ps = conn.prepareStatement("INSERT INTO movies(title, year, starring, description) VALUES(?,?,?,?)");
-            ps.setString(1, title);
-            if (year == null) ps.setNull(2, Types.INTEGER); else ps.setInt(2, year);
-            ps.setString(3, starring);
-            ps.setString(4, desc);
-            ps.executeUpdate();
-            ps.close();
+            dao.addMovie(title, year, starring, desc);
             System.out.println("Movie added.");
         } catch (SQLException e) {
             System.out.println("Error adding movie: " + e.getMessage());
@@ -157,61 +296,112 @@ public class MovieReviewApp {
 
     private static void browseMovies() {
         try {
-            PreparedStatement ps = conn.prepareStatement("SELECT id, title, year FROM movies ORDER BY title");
-            ResultSet rs = ps.executeQuery();
-            System.out.println("\nMovies:");
-            while (rs.next()) {
-                int id = rs.getInt("id");
-                String title = rs.getString("title");
-                int year = rs.getInt("year");
-                String yearStr = rs.wasNull() ? "" : (" (" + year + ")");
-                System.out.println(id + ": " + title + yearStr);
+            List<MovieSummary> page = dao.moviesAfter(MovieOrder.TITLE, null, PAGE_SIZE);
+            while (true) {
+                System.out.println("\nMovies:");
+                for (MovieSummary m : page) {
+                    String yearStr = m.year() == null ? "" : (" (" + m.year() + ")");
+                    System.out.println(m.id() + ": " + m.title() + yearStr);
+                }
+                if (page.isEmpty()) System.out.println("(none)");
+
+                System.out.print("[n]ext  [p]rev  [j <letter>] jump  [q]uit: ");
+                String cmd = sc.nextLine().trim();
+                List<MovieSummary> next;
+                if (cmd.equalsIgnoreCase("n")) {
+                    next = page.isEmpty() ? page : dao.moviesAfter(MovieOrder.TITLE, page.get(page.size() - 1), PAGE_SIZE);
+                } else if (cmd.equalsIgnoreCase("p")) {
+                    next = page.isEmpty() ? page : dao.moviesBefore(MovieOrder.TITLE, page.get(0), PAGE_SIZE);
+                } else if (cmd.length() > 1 && Character.toLowerCase(cmd.charAt(0)) == 'j') {
+                    // Every title >= the prefix sorts after (prefix, id 0).
+                    String prefix = cmd.substring(1).trim();
+                    next = dao.moviesAfter(MovieOrder.TITLE, new MovieSummary(0, prefix, null), PAGE_SIZE);
+                } else if (cmd.equalsIgnoreCase("q") || cmd.isEmpty()) {
+                    return;
+                } else {
+                    System.out.println("Invalid choice");
+                    continue;
+                }
+                if (next.isEmpty()) System.out.println("No more movies that way.");
+                else page = next;
             }
-            rs.close(); ps.close();
         } catch (SQLException e) {
             System.out.println("Error listing movies: " + e.getMessage());
         }
     }
 
+    private static void searchMovies() {
+        System.out.print("Search title, cast or description: ");
+        String q = sc.nextLine();
+        if (q.isBlank()) return;
+        long start = System.nanoTime();
+        List<SearchHit> hits = search.search(q, PAGE_SIZE);
+        long micros = (System.nanoTime() - start) / 1000;
+        System.out.println("\nResults (" + hits.size() + " in " + micros + " us):");
+        for (SearchHit h : hits) {
+            String yearStr = h.year() == null ? "" : (" (" + h.year() + ")");
+            System.out.println(h.movieId() + ": " + h.title() + yearStr);
+        }
+        if (hits.isEmpty()) System.out.println("(none)");
+        if (!search.isReady()) System.out.println("(still indexing: " + search.size() + " movies so far)");
+    }
+
+    private static void filmography() {
+        try {
+            System.out.print("Actor name: ");
+            String name = sc.nextLine().trim();
+            if (name.isEmpty()) return;
+            List<MovieSummary> movies = dao.filmography(name);
+            System.out.println("\nMovies with " + name + ":");
+            for (MovieSummary m : movies) {
+                String yearStr = m.year() == null ? "" : (" (" + m.year() + ")");
+                System.out.println(m.id() + ": " + m.title() + yearStr);
+            }
+            if (movies.isEmpty()) {
+                System.out.println("(none)");
+                List<String> suggestions = dao.peopleStartingWith(name, 10);
+                if (!suggestions.isEmpty()) System.out.println("Did you mean: " + String.join(", ", suggestions));
+            }
+        } catch (SQLException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
     private static void viewAndReviewMovie() {
         try {
             System.out.print("Enter movie id to view details: ");
             int id = Integer.parseInt(sc.nextLine().trim());
-            PreparedStatement ps = conn.prepareStatement("SELECT * FROM movies WHERE id = ?");
-            ps.setInt(1, id);
-            ResultSet rs = ps.executeQuery();
-            if (!rs.next()) {
-                System.out.println("Movie not found."); rs.close(); ps.close(); return;
+            MovieDetail detail = detailLoader.load(id);
+            if (detail == null) {
+                System.out.println("Movie not found."); return;
             }
-            System.out.println("\nTitle: " + rs.getString("title"));
-            int year = rs.getInt("year"); if (!rs.wasNull()) System.out.println("Year: " + year);
-            System.out.println("Starring: " + rs.getString("starring"));
-            System.out.println("Description: " + rs.getString("description"));
-            rs.close(); ps.close();
-
-            PreparedStatement ps2 = conn.prepareStatement("SELECT AVG(rating) as avgR, COUNT(*) as cnt FROM reviews WHERE movie_id = ?");
-            ps2.setInt(1, id);
-            ResultSet r2 = ps2.executeQuery();
-            if (r2.next()) {
-                double avg = r2.getDouble("avgR");
-                int cnt = r2.getInt("cnt");
-                if (cnt > 0) System.out.printf("Average rating: %.2f (%d reviews)\n", avg, cnt);
-                else System.out.println("No reviews yet.");
+            MovieRecord movie = detail.movie();
+            System.out.println("\nTitle: " + movie.title());
+            if (movie.year() != null) System.out.println("Year: " + movie.year());
+            System.out.println("Starring: " + movie.starring());
+            System.out.println("Description: " + movie.description());
+            if (watchlists.isReady()) System.out.println("On " + watchlists.savedBy(id) + " watchlist(s)");
+
+            RatingStats rating = detail.stats();
+            if (rating.count() > 0) {
+                System.out.printf("Average rating: %.2f (%d reviews)\n", rating.average(), rating.count());
+                StringBuilder dist = new StringBuilder("Distribution:");
+                for (int r = 1; r <= RatingStats.MAX_RATING; r++) dist.append(' ').append(r).append('=').append(rating.countFor(r));
+                System.out.println(dist);
+                if (analytics.isReady()) {
+                    System.out.println("Median: " + analytics.median(id) + "  middle half: " + analytics.percentile(id, 25)
+                            + "-" + analytics.percentile(id, 75) + "  90th percentile: " + analytics.percentile(id, 90));
+                }
             }
-            r2.close(); ps2.close();
+            else System.out.println("No reviews yet.");
 
-            PreparedStatement ps3 = conn.prepareStatement("SELECT r.rating, r.comment, r.created_at, u.username FROM reviews r JOIN users u ON r.user_id = u.id WHERE r.movie_id = ? ORDER BY r.id DESC LIMIT 5");
-            ps3.setInt(1, id);
-            ResultSet r3 = ps3.executeQuery();
+            List<ReviewEntry> reviews = detail.latestReviews();
             System.out.println("\nRecent reviews:");
-            boolean any = false;
-            while (r3.next()) {
-                any = true;
-                System.out.println("- " + r3.getString("username") + " (" + r3.getInt("rating") + ") at " + r3.getTimestamp("created_at") );
-                System.out.println("  " + r3.getString("comment"));
+            for (ReviewEntry r : reviews) {
+                System.out.println("- " + r.username() + " (" + r.rating() + ") at " + r.createdAt());
+                System.out.println("  " + r.comment());
             }
-            if (!any) System.out.println("(none)");
-            r3.close(); ps3.close();
+            if (reviews.isEmpty()) System.out.println("(none)");
 
             while (true) {
                 System.out.println("\nActions: 1) Add review  2) Add to watchlist  3) Back");
@@ -229,24 +419,30 @@ public class MovieReviewApp {
         }
     }
 
-    private static void addReview(int movieId) {
-        if (currentUserId == null) {
-            System.out.println("Must be logged in to add review.");
+    private static void rebuildStats() {
+        if (pool == null) {
+            System.out.println("The in-process store keeps rating stats exact; nothing to rebuild.");
             return;
         }
+        try {
+            long start = System.currentTimeMillis();
+            int movies = new MovieStatsRebuilder(pool).rebuildAll();
+            System.out.println("Rebuilt rating stats for " + movies + " movies in " + (System.currentTimeMillis() - start) + " ms.");
+        } catch (SQLException e) {
+            System.out.println("Error rebuilding stats: " + e.getMessage());
+        }
+    }
+
+    private static void addReview(int movieId) {
+        UserSession user = requireUser("add review");
+        if (user == null) return;
         try {
             System.out.print("Rating (1-10): ");
             int rating = Integer.parseInt(sc.nextLine().trim());
             if (rating < 1 || rating > 10) { System.out.println("Invalid rating"); return; }
             System.out.print("Comment: ");
             String comment = sc.nextLine().trim();
-            PreparedStatement ps = conn.prepareStatement("INSERT INTO reviews(movie_id, user_id, rating, comment, created_at) VALUES(?,?,?,?,?)");
-            ps.setInt(1, movieId);
-            ps.setInt(2, currentUserId);
-            ps.setInt(3, rating);
-            ps.setString(4, comment);
-            ps.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
-            ps.executeUpdate(); ps.close();
+            dao.addReview(movieId, user.userId(), rating, comment);
             System.out.println("Review added.");
         } catch (NumberFormatException nfe) {
             System.out.println("Rating must be a number.");
@@ -255,36 +451,135 @@ public class MovieReviewApp {
         }
     }
 
+    // Movies on both the current user's watchlist and another user's, intersected in memory.
+    private static void compareWatchlists() throws SQLException {
+        UserSession user = requireUser("compare watchlists");
+        if (user == null) return;
+        if (!watchlists.isReady()) { System.out.println("Watchlists are still loading, try again in a moment."); return; }
+        System.out.print("Compare with username: ");
+        String other = sc.nextLine().trim();
+        if (other.isEmpty()) return;
+        Integer otherId = dao.findUserId(other);
+        if (otherId == null) { System.out.println("No user named \"" + other + "\"."); return; }
+        int[] common = watchlists.common(user.userId(), otherId);
+        System.out.println("\nIn common with " + other + " (" + common.length + " movies):");
+        for (int id : common) {
+            MovieRecord m = dao.findMovie(id);
+            if (m != null) System.out.println(m.id() + ": " + m.title());
+        }
+    }
+
+    private static void showLeaderboards() throws SQLException {
+        if (!leaderboards.isReady()) { System.out.println("Leaderboards are still loading, try again in a moment."); return; }
+        System.out.println("\nTop rated (weighted average, reviews):");
+        printLeaderboard(leaderboards.topRated(10), true);
+        System.out.println("\nTrending this week (reviews in the last 7 days):");
+        printLeaderboard(leaderboards.trending(10), false);
+        System.out.println("\nMost watchlisted (saves):");
+        printLeaderboard(leaderboards.mostWatchlisted(10), false);
+    }
+
+    private static void printLeaderboard(List<RankedMovie> ranked, boolean average) throws SQLException {
+        if (ranked.isEmpty()) { System.out.println("(nothing yet)"); return; }
+        int place = 0;
+        for (RankedMovie r : ranked) {
+            MovieRecord m = dao.findMovie(r.movieId());
+            String title = m == null ? "?" : m.title();
+            if (average) System.out.printf("%2d. %s [%d]  %.2f (%d)%n", ++place, title, r.movieId(), r.score(), r.count());
+            else System.out.printf("%2d. %s [%d]  %d%n", ++place, title, r.movieId(), r.count());
+        }
+    }
+
+    // Scored from the precomputed neighbour lists of the movies the user liked or saved.
+    private static void showRecommendations() throws SQLException {
+        UserSession user = requireUser("see recommendations");
+        if (user == null) return;
+        if (!recommender.isReady()) { System.out.println("Recommendations are still loading, try again in a moment."); return; }
+        List<Recommendation> recs = recommender.recommend(user.userId(), 10);
+        if (recs.isEmpty()) { System.out.println("Review or save a few movies you like to get recommendations."); return; }
+        System.out.println("\nRecommended for you:");
+        int place = 0;
+        for (Recommendation r : recs) {
+            MovieRecord m = dao.findMovie(r.movieId());
+            MovieRecord because = dao.findMovie(r.becauseOf());
+            System.out.printf("%2d. %s [%d]  because you liked %s%n", ++place,
+                    m == null ? "?" : m.title(), r.movieId(), because == null ? "?" : because.title());
+        }
+    }
+
+    // The user's own ratings, newest first, from the in-memory review columns.
+    private static void myReviews() throws SQLException {
+        UserSession user = requireUser("see your reviews");
+        if (user == null) return;
+        if (!analytics.isReady()) { System.out.println("Reviews are still loading, try again in a moment."); return; }
+        int[] movies = new int[PAGE_SIZE];
+        int[] ratings = new int[PAGE_SIZE];
+        long[] times = new long[PAGE_SIZE];
+        int[] shown = {0};
+        int total = analytics.forEachUserReview(user.userId(), (movieId, rating, createdAt) -> {
+            if (shown[0] == PAGE_SIZE) return;
+            movies[shown[0]] = movieId;
+            ratings[shown[0]] = rating;
+            times[shown[0]++] = createdAt;
+        });
+        if (total == 0) { System.out.println("You have not reviewed anything yet."); return; }
+        System.out.printf("\nYour reviews: %d, average %.2f%n", total, analytics.userMean(user.userId()));
+        for (int i = 0; i < shown[0]; i++) {
+            MovieRecord m = dao.findMovie(movies[i]);
+            System.out.println(movies[i] + ": " + (m == null ? "?" : m.title()) + " - " + ratings[i] + "/10 ("
+                    + new Timestamp(times[i]) + ")");
+        }
+        if (total > shown[0]) System.out.println("(" + (total - shown[0]) + " older reviews not shown)");
+    }
+
     private static void addToWatchlist(int movieId) {
-        if (currentUserId == null) { System.out.println("Must be logged in to add to watchlist."); return; }
+        UserSession user = requireUser("add to watchlist");
+        if (user == null) return;
         try {
-            PreparedStatement ps = conn.prepareStatement("INSERT IGNORE INTO watchlist(user_id, movie_id, added_at) VALUES(?,?,?)");
-            ps.setInt(1, currentUserId);
-            ps.setInt(2, movieId);
-            ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-            int changed = ps.executeUpdate(); ps.close();
-            if (changed == 0) System.out.println("Already in watchlist."); else System.out.println("Added to watchlist.");
+            boolean added = watchlists.add(dao, user.userId(), movieId); // skips the write when known to be there
+            if (!added) System.out.println("Already in watchlist."); else System.out.println("Added to watchlist.");
         } catch (SQLException e) {
             System.out.println("Error adding to watchlist: " + e.getMessage());
         }
     }
 
     private static void viewWatchlist() {
-        if (currentUserId == null) { System.out.println("Must be logged in to see watchlist."); return; }
+        UserSession user = requireUser("see watchlist");
+        if (user == null) return;
         try {
-            PreparedStatement ps = conn.prepareStatement("SELECT w.id, m.id as mid, m.title, w.added_at FROM watchlist w JOIN movies m ON w.movie_id = m.id WHERE w.user_id = ? ORDER BY w.added_at DESC");
-            ps.setInt(1, currentUserId);
-            ResultSet rs = ps.executeQuery();
-            System.out.println("\nYour watchlist:");
-            boolean any = false;
-            while (rs.next()) {
-                any = true;
-                System.out.println(rs.getInt("mid") + ": " + rs.getString("title") + " (added: " + rs.getTimestamp("added_at") + ")");
+            List<WatchlistEntry> page = dao.watchlistAfter(user.userId(), null, PAGE_SIZE);
+            if (page.isEmpty()) {
+                System.out.println("\nYour watchlist:");
+                System.out.println("(empty)");
+                return;
+            }
+            while (true) {
+                System.out.println("\nYour watchlist:");
+                for (WatchlistEntry w : page) {
+                    System.out.println(w.movieId() + ": " + w.title() + " (added: " + w.addedAt() + ")");
+                }
+
+                System.out.print("[n]ext  [p]rev  [c]ompare  [q]uit: ");
+                String cmd = sc.nextLine().trim();
+                List<WatchlistEntry> next;
+                if (cmd.equalsIgnoreCase("c")) {
+                    compareWatchlists();
+                    continue;
+                } else if (cmd.equalsIgnoreCase("n")) {
+                    next = dao.watchlistAfter(user.userId(), page.get(page.size() - 1), PAGE_SIZE);
+                } else if (cmd.equalsIgnoreCase("p")) {
+                    next = dao.watchlistBefore(user.userId(), page.get(0), PAGE_SIZE);
+                } else if (cmd.equalsIgnoreCase("q") || cmd.isEmpty()) {
+                    return;
+                } else {
+                    System.out.println("Invalid choice");
+                    continue;
+                }
+                if (next.isEmpty()) System.out.println("No more entries that way.");
+                else page = next;
             }
-            if (!any) System.out.println("(empty)");
-            rs.close(); ps.close();
         } catch (SQLException e) {
             System.out.println("Error: " + e.getMessage());
         }
     }
-}
+}
\ No newline at end of file